@@ -0,0 +1,149 @@
+package com.medilabo.assessment_service.benchmark;
+
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.analysis.TriggerMatcher;
+import com.medilabo.assessment_service.cache.AssessmentCache;
+import com.medilabo.assessment_service.cache.NoteTriggersCache;
+import com.medilabo.assessment_service.config.GatewayClientProperties;
+import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
+import com.medilabo.assessment_service.dto.NoteDTO;
+import com.medilabo.assessment_service.dto.PatientDTO;
+import com.medilabo.assessment_service.dto.PatientTriggersDTO;
+import com.medilabo.assessment_service.rules.RiskRuleEngine;
+import com.medilabo.assessment_service.service.AssessmentDiabetesService;
+import com.medilabo.assessment_service.service.GatewayClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmark of getPatientDiabetesRiskAssessment, with an in-memory gateway.
+ * - assess: the version of the notes changes before each call, so each operation misses the caches and assesses the patient again,
+ * - assessCached: the versions do not change, the note-service answers 304 and the cached assessment is returned.
+ * And the trigger words come from:
+ * - NOTES: the note-service has another dictionary, the notes are downloaded and scanned,
+ * - STORED_HITS: the trigger words stored by the note-service are used, no note is scanned.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AssessmentBenchmark {
+
+    public enum TriggerSource { NOTES, STORED_HITS }
+
+    private static final Integer PATIENT_ID = 1;
+    private static final long PATIENT_VERSION = 0;
+
+    @Param({"1", "50", "1000"})
+    int notesCount;
+
+    @Param({"SHORT", "LONG"})
+    NoteCorpus.NoteLength noteLength;
+
+    @Param({"NOTES", "STORED_HITS"})
+    TriggerSource triggerSource;
+
+    private InMemoryGatewayClient gatewayClient;
+    private AssessmentDiabetesService service;
+
+    @Setup
+    public void setUp() {
+        TriggerDictionary triggerDictionary = new TriggerDictionary(new DefaultResourceLoader(), "classpath:trigger-words.txt");
+        NoteDTO[] notes = NoteCorpus.notes(notesCount, noteLength, 42);
+
+        PatientDTO patient = new PatientDTO();
+        patient.setId(PATIENT_ID);
+        patient.setBirthDate(LocalDate.of(1980, 1, 1));
+        patient.setGender(PatientDTO.Gender.FEMALE);
+        patient.setVersion(PATIENT_VERSION);
+
+        PatientTriggersDTO triggers = new PatientTriggersDTO(PATIENT_ID,
+                triggerSource == TriggerSource.STORED_HITS ? triggerDictionary.getMatcher().getVersion() : "other",
+                scan(triggerDictionary, notes));
+
+        gatewayClient = new InMemoryGatewayClient(patient, notes, triggers);
+        AssessmentCache assessmentCache = new AssessmentCache(10, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        service = new AssessmentDiabetesService(gatewayClient, assessmentCache,
+                new NoteTriggersCache(10, new SimpleMeterRegistry()),
+                new RiskRuleEngine(new DefaultResourceLoader(), "classpath:risk-rules.csv"),
+                triggerDictionary);
+
+        // The first assessment fills the caches, assessCached only measures if it is found again.
+        service.getPatientDiabetesRiskAssessment(PATIENT_ID);
+        if (assessmentCache.get(assessmentCache.keyFor(PATIENT_ID, PATIENT_VERSION, gatewayClient.notesVersion,
+                triggerDictionary.getMatcher().getVersion())) == null) {
+            throw new IllegalStateException("The assessment was not cached, assessCached would measure a miss");
+        }
+    }
+
+    @Benchmark
+    public AssessmentDiabetesDTO assess() {
+        gatewayClient.notesVersion++;
+        return service.getPatientDiabetesRiskAssessment(PATIENT_ID);
+    }
+
+    @Benchmark
+    public AssessmentDiabetesDTO assessCached() {
+        return service.getPatientDiabetesRiskAssessment(PATIENT_ID);
+    }
+
+    private static List<String> scan(TriggerDictionary triggerDictionary, NoteDTO[] notes) {
+        TriggerMatcher.Scan scan = triggerDictionary.getMatcher().newScan();
+        for (NoteDTO note : notes) {
+            scan.feed(note.getNoteText());
+        }
+        return scan.matchedTriggers();
+    }
+
+    /**
+     * Gateway answering from memory, so the benchmark measures the assessment and not the network.
+     * The notes are a single page, with the version of the notes as ETag, and 304 when the caller already has it.
+     */
+    private static final class InMemoryGatewayClient extends GatewayClient {
+        private final PatientDTO patient;
+        private final NoteDTO[] notes;
+        private final PatientTriggersDTO triggers;
+        private volatile long notesVersion;
+
+        InMemoryGatewayClient(PatientDTO patient, NoteDTO[] notes, PatientTriggersDTO triggers) {
+            super(null, new GatewayClientProperties(), null, "http://in-memory");
+            this.patient = patient;
+            this.notes = notes;
+            this.triggers = triggers;
+        }
+
+        @Override
+        public <T> T get(String path, Class<T> clazz, Integer patientId) {
+            return clazz.cast(patient);
+        }
+
+        @Override
+        public <T> Page<T> getPage(String path, Class<T> clazz, Integer patientId, String cursor, String ifNoneMatch) {
+            return page(clazz.cast(notes), ifNoneMatch);
+        }
+
+        @Override
+        public <T> Page<T> getIfNoneMatch(String path, Class<T> clazz, Integer patientId, String ifNoneMatch) {
+            return page(clazz.cast(triggers), ifNoneMatch);
+        }
+
+        @Override
+        public <T> T getAll(String path, Class<T> clazz, Collection<Integer> ids) {
+            throw new UnsupportedOperationException("The benchmark assesses a single patient, not a batch");
+        }
+
+        private <T> Page<T> page(T body, String ifNoneMatch) {
+            String eTag = "\"" + notesVersion + "\"";
+            return eTag.equals(ifNoneMatch) ? new Page<>(null, null, eTag, true) : new Page<>(body, null, eTag, false);
+        }
+    }
+}
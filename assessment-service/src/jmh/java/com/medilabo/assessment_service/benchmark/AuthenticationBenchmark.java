@@ -0,0 +1,90 @@
+package com.medilabo.assessment_service.benchmark;
+
+import com.medilabo.auth.GatewayAuthProperties;
+import com.medilabo.auth.GatewayTokenFilter;
+import com.medilabo.auth.GatewayTokenService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the authentication of one internal request, with the same filters as the SecurityConfig.
+ * - basic: HTTP Basic checked against the in-memory gateway user, with BCrypt (the previous internal authentication),
+ * - hmac: gateway token checked by the GatewayTokenFilter.
+ * The throughput is the number of requests per second that one core can authenticate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthenticationBenchmark {
+
+    private BasicAuthenticationFilter basicFilter;
+    private GatewayTokenFilter tokenFilter;
+    private String basicAuthorization;
+    private String tokenAuthorization;
+
+    @Setup
+    public void setUp() {
+        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(User.builder()
+                .username("gateway")
+                .password(passwordEncoder.encode("gateway-secret"))
+                .roles("GATEWAY")
+                .build());
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(users);
+        provider.setPasswordEncoder(passwordEncoder);
+        basicFilter = new BasicAuthenticationFilter(new ProviderManager(provider));
+
+        GatewayAuthProperties basicProperties = new GatewayAuthProperties();
+        basicAuthorization = new GatewayTokenService(basicProperties, "gateway", "gateway-secret").authorizationHeader();
+
+        GatewayAuthProperties hmacProperties = new GatewayAuthProperties();
+        hmacProperties.setMode(GatewayAuthProperties.Mode.HMAC);
+        hmacProperties.setActiveKey("k1");
+        hmacProperties.setKeys(Map.of("k1", "benchmark-hmac-key"));
+        GatewayTokenService tokenService = new GatewayTokenService(hmacProperties, "gateway", "gateway-secret");
+        tokenFilter = new GatewayTokenFilter(tokenService);
+        tokenAuthorization = tokenService.authorizationHeader();
+    }
+
+    @Benchmark
+    public Object basic() throws Exception {
+        return authenticate(basicFilter::doFilter, basicAuthorization);
+    }
+
+    @Benchmark
+    public Object hmac() throws Exception {
+        return authenticate(tokenFilter::doFilter, tokenAuthorization);
+    }
+
+    private interface Filter {
+        void doFilter(MockHttpServletRequest request, MockHttpServletResponse response, MockFilterChain chain) throws Exception;
+    }
+
+    private static Object authenticate(Filter filter, String authorization) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/assessment/1");
+        request.addHeader(HttpHeaders.AUTHORIZATION, authorization);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            throw new IllegalStateException("Request not authenticated");
+        }
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,107 @@
+package com.medilabo.assessment_service.benchmark;
+
+import com.medilabo.analysis.NoteTokenizer;
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.analysis.TriggerMatcher;
+import com.medilabo.assessment_service.dto.NoteDTO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the notes analysis, in isolation:
+ * - tokenize: NoteTokenizer alone, which replaced normalizeText and getCleanedNotes,
+ * - countTriggers: the TriggerMatcher scan of getTriggersWordsCount,
+ * - legacyNormalize and legacyCountTriggers: the removed regex pipeline and nested loop, kept as the reference.
+ * The notes are synthetic French clinical notes (see NoteCorpus), one operation analyzes all the notes of a patient.
+ * The allocations are compared here, with the gc profiler of the jmh profile, and not in a unit test where they depend on the JIT:
+ * the gc.alloc.rate.norm of countTriggers is expected at least ten times lower than the one of legacyCountTriggers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteAnalysisBenchmark {
+
+    @Param({"1", "50", "1000"})
+    int notesCount;
+
+    @Param({"SHORT", "LONG"})
+    NoteCorpus.NoteLength noteLength;
+
+    private NoteDTO[] notes;
+    private TriggerMatcher matcher;
+    private List<String> triggers;
+
+    @Setup
+    public void setUp() {
+        notes = NoteCorpus.notes(notesCount, noteLength, 42);
+        matcher = new TriggerDictionary(new DefaultResourceLoader(), "classpath:trigger-words.txt").getMatcher();
+        triggers = matcher.getTriggers();
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole blackhole) {
+        NoteTokenizer.TokenHandler handler = new NoteTokenizer.TokenHandler() {
+            @Override
+            public void tokenChar(char c) {
+                blackhole.consume(c);
+            }
+
+            @Override
+            public void tokenEnd() {
+                blackhole.consume(true);
+            }
+        };
+        for (NoteDTO note : notes) {
+            NoteTokenizer.tokenize(note.getNoteText(), handler);
+        }
+    }
+
+    @Benchmark
+    public int countTriggers() {
+        TriggerMatcher.Scan scan = matcher.newScan();
+        for (NoteDTO note : notes) {
+            scan.feed(note.getNoteText());
+        }
+        return scan.count();
+    }
+
+    @Benchmark
+    public List<String> legacyNormalize() {
+        return legacyCleanedNotes(notes);
+    }
+
+    @Benchmark
+    public int legacyCountTriggers() {
+        List<String> words = legacyCleanedNotes(notes);
+        int count = 0;
+        for (String trigger : triggers) {
+            if (words.stream().anyMatch(word -> !word.isEmpty() && (word.startsWith(trigger) || trigger.startsWith(word)))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The removed getCleanedNotes: normalizeText on each note, then split on "\W+".
+     */
+    private static List<String> legacyCleanedNotes(NoteDTO[] notes) {
+        List<String> words = new ArrayList<>();
+        for (NoteDTO note : notes) {
+            String normalized = Normalizer.normalize(note.getNoteText(), Normalizer.Form.NFD)
+                    .replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+                    .toLowerCase();
+            words.addAll(List.of(normalized.split("\\W+")));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,69 @@
+package com.medilabo.assessment_service.benchmark;
+
+import com.medilabo.assessment_service.dto.NoteDTO;
+
+import java.util.Random;
+
+/**
+ * Synthetic French clinical notes, built from the sentences of the practitioners' notes,
+ * with accents, apostrophes, punctuation and about one trigger word per sentence.
+ * The corpus is generated with a fixed seed, so two runs benchmark the same texts.
+ */
+public final class NoteCorpus {
+
+    /** Length of the notes, in characters. */
+    public enum NoteLength {
+        SHORT(120),
+        LONG(10 * 1024);
+
+        private final int characters;
+
+        NoteLength(int characters) {
+            this.characters = characters;
+        }
+    }
+
+    private static final String[] SENTENCES = {
+            "Le patient déclare qu'il 'se sent très bien'.",
+            "Poids égal ou inférieur au poids recommandé.",
+            "Le patient déclare qu'il ressent beaucoup de stress au travail.",
+            "Il se plaint également que son audition est anormale dernièrement.",
+            "Le patient déclare avoir fait une réaction aux médicaments au cours des 3 derniers mois.",
+            "Il remarque également que son audition continue d'être anormale.",
+            "Le patient déclare qu'il fume depuis peu.",
+            "Le patient déclare qu'il est fumeur et qu'il a cessé de fumer l'année dernière.",
+            "Il se plaint également de crises d’apnée respiratoire anormales.",
+            "Tests de laboratoire indiquant un taux de cholestérol LDL élevé.",
+            "Le patient déclare qu'il lui est devenu difficile de monter les escaliers.",
+            "Il se plaint également d’être essoufflé.",
+            "Tests de laboratoire indiquant que les anticorps sont élevés.",
+            "Le patient déclare qu'il a mal au dos lorsqu'il reste assis pendant longtemps.",
+            "Hémoglobine A1C supérieure au niveau recommandé.",
+            "Taille, Poids, Cholestérol, Vertige et Réaction.",
+            "Microalbumine dans les normes, pas de rechute constatée.",
+            "RAS, à revoir dans six mois."
+    };
+
+    private NoteCorpus() {
+    }
+
+    /**
+     * @param notesCount the number of notes.
+     * @param length the length of each note.
+     * @param seed the seed of the generator.
+     * @return the notes.
+     */
+    static NoteDTO[] notes(int notesCount, NoteLength length, long seed) {
+        Random random = new Random(seed);
+        NoteDTO[] notes = new NoteDTO[notesCount];
+        for (int i = 0; i < notesCount; i++) {
+            StringBuilder text = new StringBuilder(length.characters + 100);
+            while (text.length() < length.characters) {
+                text.append(SENTENCES[random.nextInt(SENTENCES.length)]).append(' ');
+            }
+            text.setLength(length.characters);
+            notes[i] = new NoteDTO(text.toString());
+        }
+        return notes;
+    }
+}
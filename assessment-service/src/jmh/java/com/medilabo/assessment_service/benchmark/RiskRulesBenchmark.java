@@ -0,0 +1,52 @@
+package com.medilabo.assessment_service.benchmark;
+
+import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
+import com.medilabo.assessment_service.dto.PatientDTO;
+import com.medilabo.assessment_service.rules.RiskRuleEngine;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of determineRisk, which evaluates the compiled risk decision table.
+ * One operation evaluates 1024 random (age, gender, trigger count) inputs, so the branch predictor cannot learn them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RiskRulesBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    private final int[] ages = new int[INPUTS];
+    private final PatientDTO.Gender[] genders = new PatientDTO.Gender[INPUTS];
+    private final int[] triggers = new int[INPUTS];
+    private RiskRuleEngine engine;
+
+    @Setup
+    public void setUp() {
+        engine = new RiskRuleEngine(new DefaultResourceLoader(), "classpath:risk-rules.csv");
+        Random random = new Random(42);
+        PatientDTO.Gender[] values = PatientDTO.Gender.values();
+        for (int i = 0; i < INPUTS; i++) {
+            ages[i] = random.nextInt(100);
+            genders[i] = values[random.nextInt(values.length)];
+            triggers[i] = random.nextInt(13);
+        }
+    }
+
+    @Benchmark
+    public int determineRisk() {
+        int sum = 0;
+        for (int i = 0; i < INPUTS; i++) {
+            AssessmentDiabetesDTO.RiskLevel riskLevel = engine.evaluate(ages[i], genders[i], triggers[i]);
+            sum += riskLevel.ordinal();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,82 @@
+package com.medilabo.assessment_service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the computed assessments, so a patient page viewed several times does not refetch and rescan all the notes.
+ * The entries are evicted by size and by age, and the hits and misses are published as "cache.*" metrics with the name "assessments".
+ * The key carries the versions of the data the assessment was computed from: the version of the patient (its @Version)
+ * and the version of its notes (note_versions), both read from the patient-service and the note-service with the data.
+ * A change of the patient or of its notes gives a new key, without any notification between the services:
+ * every replica sees the same versions, and an assessment computed from older data is stored under the older versions.
+ * The same way, the generation of the key is incremented by invalidateAll(), when the risk rules change,
+ * and the key carries the version of the trigger dictionary, so assessments made with different dictionaries never mix.
+ * The entries of the previous versions are not read anymore, and are evicted by size or by age.
+ */
+@Component
+public class AssessmentCache {
+    private static final Logger log = LoggerFactory.getLogger(AssessmentCache.class);
+
+    private final Cache<AssessmentCacheKey, AssessmentDiabetesDTO> assessments;
+    private final AtomicLong generation = new AtomicLong();
+
+    public AssessmentCache(@Value("${assessment.cache.maximum-size:10000}") long maximumSize,
+                           @Value("${assessment.cache.expire-after-write:10m}") Duration expireAfterWrite,
+                           MeterRegistry meterRegistry) {
+        this.assessments = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, assessments, "assessments");
+    }
+
+    /**
+     * Builds the key of the assessment of a patient, from the versions of the data fetched for it.
+     * @param patientId the patient unique identifier.
+     * @param patientVersion the version of the patient, read with its demographics.
+     * @param notesVersion the version of the notes of the patient, read with its trigger words.
+     * @param dictionaryVersion the version of the trigger dictionary used for the assessment.
+     * @return the key for these versions, with the current risk rules, for today.
+     */
+    public AssessmentCacheKey keyFor(Integer patientId, long patientVersion, long notesVersion, String dictionaryVersion) {
+        return new AssessmentCacheKey(patientId, patientVersion, notesVersion, generation.get(), dictionaryVersion, LocalDate.now());
+    }
+
+    /**
+     * @param key the key of the assessment.
+     * @return the cached assessment, or null if absent.
+     */
+    public AssessmentDiabetesDTO get(AssessmentCacheKey key) {
+        return assessments.getIfPresent(key);
+    }
+
+    /**
+     * @param key the key built from the data used by the assessment.
+     * @param assessment the computed assessment.
+     */
+    public void put(AssessmentCacheKey key, AssessmentDiabetesDTO assessment) {
+        assessments.put(key, assessment);
+    }
+
+    /**
+     * Invalidates all the cached assessments, by moving the whole cache to a new generation.
+     */
+    public void invalidateAll() {
+        long newGeneration = generation.incrementAndGet();
+        assessments.invalidateAll();
+        log.debug("Assessment cache invalidated, generation={}", newGeneration);
+    }
+}
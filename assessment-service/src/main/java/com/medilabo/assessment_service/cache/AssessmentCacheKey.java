@@ -0,0 +1,15 @@
+package com.medilabo.assessment_service.cache;
+
+import java.time.LocalDate;
+
+/**
+ * Key of a cached assessment.
+ * @param patientId the patient unique identifier.
+ * @param patientVersion the version of the patient, incremented by the patient-service each time the patient changes.
+ * @param notesVersion the version of the notes of the patient, incremented by the note-service each time they change.
+ * @param generation the generation of the whole cache, incremented each time the risk rules change.
+ * @param dictionaryVersion the version of the trigger dictionary used for the assessment.
+ * @param assessmentDate the day of the assessment, as the patient's age (and so the risk) depends on it.
+ */
+public record AssessmentCacheKey(Integer patientId, long patientVersion, long notesVersion, long generation, String dictionaryVersion, LocalDate assessmentDate) {
+}
@@ -0,0 +1,59 @@
+package com.medilabo.assessment_service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of the trigger words counted in the notes of the patients, read from the trigger hits of the note-service,
+ * or from the notes downloaded when its dictionary is not the same as ours.
+ * Each count is kept with the ETag of the notes it was computed from, the version of the notes of the patient.
+ * The next call sends it as If-None-Match: if the notes did not change, the note-service answers 304 and the count is reused,
+ * without reading the trigger hits nor downloading and matching all the pages again.
+ * The hits and misses are published as "cache.*" metrics with the name "note-triggers".
+ */
+@Component
+public class NoteTriggersCache {
+
+    private final Cache<Integer, Entry> counts;
+
+    public NoteTriggersCache(@Value("${assessment.note-triggers-cache.maximum-size:10000}") long maximumSize,
+                             MeterRegistry meterRegistry) {
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, counts, "note-triggers");
+    }
+
+    /**
+     * @param patientId the patient unique identifier.
+     * @param dictionaryVersion the version of the trigger dictionary of the assessment.
+     * @return the count of the patient matched with this dictionary, or null if absent.
+     */
+    public Entry get(Integer patientId, String dictionaryVersion) {
+        Entry entry = counts.getIfPresent(patientId);
+        return entry != null && entry.dictionaryVersion().equals(dictionaryVersion) ? entry : null;
+    }
+
+    /**
+     * Keeps the count of a patient, in place of the previous one.
+     * @param patientId the patient unique identifier.
+     * @param entry the count and the ETag of the notes it was computed from.
+     */
+    public void put(Integer patientId, Entry entry) {
+        counts.put(patientId, entry);
+    }
+
+    /**
+     * Trigger words counted in the notes of a patient.
+     * @param eTag the ETag of the notes, the one of the trigger hits or of the first page of notes.
+     * @param dictionaryVersion the version of the trigger dictionary used for the count.
+     * @param triggersWordsCount the number of distinct trigger words found.
+     */
+    public record Entry(String eTag, String dictionaryVersion, int triggersWordsCount) {
+    }
+}
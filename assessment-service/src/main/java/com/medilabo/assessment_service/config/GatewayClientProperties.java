@@ -0,0 +1,150 @@
+package com.medilabo.assessment_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the HTTP client calling the gateway (prefix "gateway.client").
+ * The read and total timeouts can be overridden per route, the route being the first segment of the path
+ * (ex: gateway.client.routes.notes.read-timeout=10s for the calls to /notes/...).
+ * - connectTimeout: to open a connection to the gateway,
+ * - connectionRequestTimeout: to wait for a free connection when the pool is saturated,
+ * - readTimeout: maximum inactivity while waiting for the response,
+ * - totalTimeout: maximum duration of a call, from the wait for a connection to the end of the response.
+ * With http2=true, the JDK HttpClient is used instead of the pool: it multiplexes the calls on a few connections,
+ * but only the connect timeout, the default read timeout and the total timeouts apply.
+ */
+@ConfigurationProperties(prefix = "gateway.client")
+public class GatewayClientProperties {
+
+    private int maxConnections = 50;
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration connectionRequestTimeout = Duration.ofSeconds(2);
+    private Duration readTimeout = Duration.ofSeconds(5);
+    private Duration totalTimeout = Duration.ofSeconds(10);
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    private boolean http2 = false;
+    private Map<String, RouteTimeouts> routes = new HashMap<>();
+
+    /**
+     * Timeouts of one route, the null ones are the default ones.
+     */
+    public static class RouteTimeouts {
+        private Duration readTimeout;
+        private Duration totalTimeout;
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public Duration getTotalTimeout() {
+            return totalTimeout;
+        }
+
+        public void setTotalTimeout(Duration totalTimeout) {
+            this.totalTimeout = totalTimeout;
+        }
+    }
+
+    /**
+     * @param path the path called on the gateway, ex: /notes/{id}.
+     * @return the read timeout of the route of this path.
+     */
+    public Duration readTimeoutFor(String path) {
+        RouteTimeouts route = routes.get(routeOf(path));
+        return route != null && route.getReadTimeout() != null ? route.getReadTimeout() : readTimeout;
+    }
+
+    /**
+     * @param path the path called on the gateway, ex: /notes/{id}.
+     * @return the total timeout of the route of this path.
+     */
+    public Duration totalTimeoutFor(String path) {
+        RouteTimeouts route = routes.get(routeOf(path));
+        return route != null && route.getTotalTimeout() != null ? route.getTotalTimeout() : totalTimeout;
+    }
+
+    /**
+     * @param path a path, with or without its leading '/', and with or without a query.
+     * @return the first segment of the path.
+     */
+    static String routeOf(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = start;
+        while (end < path.length() && path.charAt(end) != '/' && path.charAt(end) != '?') {
+            end++;
+        }
+        return path.substring(start, end);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(Duration connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getTotalTimeout() {
+        return totalTimeout;
+    }
+
+    public void setTotalTimeout(Duration totalTimeout) {
+        this.totalTimeout = totalTimeout;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public Map<String, RouteTimeouts> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, RouteTimeouts> routes) {
+        this.routes = routes;
+    }
+}
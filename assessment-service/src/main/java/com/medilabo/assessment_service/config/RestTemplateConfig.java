@@ -1,14 +1,87 @@
 package com.medilabo.assessment_service.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+
+/**
+ * HTTP client used to call the gateway, configured by GatewayClientProperties.
+ * By default, the connections are kept alive in a bounded pool, whose saturation is published
+ * as "httpcomponents.httpclient.pool.*" metrics with the tag httpclient=gateway.
+ * The RestTemplate is built by the RestTemplateBuilder, so the latency of each call is published as "http.client.requests".
+ */
 @Configuration
+@EnableConfigurationProperties(GatewayClientProperties.class)
 public class RestTemplateConfig {
+    private static final Logger log = LoggerFactory.getLogger(RestTemplateConfig.class);
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder, ClientHttpRequestFactory gatewayRequestFactory) {
+        return restTemplateBuilder
+                .requestFactory(() -> gatewayRequestFactory)
+                .build();
+    }
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public ClientHttpRequestFactory gatewayRequestFactory(GatewayClientProperties properties, MeterRegistry meterRegistry) {
+        if (properties.isHttp2()) {
+            log.info("Gateway client: JDK HttpClient with HTTP/2");
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(properties.getConnectTimeout())
+                    .build();
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+            requestFactory.setReadTimeout(properties.getReadTimeout());
+            return requestFactory;
+        }
+
+        log.info("Gateway client: pool of {} connections", properties.getMaxConnections());
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(properties.getReadTimeout()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "gateway").bindTo(meterRegistry);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(TimeValue.of(properties.getIdleTimeout()))
+                .build();
+
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        // The read timeout depends on the route of each call.
+        requestFactory.setHttpContextFactory((method, uri) -> {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.of(properties.getConnectionRequestTimeout()))
+                    .setResponseTimeout(Timeout.of(properties.readTimeoutFor(uri.getPath())))
+                    .build());
+            return context;
+        });
+        return requestFactory;
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package com.medilabo.assessment_service.config;
 
+import com.medilabo.auth.GatewayTokenFilter;
+import com.medilabo.auth.GatewayTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,11 +18,13 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 /**
  * Security Configuration for the Assessment Service.
  * This service is not publicly exposed and is intended to ba accessed exclusively through the API Gateway.
- * All incoming requests must be authenticated with HTTP Basic using the role "GATEWAY".
+ * All incoming requests must be authenticated with the role "GATEWAY", by a gateway token (see GatewayTokenService)
+ * or, more slowly because of BCrypt, with HTTP Basic.
  * Note : CSRF is disabled because the service is stateless and does not use session-based authentication.
  */
 @Configuration
@@ -35,7 +39,7 @@ public class SecurityConfig {
     private String gatewayPassword;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, GatewayTokenService gatewayTokenService) throws Exception {
         log.debug("Initializing security configuration for Assessment Service");
 
         http
@@ -43,6 +47,7 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .anyRequest().hasRole("GATEWAY")
                 )
+                .addFilterBefore(new GatewayTokenFilter(gatewayTokenService), BasicAuthenticationFilter.class)
                 .httpBasic(Customizer.withDefaults());
         return http.build();
     }
@@ -0,0 +1,75 @@
+package com.medilabo.assessment_service.controller;
+
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.analysis.TriggerMatcher;
+import com.medilabo.assessment_service.dto.TriggerDictionaryDTO;
+import com.medilabo.assessment_service.service.AssessmentDiabetesService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Administration of the assessment configuration, applied without restarting the service.
+ */
+@RestController
+@RequestMapping("/assessment/admin")
+public class AdminController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminController.class);
+    private final AssessmentDiabetesService assessmentDiabetesService;
+    private final TriggerDictionary triggerDictionary;
+
+    public AdminController(AssessmentDiabetesService assessmentDiabetesService, TriggerDictionary triggerDictionary) {
+        this.assessmentDiabetesService = assessmentDiabetesService;
+        this.triggerDictionary = triggerDictionary;
+    }
+
+    /**
+     * Reloads the risk decision table from assessment.rules.location.
+     * @return an empty response with the HTTP status 204, or 400 if the table is invalid (the current one is kept).
+     */
+    @PostMapping("/rules/reload")
+    public ResponseEntity<Void> reloadRiskRules() {
+        log.info("Reloading the risk rules");
+        assessmentDiabetesService.reloadRiskRules();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Retrieves the current trigger dictionary.
+     * @return the version and the normalized triggers of the dictionary.
+     */
+    @GetMapping("/triggers")
+    public TriggerDictionaryDTO getTriggerDictionary() {
+        return toDTO(triggerDictionary.getMatcher());
+    }
+
+    /**
+     * Reloads the trigger dictionary from assessment.triggers.location.
+     * @return the new dictionary, or 400 if the file is invalid (the current dictionary is kept).
+     */
+    @PostMapping("/triggers/reload")
+    public TriggerDictionaryDTO reloadTriggerDictionary() {
+        log.info("Reloading the trigger dictionary");
+        return toDTO(triggerDictionary.reload());
+    }
+
+    /**
+     * Replaces the trigger dictionary of this instance, until the next reload or restart.
+     * The note-service dictionary must be changed the same way, otherwise the notes are matched by this service.
+     * @param triggers the new trigger words.
+     * @return the new dictionary, or 400 if a trigger is invalid (the current dictionary is kept).
+     */
+    @PutMapping("/triggers")
+    public TriggerDictionaryDTO updateTriggerDictionary(@RequestBody List<String> triggers) {
+        log.info("Replacing the trigger dictionary with {} triggers", triggers.size());
+        return toDTO(triggerDictionary.update(triggers));
+    }
+
+    private static TriggerDictionaryDTO toDTO(TriggerMatcher matcher) {
+        return new TriggerDictionaryDTO(matcher.getVersion(), matcher.getTriggers());
+    }
+}
@@ -4,10 +4,9 @@ import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
 import com.medilabo.assessment_service.service.AssessmentDiabetesService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/assessment")
@@ -30,4 +29,15 @@ public class AssessmentController {
         log.info("Fetching the assessment for the patient's id: {}", id);
         return assessmentDiabetesService.getPatientDiabetesRiskAssessment(id);
     }
+
+    /**
+     * Retrieves the Diabetes assessments for a list of Patient ids.
+     * @param ids the list of the patients' unique identifiers.
+     * @return one AssessmentDiabetesDTO per distinct id, with an error message for the patients that could not be assessed.
+     */
+    @PostMapping("/batch")
+    public List<AssessmentDiabetesDTO> getAssessmentsDiabetesByPatientIds(@RequestBody List<Integer> ids) {
+        log.info("Fetching the assessments for {} patients", ids.size());
+        return assessmentDiabetesService.getPatientsDiabetesRiskAssessments(ids);
+    }
 }
@@ -1,10 +1,20 @@
 package com.medilabo.assessment_service.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class AssessmentDiabetesDTO {
 
     Integer patientId;
     RiskLevel riskLevel;
 
+    /** Version of the trigger dictionary used for the assessment. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String dictionaryVersion;
+
+    /** Only set in the entries of a batch, when the patient could not be assessed. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String error;
+
     public enum RiskLevel {
         NONE, BORDERLINE, INDANGER, EARLYONSET
     }
@@ -17,6 +27,19 @@ public class AssessmentDiabetesDTO {
         this.patientId = patientId;
     }
 
+    /**
+     * Builds the entry of a patient that could not be assessed.
+     * @param patientId the patient identifier.
+     * @param error the reason why the patient was not assessed.
+     * @return an entry without risk level.
+     */
+    public static AssessmentDiabetesDTO error(Integer patientId, String error) {
+        AssessmentDiabetesDTO assessment = new AssessmentDiabetesDTO();
+        assessment.setPatientId(patientId);
+        assessment.setError(error);
+        return assessment;
+    }
+
     public RiskLevel getRiskLevel() {
         return riskLevel;
     }
@@ -24,4 +47,20 @@ public class AssessmentDiabetesDTO {
     public void setRiskLevel(RiskLevel riskLevel) {
         this.riskLevel = riskLevel;
     }
+
+    public String getDictionaryVersion() {
+        return dictionaryVersion;
+    }
+
+    public void setDictionaryVersion(String dictionaryVersion) {
+        this.dictionaryVersion = dictionaryVersion;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
 }
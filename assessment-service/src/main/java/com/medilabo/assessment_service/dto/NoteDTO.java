@@ -1,7 +1,16 @@
 package com.medilabo.assessment_service.dto;
 
+import java.util.List;
+
+/**
+ * A note of the note-service, with only the fields read by the assessment: its text, or its stored trigger hits.
+ */
 public class NoteDTO {
     private String noteText;
+    private List<String> triggerIds;
+    private String triggerDictionaryVersion;
+
+    public NoteDTO() {}
 
     public NoteDTO(String noteText) {
         this.noteText = noteText;
@@ -14,4 +23,20 @@ public class NoteDTO {
     public void setNoteText(String noteText) {
         this.noteText = noteText;
     }
+
+    public List<String> getTriggerIds() {
+        return triggerIds;
+    }
+
+    public void setTriggerIds(List<String> triggerIds) {
+        this.triggerIds = triggerIds;
+    }
+
+    public String getTriggerDictionaryVersion() {
+        return triggerDictionaryVersion;
+    }
+
+    public void setTriggerDictionaryVersion(String triggerDictionaryVersion) {
+        this.triggerDictionaryVersion = triggerDictionaryVersion;
+    }
 }
@@ -3,8 +3,10 @@ package com.medilabo.assessment_service.dto;
 import java.time.LocalDate;
 
 public class PatientDTO {
+    private Integer id;
     private LocalDate birthDate;
     private Gender gender;
+    private Long version;
 
     public enum Gender {
         MALE,
@@ -12,6 +14,14 @@ public class PatientDTO {
         OTHER
     }
 
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
     public LocalDate getBirthDate() {
         return birthDate;
     }
@@ -27,4 +37,12 @@ public class PatientDTO {
     public void setGender(Gender gender) {
         this.gender = gender;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,45 @@
+package com.medilabo.assessment_service.dto;
+
+import java.util.List;
+
+/**
+ * The notes of a patient, as returned by the multi-get of the note-service (GET /notes?patientIds=...),
+ * with the version of the notes.
+ */
+public class PatientNotesDTO {
+    private Integer patientId;
+    private long version;
+    private List<NoteDTO> notes;
+
+    public PatientNotesDTO() {}
+
+    public PatientNotesDTO(Integer patientId, long version, List<NoteDTO> notes) {
+        this.patientId = patientId;
+        this.version = version;
+        this.notes = notes;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<NoteDTO> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(List<NoteDTO> notes) {
+        this.notes = notes;
+    }
+}
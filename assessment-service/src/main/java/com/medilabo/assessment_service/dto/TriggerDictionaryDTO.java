@@ -0,0 +1,34 @@
+package com.medilabo.assessment_service.dto;
+
+import java.util.List;
+
+/**
+ * Current trigger dictionary: its version and its normalized triggers.
+ */
+public class TriggerDictionaryDTO {
+    private String version;
+    private List<String> triggers;
+
+    public TriggerDictionaryDTO() {}
+
+    public TriggerDictionaryDTO(String version, List<String> triggers) {
+        this.version = version;
+        this.triggers = triggers;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public List<String> getTriggers() {
+        return triggers;
+    }
+
+    public void setTriggers(List<String> triggers) {
+        this.triggers = triggers;
+    }
+}
@@ -0,0 +1,26 @@
+package com.medilabo.assessment_service.rules;
+
+import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
+import com.medilabo.assessment_service.dto.PatientDTO;
+
+/**
+ * One row of the risk decision table. The bounds are inclusive.
+ * @param minAge the minimum age of the patient.
+ * @param maxAge the maximum age of the patient, Integer.MAX_VALUE for no limit.
+ * @param gender the gender of the patient, null for any gender.
+ * @param minTriggers the minimum number of trigger words.
+ * @param maxTriggers the maximum number of trigger words, Integer.MAX_VALUE for no limit.
+ * @param riskLevel the risk level given by the rule.
+ */
+public record RiskRule(int minAge, int maxAge, PatientDTO.Gender gender, int minTriggers, int maxTriggers,
+                       AssessmentDiabetesDTO.RiskLevel riskLevel) {
+
+    /**
+     * @return true if the rule applies to these inputs.
+     */
+    boolean matches(int age, PatientDTO.Gender patientGender, int triggersWordsCount) {
+        return age >= minAge && age <= maxAge
+                && (gender == null || gender == patientGender)
+                && triggersWordsCount >= minTriggers && triggersWordsCount <= maxTriggers;
+    }
+}
@@ -0,0 +1,68 @@
+package com.medilabo.assessment_service.rules;
+
+import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
+import com.medilabo.assessment_service.dto.PatientDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the risk decision table loaded from assessment.rules.location (a classpath or a file resource).
+ * The table can be reloaded at runtime: the new table is fully parsed and compiled before it replaces the current one,
+ * so an assessment always uses one complete table, and an invalid file leaves the current table in place.
+ */
+@Component
+public class RiskRuleEngine {
+    private static final Logger log = LoggerFactory.getLogger(RiskRuleEngine.class);
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final AtomicReference<RiskRuleTable> table = new AtomicReference<>();
+
+    public RiskRuleEngine(ResourceLoader resourceLoader,
+                          @Value("${assessment.rules.location:classpath:risk-rules.csv}") String location) {
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+        reload();
+    }
+
+    /**
+     * Gives the risk level for the inputs of an assessment, with the current table.
+     * @param age the age of the patient.
+     * @param gender the gender of the patient.
+     * @param triggersWordsCount the number of trigger words.
+     * @return the risk level.
+     */
+    public AssessmentDiabetesDTO.RiskLevel evaluate(int age, PatientDTO.Gender gender, int triggersWordsCount) {
+        return table.get().evaluate(age, gender, triggersWordsCount);
+    }
+
+    /**
+     * Loads the table again from its location and replaces the current one.
+     * @return the new table.
+     * @throws IllegalArgumentException if the file is not a valid decision table.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public RiskRuleTable reload() {
+        Resource resource = resourceLoader.getResource(location);
+        RiskRuleTable newTable;
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            newTable = RiskRuleTable.parse(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the risk rules from " + location, e);
+        }
+        table.set(newTable);
+        log.info("Risk rules loaded from {}: {} rules", location, newTable.getRules().size());
+        return newTable;
+    }
+}
@@ -0,0 +1,205 @@
+package com.medilabo.assessment_service.rules;
+
+import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
+import com.medilabo.assessment_service.dto.PatientDTO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Risk decision table compiled into a dense lookup array.
+ * The ages are grouped into the bands delimited by the age bounds of the rules, and the trigger counts are capped
+ * just above the highest trigger bound: inside a band, or above the cap, every input gives the same risk level.
+ * Each cell of the array is computed once with the first matching rule, so an evaluation is a single array access.
+ * Instances are immutable.
+ */
+public final class RiskRuleTable {
+
+    static final String HEADER = "min_age,max_age,gender,min_triggers,max_triggers,risk_level";
+    /** Ages above are evaluated as this age. */
+    static final int MAX_AGE = 150;
+    /** Highest trigger bound of a rule, the size of the lookup array grows with it. Above, the bound must be '*'. */
+    static final int MAX_TRIGGERS_BOUND = 100;
+
+    private static final PatientDTO.Gender[] GENDERS = PatientDTO.Gender.values();
+
+    private final List<RiskRule> rules;
+    private final int[] ageBands;
+    private final int triggersCap;
+    private final AssessmentDiabetesDTO.RiskLevel[] riskLevels;
+
+    private RiskRuleTable(List<RiskRule> rules, int[] ageBands, int triggersCap, AssessmentDiabetesDTO.RiskLevel[] riskLevels) {
+        this.rules = rules;
+        this.ageBands = ageBands;
+        this.triggersCap = triggersCap;
+        this.riskLevels = riskLevels;
+    }
+
+    /**
+     * Compiles the rules into the lookup array.
+     * @param rules the rules, in priority order.
+     * @return the compiled table.
+     */
+    public static RiskRuleTable compile(List<RiskRule> rules) {
+        // 1. Age bands, starting at each lower bound and after each upper bound.
+        TreeSet<Integer> bandStarts = new TreeSet<>();
+        bandStarts.add(0);
+        int triggersCap = 0;
+        for (RiskRule rule : rules) {
+            addBandStart(bandStarts, rule.minAge());
+            if (rule.maxAge() != Integer.MAX_VALUE) {
+                addBandStart(bandStarts, rule.maxAge() + 1);
+            }
+            triggersCap = Math.max(triggersCap, rule.minTriggers());
+            if (rule.maxTriggers() != Integer.MAX_VALUE) {
+                triggersCap = Math.max(triggersCap, rule.maxTriggers() + 1);
+            }
+        }
+
+        int[] ageBands = new int[MAX_AGE + 1];
+        List<Integer> bandFirstAges = new ArrayList<>(bandStarts);
+        for (int band = 0; band < bandFirstAges.size(); band++) {
+            int end = band + 1 < bandFirstAges.size() ? bandFirstAges.get(band + 1) : MAX_AGE + 1;
+            for (int age = bandFirstAges.get(band); age < end; age++) {
+                ageBands[age] = band;
+            }
+        }
+
+        // 2. One cell per (age band, gender, trigger count), evaluated with the first matching rule.
+        AssessmentDiabetesDTO.RiskLevel[] riskLevels =
+                new AssessmentDiabetesDTO.RiskLevel[bandFirstAges.size() * GENDERS.length * (triggersCap + 1)];
+        for (int band = 0; band < bandFirstAges.size(); band++) {
+            for (PatientDTO.Gender gender : GENDERS) {
+                for (int triggers = 0; triggers <= triggersCap; triggers++) {
+                    riskLevels[index(band, gender, triggers, triggersCap)] =
+                            firstMatch(rules, bandFirstAges.get(band), gender, triggers);
+                }
+            }
+        }
+
+        return new RiskRuleTable(List.copyOf(rules), ageBands, triggersCap, riskLevels);
+    }
+
+    /**
+     * Parses and compiles a decision table written in CSV.
+     * The first line which is not blank nor a comment ('#') must be the header, the following ones are the rules.
+     * @param reader the CSV content.
+     * @return the compiled table.
+     * @throws IOException if the content cannot be read.
+     * @throws IllegalArgumentException if the content is not a valid decision table.
+     */
+    public static RiskRuleTable parse(Reader reader) throws IOException {
+        List<RiskRule> rules = new ArrayList<>();
+        boolean headerRead = false;
+        int lineNumber = 0;
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (!headerRead) {
+                if (!line.replace(" ", "").equalsIgnoreCase(HEADER)) {
+                    throw new IllegalArgumentException("Risk rules line " + lineNumber + ": header '" + HEADER + "' expected");
+                }
+                headerRead = true;
+                continue;
+            }
+            rules.add(parseRule(line, lineNumber));
+        }
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("Risk rules: no rule defined");
+        }
+        return compile(rules);
+    }
+
+    /**
+     * Gives the risk level for the inputs of an assessment.
+     * @param age the age of the patient, negative ages are evaluated as 0.
+     * @param gender the gender of the patient.
+     * @param triggersWordsCount the number of trigger words.
+     * @return the risk level of the first matching rule, NONE if no rule matches or the gender is unknown.
+     */
+    public AssessmentDiabetesDTO.RiskLevel evaluate(int age, PatientDTO.Gender gender, int triggersWordsCount) {
+        if (gender == null) {
+            return AssessmentDiabetesDTO.RiskLevel.NONE;
+        }
+        int band = ageBands[Math.clamp(age, 0, MAX_AGE)];
+        return riskLevels[index(band, gender, Math.min(triggersWordsCount, triggersCap), triggersCap)];
+    }
+
+    /**
+     * @return the rules of the table, in priority order.
+     */
+    public List<RiskRule> getRules() {
+        return rules;
+    }
+
+    private static int index(int band, PatientDTO.Gender gender, int triggers, int triggersCap) {
+        return (band * GENDERS.length + gender.ordinal()) * (triggersCap + 1) + triggers;
+    }
+
+    private static void addBandStart(TreeSet<Integer> bandStarts, int age) {
+        if (age <= MAX_AGE) {
+            bandStarts.add(age);
+        }
+    }
+
+    private static AssessmentDiabetesDTO.RiskLevel firstMatch(List<RiskRule> rules, int age, PatientDTO.Gender gender, int triggers) {
+        for (RiskRule rule : rules) {
+            if (rule.matches(age, gender, triggers)) {
+                return rule.riskLevel();
+            }
+        }
+        return AssessmentDiabetesDTO.RiskLevel.NONE;
+    }
+
+    private static RiskRule parseRule(String line, int lineNumber) {
+        String[] columns = line.split(",", -1);
+        if (columns.length != 6) {
+            throw new IllegalArgumentException("Risk rules line " + lineNumber + ": 6 columns expected, " + columns.length + " found");
+        }
+        try {
+            int minAge = parseBound(columns[0], 0);
+            int maxAge = parseBound(columns[1], Integer.MAX_VALUE);
+            String gender = columns[2].strip();
+            int minTriggers = parseTriggersBound(columns[3], 0);
+            int maxTriggers = parseTriggersBound(columns[4], Integer.MAX_VALUE);
+            if (minAge > maxAge || minTriggers > maxTriggers) {
+                throw new IllegalArgumentException("a minimum is greater than its maximum");
+            }
+            return new RiskRule(minAge, maxAge,
+                    gender.equals("*") ? null : PatientDTO.Gender.valueOf(gender.toUpperCase()),
+                    minTriggers, maxTriggers,
+                    AssessmentDiabetesDTO.RiskLevel.valueOf(columns[5].strip().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Risk rules line " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static int parseTriggersBound(String column, int any) {
+        int bound = parseBound(column, any);
+        if (bound != any && bound > MAX_TRIGGERS_BOUND) {
+            throw new IllegalArgumentException("trigger bound " + bound + " above " + MAX_TRIGGERS_BOUND + ", use '*' for no bound");
+        }
+        return bound;
+    }
+
+    private static int parseBound(String column, int any) {
+        String value = column.strip();
+        if (value.equals("*")) {
+            return any;
+        }
+        int bound = Integer.parseInt(value);
+        if (bound < 0) {
+            throw new IllegalArgumentException("negative bound " + bound);
+        }
+        return bound;
+    }
+}
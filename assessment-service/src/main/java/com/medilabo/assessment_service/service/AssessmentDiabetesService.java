@@ -1,129 +1,355 @@
 package com.medilabo.assessment_service.service;
 
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.analysis.TriggerMatcher;
+import com.medilabo.assessment_service.cache.AssessmentCache;
+import com.medilabo.assessment_service.cache.AssessmentCacheKey;
+import com.medilabo.assessment_service.cache.NoteTriggersCache;
 import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
 import com.medilabo.assessment_service.dto.NoteDTO;
 import com.medilabo.assessment_service.dto.PatientDTO;
+import com.medilabo.assessment_service.dto.PatientNotesDTO;
+import com.medilabo.assessment_service.dto.PatientTriggersDTO;
+import com.medilabo.assessment_service.exceptions.ExternalServiceException;
+import com.medilabo.assessment_service.exceptions.PatientNotFoundException;
+import com.medilabo.assessment_service.rules.RiskRuleEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.text.Normalizer;
 import java.time.LocalDate;
 import java.time.Period;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * Service responsible for assessing the diabetes risk level of a patient.
- * This service aggregates patient information and medical notes
- * retrieved through the gateway, analyzes the presence of predefined
- * trigger words in medical notes, and determines the patient's diabetes
- * risk level according to given logical rules.
+ * This service aggregates patient information and the trigger words found in the medical notes,
+ * retrieved through the gateway, and determines the patient's diabetes
+ * risk level according to the rules of the decision table.
+ * The trigger words are matched by the note-service when the notes are written. If its dictionary
+ * is not the same as ours, the notes are downloaded and matched here instead, and downloaded again only when they change.
+ * The assessments are cached under the versions of the patient and of its notes, read with the data.
  */
 
 @Service
 public class AssessmentDiabetesService {
 
     private final GatewayClient gatewayClient;
+    private final AssessmentCache assessmentCache;
+    private final NoteTriggersCache noteTriggersCache;
+    private final RiskRuleEngine riskRuleEngine;
+    private final TriggerDictionary triggerDictionary;
     private static final Logger log = LoggerFactory.getLogger(AssessmentDiabetesService.class);
-    private static final Set<String> TRIGGER_WORDS_DIABETES = Set.of(
-            "Hémoglobine A1C",
-            "Microalbumine",
-            "Taille",
-            "Poids",
-            "Fumeur",
-            "Fumeuse",
-            "Anormal",
-            "Cholestérol",
-            "Vertiges",
-            "Rechute",
-            "Réaction",
-            "Anticorps"
-    );
-
-    public AssessmentDiabetesService(GatewayClient gatewayClient) {
+
+    /**
+     * Gateway paths, as templates so the latency metrics are tagged by route and not by patient.
+     * Only the birthdate and gender of the patient are read, the patient-service does not read the other columns.
+     */
+    private static final String PATIENT_PATH = "/patients/{id}/demographics";
+    private static final String TRIGGERS_PATH = "/notes/{id}/triggers";
+    /** The notes are downloaded by pages of 500, the maximum size of the note-service, following the X-Next-Cursor. Only their text is read. */
+    private static final String NOTES_PATH = "/notes/{id}?size=500&fields=noteText&cursor={cursor}";
+    /** Multi-gets of a batch: the demographics, and the trigger hits stored on the notes, without their text. */
+    private static final String DEMOGRAPHICS_PATH = "/patients/demographics?ids={ids}";
+    private static final String NOTES_TRIGGERS_PATH = "/notes?patientIds={ids}&fields=triggerIds,triggerDictionaryVersion";
+
+    @Value("${assessment.batch.max-size:1000}")
+    private int batchMaxSize = 1000;
+
+    /** Patients per multi-get, the ids are sent in the URL. */
+    @Value("${assessment.batch.chunk-size:500}")
+    private int batchChunkSize = 500;
+
+    @Value("${assessment.batch.max-concurrent-patients:32}")
+    private int batchMaxConcurrentPatients = 32;
+
+    public AssessmentDiabetesService(GatewayClient gatewayClient, AssessmentCache assessmentCache, NoteTriggersCache noteTriggersCache,
+                                     RiskRuleEngine riskRuleEngine, TriggerDictionary triggerDictionary) {
         this.gatewayClient = gatewayClient;
+        this.assessmentCache = assessmentCache;
+        this.noteTriggersCache = noteTriggersCache;
+        this.riskRuleEngine = riskRuleEngine;
+        this.triggerDictionary = triggerDictionary;
     }
 
     /**
      * Assess the diabetes risk for a given patient.
-     * The method uses several private methods in order to gather the patient information and his medical notes that are compared to a list of trigger words .
-     * Then it applies a logical algorithm to determine the risk.
+     * The method uses several private methods in order to gather the patient information and the trigger words found in his medical notes.
+     * The patient information and the trigger words are fetched concurrently.
+     * Then it applies the risk rules to determine the risk.
+     * The assessment is cached with the versions of the patient and of its notes: it is reused until one of them changes.
+     * The whole assessment uses the trigger dictionary current at its start, even if it is replaced meanwhile.
      * @param id, the unique identifier of the patient.
-     * @return a AssessmentDiabetesDTO object containing the id of the patient and his risk level.
+     * @return a AssessmentDiabetesDTO object containing the id of the patient, his risk level and the dictionary version.
      */
     public AssessmentDiabetesDTO getPatientDiabetesRiskAssessment(Integer id) {
+        TriggerMatcher matcher = triggerDictionary.getMatcher();
         log.info("Creating assessment diabetes for patient n°{}", id);
-        PatientDTO patient = getPatientInfo(id);
-        NoteDTO[] notes = getPatientNotes(id);
-        List<String> notesWords = getCleanedNotes(notes);
-        int triggersWordsCount = getTriggersWordsCount(notesWords);
+        AssessmentDiabetesDTO assessment = assessCached(id, fetchPatientData(id, matcher), matcher);
+        log.info("Risk assessment = {}", assessment.getRiskLevel());
+
+        return assessment;
+    }
+
+    /**
+     * Reloads the risk rules, and invalidates all the cached assessments computed with the previous ones.
+     * If the new rules are invalid, the current ones and the cache are kept.
+     * @throws IllegalArgumentException if the new rules are invalid.
+     */
+    public void reloadRiskRules() {
+        riskRuleEngine.reload();
+        assessmentCache.invalidateAll();
+    }
+
+    /**
+     * Assess the diabetes risk for several patients.
+     * The patients are fetched by chunks of assessment.batch.chunk-size, with two multi-gets per chunk, all the chunks at the same time:
+     * the demographics of the patients, and the trigger hits stored on their notes (without the text of the notes).
+     * Only the patients whose notes were not matched with our dictionary are fetched one by one, as for a single assessment,
+     * with at most batchMaxConcurrentPatients patients at a time.
+     * Then the assessments are computed in parallel on the available cores.
+     * An unknown patient, or a patient whose data cannot be fetched, does not fail the batch:
+     * its entry only contains the patient id and the error message.
+     * The cached assessments are reused when the versions read by the multi-gets did not change.
+     * All the patients are assessed with the trigger dictionary current at the start of the batch.
+     * @param ids, the unique identifiers of the patients. Duplicates are assessed once.
+     * @return one AssessmentDiabetesDTO per distinct id, in the order of the given ids.
+     * @throws IllegalArgumentException if the list contains a null id or more than batchMaxSize ids.
+     */
+    public List<AssessmentDiabetesDTO> getPatientsDiabetesRiskAssessments(List<Integer> ids) {
+        if (ids.size() > batchMaxSize) {
+            throw new IllegalArgumentException("A batch is limited to " + batchMaxSize + " patients, " + ids.size() + " given");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("A batch cannot contain a null patient id");
+        }
+
+        List<Integer> distinctIds = ids.stream().distinct().toList();
+        TriggerMatcher matcher = triggerDictionary.getMatcher();
+        log.info("Creating assessment diabetes for {} patients", distinctIds.size());
+
+        Map<Integer, Future<PatientData>> calls = fetchPatientsData(distinctIds, matcher);
+
+        return distinctIds.parallelStream()
+                .map(id -> assessOrError(id, calls.get(id), matcher))
+                .toList();
+    }
+
+    /**
+     * Fetches the data of the patients of a batch, with the multi-gets of each chunk running at the same time.
+     * @param ids the patients to fetch.
+     * @param matcher the trigger dictionary of the batch.
+     * @return the completed fetch of each patient, failed with the error of the patient or of its chunk.
+     */
+    private Map<Integer, Future<PatientData>> fetchPatientsData(List<Integer> ids, TriggerMatcher matcher) {
+        Map<Integer, Future<PatientData>> calls = new HashMap<>();
+        Semaphore permits = new Semaphore(batchMaxConcurrentPatients);
+        try (GatewayCallScope scope = new GatewayCallScope()) {
+            List<List<Integer>> chunks = new ArrayList<>();
+            List<Future<PatientDTO[]>> demographicsCalls = new ArrayList<>();
+            List<Future<PatientNotesDTO[]>> notesCalls = new ArrayList<>();
+            for (int start = 0; start < ids.size(); start += batchChunkSize) {
+                List<Integer> chunk = ids.subList(start, Math.min(ids.size(), start + batchChunkSize));
+                chunks.add(chunk);
+                demographicsCalls.add(scope.fork(() -> gatewayClient.getAll(DEMOGRAPHICS_PATH, PatientDTO[].class, chunk),
+                        gatewayClient.totalTimeout(DEMOGRAPHICS_PATH)));
+                notesCalls.add(scope.fork(() -> gatewayClient.getAll(NOTES_TRIGGERS_PATH, PatientNotesDTO[].class, chunk),
+                        gatewayClient.totalTimeout(NOTES_TRIGGERS_PATH)));
+            }
+
+            for (int i = 0; i < chunks.size(); i++) {
+                Map<Integer, PatientDTO> patients = new HashMap<>();
+                Map<Integer, PatientNotesDTO> notes = new HashMap<>();
+                try {
+                    for (PatientDTO patient : Objects.requireNonNullElse(GatewayCallScope.join(demographicsCalls.get(i)), new PatientDTO[0])) {
+                        patients.put(patient.getId(), patient);
+                    }
+                    for (PatientNotesDTO group : Objects.requireNonNullElse(GatewayCallScope.join(notesCalls.get(i)), new PatientNotesDTO[0])) {
+                        notes.put(group.getPatientId(), group);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Multi-get failed for a chunk of {} patients: {}", chunks.get(i).size(), e.getMessage());
+                    chunks.get(i).forEach(id -> calls.put(id, CompletableFuture.failedFuture(e)));
+                    continue;
+                }
+
+                for (Integer id : chunks.get(i)) {
+                    PatientDTO patient = patients.get(id);
+                    PatientNotesDTO group = notes.get(id);
+                    Long notesVersion = group != null ? group.getVersion() : null;
+                    Integer triggersWordsCount = countStoredTriggers(group != null ? group.getNotes() : List.of(), matcher);
+                    if (patient == null) {
+                        calls.put(id, CompletableFuture.failedFuture(new PatientNotFoundException(id)));
+                    } else if (triggersWordsCount != null) {
+                        calls.put(id, CompletableFuture.supplyAsync(
+                                () -> new PatientData(checkPatient(id, patient), notesVersion, triggersWordsCount), Runnable::run));
+                    } else {
+                        log.info("Notes of patient {} not matched with our dictionary, matching them here", id);
+                        calls.put(id, scope.fork(() -> {
+                            permits.acquire();
+                            try {
+                                return new PatientData(checkPatient(id, patient), notesVersion, countTriggersInNotes(id, matcher).triggersWordsCount());
+                            } finally {
+                                permits.release();
+                            }
+                        }));
+                    }
+                }
+            }
+        }
+        return calls;
+    }
+
+    /**
+     * Counts the distinct trigger words stored on the notes of a patient, read by the multi-get of a batch.
+     * @param notes the notes of the patient, with their trigger hits.
+     * @param matcher the trigger dictionary of the batch.
+     * @return the number of distinct trigger words, or null if a note was not matched with this dictionary.
+     */
+    private static Integer countStoredTriggers(List<NoteDTO> notes, TriggerMatcher matcher) {
+        Set<String> triggerIds = new HashSet<>();
+        for (NoteDTO note : notes) {
+            if (note.getTriggerIds() == null || !matcher.getVersion().equals(note.getTriggerDictionaryVersion())) {
+                return null;
+            }
+            triggerIds.addAll(note.getTriggerIds());
+        }
+        return triggerIds.size();
+    }
+
+    /**
+     * Computes the assessment of a patient of a batch, or its error entry.
+     * The messages are the same as the ones returned by the GlobalExceptionHandler for a single assessment.
+     * Only the successful assessments are cached.
+     * @param id, the patient unique identifier,
+     * @param call the completed fetch of the patient's data.
+     * @param matcher the trigger dictionary of the batch.
+     * @return the assessment, or an entry with the error message.
+     */
+    private AssessmentDiabetesDTO assessOrError(Integer id, Future<PatientData> call, TriggerMatcher matcher) {
+        try {
+            return assessCached(id, GatewayCallScope.join(call), matcher);
+        } catch (PatientNotFoundException | IllegalStateException e) {
+            log.warn("No assessment for patient {}: {}", id, e.getMessage());
+            return AssessmentDiabetesDTO.error(id, e.getMessage());
+        } catch (ExternalServiceException e) {
+            log.warn("No assessment for patient {}: {}", id, e.getMessage());
+            return AssessmentDiabetesDTO.error(id, "External service unavailable");
+        } catch (RuntimeException e) {
+            log.error("No assessment for patient {}", id, e);
+            return AssessmentDiabetesDTO.error(id, "Internal server error");
+        }
+    }
+
+    /**
+     * Reuses the assessment cached for the versions of the patient's data, or computes and caches it.
+     * When a service gives no version, the assessment is computed without the cache.
+     * @param id, the patient unique identifier,
+     * @param patientData the patient's information and trigger words count, with their versions.
+     * @param matcher the trigger dictionary used to count the trigger words.
+     * @return the assessment of the patient.
+     */
+    private AssessmentDiabetesDTO assessCached(Integer id, PatientData patientData, TriggerMatcher matcher) {
+        Long patientVersion = patientData.patient().getVersion();
+        if (patientVersion == null || patientData.notesVersion() == null) {
+            log.debug("No version for the data of patient {}, the assessment is not cached", id);
+            return assess(id, patientData, matcher);
+        }
+
+        AssessmentCacheKey cacheKey = assessmentCache.keyFor(id, patientVersion, patientData.notesVersion(), matcher.getVersion());
+        AssessmentDiabetesDTO assessment = assessmentCache.get(cacheKey);
+        if (assessment != null) {
+            log.debug("Risk assessment for patient n°{} found in cache = {}", id, assessment.getRiskLevel());
+            return assessment;
+        }
+        assessment = assess(id, patientData, matcher);
+        assessmentCache.put(cacheKey, assessment);
+        return assessment;
+    }
+
+    /**
+     * Computes the assessment from the patient's information and trigger words count.
+     * @param id, the patient unique identifier,
+     * @param patientData the patient's information and trigger words count.
+     * @param matcher the trigger dictionary used to count the trigger words.
+     * @return the assessment of the patient.
+     */
+    private AssessmentDiabetesDTO assess(Integer id, PatientData patientData, TriggerMatcher matcher) {
+        PatientDTO patient = patientData.patient();
+        int triggersWordsCount = patientData.triggersWordsCount();
         int patientAge = getAge(patient.getBirthDate());
         PatientDTO.Gender patientGender = patient.getGender();
 
         AssessmentDiabetesDTO assessment = new AssessmentDiabetesDTO();
         assessment.setPatientId(id);
         assessment.setRiskLevel(determineRisk(patientAge, patientGender, triggersWordsCount));
-        log.info("Risk assessment = {}", assessment.getRiskLevel());
+        assessment.setDictionaryVersion(matcher.getVersion());
 
         return assessment;
     }
 
     /**
-     * Determines the risk level according to given rules for a specific patient.
-     * These rules have been slightly modified in order to be more logic.
-     * Comments are spread through the algorithm to explain these changes.
+     * Determines the risk level with the decision table of the RiskRuleEngine (see risk-rules.csv).
      * @param patientAge int representing the age of the patient
      * @param patientGender enum to define the gender of the patient
      * @param triggersWordsCount the number of triggers for this patient
      * @return the riskLevel for the patient.
      */
     private AssessmentDiabetesDTO.RiskLevel determineRisk(int patientAge, PatientDTO.Gender patientGender, int triggersWordsCount) {
-        log.debug("Patient information for this assessment : age={}, gender={}, triggers'words count={} ", patientAge, patientGender, triggersWordsCount);
-
-        AssessmentDiabetesDTO.RiskLevel riskLevel = AssessmentDiabetesDTO.RiskLevel.NONE;
-
-        // asked triggers == 0, but, nothing in particular is given for 1 (which is also NONE then).
-        if (triggersWordsCount <= 1) {
-            log.debug("Triggers words count is {}, that is less equal to one word, it's a NONE", triggersWordsCount);
-
-        } else if (patientAge >= 30) {
-            log.debug("this patient is {}, this is older or equal to 30", patientAge);
-            if (triggersWordsCount <= 5) {
-                log.debug("Triggers words = {}, it's less or equal to 5. But more than 1. So it's a BORDERLINE", triggersWordsCount);
-                riskLevel = AssessmentDiabetesDTO.RiskLevel.BORDERLINE;
-            } else if (triggersWordsCount <= 7) {
-                log.debug("Triggers words = {}, it's less or equal to 7 but more than 5. So it's an INDANGER", triggersWordsCount);
-                riskLevel = AssessmentDiabetesDTO.RiskLevel.INDANGER;
-            } else {
-                log.debug("Triggers words = {}, it's more than 7. So it's a EARLYONSET", triggersWordsCount);
-                riskLevel = AssessmentDiabetesDTO.RiskLevel.EARLYONSET;
-            }
+        AssessmentDiabetesDTO.RiskLevel riskLevel = riskRuleEngine.evaluate(patientAge, patientGender, triggersWordsCount);
+        log.debug("Patient information for this assessment : age={}, gender={}, triggers'words count={}, risk={}",
+                patientAge, patientGender, triggersWordsCount, riskLevel);
 
-        } else if (patientGender == PatientDTO.Gender.MALE) {
-            log.debug("this patient is {}, this is younger than 30 and it's a male = {}", patientAge, patientGender);
-            // "EARLYONSET" is for triggers >= 5, so the else represents "INDANGER". Normally it is for triggers == 3, but no rule is defined for 4. Logically it's in the same group than 3.
-            if (triggersWordsCount >= 5) {
-                log.debug("Triggers words = {}, it's more or equals to 5. So it's a EARLYONSET", triggersWordsCount);
-                riskLevel = AssessmentDiabetesDTO.RiskLevel.EARLYONSET;
-            } else if (triggersWordsCount >= 3){
-                log.debug("Triggers words = {}, it is more or equals to 3 but less than 5. So it's an INDANGER", triggersWordsCount);
-                riskLevel = AssessmentDiabetesDTO.RiskLevel.INDANGER;
-            }
-
-        } else if (patientGender == PatientDTO.Gender.FEMALE) {
-            log.debug("this patient is {}, this is younger than 30 and it's a female = {}", patientAge, patientGender);
-            if (triggersWordsCount >= 7) {
-                log.debug("Triggers words = {}, it's more or equal to 7. So it's a EARLYONSET", triggersWordsCount);
-                riskLevel = AssessmentDiabetesDTO.RiskLevel.EARLYONSET;
+        return riskLevel;
+    }
 
-            // INDANGER is for triggers == 4, but no rules are defined for 5 and 6, so it's logically in the same group.
-            } else if (triggersWordsCount >= 4) {
-                log.debug("Triggers words = {}, it's more or equal to 4, but less than 7'. So it's an INDANGER", triggersWordsCount);
-                riskLevel = AssessmentDiabetesDTO.RiskLevel.INDANGER;
+    /**
+     * Fetches the patient information and the patient trigger words at the same time, each call on its own virtual thread.
+     * Both calls are scoped to this method: the scope waits for the two threads before returning.
+     * Each call is bounded by the total timeout of its route (gateway.client.*), a call past its deadline is cancelled.
+     * The patient information is awaited first, so its failures (ex: PatientNotFoundException) are the ones reported,
+     * and the triggers call is cancelled as soon as the patient call fails.
+     * @param id, the patient unique identifier,
+     * @param matcher the trigger dictionary of the assessment.
+     * @return the patient information and trigger words count.
+     */
+    private PatientData fetchPatientData(Integer id, TriggerMatcher matcher) {
+        try (GatewayCallScope scope = new GatewayCallScope()) {
+            Future<NotesTriggers> triggersCall = scope.fork(() -> getNotesTriggers(id, matcher),
+                    gatewayClient.totalTimeout(TRIGGERS_PATH));
+            Future<PatientDTO> patientCall = scope.fork(() -> getPatientInfo(id),
+                    gatewayClient.totalTimeout(PATIENT_PATH));
+
+            PatientDTO patient;
+            try {
+                patient = GatewayCallScope.join(patientCall);
+            } catch (RuntimeException e) {
+                log.debug("Patient call failed for patient {}, cancelling the triggers call", id);
+                triggersCall.cancel(true);
+                throw e;
             }
+
+            NotesTriggers triggers = GatewayCallScope.join(triggersCall);
+            return new PatientData(patient, triggers.notesVersion(), triggers.triggersWordsCount());
         }
+    }
 
-        return riskLevel;
+    /**
+     * Patient information and trigger words count needed for an assessment.
+     * @param notesVersion the version of the notes the count comes from, null if the note-service gave none.
+     */
+    private record PatientData(PatientDTO patient, Long notesVersion, int triggersWordsCount) {
+    }
+
+    /**
+     * Trigger words count of the notes of a patient.
+     * @param notesVersion the version of the notes the count comes from, null if the note-service gave none.
+     */
+    private record NotesTriggers(Long notesVersion, int triggersWordsCount) {
     }
 
     /**
@@ -134,68 +360,56 @@ public class AssessmentDiabetesService {
      */
     private PatientDTO getPatientInfo(Integer id) {
         log.debug("Fetching information for patient {}", id);
-        PatientDTO patient = gatewayClient.get("/patients/" + id, PatientDTO.class, id);
+        return checkPatient(id, gatewayClient.get(PATIENT_PATH, PatientDTO.class, id));
+    }
 
+    /**
+     * @param id, the patient unique identifier,
+     * @param patient the patient information read from the gateway.
+     * @return the patient information, with the birthdate and gender needed for an assessment.
+     * @throws IllegalStateException if the patient information are null.
+     */
+    private static PatientDTO checkPatient(Integer id, PatientDTO patient) {
         if (patient == null || patient.getBirthDate() == null || patient.getGender() == null) {
             throw new IllegalStateException("Incomplete patient data for id " + id);
         }
-
         return patient;
     }
 
     /**
-     * Retrieves all medical notes associated to the patient.
+     * Counts the distinct trigger words found in the patient's notes.
+     * The count comes from the trigger hits stored by the note-service, when they were computed with the same dictionary as ours.
+     * Otherwise, the notes are downloaded and matched here.
+     * The count is kept with the ETag of the notes: the trigger hits are asked with it, and if the notes did not change
+     * the note-service answers 304 NOT MODIFIED and the count is reused.
      * @param id, the patient unique identifier,
-     * @return an array with the NoteDTO objects containing the texts of the note. Can be empty.
+     * @param matcher the trigger dictionary of the assessment.
+     * @return the number of matches with the triggers list, and the version of the notes.
      */
-    private NoteDTO[] getPatientNotes(Integer id) {
-        log.debug("Fetching notes for patient {}", id);
-        NoteDTO[] notes = gatewayClient.get("/notes/" + id, NoteDTO[].class, id);
-        return notes != null ? notes : new NoteDTO[0];
-    }
-
-    /**
-     * Extracts and normalizes all words from the patient's medical notes.
-     * @param notes, an array with the patient's medical notes
-     * @return a List of words cleaned and extracted from the notes
-     */
-    private List<String> getCleanedNotes(NoteDTO[] notes) {
-        if (notes == null || notes.length == 0) {
-            log.warn("No notes to clean.");
-
-            return List.of();
+    private NotesTriggers getNotesTriggers(Integer id, TriggerMatcher matcher) {
+        log.debug("Fetching trigger words for patient {}", id);
+        NoteTriggersCache.Entry cached = noteTriggersCache.get(id, matcher.getVersion());
+        GatewayClient.Page<PatientTriggersDTO> page = gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id,
+                cached != null ? cached.eTag() : null);
+        if (page.notModified()) {
+            log.debug("Notes of patient {} not modified, final number ={}", id, cached.triggersWordsCount());
+            return new NotesTriggers(GatewayClient.versionOf(cached.eTag()), cached.triggersWordsCount());
         }
 
-        log.debug("Cleaning {} notes", notes.length);
-        List<String> wordsFromNotes = new ArrayList<>();
-
-        for (NoteDTO note : notes) {
-            String noteText = note.getNoteText();
-            if (noteText == null || noteText.isBlank()) {
-                continue;
-            }
-
-            log.debug("getting note text : {}", noteText);
-            String cleanedText = normalizeText(noteText);
-            String[] words = cleanedText.split("\\W+");
-            wordsFromNotes.addAll(List.of(words));
-            log.debug("Here are the words : {}", wordsFromNotes);
+        PatientTriggersDTO triggers = page.body();
+        if (triggers == null || triggers.getTriggerIds() == null
+                || !matcher.getVersion().equals(triggers.getDictionaryVersion())) {
+            log.info("Trigger dictionary of the note-service is not ours ({}), matching the notes of patient {}",
+                    triggers != null ? triggers.getDictionaryVersion() : null, id);
+            return countTriggersInNotes(id, matcher);
         }
-        log.debug("Notes cleaned into {} words", wordsFromNotes.size());
 
-        return wordsFromNotes;
-    }
-
-    /**
-     * Normalizes a String by removing the accents and converting it to lowercase.
-     * This method is used bith for medical notes and trigger words to ensure consistent comparisons.
-     * @param textToNormalize, the raw String
-     * @return a normalized version of the String.
-     */
-    private String normalizeText(String textToNormalize) {
-        return  Normalizer.normalize(textToNormalize, Normalizer.Form.NFD)
-                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
-                .toLowerCase();
+        int triggersWordsCount = new HashSet<>(triggers.getTriggerIds()).size();
+        if (page.eTag() != null) {
+            noteTriggersCache.put(id, new NoteTriggersCache.Entry(page.eTag(), matcher.getVersion(), triggersWordsCount));
+        }
+        log.debug("final number ={}, for the triggerWords ={}", triggersWordsCount, triggers.getTriggerIds());
+        return new NotesTriggers(GatewayClient.versionOf(page.eTag()), triggersWordsCount);
     }
 
     /**
@@ -217,32 +431,61 @@ public class AssessmentDiabetesService {
      * A trigger word is considered found if:
      * a word from the notes partially matches the normalized trigger word and vice versa,
      * This prefix-based matching allows singular/plural and minor variations.
+     * Multi-words triggers (ex: "Hémoglobine A1C") are also found when the whole phrase is written in a note.
      * However, it increases the number of matches if several similar word are used in the triggers list.
      * We recommend to add to the trigger list only word's stems.
-     * @param notesWords, a List of String of word we want to check.
-     * @return an int representing the number of matches with the triggers list.
+     * The notes are normalized (accents removed, lowercase) and split into words by the NoteTokenizer,
+     * and matched by the TriggerMatcher of the trigger dictionary, in one pass over each note.
+     * The notes are downloaded page by page and fed to the same scan, so only one page is in memory at a time.
+     * The count is kept with the ETag of the notes: the first page is asked with it, and if the notes did not change
+     * the note-service answers 304 NOT MODIFIED and the count is reused without downloading any note.
+     * @param id, the patient unique identifier,
+     * @param matcher the trigger dictionary of the assessment.
+     * @return the number of matches with the triggers list, and the version of the notes.
      */
-    private int getTriggersWordsCount(List<String> notesWords) {
-        log.debug("starting count for this text ={}", notesWords);
-
-        int triggersWordsCount = 0;
+    private NotesTriggers countTriggersInNotes(Integer id, TriggerMatcher matcher) {
+        log.debug("Fetching notes for patient {}", id);
+        NoteTriggersCache.Entry cached = noteTriggersCache.get(id, matcher.getVersion());
+        GatewayClient.Page<NoteDTO[]> page = gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, null,
+                cached != null ? cached.eTag() : null);
+        if (page.notModified()) {
+            log.debug("Notes of patient {} not modified, final number ={}", id, cached.triggersWordsCount());
+            return new NotesTriggers(GatewayClient.versionOf(cached.eTag()), cached.triggersWordsCount());
+        }
 
-        for (String triggerWord : TRIGGER_WORDS_DIABETES.toArray(new String[0])) {
-            String normalizedTrigger = normalizeText(triggerWord);
+        // The ETag of the first page is kept: if a note is added during the download, the next one is not a 304.
+        String eTag = page.eTag();
+        TriggerMatcher.Scan scan = matcher.newScan();
+        int notesCount = 0;
+        while (true) {
+            NoteDTO[] notes = page.body() != null ? page.body() : new NoteDTO[0];
+            for (NoteDTO note : notes) {
+                String noteText = note.getNoteText();
+                if (noteText != null) {
+                    scan.feed(noteText);
+                }
+            }
+            notesCount += notes.length;
+            if (page.nextCursor() == null) {
+                break;
+            }
+            page = gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, page.nextCursor(), null);
+        }
 
-            boolean found = notesWords.stream().anyMatch(word ->
-                    word.startsWith(normalizedTrigger)
-            || normalizedTrigger.startsWith(word)
-            );
+        int triggersWordsCount = scan.count();
+        if (eTag != null) {
+            noteTriggersCache.put(id, new NoteTriggersCache.Entry(eTag, matcher.getVersion(), triggersWordsCount));
+        }
+        if (notesCount == 0) {
+            log.warn("No notes to analyze.");
 
-            if (found) {
-                triggersWordsCount ++;
-                log.debug("number ={}, for the triggerWord ={}", triggersWordsCount, triggerWord);
-            }
+            return new NotesTriggers(GatewayClient.versionOf(eTag), 0);
         }
 
-        log.debug("final number ={}", triggersWordsCount);
+        if (log.isDebugEnabled()) {
+            log.debug("Analyzed {} notes, final number ={}, for the triggerWords ={}", notesCount, triggersWordsCount, scan.matchedTriggers());
+        }
 
-        return triggersWordsCount;
+        return new NotesTriggers(GatewayClient.versionOf(eTag), triggersWordsCount);
     }
-}
\ No newline at end of file
+}
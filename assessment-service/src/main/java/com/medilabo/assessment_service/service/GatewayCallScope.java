@@ -0,0 +1,113 @@
+package com.medilabo.assessment_service.service;
+
+import com.medilabo.assessment_service.exceptions.ExternalServiceException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Scope running gateway calls concurrently, each call on its own virtual thread.
+ * Closing the scope waits for every thread forked in it, including the cancelled ones,
+ * so no call outlives the method that opened the scope.
+ * A scope is owned by the thread that opened it and must be used in a try-with-resources block.
+ * A call can be forked with a total timeout: joining it after its deadline cancels it,
+ * which interrupts its virtual thread and aborts the blocking socket read.
+ */
+final class GatewayCallScope implements AutoCloseable {
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    /**
+     * Starts a call on a new virtual thread.
+     * @param call the gateway call.
+     * @return the future result of the call, cancelling it interrupts its thread.
+     * @param <T> the type of the result.
+     */
+    <T> Future<T> fork(Callable<T> call) {
+        FutureTask<T> task = new FutureTask<>(call);
+        threads.add(Thread.ofVirtual().start(task));
+        return task;
+    }
+
+    /**
+     * Starts a call on a new virtual thread, with a deadline.
+     * @param call the gateway call.
+     * @param totalTimeout the maximum duration of the call, counted from now.
+     * @return the future result of the call, join() gives up and cancels it once the deadline is passed.
+     * @param <T> the type of the result.
+     */
+    <T> Future<T> fork(Callable<T> call, Duration totalTimeout) {
+        DeadlineTask<T> task = new DeadlineTask<>(call, System.nanoTime() + totalTimeout.toNanos());
+        threads.add(Thread.ofVirtual().start(task));
+        return task;
+    }
+
+    /**
+     * Waits for the result of a call and rethrows its failure unchanged,
+     * so the GlobalExceptionHandler maps it as if the call had been made on the request thread.
+     * @param call a call forked in a scope.
+     * @return the result of the call.
+     * @param <T> the type of the result.
+     * @throws ExternalServiceException if the call failed with a checked exception, timed out, or the waiting thread is interrupted.
+     */
+    static <T> T join(Future<T> call) {
+        try {
+            if (call instanceof DeadlineTask<T> task) {
+                return task.get(Math.max(0, task.deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            return call.get();
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            throw new ExternalServiceException("Gateway call timed out", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ExternalServiceException("Gateway call failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExternalServiceException("Interrupted while waiting for the gateway", e);
+        }
+    }
+
+    /**
+     * Waits for all the forked threads to terminate.
+     * If the owner is interrupted meanwhile, the remaining calls are interrupted too, and the interrupt status is restored.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    threads.forEach(Thread::interrupt);
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A task remembering the deadline given when it was forked.
+     */
+    private static final class DeadlineTask<T> extends FutureTask<T> {
+        private final long deadline;
+
+        private DeadlineTask(Callable<T> call, long deadline) {
+            super(call);
+            this.deadline = deadline;
+        }
+    }
+}
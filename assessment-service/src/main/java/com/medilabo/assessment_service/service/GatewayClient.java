@@ -1,43 +1,54 @@
 package com.medilabo.assessment_service.service;
 
+import com.medilabo.assessment_service.config.GatewayClientProperties;
 import com.medilabo.assessment_service.exceptions.ExternalServiceException;
 import com.medilabo.assessment_service.exceptions.PatientNotFoundException;
+import com.medilabo.auth.GatewayTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ETag;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
 /**
- * Generic client for calling the gateway service
+ * Generic client for calling the gateway
  */
 @Service
 public class GatewayClient {
     private static final Logger log = LoggerFactory.getLogger(GatewayClient.class);
 
-    @Value("${gateway.username}")
-    private String gatewayUsername;
-
-    @Value("${gateway.password}")
-    private String gatewayPassword;
-
-    @Value("${gateway.url}")
-    private String gatewayUrl;
-
+    private final String gatewayUrl;
     private final RestTemplate restTemplate;
+    private final GatewayClientProperties properties;
+    private final GatewayTokenService gatewayTokenService;
 
-    public GatewayClient(RestTemplate restTemplate) {
+    public GatewayClient(RestTemplate restTemplate,
+                         GatewayClientProperties properties,
+                         GatewayTokenService gatewayTokenService,
+                         @Value("${gateway.url}") String gatewayUrl) {
         this.restTemplate = restTemplate;
+        this.properties = properties;
+        this.gatewayTokenService = gatewayTokenService;
+        this.gatewayUrl = gatewayUrl;
     }
 
+    /** Header giving the cursor of the next page of a paginated list, absent on the last page. */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     /**
      *
-     * @param path relative URL to call
+     * @param path relative URL template to call, the variable "{id}" is replaced by the patientId (ex: /patients/{id})
      * @param clazz expected response type
      * @return the response object
      * @param <T> generic type for the object returned
@@ -45,15 +56,128 @@ public class GatewayClient {
      * @throws ExternalServiceException for other gateway failures
      */
     public <T> T get(String path, Class<T> clazz, Integer patientId) {
-        log.debug("Calling gateway path={} for patientId={}", path, patientId);
+        return exchange(path, clazz, null, patientId).getBody();
+    }
+
+    /**
+     * Calls a multi-get, which answers for several patients at once.
+     * @param path relative URL template to call, the variable "{ids}" is replaced by the comma-separated ids (ex: /patients/demographics?ids={ids})
+     * @param clazz expected response type
+     * @param ids the patients unique identifiers
+     * @return the response object
+     * @param <T> generic type for the object returned
+     * @throws ExternalServiceException for any gateway failure, the unknown patients are skipped by a multi-get instead of answering 404
+     */
+    public <T> T getAll(String path, Class<T> clazz, Collection<Integer> ids) {
+        log.debug("Calling gateway path={} for {} patients", path, ids.size());
+        String joinedIds = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setBasicAuth(gatewayUsername, gatewayPassword);
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
+            return restTemplate.exchange(gatewayUrl + path, HttpMethod.GET, new HttpEntity<Void>(headers(null)), clazz, joinedIds).getBody();
+        } catch (Exception e) {
+            log.error("Gateway call failed for path={} with {} patients, cause={}", path, ids.size(), e.getMessage());
+            throw new ExternalServiceException("Gateway call failed for path: " + path, e);
+        }
+    }
 
-            ResponseEntity<T> response = restTemplate.exchange(gatewayUrl + path, HttpMethod.GET, entity, clazz);
+    /**
+     * Calls a paginated list, the cursor of the next page is read from the X-Next-Cursor header.
+     * @param path relative URL template to call, with the variables "{id}" and "{cursor}" (ex: /notes/{id}?cursor={cursor})
+     * @param clazz expected response type
+     * @param cursor the cursor of the previous page, null for the first page
+     * @return the page and the cursor of the next one
+     * @param <T> generic type for the object returned
+     * @throws PatientNotFoundException if the patient is not found
+     * @throws ExternalServiceException for other gateway failures
+     */
+    public <T> Page<T> getPage(String path, Class<T> clazz, Integer patientId, String cursor) {
+        return getPage(path, clazz, patientId, cursor, null);
+    }
 
-            return response.getBody();
+    /**
+     * Calls a paginated list conditionally, with the ETag of the list known by the caller.
+     * @param path relative URL template to call, with the variables "{id}" and "{cursor}" (ex: /notes/{id}?cursor={cursor})
+     * @param clazz expected response type
+     * @param cursor the cursor of the previous page, null for the first page
+     * @param ifNoneMatch the ETag of the list known by the caller, sent as If-None-Match, or null
+     * @return the page, the cursor of the next one and the ETag of the list. Not modified, without body, if the ETag still matches.
+     * @param <T> generic type for the object returned
+     * @throws PatientNotFoundException if the patient is not found
+     * @throws ExternalServiceException for other gateway failures
+     */
+    public <T> Page<T> getPage(String path, Class<T> clazz, Integer patientId, String cursor, String ifNoneMatch) {
+        return toPage(exchange(path, clazz, ifNoneMatch, patientId, cursor != null ? cursor : ""));
+    }
+
+    /**
+     * Calls a resource conditionally, with its ETag known by the caller.
+     * @param path relative URL template to call, the variable "{id}" is replaced by the patientId (ex: /notes/{id}/triggers)
+     * @param clazz expected response type
+     * @param ifNoneMatch the ETag of the resource known by the caller, sent as If-None-Match, or null
+     * @return the resource and its ETag, as a single page. Not modified, without body, if the ETag still matches.
+     * @param <T> generic type for the object returned
+     * @throws PatientNotFoundException if the patient is not found
+     * @throws ExternalServiceException for other gateway failures
+     */
+    public <T> Page<T> getIfNoneMatch(String path, Class<T> clazz, Integer patientId, String ifNoneMatch) {
+        return toPage(exchange(path, clazz, ifNoneMatch, patientId));
+    }
+
+    private static <T> Page<T> toPage(ResponseEntity<T> response) {
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+            return Page.notModified(response.getHeaders().getETag());
+        }
+        return new Page<>(response.getBody(), response.getHeaders().getFirst(NEXT_CURSOR_HEADER), response.getHeaders().getETag(), false);
+    }
+
+    /**
+     * @param eTag an ETag of the patient-service or the note-service, their version between quotes, weak for the notes (ex: "3", W/"3").
+     * @return the version, or null if there is no ETag or it is not a version.
+     */
+    public static Long versionOf(String eTag) {
+        if (eTag == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(ETag.create(eTag).tag());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A page of a paginated list.
+     * @param body the response object, null when not modified.
+     * @param nextCursor the cursor of the next page, null on the last page.
+     * @param eTag the ETag of the list, or null if the service gives none.
+     * @param notModified true if the list still has the ETag sent by the caller, there is no body then.
+     * @param <T> generic type for the object returned
+     */
+    public record Page<T>(T body, String nextCursor, String eTag, boolean notModified) {
+
+        public Page(T body, String nextCursor) {
+            this(body, nextCursor, null, false);
+        }
+
+        static <T> Page<T> notModified(String eTag) {
+            return new Page<>(null, null, eTag, true);
+        }
+    }
+
+    /**
+     * Calls the gateway with the authorization header, and maps its errors.
+     * @param path relative URL template to call, its first variable is the patientId
+     * @param clazz expected response type
+     * @param ifNoneMatch the If-None-Match header, or null
+     * @param uriVariables the patientId, then the other variables of the template
+     * @return the response, which is a 304 without body if the If-None-Match matched
+     */
+    private <T> ResponseEntity<T> exchange(String path, Class<T> clazz, String ifNoneMatch, Integer patientId, Object... uriVariables) {
+        log.debug("Calling gateway path={} for patientId={}", path, patientId);
+        Object[] variables = new Object[uriVariables.length + 1];
+        variables[0] = patientId;
+        System.arraycopy(uriVariables, 0, variables, 1, uriVariables.length);
+        try {
+            return restTemplate.exchange(gatewayUrl + path, HttpMethod.GET, new HttpEntity<Void>(headers(ifNoneMatch)), clazz, variables);
 
         } catch (HttpClientErrorException.NotFound e) {
             log.error("Patient not found, id={}", patientId);
@@ -63,4 +187,26 @@ public class GatewayClient {
             throw new ExternalServiceException("Gateway call failed for path: " + path, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @param ifNoneMatch the If-None-Match header, or null
+     * @return the headers of a call, with the authorization header
+     */
+    private HttpHeaders headers(String ifNoneMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        // The token is signed again only when half of its validity is elapsed.
+        headers.set(HttpHeaders.AUTHORIZATION, gatewayTokenService.authorizationHeader());
+        if (ifNoneMatch != null) {
+            headers.setIfNoneMatch(ifNoneMatch);
+        }
+        return headers;
+    }
+
+    /**
+     * @param path relative URL template, ex: /patients/{id}
+     * @return the maximum duration of a call to this path, enforced by the GatewayCallScope running the call.
+     */
+    public Duration totalTimeout(String path) {
+        return properties.totalTimeoutFor(path);
+    }
+}
@@ -3,7 +3,7 @@ package com.medilabo.assessment_service;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "gateway.auth.keys.k1=${random.value}")
 class AssessmentServiceApplicationTests {
 
 	@Test
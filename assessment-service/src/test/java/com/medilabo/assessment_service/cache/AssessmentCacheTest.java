@@ -0,0 +1,70 @@
+package com.medilabo.assessment_service.cache;
+
+import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AssessmentCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AssessmentCache cache = new AssessmentCache(100, Duration.ofMinutes(10), meterRegistry);
+
+    private AssessmentDiabetesDTO buildAssessment(Integer patientId) {
+        AssessmentDiabetesDTO assessment = new AssessmentDiabetesDTO();
+        assessment.setPatientId(patientId);
+        assessment.setRiskLevel(AssessmentDiabetesDTO.RiskLevel.NONE);
+        return assessment;
+    }
+
+    @Test
+    void shouldReturnCachedAssessment_forTheSameKey() {
+        AssessmentDiabetesDTO assessment = buildAssessment(1);
+        AssessmentCacheKey key = cache.keyFor(1, 0, 0, "v1");
+
+        cache.put(key, assessment);
+
+        assertSame(assessment, cache.get(cache.keyFor(1, 0, 0, "v1")));
+        assertNull(cache.get(cache.keyFor(2, 0, 0, "v1")));
+    }
+
+    @Test
+    void shouldNotMixAssessmentsOfDifferentDictionaries() {
+        cache.put(cache.keyFor(1, 0, 0, "v1"), buildAssessment(1));
+
+        assertNull(cache.get(cache.keyFor(1, 0, 0, "v2")));
+    }
+
+    @Test
+    void shouldNotReturnAssessment_ofAnotherVersionOfThePatientOrOfItsNotes() {
+        cache.put(cache.keyFor(1, 3, 5, "v1"), buildAssessment(1));
+
+        assertNull(cache.get(cache.keyFor(1, 4, 5, "v1")));
+        assertNull(cache.get(cache.keyFor(1, 3, 6, "v1")));
+    }
+
+    @Test
+    void shouldIgnoreAllAssessmentsComputedBeforeInvalidateAll() {
+        AssessmentCacheKey staleKey = cache.keyFor(1, 0, 0, "v1");
+        cache.put(staleKey, buildAssessment(1));
+
+        cache.invalidateAll();
+        cache.put(staleKey, buildAssessment(1));
+
+        assertNull(cache.get(cache.keyFor(1, 0, 0, "v1")));
+    }
+
+    @Test
+    void shouldPublishHitAndMissMetrics() {
+        AssessmentCacheKey key = cache.keyFor(1, 0, 0, "v1");
+        cache.get(key);
+        cache.put(key, buildAssessment(1));
+        cache.get(key);
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "assessments").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "assessments").tag("result", "miss").functionCounter().count());
+    }
+}
@@ -0,0 +1,189 @@
+package com.medilabo.assessment_service.config;
+
+import com.medilabo.assessment_service.exceptions.ExternalServiceException;
+import com.medilabo.assessment_service.service.GatewayClient;
+import com.medilabo.auth.GatewayAuthProperties;
+import com.medilabo.auth.GatewayTokenService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestTemplateConfigTest {
+
+    private HttpServer server;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GatewayClientProperties properties = new GatewayClientProperties();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/patients", exchange -> {
+            assertNotNull(exchange.getRequestHeaders().getFirst("Authorization"));
+            respond(exchange, exchange.getRequestURI().getPath());
+        });
+        server.createContext("/pages", exchange -> {
+            // First page when the cursor is empty, then a last page.
+            if (exchange.getRequestURI().getQuery().endsWith("cursor=")) {
+                exchange.getResponseHeaders().add(GatewayClient.NEXT_CURSOR_HEADER, "abc");
+            }
+            respond(exchange, exchange.getRequestURI().getQuery());
+        });
+        server.createContext("/versioned", exchange -> {
+            // A list at the version 5, not sent again to a client which already has it.
+            exchange.getResponseHeaders().add("ETag", "\"5\"");
+            if ("\"5\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            respond(exchange, "list");
+        });
+        server.createContext("/notes", exchange -> {
+            try {
+                Thread.sleep(2_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, "late");
+        });
+        server.start();
+
+        properties.setReadTimeout(Duration.ofSeconds(5));
+        GatewayClientProperties.RouteTimeouts notes = new GatewayClientProperties.RouteTimeouts();
+        notes.setReadTimeout(Duration.ofMillis(200));
+        properties.setRoutes(Map.of("notes", notes));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    // =========================
+    // Helpers
+    // =========================
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private GatewayClient buildClient() {
+        RestTemplateConfig config = new RestTemplateConfig();
+        ClientHttpRequestFactory requestFactory = config.gatewayRequestFactory(properties, meterRegistry);
+        RestTemplate restTemplate = config.restTemplate(new RestTemplateBuilder(), requestFactory);
+        String url = "http://localhost:" + server.getAddress().getPort();
+        GatewayTokenService tokenService = new GatewayTokenService(new GatewayAuthProperties(), "gateway", "gateway-secret");
+        return new GatewayClient(restTemplate, properties, tokenService, url);
+    }
+
+    // =========================
+    // Pooled client
+    // =========================
+
+    @Test
+    void shouldExpandThePathTemplate() {
+        GatewayClient client = buildClient();
+
+        assertEquals("/patients/42", client.get("/patients/{id}", String.class, 42));
+    }
+
+    @Test
+    void shouldReadTheCursorOfTheNextPage() {
+        GatewayClient client = buildClient();
+
+        GatewayClient.Page<String> first = client.getPage("/pages/{id}?size=2&cursor={cursor}", String.class, 42, null);
+        GatewayClient.Page<String> last = client.getPage("/pages/{id}?size=2&cursor={cursor}", String.class, 42, first.nextCursor());
+
+        assertEquals("size=2&cursor=", first.body());
+        assertEquals("abc", first.nextCursor());
+        assertEquals("size=2&cursor=abc", last.body());
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void shouldSendTheETag_andReadANotModifiedPage() {
+        GatewayClient client = buildClient();
+
+        GatewayClient.Page<String> fetched = client.getPage("/versioned/{id}?cursor={cursor}", String.class, 42, null, "\"4\"");
+        GatewayClient.Page<String> notModified = client.getPage("/versioned/{id}?cursor={cursor}", String.class, 42, null, fetched.eTag());
+
+        assertFalse(fetched.notModified());
+        assertEquals("list", fetched.body());
+        assertEquals("\"5\"", fetched.eTag());
+        assertTrue(notModified.notModified());
+        assertNull(notModified.body());
+    }
+
+    @Test
+    void versionOf_shouldReadTheStrongAndWeakETags() {
+        assertEquals(4L, GatewayClient.versionOf("\"4\""));
+        assertEquals(4L, GatewayClient.versionOf("W/\"4\""));
+        assertNull(GatewayClient.versionOf("\"abc\""));
+        assertNull(GatewayClient.versionOf(null));
+    }
+
+    @Test
+    void shouldApplyTheReadTimeoutOfTheRoute() {
+        GatewayClient client = buildClient();
+
+        long start = System.nanoTime();
+        assertThrows(ExternalServiceException.class, () -> client.get("/notes/{id}", String.class, 1));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_500);
+    }
+
+    @Test
+    void shouldPublishPoolMetrics() {
+        buildClient().get("/patients/{id}", String.class, 1);
+
+        assertNotNull(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("httpclient", "gateway").gauge());
+        assertEquals(properties.getMaxConnections(),
+                meterRegistry.get("httpcomponents.httpclient.pool.total.max").gauge().value());
+    }
+
+    // =========================
+    // HTTP/2 client
+    // =========================
+
+    @Test
+    void shouldCallTheGateway_withHttp2Client() {
+        properties.setHttp2(true);
+
+        assertEquals("/patients/7", buildClient().get("/patients/{id}", String.class, 7));
+    }
+
+    // =========================
+    // Route timeouts
+    // =========================
+
+    @Test
+    void shouldUseTheTimeoutsOfTheRoute_orTheDefaultOnes() {
+        assertEquals(Duration.ofMillis(200), properties.readTimeoutFor("/notes/{id}/triggers"));
+        assertEquals(Duration.ofSeconds(5), properties.readTimeoutFor("/patients/{id}"));
+        assertEquals(properties.getTotalTimeout(), properties.totalTimeoutFor("/notes/{id}"));
+        assertEquals("notes", GatewayClientProperties.routeOf("notes"));
+        assertEquals("notes", GatewayClientProperties.routeOf("/notes?patientIds={ids}"));
+    }
+}
@@ -0,0 +1,140 @@
+package com.medilabo.assessment_service.rules;
+
+import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
+import com.medilabo.assessment_service.dto.PatientDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RiskRuleTableTest {
+
+    private final RiskRuleEngine engine = new RiskRuleEngine(new DefaultResourceLoader(), "classpath:risk-rules.csv");
+
+    // =========================
+    // Helpers
+    // =========================
+
+    /**
+     * The previous hard-coded rules of AssessmentDiabetesService.determineRisk.
+     */
+    private static AssessmentDiabetesDTO.RiskLevel legacyRisk(int age, PatientDTO.Gender gender, int triggers) {
+        if (triggers <= 1) {
+            return AssessmentDiabetesDTO.RiskLevel.NONE;
+        } else if (age >= 30) {
+            if (triggers <= 5) {
+                return AssessmentDiabetesDTO.RiskLevel.BORDERLINE;
+            } else if (triggers <= 7) {
+                return AssessmentDiabetesDTO.RiskLevel.INDANGER;
+            }
+            return AssessmentDiabetesDTO.RiskLevel.EARLYONSET;
+        } else if (gender == PatientDTO.Gender.MALE) {
+            if (triggers >= 5) {
+                return AssessmentDiabetesDTO.RiskLevel.EARLYONSET;
+            } else if (triggers >= 3) {
+                return AssessmentDiabetesDTO.RiskLevel.INDANGER;
+            }
+        } else if (gender == PatientDTO.Gender.FEMALE) {
+            if (triggers >= 7) {
+                return AssessmentDiabetesDTO.RiskLevel.EARLYONSET;
+            } else if (triggers >= 4) {
+                return AssessmentDiabetesDTO.RiskLevel.INDANGER;
+            }
+        }
+        return AssessmentDiabetesDTO.RiskLevel.NONE;
+    }
+
+    private static RiskRuleTable parse(String csv) throws IOException {
+        return RiskRuleTable.parse(new StringReader(csv));
+    }
+
+    // =========================
+    // Default table
+    // =========================
+
+    @Test
+    void shouldGiveTheSameRiskAsTheHardCodedRules_forEveryInput() {
+        for (int age = -1; age <= RiskRuleTable.MAX_AGE + 10; age++) {
+            for (PatientDTO.Gender gender : PatientDTO.Gender.values()) {
+                for (int triggers = 0; triggers <= 100; triggers++) {
+                    assertEquals(legacyRisk(age, gender, triggers), engine.evaluate(age, gender, triggers),
+                            "age=" + age + ", gender=" + gender + ", triggers=" + triggers);
+                }
+            }
+        }
+    }
+
+    // =========================
+    // Parsing and compilation
+    // =========================
+
+    @Test
+    void shouldApplyTheFirstMatchingRule() throws IOException {
+        RiskRuleTable table = parse("""
+                min_age,max_age,gender,min_triggers,max_triggers,risk_level
+                *,*,FEMALE,2,*,INDANGER
+                18,65,*,2,*,BORDERLINE
+                """);
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.INDANGER, table.evaluate(40, PatientDTO.Gender.FEMALE, 3));
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, table.evaluate(40, PatientDTO.Gender.MALE, 3));
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.NONE, table.evaluate(17, PatientDTO.Gender.MALE, 3));
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.NONE, table.evaluate(66, PatientDTO.Gender.OTHER, 50));
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.NONE, table.evaluate(40, PatientDTO.Gender.MALE, 1));
+    }
+
+    @Test
+    void shouldRejectInvalidTables() {
+        assertThrows(IllegalArgumentException.class, () -> parse("min_age,gender\n*,*"));
+        assertThrows(IllegalArgumentException.class, () -> parse(RiskRuleTable.HEADER + "\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse(RiskRuleTable.HEADER + "\n*,*,*,*,*"));
+        assertThrows(IllegalArgumentException.class, () -> parse(RiskRuleTable.HEADER + "\n*,*,ROBOT,*,*,NONE"));
+        assertThrows(IllegalArgumentException.class, () -> parse(RiskRuleTable.HEADER + "\n*,*,*,5,2,NONE"));
+        assertThrows(IllegalArgumentException.class, () -> parse(RiskRuleTable.HEADER + "\n*,*,*,x,*,NONE"));
+        assertThrows(IllegalArgumentException.class, () -> parse(RiskRuleTable.HEADER + "\n*,*,*,*,*,HIGH"));
+    }
+
+    @Test
+    void shouldRejectTriggerBoundsAboveTheCap() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> parse(RiskRuleTable.HEADER + "\n*,*,*,1,2147483646,NONE"));
+        assertThrows(IllegalArgumentException.class, () -> parse(RiskRuleTable.HEADER + "\n*,*,*,10000000,*,NONE"));
+
+        RiskRuleTable table = parse(RiskRuleTable.HEADER + "\n*,*,*," + RiskRuleTable.MAX_TRIGGERS_BOUND + ",*,EARLYONSET");
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.EARLYONSET, table.evaluate(40, PatientDTO.Gender.MALE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void shouldGiveNone_whenTheGenderIsUnknown() {
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.NONE, engine.evaluate(40, null, 10));
+    }
+
+    // =========================
+    // Reload
+    // =========================
+
+    @Test
+    void shouldReloadTheTable_andKeepTheCurrentOneWhenInvalid(@TempDir Path directory) throws IOException {
+        Path rules = directory.resolve("risk-rules.csv");
+        Files.writeString(rules, RiskRuleTable.HEADER + "\n*,*,*,1,*,BORDERLINE\n");
+        RiskRuleEngine fileEngine = new RiskRuleEngine(new DefaultResourceLoader(), rules.toUri().toString());
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, fileEngine.evaluate(20, PatientDTO.Gender.MALE, 1));
+
+        Files.writeString(rules, RiskRuleTable.HEADER + "\n*,*,*,1,*,EARLYONSET\n");
+        fileEngine.reload();
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.EARLYONSET, fileEngine.evaluate(20, PatientDTO.Gender.MALE, 1));
+
+        Files.writeString(rules, RiskRuleTable.HEADER + "\n*,*,*,1\n");
+        assertThrows(IllegalArgumentException.class, fileEngine::reload);
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.EARLYONSET, fileEngine.evaluate(20, PatientDTO.Gender.MALE, 1));
+
+        Files.writeString(rules, RiskRuleTable.HEADER + "\n*,*,*,1,10000000,NONE\n");
+        assertThrows(IllegalArgumentException.class, fileEngine::reload);
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.EARLYONSET, fileEngine.evaluate(20, PatientDTO.Gender.MALE, 1));
+    }
+}
@@ -1,28 +1,86 @@
 package com.medilabo.assessment_service.service;
 
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.analysis.TriggerMatcher;
+import com.medilabo.assessment_service.cache.AssessmentCache;
+import com.medilabo.assessment_service.cache.NoteTriggersCache;
 import com.medilabo.assessment_service.dto.AssessmentDiabetesDTO;
 import com.medilabo.assessment_service.dto.NoteDTO;
 import com.medilabo.assessment_service.dto.PatientDTO;
+import com.medilabo.assessment_service.dto.PatientNotesDTO;
+import com.medilabo.assessment_service.dto.PatientTriggersDTO;
+import com.medilabo.assessment_service.exceptions.ExternalServiceException;
+import com.medilabo.assessment_service.exceptions.PatientNotFoundException;
+import com.medilabo.assessment_service.rules.RiskRuleEngine;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class AssessmentDiabetesServiceTest {
 
+    private static final String PATIENT_PATH = "/patients/{id}/demographics";
+    private static final String TRIGGERS_PATH = "/notes/{id}/triggers";
+    private static final String NOTES_PATH = "/notes/{id}?size=500&fields=noteText&cursor={cursor}";
+    private static final String DEMOGRAPHICS_PATH = "/patients/demographics?ids={ids}";
+    private static final String NOTES_TRIGGERS_PATH = "/notes?patientIds={ids}&fields=triggerIds,triggerDictionaryVersion";
+
+    /** Same dictionary as the note-service, which matches the notes when they are written. */
+    private static final TriggerMatcher NOTE_SERVICE_MATCHER = TriggerMatcher.compile(List.of(
+            "Hémoglobine A1C", "Microalbumine", "Taille", "Poids", "Fumeur", "Fumeuse",
+            "Anormal", "Cholestérol", "Vertiges", "Rechute", "Réaction", "Anticorps"
+    ));
+
     @Mock
     private GatewayClient gatewayClient;
 
+    @Spy
+    private AssessmentCache assessmentCache = new AssessmentCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+
+    @Spy
+    private NoteTriggersCache noteTriggersCache = new NoteTriggersCache(100, new SimpleMeterRegistry());
+
+    @Spy
+    private RiskRuleEngine riskRuleEngine = new RiskRuleEngine(new DefaultResourceLoader(), "classpath:risk-rules.csv");
+
+    @Spy
+    private TriggerDictionary triggerDictionary = new TriggerDictionary(new DefaultResourceLoader(), "classpath:trigger-words.txt");
+
     @InjectMocks
     private AssessmentDiabetesService service;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(gatewayClient.totalTimeout(anyString())).thenReturn(Duration.ofSeconds(10));
+    }
+
     // =========================
     // Helpers
     // =========================
@@ -34,10 +92,40 @@ class AssessmentDiabetesServiceTest {
         return patient;
     }
 
+    private PatientDTO buildPatient(int id, int age, PatientDTO.Gender gender) {
+        PatientDTO patient = buildPatient(age, gender);
+        patient.setId(id);
+        return patient;
+    }
+
+    /** Notes of a patient as returned by the multi-get, with the trigger hits stored by the note-service. */
+    private PatientNotesDTO buildPatientNotes(int id, String dictionaryVersion, String... texts) {
+        List<NoteDTO> notes = new ArrayList<>();
+        for (String text : texts) {
+            NoteDTO note = new NoteDTO();
+            note.setTriggerIds(NOTE_SERVICE_MATCHER.newScan().feed(text).matchedTriggers());
+            note.setTriggerDictionaryVersion(dictionaryVersion);
+            notes.add(note);
+        }
+        return new PatientNotesDTO(id, 1L, notes);
+    }
+
     private NoteDTO[] buildNotes(String text) {
         return new NoteDTO[]{ new NoteDTO(text) };
     }
 
+    /** Trigger hits of the note-service, without ETag. */
+    private GatewayClient.Page<PatientTriggersDTO> buildTriggers(String text) {
+        return buildTriggers(text, null);
+    }
+
+    private GatewayClient.Page<PatientTriggersDTO> buildTriggers(String text, String eTag) {
+        PatientTriggersDTO triggers = new PatientTriggersDTO();
+        triggers.setDictionaryVersion(NOTE_SERVICE_MATCHER.getVersion());
+        triggers.setTriggerIds(NOTE_SERVICE_MATCHER.newScan().feed(text).matchedTriggers());
+        return new GatewayClient.Page<>(triggers, null, eTag, false);
+    }
+
     // =========================
     // NONE (<=1 trigger)
     // =========================
@@ -46,11 +134,11 @@ class AssessmentDiabetesServiceTest {
     void shouldReturnNone_whenNoTriggerWords() {
         Integer id = 1;
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(buildPatient(50, PatientDTO.Gender.MALE));
 
-        when(gatewayClient.get("/notes/" + id, NoteDTO[].class, id))
-                .thenReturn(buildNotes("Rien de particulier"));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Rien de particulier"));
 
         AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
 
@@ -61,11 +149,11 @@ class AssessmentDiabetesServiceTest {
     void shouldReturnNone_whenOneTriggerWord() {
         Integer id = 2;
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(buildPatient(50, PatientDTO.Gender.MALE));
 
-        when(gatewayClient.get("/notes/" + id, NoteDTO[].class, id))
-                .thenReturn(buildNotes("Poids"));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Poids"));
 
         AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
 
@@ -80,11 +168,11 @@ class AssessmentDiabetesServiceTest {
     void shouldReturnBorderline_whenOver30_and2To5Triggers() {
         Integer id = 3;
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(buildPatient(45, PatientDTO.Gender.MALE));
 
-        when(gatewayClient.get("/notes/" + id, NoteDTO[].class, id))
-                .thenReturn(buildNotes("Poids Cholestérol Vertiges"));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Poids Cholestérol Vertiges"));
 
         AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
 
@@ -95,11 +183,11 @@ class AssessmentDiabetesServiceTest {
     void shouldReturnInDanger_whenOver30_and6To7Triggers() {
         Integer id = 4;
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(buildPatient(45, PatientDTO.Gender.MALE));
 
-        when(gatewayClient.get("/notes/" + id, NoteDTO[].class, id))
-                .thenReturn(buildNotes(
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers(
                         "Poids Cholestérol Vertiges Rechute Réaction Anticorps"
                 ));
 
@@ -112,11 +200,11 @@ class AssessmentDiabetesServiceTest {
     void shouldReturnEarlyOnset_whenOver30_and8OrMoreTriggers() {
         Integer id = 5;
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(buildPatient(45, PatientDTO.Gender.MALE));
 
-        when(gatewayClient.get("/notes/" + id, NoteDTO[].class, id))
-                .thenReturn(buildNotes(
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers(
                         "Poids Cholestérol Vertiges Rechute Réaction Anticorps Taille Fumeur"
                 ));
 
@@ -133,11 +221,11 @@ class AssessmentDiabetesServiceTest {
     void shouldReturnInDanger_whenMaleUnder30_and3To4Triggers() {
         Integer id = 6;
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(buildPatient(25, PatientDTO.Gender.MALE));
 
-        when(gatewayClient.get("/notes/" + id, NoteDTO[].class, id))
-                .thenReturn(buildNotes("Poids Cholestérol Vertiges"));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Poids Cholestérol Vertiges"));
 
         AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
 
@@ -148,11 +236,11 @@ class AssessmentDiabetesServiceTest {
     void shouldReturnEarlyOnset_whenMaleUnder30_and5OrMoreTriggers() {
         Integer id = 7;
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(buildPatient(25, PatientDTO.Gender.MALE));
 
-        when(gatewayClient.get("/notes/" + id, NoteDTO[].class, id))
-                .thenReturn(buildNotes("Poids Cholestérol Vertiges Rechute Réaction"));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Poids Cholestérol Vertiges Rechute Réaction"));
 
         AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
 
@@ -167,11 +255,11 @@ class AssessmentDiabetesServiceTest {
     void shouldReturnInDanger_whenFemaleUnder30_and4To6Triggers() {
         Integer id = 8;
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(buildPatient(25, PatientDTO.Gender.FEMALE));
 
-        when(gatewayClient.get("/notes/" + id, NoteDTO[].class, id))
-                .thenReturn(buildNotes("Poids Cholestérol Vertiges Rechute"));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Poids Cholestérol Vertiges Rechute"));
 
         AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
 
@@ -182,11 +270,11 @@ class AssessmentDiabetesServiceTest {
     void shouldReturnEarlyOnset_whenFemaleUnder30_and7OrMoreTriggers() {
         Integer id = 9;
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(buildPatient(25, PatientDTO.Gender.FEMALE));
 
-        when(gatewayClient.get("/notes/" + id, NoteDTO[].class, id))
-                .thenReturn(buildNotes(
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers(
                         "Poids Cholestérol Vertiges Rechute Réaction Anticorps Taille"
                 ));
 
@@ -195,6 +283,94 @@ class AssessmentDiabetesServiceTest {
         assertEquals(AssessmentDiabetesDTO.RiskLevel.EARLYONSET, result.getRiskLevel());
     }
 
+    // =========================
+    // Trigger hits from the note-service
+    // =========================
+
+    @Test
+    void shouldMatchTheNotes_whenNoteServiceDictionaryIsNotTheSame() {
+        Integer id = 13;
+        PatientTriggersDTO outdatedTriggers = new PatientTriggersDTO(id, "outdated", List.of("poids"));
+
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenReturn(buildPatient(45, PatientDTO.Gender.MALE));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(new GatewayClient.Page<>(outdatedTriggers, null));
+        when(gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, null, null))
+                .thenReturn(new GatewayClient.Page<>(buildNotes("Poids Cholestérol Vertiges"), null));
+
+        AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, result.getRiskLevel());
+    }
+
+    @Test
+    void shouldMatchEveryPageOfNotes_whenNoteServiceDictionaryIsNotTheSame() {
+        Integer id = 15;
+        PatientTriggersDTO outdatedTriggers = new PatientTriggersDTO(id, "outdated", List.of());
+
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenReturn(buildPatient(45, PatientDTO.Gender.MALE));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(new GatewayClient.Page<>(outdatedTriggers, null));
+        when(gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, null, null))
+                .thenReturn(new GatewayClient.Page<>(buildNotes("Poids"), "c1"));
+        when(gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, "c1", null))
+                .thenReturn(new GatewayClient.Page<>(buildNotes("Cholestérol"), "c2"));
+        when(gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, "c2", null))
+                .thenReturn(new GatewayClient.Page<>(buildNotes("Vertiges"), null));
+
+        AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, result.getRiskLevel());
+        verify(gatewayClient, times(3)).getPage(eq(NOTES_PATH), eq(NoteDTO[].class), eq(id), any(), any());
+    }
+
+    @Test
+    void shouldNotDownloadTheNotes_whenNoteServiceDictionaryIsTheSame() {
+        Integer id = 14;
+
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenReturn(buildPatient(45, PatientDTO.Gender.MALE));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Poids Cholestérol Vertiges"));
+
+        AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, result.getRiskLevel());
+        verify(gatewayClient, never()).getPage(eq(NOTES_PATH), eq(NoteDTO[].class), eq(id), any(), any());
+    }
+
+    @Test
+    void shouldReuseTheMatchedNotes_whenTheNoteServiceAnswersNotModified() {
+        Integer id = 16;
+        PatientTriggersDTO outdatedTriggers = new PatientTriggersDTO(id, "outdated", List.of());
+        PatientDTO patient = buildPatient(45, PatientDTO.Gender.MALE);
+        patient.setVersion(1L);
+        PatientDTO updatedPatient = buildPatient(45, PatientDTO.Gender.MALE);
+        updatedPatient.setVersion(2L);
+
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenReturn(patient, updatedPatient);
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(new GatewayClient.Page<>(outdatedTriggers, null, "\"3\"", false));
+        when(gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, null, null))
+                .thenReturn(new GatewayClient.Page<>(buildNotes("Poids"), "c1", "\"3\"", false));
+        when(gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, "c1", null))
+                .thenReturn(new GatewayClient.Page<>(buildNotes("Cholestérol Vertiges"), null, "\"3\"", false));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, "\"3\""))
+                .thenReturn(new GatewayClient.Page<>(null, null, "\"3\"", true));
+
+        AssessmentDiabetesDTO first = service.getPatientDiabetesRiskAssessment(id);
+        // The patient changed, not his notes.
+        AssessmentDiabetesDTO second = service.getPatientDiabetesRiskAssessment(id);
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, first.getRiskLevel());
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, second.getRiskLevel());
+        verify(gatewayClient, times(2)).getPage(eq(NOTES_PATH), eq(NoteDTO[].class), eq(id), any(), any());
+        verify(riskRuleEngine, times(2)).evaluate(eq(45), eq(PatientDTO.Gender.MALE), eq(3));
+    }
+
     // =========================
     // Exception
     // =========================
@@ -205,10 +381,259 @@ class AssessmentDiabetesServiceTest {
 
         PatientDTO patient = new PatientDTO(); // missing birthDate & gender
 
-        when(gatewayClient.get("/patients/" + id, PatientDTO.class, id))
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
                 .thenReturn(patient);
 
         assertThrows(IllegalStateException.class,
                 () -> service.getPatientDiabetesRiskAssessment(id));
     }
+
+    // =========================
+    // Concurrent fetch
+    // =========================
+
+    @Test
+    void shouldFetchPatientAndTriggersConcurrently() {
+        Integer id = 11;
+        CountDownLatch triggersCallStarted = new CountDownLatch(1);
+
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenAnswer(invocation -> {
+                    // The patient call only completes if the triggers call is running at the same time.
+                    assertTrue(triggersCallStarted.await(5, TimeUnit.SECONDS));
+                    return buildPatient(45, PatientDTO.Gender.MALE);
+                });
+
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenAnswer(invocation -> {
+                    triggersCallStarted.countDown();
+                    return buildTriggers("Poids Cholestérol Vertiges");
+                });
+
+        AssessmentDiabetesDTO result = service.getPatientDiabetesRiskAssessment(id);
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, result.getRiskLevel());
+    }
+
+    @Test
+    void shouldCancelTriggersCall_whenPatientNotFound() {
+        Integer id = 12;
+        CountDownLatch triggersCallStarted = new CountDownLatch(1);
+        CountDownLatch triggersCallInterrupted = new CountDownLatch(1);
+
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenAnswer(invocation -> {
+                    triggersCallStarted.await(5, TimeUnit.SECONDS);
+                    throw new PatientNotFoundException(id);
+                });
+
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenAnswer(invocation -> {
+                    triggersCallStarted.countDown();
+                    try {
+                        Thread.sleep(30_000);
+                    } catch (InterruptedException e) {
+                        triggersCallInterrupted.countDown();
+                    }
+                    return buildTriggers("");
+                });
+
+        long start = System.nanoTime();
+        assertThrows(PatientNotFoundException.class,
+                () -> service.getPatientDiabetesRiskAssessment(id));
+
+        assertEquals(0, triggersCallInterrupted.getCount());
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+    }
+
+    @Test
+    void shouldCancelTriggersCall_whenTotalTimeoutIsReached() {
+        Integer id = 13;
+        CountDownLatch triggersCallInterrupted = new CountDownLatch(1);
+
+        when(gatewayClient.totalTimeout(TRIGGERS_PATH)).thenReturn(Duration.ofMillis(200));
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenReturn(buildPatient(45, PatientDTO.Gender.MALE));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenAnswer(invocation -> {
+                    try {
+                        Thread.sleep(30_000);
+                    } catch (InterruptedException e) {
+                        triggersCallInterrupted.countDown();
+                    }
+                    return buildTriggers("");
+                });
+
+        long start = System.nanoTime();
+        assertThrows(ExternalServiceException.class,
+                () -> service.getPatientDiabetesRiskAssessment(id));
+
+        assertEquals(0, triggersCallInterrupted.getCount());
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+    }
+
+    // =========================
+    // Batch
+    // =========================
+
+    @Test
+    void shouldAssessEachDistinctPatient_withErrorEntryForUnknownPatient() {
+        String version = NOTE_SERVICE_MATCHER.getVersion();
+        when(gatewayClient.getAll(DEMOGRAPHICS_PATH, PatientDTO[].class, List.of(20, 21, 22)))
+                .thenReturn(new PatientDTO[]{
+                        buildPatient(20, 25, PatientDTO.Gender.FEMALE),
+                        buildPatient(22, 50, PatientDTO.Gender.MALE)});
+        when(gatewayClient.getAll(NOTES_TRIGGERS_PATH, PatientNotesDTO[].class, List.of(20, 21, 22)))
+                .thenReturn(new PatientNotesDTO[]{
+                        buildPatientNotes(20, version, "Poids Cholestérol", "Vertiges Rechute"),
+                        buildPatientNotes(22, version, "Rien de particulier")});
+
+        List<AssessmentDiabetesDTO> results = service.getPatientsDiabetesRiskAssessments(List.of(20, 21, 22, 20));
+
+        assertEquals(3, results.size());
+        assertEquals(20, results.get(0).getPatientId());
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.INDANGER, results.get(0).getRiskLevel());
+        assertNull(results.get(0).getError());
+
+        assertEquals(21, results.get(1).getPatientId());
+        assertNull(results.get(1).getRiskLevel());
+        assertEquals("Patient with id 21 not found", results.get(1).getError());
+
+        assertEquals(22, results.get(2).getPatientId());
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.NONE, results.get(2).getRiskLevel());
+        verify(gatewayClient, never()).get(anyString(), any(), any(Integer.class));
+    }
+
+    @Test
+    void shouldFetchEachChunkOnce() {
+        ReflectionTestUtils.setField(service, "batchChunkSize", 2);
+        String version = NOTE_SERVICE_MATCHER.getVersion();
+        when(gatewayClient.getAll(DEMOGRAPHICS_PATH, PatientDTO[].class, List.of(40, 41)))
+                .thenReturn(new PatientDTO[]{
+                        buildPatient(40, 50, PatientDTO.Gender.MALE),
+                        buildPatient(41, 50, PatientDTO.Gender.MALE)});
+        when(gatewayClient.getAll(DEMOGRAPHICS_PATH, PatientDTO[].class, List.of(42)))
+                .thenReturn(new PatientDTO[]{ buildPatient(42, 50, PatientDTO.Gender.MALE) });
+        when(gatewayClient.getAll(NOTES_TRIGGERS_PATH, PatientNotesDTO[].class, List.of(40, 41)))
+                .thenReturn(new PatientNotesDTO[]{ buildPatientNotes(40, version, "Poids Cholestérol Vertiges") });
+        when(gatewayClient.getAll(NOTES_TRIGGERS_PATH, PatientNotesDTO[].class, List.of(42)))
+                .thenThrow(new ExternalServiceException("Gateway call failed for path: /notes", null));
+
+        List<AssessmentDiabetesDTO> results = service.getPatientsDiabetesRiskAssessments(List.of(40, 41, 42));
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, results.get(0).getRiskLevel());
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.NONE, results.get(1).getRiskLevel());
+        assertEquals("External service unavailable", results.get(2).getError());
+        verify(gatewayClient, times(2)).getAll(eq(DEMOGRAPHICS_PATH), eq(PatientDTO[].class), any());
+        verify(gatewayClient, times(2)).getAll(eq(NOTES_TRIGGERS_PATH), eq(PatientNotesDTO[].class), any());
+    }
+
+    @Test
+    void shouldMatchTheNotesOfABatchPatient_whenItsTriggerHitsAreOutdated() {
+        Integer id = 43;
+        when(gatewayClient.getAll(DEMOGRAPHICS_PATH, PatientDTO[].class, List.of(id)))
+                .thenReturn(new PatientDTO[]{ buildPatient(id, 50, PatientDTO.Gender.MALE) });
+        when(gatewayClient.getAll(NOTES_TRIGGERS_PATH, PatientNotesDTO[].class, List.of(id)))
+                .thenReturn(new PatientNotesDTO[]{ buildPatientNotes(id, "outdated", "Poids") });
+        when(gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, null, null))
+                .thenReturn(new GatewayClient.Page<>(buildNotes("Poids Cholestérol Vertiges"), null));
+
+        List<AssessmentDiabetesDTO> results = service.getPatientsDiabetesRiskAssessments(List.of(id));
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, results.get(0).getRiskLevel());
+    }
+
+    @Test
+    void shouldRejectBatch_whenTooManyIds() {
+        List<Integer> ids = Collections.nCopies(1001, 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getPatientsDiabetesRiskAssessments(ids));
+    }
+
+    // =========================
+    // Cache
+    // =========================
+
+    @Test
+    void shouldReuseCachedAssessment_untilTheNotesChange() {
+        Integer id = 30;
+        PatientDTO patient = buildPatient(50, PatientDTO.Gender.MALE);
+        patient.setVersion(1L);
+
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenReturn(patient);
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Poids", "\"1\""));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, "\"1\""))
+                .thenReturn(new GatewayClient.Page<>(null, null, "\"1\"", true),
+                        buildTriggers("Poids Cholestérol Vertiges", "\"2\""));
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.NONE, service.getPatientDiabetesRiskAssessment(id).getRiskLevel());
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.NONE, service.getPatientDiabetesRiskAssessment(id).getRiskLevel());
+        verify(riskRuleEngine, times(1)).evaluate(anyInt(), any(), anyInt());
+
+        // A note was added: the note-service answers the new hits with the next version.
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, service.getPatientDiabetesRiskAssessment(id).getRiskLevel());
+        verify(riskRuleEngine, times(2)).evaluate(anyInt(), any(), anyInt());
+    }
+
+    @Test
+    void shouldReuseCachedAssessment_inABatch_whenTheVersionsDidNotChange() {
+        Integer id = 33;
+        PatientDTO patient = buildPatient(id, 50, PatientDTO.Gender.MALE);
+        patient.setVersion(1L);
+
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenReturn(patient);
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Poids", "\"1\""));
+        when(gatewayClient.getAll(DEMOGRAPHICS_PATH, PatientDTO[].class, List.of(id)))
+                .thenReturn(new PatientDTO[]{ patient });
+        when(gatewayClient.getAll(NOTES_TRIGGERS_PATH, PatientNotesDTO[].class, List.of(id)))
+                .thenReturn(new PatientNotesDTO[]{ buildPatientNotes(id, NOTE_SERVICE_MATCHER.getVersion(), "Poids") });
+
+        AssessmentDiabetesDTO single = service.getPatientDiabetesRiskAssessment(id);
+        AssessmentDiabetesDTO batch = service.getPatientsDiabetesRiskAssessments(List.of(id)).get(0);
+
+        assertSame(single, batch);
+        verify(riskRuleEngine, times(1)).evaluate(anyInt(), any(), anyInt());
+    }
+
+    @Test
+    void shouldNotCacheBatchErrors() {
+        Integer id = 31;
+
+        when(gatewayClient.getAll(DEMOGRAPHICS_PATH, PatientDTO[].class, List.of(id)))
+                .thenReturn(new PatientDTO[0]);
+        when(gatewayClient.getAll(NOTES_TRIGGERS_PATH, PatientNotesDTO[].class, List.of(id)))
+                .thenReturn(new PatientNotesDTO[0]);
+
+        service.getPatientsDiabetesRiskAssessments(List.of(id));
+        service.getPatientsDiabetesRiskAssessments(List.of(id));
+
+        verify(gatewayClient, times(2)).getAll(DEMOGRAPHICS_PATH, PatientDTO[].class, List.of(id));
+    }
+
+    @Test
+    void shouldNotReuseCachedAssessment_afterADictionaryChange() {
+        Integer id = 32;
+
+        when(gatewayClient.get(PATIENT_PATH, PatientDTO.class, id))
+                .thenReturn(buildPatient(50, PatientDTO.Gender.MALE));
+        when(gatewayClient.getIfNoneMatch(TRIGGERS_PATH, PatientTriggersDTO.class, id, null))
+                .thenReturn(buildTriggers("Poids, glycémie élevée"));
+        when(gatewayClient.getPage(NOTES_PATH, NoteDTO[].class, id, null, null))
+                .thenReturn(new GatewayClient.Page<>(buildNotes("Poids, glycémie élevée"), null));
+
+        AssessmentDiabetesDTO before = service.getPatientDiabetesRiskAssessment(id);
+        triggerDictionary.update(List.of("Poids", "Glycémie"));
+        AssessmentDiabetesDTO after = service.getPatientDiabetesRiskAssessment(id);
+
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.NONE, before.getRiskLevel());
+        assertEquals(NOTE_SERVICE_MATCHER.getVersion(), before.getDictionaryVersion());
+        assertEquals(AssessmentDiabetesDTO.RiskLevel.BORDERLINE, after.getRiskLevel());
+        assertEquals(triggerDictionary.getMatcher().getVersion(), after.getDictionaryVersion());
+        assertNotEquals(before.getDictionaryVersion(), after.getDictionaryVersion());
+    }
 }
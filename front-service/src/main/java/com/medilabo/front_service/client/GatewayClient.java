@@ -7,10 +7,20 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Client responsible for calling the gateway and forwarding authentication headers.
@@ -23,8 +33,18 @@ public class GatewayClient {
 
     private final RestTemplate restTemplate;
 
-    public GatewayClient(RestTemplate restTemplate) {
+    /** Last elements of each path read with getAllIfModified(), with their ETag. The least recently used paths are removed first. */
+    private final Map<String, CachedResponse> cachedResponses;
+
+    public GatewayClient(RestTemplate restTemplate,
+                         @Value("${gateway.conditional-cache.max-entries:1000}") int maxCachedResponses) {
         this.restTemplate = restTemplate;
+        this.cachedResponses = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxCachedResponses;
+            }
+        });
     }
 
     /**
@@ -57,6 +77,126 @@ public class GatewayClient {
         }
     }
 
+    /**
+     * Performs GET requests to the gateway for a paged list, following the header which gives the next page
+     * until the last page, or until maxElements elements are read.
+     * @param request The HTTP request object containing authentication headers
+     * @param path the path of the first page, the next pages are read with pageParam set to the value of the header
+     * @param responseType the expected response type, an array
+     * @param pageParam the query parameter of the next pages (ex: page)
+     * @param nextPageHeader the response header giving the next page (ex: X-Next-Page), absent on the last page
+     * @param maxElements the maximum number of elements read
+     * @param <T> the type of the elements
+     * @return the elements read, and if some were left because of maxElements
+     * @throws RestClientException if a GET request fails
+     */
+    public <T> Pages<T> getPages(HttpServletRequest request, String path, Class<T[]> responseType,
+                                 String pageParam, String nextPageHeader, int maxElements) {
+        HttpEntity<Void> entity = new HttpEntity<>(buildHeaders(request));
+        List<T> elements = new ArrayList<>();
+        String next = null;
+        do {
+            String url = gatewayUrl + (next == null ? path
+                    : UriComponentsBuilder.fromUriString(path).replaceQueryParam(pageParam, next).build().toUriString());
+            try {
+                log.debug("GET {}", url);
+                ResponseEntity<T[]> response = restTemplate.exchange(url, HttpMethod.GET, entity, responseType);
+                if (response.getBody() != null) {
+                    elements.addAll(Arrays.asList(response.getBody()));
+                }
+                next = response.getHeaders().getFirst(nextPageHeader);
+            } catch (RestClientException e) {
+                log.error("Error calling gateway GET {}", url, e);
+                throw e;
+            }
+        } while (next != null && elements.size() < maxElements);
+
+        boolean truncated = next != null || elements.size() > maxElements;
+        return new Pages<>(truncated ? List.copyOf(elements.subList(0, Math.min(maxElements, elements.size()))) : elements, truncated);
+    }
+
+    /**
+     * Elements of a paged list read with getPages().
+     * @param elements the elements, in the order of the pages.
+     * @param truncated true if more elements were left unread.
+     */
+    public record Pages<T>(List<T> elements, boolean truncated) {
+    }
+
+    /**
+     * Performs conditional GET requests to the gateway for a paged resource with an ETag (ex: the notes of a patient),
+     * following the header which gives the cursor of the next page until the last page.
+     * The last elements of the path are kept with their ETag, and sent back as If-None-Match with the first page:
+     * if the resource did not change, the gateway answers 304 NOT MODIFIED and the kept elements are returned without being downloaded.
+     * The elements are only kept if all the pages have the same ETag, so a change between two pages is not kept.
+     * The request is always sent, so the access to the resource is checked each time.
+     * @param request The HTTP request object containing authentication headers
+     * @param path the path of the first page, the next pages are read with cursorParam set to the value of the header
+     * @param responseType the expected response type, an array
+     * @param cursorParam the query parameter of the next pages (ex: cursor)
+     * @param nextCursorHeader the response header giving the cursor of the next page (ex: X-Next-Cursor), absent on the last page
+     * @param <T> the type of the elements
+     * @return the elements of all the pages, or the kept ones if not modified. They are shared, they must not be modified.
+     * @throws RestClientException if a GET request fails
+     */
+    public <T> List<T> getAllIfModified(HttpServletRequest request, String path, Class<T[]> responseType,
+                                        String cursorParam, String nextCursorHeader) {
+        HttpHeaders headers = buildHeaders(request);
+        CachedResponse cached = cachedResponses.get(path);
+        if (cached != null) {
+            headers.setIfNoneMatch(cached.eTag());
+        }
+
+        List<T> elements = new ArrayList<>();
+        String eTag = null;
+        boolean sameETag = true;
+        String next = null;
+        do {
+            String url = gatewayUrl + (next == null ? path
+                    : UriComponentsBuilder.fromUriString(path).replaceQueryParam(cursorParam, next).build().toUriString());
+            try {
+                log.debug("GET {} If-None-Match {}", url, headers.getIfNoneMatch());
+
+                ResponseEntity<T[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<Void>(headers), responseType);
+
+                if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && cached != null) {
+                    @SuppressWarnings("unchecked")
+                    List<T> kept = (List<T>) cached.elements();
+                    return kept;
+                }
+                if (next == null) {
+                    eTag = response.getHeaders().getETag();
+                    // The next pages are not conditional, the first one was modified.
+                    headers.remove(HttpHeaders.IF_NONE_MATCH);
+                } else {
+                    sameETag &= Objects.equals(eTag, response.getHeaders().getETag());
+                }
+                if (response.getBody() != null) {
+                    elements.addAll(Arrays.asList(response.getBody()));
+                }
+                next = response.getHeaders().getFirst(nextCursorHeader);
+            } catch (RestClientException e) {
+                log.error("Error calling gateway GET {}", url, e);
+                throw e;
+            }
+        } while (next != null);
+
+        if (eTag != null && sameETag) {
+            cachedResponses.put(path, new CachedResponse(eTag, List.copyOf(elements)));
+        } else {
+            cachedResponses.remove(path);
+        }
+        return elements;
+    }
+
+    /**
+     * Elements of a path kept by getAllIfModified().
+     * @param eTag the ETag of the elements.
+     * @param elements the elements of all the pages.
+     */
+    private record CachedResponse(String eTag, List<?> elements) {
+    }
+
     /**
      * Performs a POST request to the gateway with a request body, forwarding any cookies.
      * @param request the incoming HTTP request containing authentication headers
@@ -8,6 +8,7 @@ import com.medilabo.front_service.dto.PatientDTO;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -16,7 +17,6 @@ import org.springframework.web.client.RestClientException;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.time.LocalDate;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +26,15 @@ public class PatientController {
     private final GatewayClient gatewayClient;
     private static final Logger log = LoggerFactory.getLogger(PatientController.class);
 
+    /** Patients asked per page to the patient-service, the search follows the pages up to patients.search.max-results. */
+    private static final int SEARCH_PAGE_SIZE = 100;
+
+    /** Notes asked per page to the note-service, the largest page it accepts (notes.page.max-size). */
+    private static final int NOTES_PAGE_SIZE = 500;
+
+    @Value("${patients.search.max-results:500}")
+    private int searchMaxResults = 500;
+
     public PatientController(GatewayClient gatewayClient) {
         this.gatewayClient = gatewayClient;
     }
@@ -33,6 +42,8 @@ public class PatientController {
     /**
      * Display the list of patients which can be filtered on given optional criteria.
      * Adds the resulting list of patients to the model for display in the "patients" view.
+     * The names are partial matches (match=CONTAINS), and the pages of the patient-service are followed
+     * up to patients.search.max-results patients, with a message if there are more.
      * @param name a String representing the name of the given patient
      * @param firstName a String representing the first name of the given patient
      * @param birthDate a LocalDate object representing the date of birth of the given patient
@@ -57,19 +68,25 @@ public class PatientController {
                 .queryParamIfPresent("firstName", Optional.ofNullable(firstName))
                 .queryParamIfPresent("birthDate", Optional.ofNullable(birthDate))
                 .queryParamIfPresent("gender", Optional.ofNullable(gender))
+                .queryParam("match", "CONTAINS")
+                .queryParam("size", SEARCH_PAGE_SIZE)
                 .toUriString();
 
-        PatientDTO[] response = new PatientDTO[0];
+        List<PatientDTO> patients = List.of();
 
         try {
-            response = gatewayClient.get(request, path, PatientDTO[].class);
+            GatewayClient.Pages<PatientDTO> pages = gatewayClient.getPages(request, path, PatientDTO[].class,
+                    "page", "X-Next-Page", searchMaxResults);
+            patients = pages.elements();
+            if (pages.truncated()) {
+                log.info("More than {} patients found, only the first ones are displayed.", searchMaxResults);
+                model.addAttribute("morePatients", true);
+            }
         } catch (RestClientException e) {
             log.error("Error fetching the patients", e);
             model.addAttribute("errorMessage", "Impossible de récupérer les patients pour le moment.");
         }
 
-        List<PatientDTO> patients = Arrays.asList(response);
-
         if (patients.isEmpty()) {
             log.warn("No patients matching given criteria.");
         } else {
@@ -159,7 +176,10 @@ public class PatientController {
 
         List<NoteDTO> notes = List.of();
         try {
-            notes = Arrays.asList(gatewayClient.get(request, "/notes/" + id, NoteDTO[].class));
+            // The note-service gives the version of the notes as ETag, unchanged notes are not downloaded again.
+            // All the pages are read, NOTES_PAGE_SIZE notes at a time.
+            notes = gatewayClient.getAllIfModified(request, "/notes/" + id + "?size=" + NOTES_PAGE_SIZE, NoteDTO[].class,
+                    "cursor", "X-Next-Cursor");
         } catch (RestClientException e) {
             log.error("Error fetching notes for patient id={}", id, e);
             model.addAttribute("notesError", "Impossible de récupérer les notes du patient.");
@@ -0,0 +1,98 @@
+package com.medilabo.front_service.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseActions;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.headerDoesNotExist;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class GatewayClientTest {
+
+    private static final String GATEWAY_URL = "http://gateway";
+
+    private MockRestServiceServer server;
+    private GatewayClient gatewayClient;
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        // Two paths kept at most.
+        gatewayClient = new GatewayClient(restTemplate, 2);
+        ReflectionTestUtils.setField(gatewayClient, "gatewayUrl", GATEWAY_URL);
+    }
+
+    private List<String> getAll(String path) {
+        return gatewayClient.getAllIfModified(request, path, String[].class, "cursor", "X-Next-Cursor");
+    }
+
+    private void expectModified(String path, String eTag) {
+        expect(path).andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withSuccess("[\"" + path + "\"]", MediaType.APPLICATION_JSON).header(HttpHeaders.ETAG, eTag));
+    }
+
+    private void expectNotModified(String path, String eTag) {
+        expect(path).andExpect(header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED).header(HttpHeaders.ETAG, eTag));
+    }
+
+    private ResponseActions expect(String path) {
+        return server.expect(requestTo(GATEWAY_URL + path));
+    }
+
+    // =========================
+    // Conditional reads
+    // =========================
+
+    @Test
+    void getAllIfModified_shouldReturnTheKeptElements_whenNotModified() {
+        expectModified("/notes/1", "\"1\"");
+        expectNotModified("/notes/1", "\"1\"");
+
+        List<String> first = getAll("/notes/1");
+        List<String> second = getAll("/notes/1");
+
+        assertEquals(List.of("/notes/1"), second);
+        assertSame(first.get(0), second.get(0));
+        server.verify();
+    }
+
+    // =========================
+    // Least recently used paths
+    // =========================
+
+    @Test
+    void getAllIfModified_shouldForgetTheLeastRecentlyUsedPath_whenMoreThanMaxEntriesAreKept() {
+        expectModified("/notes/1", "\"1\"");
+        expectModified("/notes/2", "\"1\"");
+        // Read again, /notes/1 becomes the most recently used: /notes/2 is removed when /notes/3 is kept.
+        expectNotModified("/notes/1", "\"1\"");
+        expectModified("/notes/3", "\"1\"");
+        expectModified("/notes/2", "\"1\"");
+        // Keeping /notes/2 again removed /notes/1, the least recently used of /notes/1 and /notes/3.
+        expectNotModified("/notes/3", "\"1\"");
+
+        getAll("/notes/1");
+        getAll("/notes/2");
+        getAll("/notes/1");
+        getAll("/notes/3");
+        assertEquals(List.of("/notes/2"), getAll("/notes/2"));
+        assertEquals(List.of("/notes/3"), getAll("/notes/3"));
+        server.verify();
+    }
+}
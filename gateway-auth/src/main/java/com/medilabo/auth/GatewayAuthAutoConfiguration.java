@@ -0,0 +1,22 @@
+package com.medilabo.auth;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Declares the GatewayTokenService in each application using this library, outside of its component scan.
+ * The application adds the GatewayTokenFilter to its security filter chain.
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(GatewayAuthProperties.class)
+public class GatewayAuthAutoConfiguration {
+
+    @Bean
+    public GatewayTokenService gatewayTokenService(GatewayAuthProperties properties,
+                                                   @Value("${gateway.username}") String gatewayUsername,
+                                                   @Value("${gateway.password}") String gatewayPassword) {
+        return new GatewayTokenService(properties, gatewayUsername, gatewayPassword);
+    }
+}
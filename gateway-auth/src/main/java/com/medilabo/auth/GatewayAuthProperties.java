@@ -0,0 +1,63 @@
+package com.medilabo.auth;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the internal authentication between the gateway and the services (prefix "gateway.auth").
+ * - mode: what is sent with an internal request, by the gateway to the services or by a service to the gateway,
+ *   BASIC (gateway.username/password) or HMAC (a signed token),
+ * - keys: the HMAC keys by id, shared by all the services. A token signed with any of them is accepted.
+ *   They are secrets: never written in the properties files, but read from the environment with no default
+ *   (gateway.auth.keys.k1=${GATEWAY_AUTH_KEY_K1}), the service does not start if one is missing,
+ * - activeKey: the id of the key used to sign the tokens,
+ * - tokenTtl: validity of a token, a new one is signed when half of it is elapsed.
+ * To rotate the key: add the new key to every service, then make it the active key, then remove the old one.
+ */
+@ConfigurationProperties(prefix = "gateway.auth")
+public class GatewayAuthProperties {
+
+    public enum Mode {
+        BASIC, HMAC
+    }
+
+    private Mode mode = Mode.BASIC;
+    private String activeKey;
+    private Map<String, String> keys = new HashMap<>();
+    private Duration tokenTtl = Duration.ofSeconds(60);
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public String getActiveKey() {
+        return activeKey;
+    }
+
+    public void setActiveKey(String activeKey) {
+        this.activeKey = activeKey;
+    }
+
+    public Map<String, String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(Map<String, String> keys) {
+        this.keys = keys;
+    }
+
+    public Duration getTokenTtl() {
+        return tokenTtl;
+    }
+
+    public void setTokenTtl(Duration tokenTtl) {
+        this.tokenTtl = tokenTtl;
+    }
+}
@@ -0,0 +1,41 @@
+package com.medilabo.auth;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates the requests carrying a valid gateway token with the role GATEWAY.
+ * Other requests go on to the HTTP Basic authentication, an invalid token is simply not authenticated.
+ */
+public class GatewayTokenFilter extends OncePerRequestFilter {
+
+    private final GatewayTokenService tokenService;
+
+    public GatewayTokenFilter(GatewayTokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith(GatewayTokenService.SCHEME)
+                && tokenService.verify(authorization.substring(GatewayTokenService.SCHEME.length()))) {
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                    tokenService.getGatewayUsername(), null, AuthorityUtils.createAuthorityList("ROLE_GATEWAY")));
+            SecurityContextHolder.setContext(context);
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,161 @@
+package com.medilabo.auth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GatewayTokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T10:00:00Z");
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // =========================
+    // Helpers
+    // =========================
+
+    private static GatewayAuthProperties hmacProperties(String activeKey, Map<String, String> keys) {
+        GatewayAuthProperties properties = new GatewayAuthProperties();
+        properties.setMode(GatewayAuthProperties.Mode.HMAC);
+        properties.setActiveKey(activeKey);
+        properties.setKeys(keys);
+        properties.setTokenTtl(Duration.ofSeconds(60));
+        return properties;
+    }
+
+    private static GatewayTokenService tokenService(GatewayAuthProperties properties, Instant now) {
+        return new GatewayTokenService(properties, "gateway", "gateway-secret", Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static String tokenOf(GatewayTokenService tokenService) {
+        return tokenService.authorizationHeader().substring(GatewayTokenService.SCHEME.length());
+    }
+
+    // =========================
+    // Sign and verify
+    // =========================
+
+    @Test
+    void shouldVerifyItsOwnToken() {
+        GatewayTokenService tokenService = tokenService(hmacProperties("k1", Map.of("k1", "secret-1")), NOW);
+
+        assertTrue(tokenService.authorizationHeader().startsWith("Gateway k1."));
+        assertTrue(tokenService.verify(tokenOf(tokenService)));
+    }
+
+    @Test
+    void shouldKeepTheTokenUntilHalfOfItsValidity() {
+        GatewayAuthProperties properties = hmacProperties("k1", Map.of("k1", "secret-1"));
+        String token = tokenOf(tokenService(properties, NOW));
+
+        assertEquals(token, tokenOf(tokenService(properties, NOW)));
+        assertNotEquals(token, tokenOf(tokenService(properties, NOW.plusSeconds(31))));
+    }
+
+    @Test
+    void shouldRejectExpiredToken() {
+        GatewayAuthProperties properties = hmacProperties("k1", Map.of("k1", "secret-1"));
+        String token = tokenOf(tokenService(properties, NOW));
+
+        assertTrue(tokenService(properties, NOW.plusSeconds(59)).verify(token));
+        assertFalse(tokenService(properties, NOW.plusSeconds(61)).verify(token));
+    }
+
+    @Test
+    void shouldRejectTamperedOrMalformedToken() {
+        GatewayTokenService tokenService = tokenService(hmacProperties("k1", Map.of("k1", "secret-1")), NOW);
+        String token = tokenOf(tokenService);
+        String[] parts = token.split("\\.");
+        String longerExpiry = parts[0] + "." + (Long.parseLong(parts[1]) + 3600) + "." + parts[2];
+
+        assertFalse(tokenService.verify(longerExpiry));
+        assertFalse(tokenService.verify("k1.abc." + parts[2]));
+        assertFalse(tokenService.verify("k1"));
+        assertFalse(tokenService.verify(parts[0] + "." + parts[1] + ".%%%"));
+    }
+
+    @Test
+    void shouldRejectTokenSignedWithAnotherKey() {
+        String token = tokenOf(tokenService(hmacProperties("k1", Map.of("k1", "secret-1")), NOW));
+
+        assertFalse(tokenService(hmacProperties("k1", Map.of("k1", "other-secret")), NOW).verify(token));
+        assertFalse(tokenService(hmacProperties("k2", Map.of("k2", "secret-1")), NOW).verify(token));
+    }
+
+    @Test
+    void shouldAcceptTokensOfAllTheKeys_duringARotation() {
+        String oldToken = tokenOf(tokenService(hmacProperties("k1", Map.of("k1", "secret-1")), NOW));
+        GatewayTokenService rotated = tokenService(hmacProperties("k2", Map.of("k1", "secret-1", "k2", "secret-2")), NOW);
+
+        assertTrue(rotated.verify(oldToken));
+        assertTrue(rotated.authorizationHeader().startsWith("Gateway k2."));
+    }
+
+    @Test
+    void shouldFailToStart_whenTheActiveKeyIsUnknown() {
+        GatewayAuthProperties properties = hmacProperties("k3", Map.of("k1", "secret-1"));
+
+        assertThrows(IllegalStateException.class, () -> tokenService(properties, NOW));
+    }
+
+    @Test
+    void shouldFailToStart_whenAKeyIsNotSet() {
+        GatewayAuthProperties unresolved = hmacProperties("k1", Map.of("k1", "${GATEWAY_AUTH_KEY_K1}"));
+        GatewayAuthProperties blank = hmacProperties("k1", Map.of("k1", " "));
+
+        assertThrows(IllegalStateException.class, () -> tokenService(unresolved, NOW));
+        assertThrows(IllegalStateException.class, () -> tokenService(blank, NOW));
+    }
+
+    @Test
+    void shouldSendBasicCredentials_inBasicMode() {
+        GatewayTokenService tokenService = tokenService(new GatewayAuthProperties(), NOW);
+
+        assertEquals("Basic Z2F0ZXdheTpnYXRld2F5LXNlY3JldA==", tokenService.authorizationHeader());
+    }
+
+    // =========================
+    // Filter
+    // =========================
+
+    @Test
+    void shouldAuthenticateWithRoleGateway_whenTheTokenIsValid() throws Exception {
+        GatewayTokenService tokenService = tokenService(hmacProperties("k1", Map.of("k1", "secret-1")), NOW);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, tokenService.authorizationHeader());
+
+        new GatewayTokenFilter(tokenService).doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertEquals("gateway", authentication.getName());
+        assertEquals("ROLE_GATEWAY", authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).findFirst().orElseThrow());
+    }
+
+    @Test
+    void shouldNotAuthenticate_whenTheTokenIsInvalid() throws Exception {
+        GatewayTokenService tokenService = tokenService(hmacProperties("k1", Map.of("k1", "secret-1")), NOW);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Gateway k1.9999999999.forged");
+
+        new GatewayTokenFilter(tokenService).doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+}
@@ -1,5 +1,7 @@
 package com.medilabo.gateway.config;
 
+import com.medilabo.auth.GatewayAuthProperties;
+import com.medilabo.auth.GatewayTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,8 +11,6 @@ import org.springframework.web.servlet.function.RouterFunction;
 import org.springframework.web.servlet.function.ServerRequest;
 import org.springframework.web.servlet.function.ServerResponse;
 
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
 import java.util.function.Function;
 
 import static org.springframework.cloud.gateway.server.mvc.filter.BeforeFilterFunctions.uri;
@@ -20,7 +20,7 @@ import static org.springframework.cloud.gateway.server.mvc.predicate.GatewayRequ
 
 /**
  * Configuration class to route the request to the matching microservices.
- * Automatically injects a basic internal auth if not present.
+ * Automatically injects the internal auth: a gateway token in HMAC mode, a basic auth if not present in BASIC mode.
  */
 @Configuration
 public class GatewayRoutesConfig {
@@ -35,6 +35,14 @@ public class GatewayRoutesConfig {
     @Value("${gateway.services.assessment.url}")
     private String assessmentServiceUrl;
 
+    private final GatewayTokenService gatewayTokenService;
+    private final GatewayAuthProperties gatewayAuthProperties;
+
+    public GatewayRoutesConfig(GatewayTokenService gatewayTokenService, GatewayAuthProperties gatewayAuthProperties) {
+        this.gatewayTokenService = gatewayTokenService;
+        this.gatewayAuthProperties = gatewayAuthProperties;
+    }
+
     @Bean
     public RouterFunction<ServerResponse> diabetesDetectorRoutes() {
         log.debug("Initializing Gateway routes configuration");
@@ -61,25 +69,25 @@ public class GatewayRoutesConfig {
     }
 
     /**
-     * Add the Basic internal authentication if no Authorization headers is present.
+     * Add the internal authentication.
+     * In HMAC mode, the Authorization header is always replaced by a gateway token: the request is already authenticated by the gateway,
+     * and the services check the token without BCrypt.
+     * In BASIC mode, the Basic internal authentication is added if no Authorization headers is present.
      * @return the request with the Authorization headers added (if needed).
      */
-    private static Function<ServerRequest, ServerRequest> addGatewayAuth() {
+    private Function<ServerRequest, ServerRequest> addGatewayAuth() {
         return request -> {
-            if (!request.headers().header("Authorization").isEmpty()) {
+            if (gatewayAuthProperties.getMode() == GatewayAuthProperties.Mode.BASIC
+                    && !request.headers().header("Authorization").isEmpty()) {
                 log.debug("Authorization header already present for request {}", request.path());
                 return request;
             }
 
             log.debug("Injecting internal Gateway authentication for request {}", request.path());
 
-            String auth = "gateway:gateway-secret";
-            String encodedAuth = Base64.getEncoder()
-                    .encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-
             return ServerRequest.from(request)
-                    .header("Authorization", "Basic " + encodedAuth)
+                    .headers(headers -> headers.set("Authorization", gatewayTokenService.authorizationHeader()))
                     .build();
         };
     }
-}
\ No newline at end of file
+}
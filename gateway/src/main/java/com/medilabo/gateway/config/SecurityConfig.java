@@ -1,5 +1,7 @@
 package com.medilabo.gateway.config;
 
+import com.medilabo.auth.GatewayTokenFilter;
+import com.medilabo.auth.GatewayTokenService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,12 +15,15 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 /**
  * Security Configuration for the gateway.
  * Handle the authentication with two ways
  * - A form login for the human user (doctor) to access the gateway;
  * - A HTTP Basic for internal communication, using a system user (gatewayUser), so the ressources can only be access by the gateway.
+ * The services calling the gateway can also send a gateway token (see GatewayTokenService), which is checked without BCrypt.
+ * The admin endpoints of the services are only open to the role "GATEWAY".
  */
 @Configuration
 @EnableWebSecurity
@@ -39,17 +44,20 @@ public class SecurityConfig {
     private String gatewayPassword;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, GatewayTokenService gatewayTokenService) throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/login", "/css/**").permitAll()
+                        // The trigger dictionaries are administrated by the internal user, not by the doctors.
+                        .requestMatchers("/notes/admin/**", "/assessment/admin/**").hasRole("GATEWAY")
                         .anyRequest().authenticated()
                 )
                 .formLogin(form -> form
                         .defaultSuccessUrl(frontServiceUrl + "/patients/search", true)
                         .permitAll()
                 )
+                .addFilterBefore(new GatewayTokenFilter(gatewayTokenService), BasicAuthenticationFilter.class)
                 .httpBasic(httpBasic -> {})
                 .logout(logout -> logout
                         .logoutUrl("/logout")
@@ -2,12 +2,14 @@ package com.medilabo.note_service.config;
 
 import com.medilabo.note_service.model.Note;
 import com.medilabo.note_service.repository.NoteRepository;
+import com.medilabo.note_service.repository.NoteVersionRepository;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Initializes tests' dataset.
@@ -17,11 +19,13 @@ import java.util.List;
 public class DataInitializer {
 
     @Bean
-    CommandLineRunner initNotes(NoteRepository noteRepository) {
+    CommandLineRunner initNotes(NoteRepository noteRepository, NoteVersionRepository noteVersionRepository) {
         return args -> {
 
             if (noteRepository.count() > 0) {
                 noteRepository.deleteAll();
+                // The notes of every patient were deleted, not only the ones of the seed patients.
+                noteVersionRepository.incrementAllExisting();
             }
 
             List<Note> notes = List.of(
@@ -64,6 +68,8 @@ public class DataInitializer {
             );
 
             noteRepository.saveAll(notes);
+            // The seed patients may have no version yet, they get one with their notes.
+            noteVersionRepository.incrementAll(notes.stream().map(Note::getPatientId).collect(Collectors.toSet()));
         };
     }
 }
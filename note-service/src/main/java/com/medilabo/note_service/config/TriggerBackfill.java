@@ -0,0 +1,70 @@
+package com.medilabo.note_service.config;
+
+import com.medilabo.note_service.repository.LeaseRepository;
+import com.medilabo.note_service.service.NoteService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Computes the trigger hits of the notes written before a change of the trigger dictionary,
+ * or before the hits existed, once the application is started (after the DataInitializer).
+ * The backfill is also started after each change of the dictionary, in the background.
+ * Until then, the outdated notes are matched on the fly when their patient's triggers are requested.
+ * Two runs with different dictionaries would rewrite the same notes again and again, so the runs of this instance
+ * wait for each other, and only the instance holding the "trigger-backfill" lease in MongoDB runs one.
+ */
+@Component
+public class TriggerBackfill {
+    private static final Logger log = LoggerFactory.getLogger(TriggerBackfill.class);
+
+    static final String LEASE_NAME = "trigger-backfill";
+
+    private final NoteService noteService;
+    private final LeaseRepository leaseRepository;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final String owner = UUID.randomUUID().toString();
+
+    @Value("${notes.triggers.backfill.lease-duration:5m}")
+    private Duration leaseDuration = Duration.ofMinutes(5);
+
+    public TriggerBackfill(NoteService noteService, LeaseRepository leaseRepository) {
+        this.noteService = noteService;
+        this.leaseRepository = leaseRepository;
+    }
+
+    /**
+     * Starts the backfill in the background, after a change of the trigger dictionary.
+     */
+    public void backfillTriggersInBackground() {
+        Thread.ofVirtual().name("trigger-backfill").start(this::backfillTriggers);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillTriggers() {
+        lock.lock();
+        try {
+            if (!leaseRepository.acquire(LEASE_NAME, owner, leaseDuration)) {
+                log.info("Trigger hits backfill already running on another instance, skipped");
+                return;
+            }
+            try {
+                // The lease is renewed before each batch, the backfill stops if another instance took it.
+                noteService.backfillTriggers(() -> leaseRepository.acquire(LEASE_NAME, owner, leaseDuration));
+            } finally {
+                leaseRepository.release(LEASE_NAME, owner);
+            }
+        } catch (RuntimeException e) {
+            log.error("Trigger hits backfill failed, the outdated notes will be matched on demand", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
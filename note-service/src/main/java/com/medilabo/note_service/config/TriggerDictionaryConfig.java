@@ -0,0 +1,21 @@
+package com.medilabo.note_service.config;
+
+import com.medilabo.analysis.TriggerDictionary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+/**
+ * Trigger dictionary of the service, loaded from notes.triggers.location.
+ * The default file is the one of the trigger-analysis library, the same for the note-service and the assessment-service.
+ */
+@Configuration
+public class TriggerDictionaryConfig {
+
+    @Bean
+    public TriggerDictionary triggerDictionary(ResourceLoader resourceLoader,
+                                               @Value("${notes.triggers.location:classpath:trigger-words.txt}") String location) {
+        return new TriggerDictionary(resourceLoader, location);
+    }
+}
@@ -0,0 +1,62 @@
+package com.medilabo.note_service.controller;
+
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.analysis.TriggerMatcher;
+import com.medilabo.note_service.config.TriggerBackfill;
+import com.medilabo.note_service.dto.TriggerDictionaryDTO;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Administration of the trigger dictionary, applied without restarting the service.
+ * After each change, the trigger words stored on the notes are computed again in the background.
+ */
+@RestController
+@RequestMapping("/notes/admin")
+public class AdminController {
+
+    private final TriggerDictionary triggerDictionary;
+    private final TriggerBackfill triggerBackfill;
+
+    public AdminController(TriggerDictionary triggerDictionary, TriggerBackfill triggerBackfill) {
+        this.triggerDictionary = triggerDictionary;
+        this.triggerBackfill = triggerBackfill;
+    }
+
+    /**
+     * Retrieves the current trigger dictionary.
+     * @return the version and the normalized triggers of the dictionary.
+     */
+    @GetMapping("/triggers")
+    public TriggerDictionaryDTO getTriggerDictionary() {
+        return toDTO(triggerDictionary.getMatcher());
+    }
+
+    /**
+     * Reloads the trigger dictionary from notes.triggers.location.
+     * @return the new dictionary.
+     */
+    @PostMapping("/triggers/reload")
+    public TriggerDictionaryDTO reloadTriggerDictionary() {
+        TriggerMatcher matcher = triggerDictionary.reload();
+        triggerBackfill.backfillTriggersInBackground();
+        return toDTO(matcher);
+    }
+
+    /**
+     * Replaces the trigger dictionary of this instance, until the next reload or restart.
+     * @param triggers the new trigger words.
+     * @return the new dictionary.
+     */
+    @PutMapping("/triggers")
+    public TriggerDictionaryDTO updateTriggerDictionary(@RequestBody List<String> triggers) {
+        TriggerMatcher matcher = triggerDictionary.update(triggers);
+        triggerBackfill.backfillTriggersInBackground();
+        return toDTO(matcher);
+    }
+
+    private static TriggerDictionaryDTO toDTO(TriggerMatcher matcher) {
+        return new TriggerDictionaryDTO(matcher.getVersion(), matcher.getTriggers());
+    }
+}
@@ -1,30 +1,173 @@
 package com.medilabo.note_service.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medilabo.note_service.dto.BulkImportResultDTO;
+import com.medilabo.note_service.dto.CursorPage;
 import com.medilabo.note_service.dto.NoteCreateDTO;
+import com.medilabo.note_service.dto.PatientNotesDTO;
+import com.medilabo.note_service.dto.PatientTriggersDTO;
 import com.medilabo.note_service.model.Note;
+import com.medilabo.note_service.service.NoteImportService;
 import com.medilabo.note_service.service.NoteService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ETag;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/notes")
 public class NoteController {
+    private static final Logger log = LoggerFactory.getLogger(NoteController.class);
+
+    /** Header giving the cursor of the next page, absent on the last page. */
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     private final NoteService noteService;
+    private final NoteImportService noteImportService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${notes.page.max-size:500}")
+    private int maxPageSize = 500;
 
-    public NoteController(NoteService noteService) {
+    public NoteController(NoteService noteService, NoteImportService noteImportService, ObjectMapper objectMapper) {
         this.noteService = noteService;
+        this.noteImportService = noteImportService;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Retrieves all notes associated to a specific patient identifier.
+     * Retrieves a page of the notes associated to a specific patient identifier, the most recent first.
+     * The body stays a list of notes, the header X-Next-Cursor gives the cursor of the next page if there is one.
+     * The ETag is the version of the notes of the patient, weak since it is the same for all the pages and fields of this patient.
+     * With an If-None-Match holding it, the answer is a 304 NOT MODIFIED without reading any note.
+     * The size, the cursor and the fields are checked first: an invalid request is a 400, even with a current If-None-Match.
      * @param patientId Integer representing the patient's identifier.
-     * @return a List of all notes for this identifier. It can be empty.
+     * @param cursor the X-Next-Cursor of the previous page, absent for the first page.
+     * @param size the number of notes per page, at most notes.page.max-size.
+     * @param fields the fields to return (ex: fields=noteText), absent for the whole notes. The id and the date are always returned.
+     * @param request the request, whose If-None-Match is compared to the version.
+     * @return a List of notes for this identifier. It can be empty. Null when the notes are not modified.
+     * @throws IllegalArgumentException if the size is out of bounds, the cursor or a field is invalid.
      */
     @GetMapping("/{patientId}")
-    public List<Note> getNotesByPatientId(@PathVariable Integer patientId) {
-        return noteService.getNotesByPatientId(patientId);
+    public ResponseEntity<List<Note>> getNotesByPatientId(
+            @PathVariable Integer patientId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${notes.page.default-size:100}") int size,
+            @RequestParam(defaultValue = "") Set<String> fields,
+            WebRequest request) {
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("size must be between 1 and " + maxPageSize);
+        }
+        noteService.checkNotesPage(cursor, fields);
+        // The version is read before the notes: if a note is added meanwhile, the list is newer than its ETag, never older.
+        if (request.checkNotModified(eTag(noteService.getNotesVersion(patientId)))) {
+            return null;
+        }
+        CursorPage<Note> notes = noteService.getNotesByPatientId(patientId, cursor, size, fields);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (notes.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, notes.nextCursor());
+        }
+        return response.body(notes.items());
+    }
+
+    /**
+     * @param version the version of the notes of a patient.
+     * @return its weak ETag (ex: W/"3"): the pages, the fields and the trigger hits of a version are different bodies.
+     */
+    static String eTag(long version) {
+        return "W/" + ETag.quoteETagIfNecessary(String.valueOf(version));
+    }
+
+    /**
+     * Retrieves the notes of several patients with a single query, instead of one request per patient.
+     * The body is a JSON array of {patientId, notes}, one per patient in the order of the ids, written while the notes are read.
+     * @param patientIds the patients' identifiers, comma-separated, at most notes.multi.max-patients. Use the POST variant for long lists.
+     * @param fields the fields to return (ex: fields=noteText), absent for the whole notes.
+     * @param response the response the groups are written to.
+     * @throws IllegalArgumentException if there are no or too many patients, or a field is invalid.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping(params = "patientIds")
+    public void getNotesOfPatients(@RequestParam List<Integer> patientIds,
+                                   @RequestParam(defaultValue = "") Set<String> fields,
+                                   HttpServletResponse response) throws IOException {
+        writeGroups(noteService.getNotesOfPatients(patientIds, fields), response);
+    }
+
+    /**
+     * Same as GET /notes?patientIds=..., with the ids in the body, for the lists too long for a URL.
+     * @param patientIds the patients' identifiers, as a JSON array.
+     * @param fields the fields to return (ex: fields=noteText), absent for the whole notes.
+     * @param response the response the groups are written to.
+     * @throws IllegalArgumentException if there are no or too many patients, or a field is invalid.
+     * @throws IOException if the response cannot be written.
+     */
+    @PostMapping("/by-patients")
+    public void postNotesOfPatients(@RequestBody List<Integer> patientIds,
+                                    @RequestParam(defaultValue = "") Set<String> fields,
+                                    HttpServletResponse response) throws IOException {
+        writeGroups(noteService.getNotesOfPatients(patientIds, fields), response);
+    }
+
+    /**
+     * Writes the groups one by one, so the response is sent while the following notes are read.
+     * The request was checked by the service before it returned the stream, so its errors are answered with a 400 before the response starts.
+     * A failure while reading the notes (ex: MongoDB unreachable) is answered with a 500 if nothing was sent yet.
+     * Otherwise the status 200 is already sent: the array is not closed, and the exception reaches the server,
+     * which aborts the connection without ending the response. A client gets a read error instead of a truncated list.
+     */
+    private void writeGroups(Stream<PatientNotesDTO> groups, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        // Closing the generator or the output stream would end an aborted response as a valid one.
+        JsonGenerator json = objectMapper.createGenerator(response.getOutputStream())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        int written = 0;
+        try (groups) {
+            json.writeStartArray();
+            for (PatientNotesDTO group : (Iterable<PatientNotesDTO>) groups::iterator) {
+                json.writeObject(group);
+                written++;
+            }
+            json.writeEndArray();
+            json.flush();
+        } catch (RuntimeException e) {
+            log.error("Notes of several patients failed after {} patients, committed={}, aborting the response",
+                    written, response.isCommitted(), e);
+            throw new IllegalStateException("Notes of several patients failed while being written", e);
+        }
+    }
+
+    /**
+     * Retrieves the trigger words found in the notes of a patient, so they can be counted without downloading the notes.
+     * The ETag is the version of the notes of the patient, the same as the one of GET /notes/{patientId}:
+     * with an If-None-Match holding it, the answer is a 304 NOT MODIFIED without reading any note.
+     * The ETag only follows the notes, a client keeping the trigger hits of another dictionary compares the dictionary version of the body.
+     * @param patientId Integer representing the patient's identifier.
+     * @param request the request, whose If-None-Match is compared to the version.
+     * @return the dictionary version and the ids of the triggers found. The ids can be empty. Null when the notes are not modified.
+     */
+    @GetMapping("/{patientId}/triggers")
+    public PatientTriggersDTO getPatientTriggers(@PathVariable Integer patientId, WebRequest request) {
+        if (request.checkNotModified(eTag(noteService.getNotesVersion(patientId)))) {
+            return null;
+        }
+        return noteService.getPatientTriggers(patientId);
     }
 
     /**
@@ -36,4 +179,16 @@ public class NoteController {
     public Note addNote(@RequestBody NoteCreateDTO newNote) {
         return noteService.addNote(newNote);
     }
+
+    /**
+     * Imports many notes at once, for the migration of the historical records.
+     * The body is a JSON array or NDJSON (one note per line), read as a stream and written by batches.
+     * @param request the request, whose body is read one note at a time.
+     * @return the number of notes received and inserted, and the index and reason of each note not inserted.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BulkImportResultDTO importNotes(HttpServletRequest request) throws IOException {
+        return noteImportService.importNotes(request.getInputStream());
+    }
 }
@@ -0,0 +1,64 @@
+package com.medilabo.note_service.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Report of a bulk import of notes: how many notes were received and inserted, and why the others were not.
+ * Only the first errors are listed (notes.bulk.max-errors), errorCount gives the total and errorsTruncated tells if some are missing.
+ */
+public class BulkImportResultDTO {
+    private long received;
+    private long inserted;
+    private long errorCount;
+    private boolean errorsTruncated;
+    private List<ItemError> errors = new ArrayList<>();
+
+    /**
+     * A note of the import which was not inserted.
+     * @param index the position of the note in the payload, from 0.
+     * @param message the reason.
+     */
+    public record ItemError(long index, String message) {
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public void setInserted(long inserted) {
+        this.inserted = inserted;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(long errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public void setErrorsTruncated(boolean errorsTruncated) {
+        this.errorsTruncated = errorsTruncated;
+    }
+
+    public List<ItemError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ItemError> errors) {
+        this.errors = errors;
+    }
+}
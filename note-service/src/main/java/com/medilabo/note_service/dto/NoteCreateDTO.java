@@ -1,9 +1,13 @@
 package com.medilabo.note_service.dto;
 
+import java.time.LocalDateTime;
+
 public class NoteCreateDTO {
 
     private Integer patientId;
     private String noteText;
+    /** Date of a historical note, only read by the bulk import. A note created alone is dated when it is saved. */
+    private LocalDateTime date;
 
     public Integer getPatientId() {
         return patientId;
@@ -20,4 +24,12 @@ public class NoteCreateDTO {
     public void setNoteText(String noteText) {
         this.noteText = noteText;
     }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
 }
@@ -0,0 +1,14 @@
+package com.medilabo.note_service.dto;
+
+import com.medilabo.note_service.model.Note;
+
+import java.util.List;
+
+/**
+ * The notes of one patient, in a response giving the notes of several patients.
+ * @param patientId the patient unique identifier.
+ * @param version the version of the notes of the patient, the same as the ETag of GET /notes/{patientId}.
+ * @param notes the notes of the patient, the most recent first. Can be empty.
+ */
+public record PatientNotesDTO(Integer patientId, long version, List<Note> notes) {
+}
@@ -0,0 +1,44 @@
+package com.medilabo.note_service.dto;
+
+import java.util.List;
+
+/**
+ * Union of the trigger words found in all the notes of a patient.
+ */
+public class PatientTriggersDTO {
+    private Integer patientId;
+    private String dictionaryVersion;
+    private List<String> triggerIds;
+
+    public PatientTriggersDTO() {}
+
+    public PatientTriggersDTO(Integer patientId, String dictionaryVersion, List<String> triggerIds) {
+        this.patientId = patientId;
+        this.dictionaryVersion = dictionaryVersion;
+        this.triggerIds = triggerIds;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getDictionaryVersion() {
+        return dictionaryVersion;
+    }
+
+    public void setDictionaryVersion(String dictionaryVersion) {
+        this.dictionaryVersion = dictionaryVersion;
+    }
+
+    public List<String> getTriggerIds() {
+        return triggerIds;
+    }
+
+    public void setTriggerIds(List<String> triggerIds) {
+        this.triggerIds = triggerIds;
+    }
+}
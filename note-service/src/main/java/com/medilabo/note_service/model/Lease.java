@@ -0,0 +1,39 @@
+package com.medilabo.note_service.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Lease on a task which must run on one instance at a time, like the trigger hits backfill.
+ * It is held by its owner until it expires, so a crashed instance does not keep it forever.
+ */
+@Document(collection = "leases")
+public class Lease {
+
+    @Id
+    private String name;
+    private String owner;
+    private Instant expiresAt;
+
+    public Lease() {}
+
+    public Lease(String name, String owner, Instant expiresAt) {
+        this.name = name;
+        this.owner = owner;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
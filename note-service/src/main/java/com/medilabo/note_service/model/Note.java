@@ -1,11 +1,20 @@
 package com.medilabo.note_service.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
+/**
+ * A medical note. The date is always set, it is the sort key of the notes of a patient with the id.
+ * The null fields are not serialized, so a note read with only some fields (projection) only contains them.
+ */
 @Document(collection = "notes")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@CompoundIndex(name = "patient_date_id", def = "{ 'patientId': 1, 'date': -1, '_id': -1 }")
 public class Note {
 
     @Id
@@ -13,6 +22,10 @@ public class Note {
     private Integer patientId;
     private String noteText;
     private LocalDateTime date;
+    /** Normalized trigger words found in the text, computed when the note is written. */
+    private List<String> triggerIds;
+    /** Version of the trigger dictionary used to compute triggerIds. */
+    private String triggerDictionaryVersion;
 
     public Note() {}
 
@@ -27,6 +40,10 @@ public class Note {
         this.date = date;
     }
 
+    public String getId() {
+        return id;
+    }
+
     public Integer getPatientId() {
         return patientId;
     }
@@ -50,4 +67,20 @@ public class Note {
     public void setDate(LocalDateTime date) {
         this.date = date;
     }
+
+    public List<String> getTriggerIds() {
+        return triggerIds;
+    }
+
+    public void setTriggerIds(List<String> triggerIds) {
+        this.triggerIds = triggerIds;
+    }
+
+    public String getTriggerDictionaryVersion() {
+        return triggerDictionaryVersion;
+    }
+
+    public void setTriggerDictionaryVersion(String triggerDictionaryVersion) {
+        this.triggerDictionaryVersion = triggerDictionaryVersion;
+    }
 }
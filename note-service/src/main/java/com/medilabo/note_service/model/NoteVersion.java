@@ -0,0 +1,32 @@
+package com.medilabo.note_service.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Version of the notes of a patient, incremented each time one of his notes is written.
+ * It is the ETag of the notes of the patient, so an unchanged list is answered with a 304 after a lookup on _id,
+ * without reading any note. A patient without this document has the version 0.
+ */
+@Document(collection = "note_versions")
+public class NoteVersion {
+
+    @Id
+    private Integer patientId;
+    private long version;
+
+    public NoteVersion() {}
+
+    public NoteVersion(Integer patientId, long version) {
+        this.patientId = patientId;
+        this.version = version;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,9 @@
+package com.medilabo.note_service.repository;
+
+import com.medilabo.note_service.model.Lease;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LeaseRepository extends MongoRepository<Lease, String>, LeaseRepositoryCustom {
+}
@@ -0,0 +1,26 @@
+package com.medilabo.note_service.repository;
+
+import java.time.Duration;
+
+/**
+ * Atomic acquisition of the Lease documents, written with the MongoTemplate.
+ */
+public interface LeaseRepositoryCustom {
+
+    /**
+     * Takes the lease if it is free, expired or already held by this owner, with one upsert.
+     * Calling it again before the expiration renews the lease.
+     * @param name the name of the lease.
+     * @param owner the unique id of the caller.
+     * @param duration how long the lease is held without being renewed.
+     * @return true if the caller holds the lease, false if another owner does.
+     */
+    boolean acquire(String name, String owner, Duration duration);
+
+    /**
+     * Frees the lease, only if it is still held by this owner.
+     * @param name the name of the lease.
+     * @param owner the unique id of the caller.
+     */
+    void release(String name, String owner);
+}
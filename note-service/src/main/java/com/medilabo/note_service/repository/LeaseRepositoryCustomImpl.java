@@ -0,0 +1,44 @@
+package com.medilabo.note_service.repository;
+
+import com.medilabo.note_service.model.Lease;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Implementation of LeaseRepositoryCustom, found by Spring Data with its name.
+ * A lease held by another owner does not match the query, so the upsert tries to insert a second document
+ * with the same _id and fails with a duplicate key.
+ */
+public class LeaseRepositoryCustomImpl implements LeaseRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public LeaseRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public boolean acquire(String name, String owner, Duration duration) {
+        Instant now = Instant.now();
+        Query query = Query.query(Criteria.where("_id").is(name)
+                .orOperator(Criteria.where("owner").is(owner), Criteria.where("expiresAt").lt(now)));
+        Update update = new Update().set("owner", owner).set("expiresAt", now.plus(duration));
+        try {
+            mongoTemplate.upsert(query, update, Lease.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String name, String owner) {
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(name).and("owner").is(owner)), Lease.class);
+    }
+}
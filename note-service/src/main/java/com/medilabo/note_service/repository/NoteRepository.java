@@ -1,14 +1,17 @@
 package com.medilabo.note_service.repository;
 
 import com.medilabo.note_service.model.Note;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface NoteRepository extends MongoRepository<Note, String> {
+public interface NoteRepository extends MongoRepository<Note, String>, NoteRepositoryCustom {
 
     /**
      * Custom method to find the notes matching a specific patient identifier.
@@ -17,4 +20,29 @@ public interface NoteRepository extends MongoRepository<Note, String> {
      * @return a List of Note, which can be empty.
      */
     List<Note> findNotesByPatientId(Integer patientId, Sort sort);
+
+    /**
+     * Reads only the fields needed to know the trigger words of a patient: the stored hits and their version.
+     * The text is not read, see findTextsByIdIn for the notes whose hits are outdated.
+     * @param patientId Integer of the patient
+     * @return a List of Note with only their id, triggerIds and triggerDictionaryVersion, which can be empty.
+     */
+    @Query(value = "{ 'patientId': ?0 }", fields = "{ 'triggerIds': 1, 'triggerDictionaryVersion': 1 }")
+    List<Note> findTriggerFieldsByPatientId(Integer patientId);
+
+    /**
+     * Reads only the text of some notes, to match them again.
+     * @param ids the ids of the notes.
+     * @return a List of Note with only their id and noteText.
+     */
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'noteText': 1 }")
+    List<Note> findTextsByIdIn(Collection<String> ids);
+
+    /**
+     * Finds the notes whose trigger hits were not computed with a given dictionary version, including the notes without hits.
+     * @param triggerDictionaryVersion the current version of the trigger dictionary.
+     * @param pageable the size of the page to load.
+     * @return a List of Note, empty when all the notes are up to date.
+     */
+    List<Note> findByTriggerDictionaryVersionNot(String triggerDictionaryVersion, Pageable pageable);
 }
@@ -0,0 +1,45 @@
+package com.medilabo.note_service.repository;
+
+import com.medilabo.note_service.model.Note;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Operations of the NoteRepository written with the MongoTemplate: queries whose fields depend on the caller, and bulk writes.
+ */
+public interface NoteRepositoryCustom {
+
+    /**
+     * Page of the notes of a patient, the most recent first, read from the index (patientId, date, _id).
+     * When a cursor is given, the query starts from its position in the index, so a deep page costs the same as the first one.
+     * @param patientId Integer of the patient
+     * @param afterDate the date of the last note of the previous page, null for the first page.
+     * @param afterId the id of the last note of the previous page, null for the first page.
+     * @param limit the maximum number of notes.
+     * @param fields the fields to read, empty for the whole notes. The id and the date are always read, they are the cursor.
+     * @return a List of Note, which can be empty. The fields not read are null.
+     */
+    List<Note> findNotesPage(Integer patientId, LocalDateTime afterDate, ObjectId afterId, int limit, Collection<String> fields);
+
+    /**
+     * Notes of several patients with one $in query on the index (patientId, date, _id),
+     * sorted by patient id, then the most recent first, which is the order of the index.
+     * The notes are read from a cursor while the stream is consumed, the stream must be closed.
+     * @param patientIds the patients.
+     * @param fields the fields to read, empty for the whole notes. The id, the patient id and the date are always read.
+     * @return a Stream of Note, which can be empty. The fields not read are null.
+     */
+    Stream<Note> streamNotesOfPatients(Collection<Integer> patientIds, Collection<String> fields);
+
+    /**
+     * Inserts notes with one unordered bulk write: a note rejected by MongoDB does not prevent the others from being inserted.
+     * @param notes the notes to insert.
+     * @return the reason of each note not inserted, by its index in the list. Empty when all the notes are inserted.
+     */
+    Map<Integer, String> insertUnordered(List<Note> notes);
+}
@@ -0,0 +1,73 @@
+package com.medilabo.note_service.repository;
+
+import com.medilabo.note_service.model.Note;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of NoteRepositoryCustom, found by Spring Data with its name.
+ */
+public class NoteRepositoryCustomImpl implements NoteRepositoryCustom {
+
+    /** Order of the index patient_date_id, so the notes are read from the index without any sort in memory. */
+    private static final Sort PAGE_ORDER = Sort.by(Sort.Direction.DESC, "date", "id");
+    private static final Sort PATIENTS_ORDER = Sort.by("patientId").and(PAGE_ORDER);
+
+    private final MongoTemplate mongoTemplate;
+
+    public NoteRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<Note> findNotesPage(Integer patientId, LocalDateTime afterDate, ObjectId afterId, int limit, Collection<String> fields) {
+        Criteria criteria = Criteria.where("patientId").is(patientId);
+        if (afterDate != null) {
+            criteria.orOperator(
+                    Criteria.where("date").lt(afterDate),
+                    Criteria.where("date").is(afterDate).and("id").lt(afterId));
+        }
+        Query query = Query.query(criteria).with(PAGE_ORDER).limit(limit);
+        if (!fields.isEmpty()) {
+            // The _id is always included by MongoDB.
+            query.fields().include(fields.toArray(String[]::new)).include("date");
+        }
+        return mongoTemplate.find(query, Note.class);
+    }
+
+    @Override
+    public Stream<Note> streamNotesOfPatients(Collection<Integer> patientIds, Collection<String> fields) {
+        Query query = Query.query(Criteria.where("patientId").in(patientIds)).with(PATIENTS_ORDER);
+        if (!fields.isEmpty()) {
+            query.fields().include(fields.toArray(String[]::new)).include("patientId", "date");
+        }
+        return mongoTemplate.stream(query, Note.class);
+    }
+
+    @Override
+    public Map<Integer, String> insertUnordered(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class).insert(notes).execute();
+            return Map.of();
+        } catch (BulkOperationException e) {
+            Map<Integer, String> errors = new TreeMap<>();
+            e.getErrors().forEach(error -> errors.put(error.getIndex(), error.getMessage()));
+            return errors;
+        }
+    }
+}
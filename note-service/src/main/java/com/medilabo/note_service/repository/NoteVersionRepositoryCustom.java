@@ -0,0 +1,28 @@
+package com.medilabo.note_service.repository;
+
+import java.util.Collection;
+
+/**
+ * Atomic increments of the NoteVersion documents, written with the MongoTemplate.
+ * The document of a patient is created by its first increment (upsert), so there is no version to initialize.
+ */
+public interface NoteVersionRepositoryCustom {
+
+    /**
+     * Increments the version of the notes of a patient with one findAndModify.
+     * @param patientId Integer of the patient
+     * @return the new version, 1 after the first note of the patient.
+     */
+    long increment(Integer patientId);
+
+    /**
+     * Increments the versions of several patients with one unordered bulk write, after a batch of notes.
+     * @param patientIds the patients whose notes were written, without duplicates.
+     */
+    void incrementAll(Collection<Integer> patientIds);
+
+    /**
+     * Increments the versions of all the patients which have one, with one updateMulti, after all the notes were deleted.
+     */
+    void incrementAllExisting();
+}
@@ -0,0 +1,51 @@
+package com.medilabo.note_service.repository;
+
+import com.medilabo.note_service.model.NoteVersion;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+
+/**
+ * Implementation of NoteVersionRepositoryCustom, found by Spring Data with its name.
+ */
+public class NoteVersionRepositoryCustomImpl implements NoteVersionRepositoryCustom {
+
+    private static final Update INCREMENT = new Update().inc("version", 1);
+
+    private final MongoTemplate mongoTemplate;
+
+    public NoteVersionRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public long increment(Integer patientId) {
+        NoteVersion version = mongoTemplate.findAndModify(byPatient(patientId), INCREMENT,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), NoteVersion.class);
+        return version.getVersion();
+    }
+
+    @Override
+    public void incrementAll(Collection<Integer> patientIds) {
+        if (patientIds.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NoteVersion.class);
+        patientIds.forEach(patientId -> bulk.upsert(byPatient(patientId), INCREMENT));
+        bulk.execute();
+    }
+
+    @Override
+    public void incrementAllExisting() {
+        mongoTemplate.updateMulti(new Query(), INCREMENT, NoteVersion.class);
+    }
+
+    private static Query byPatient(Integer patientId) {
+        return Query.query(Criteria.where("_id").is(patientId));
+    }
+}
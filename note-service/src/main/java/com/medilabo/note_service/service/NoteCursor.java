@@ -0,0 +1,51 @@
+package com.medilabo.note_service.service;
+
+import com.medilabo.note_service.model.Note;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in the notes of a patient, sorted by date then id, both descending: the (date, id) of the last note of a page.
+ * It is sent to the clients as an opaque string.
+ * @param date the date of the last note returned.
+ * @param id the id of the last note returned.
+ */
+record NoteCursor(LocalDateTime date, ObjectId id) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * @param note the last note of a page, it must have a date.
+     * @return the cursor of the next page.
+     */
+    static NoteCursor after(Note note) {
+        return new NoteCursor(note.getDate(), new ObjectId(note.getId()));
+    }
+
+    /**
+     * @return the cursor as an opaque string.
+     */
+    String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((date + SEPARATOR + id.toHexString()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor a string returned by encode().
+     * @return the decoded cursor.
+     * @throws IllegalArgumentException if the cursor was not returned by encode().
+     */
+    static NoteCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            return new NoteCursor(LocalDateTime.parse(decoded.substring(0, separator)), new ObjectId(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.medilabo.note_service.service;
+
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.analysis.TriggerMatcher;
+import com.medilabo.note_service.dto.BulkImportResultDTO;
+import com.medilabo.note_service.dto.NoteCreateDTO;
+import com.medilabo.note_service.model.Note;
+import com.medilabo.note_service.repository.NoteRepository;
+import com.medilabo.note_service.repository.NoteVersionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk import of notes, for the migration of the historical records.
+ * The payload is read one note at a time, so it is never held in memory as a whole,
+ * and the notes are written by batches of notes.bulk.batch-size, with one unordered bulk write per batch.
+ * An invalid note does not stop the import: it is reported with its index in the payload, and the others are inserted.
+ * Only the first notes.bulk.max-errors errors are listed, the others are only counted.
+ */
+@Service
+public class NoteImportService {
+    private static final Logger log = LoggerFactory.getLogger(NoteImportService.class);
+
+    private final NoteRepository noteRepository;
+    private final NoteVersionRepository noteVersionRepository;
+    private final TriggerDictionary triggerDictionary;
+    private final ObjectReader noteReader;
+
+    @Value("${notes.bulk.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${notes.bulk.max-errors:1000}")
+    private int maxErrors = 1000;
+
+    public NoteImportService(NoteRepository noteRepository, NoteVersionRepository noteVersionRepository,
+                             TriggerDictionary triggerDictionary, ObjectMapper objectMapper) {
+        this.noteRepository = noteRepository;
+        this.noteVersionRepository = noteVersionRepository;
+        this.triggerDictionary = triggerDictionary;
+        this.noteReader = objectMapper.readerFor(NoteCreateDTO.class);
+    }
+
+    /**
+     * Imports the notes of a payload, either a JSON array or NDJSON (one note per line).
+     * The trigger hits of each note are computed with the dictionary current at the start of the import.
+     * A note without date is dated at its import.
+     * If the payload is malformed, the import stops there: the notes read before are inserted, and the error is reported.
+     * @param payload the body of the request, read until its end.
+     * @return how many notes were received and inserted, and the errors of the notes not inserted.
+     * @throws IOException if the payload cannot be read.
+     */
+    public BulkImportResultDTO importNotes(InputStream payload) throws IOException {
+        TriggerMatcher matcher = triggerDictionary.getMatcher();
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        List<Note> batch = new ArrayList<>(batchSize);
+        List<Long> batchIndexes = new ArrayList<>(batchSize);
+        long index = 0;
+
+        // A root-level array is iterated element by element, like a sequence of NDJSON values.
+        try (MappingIterator<NoteCreateDTO> notes = noteReader.readValues(payload)) {
+            while (true) {
+                NoteCreateDTO dto;
+                try {
+                    if (!notes.hasNextValue()) {
+                        break;
+                    }
+                    dto = notes.nextValue();
+                } catch (DatabindException e) {
+                    // A syntax error inside a note is wrapped by the databinding: the parser cannot find the next note.
+                    if (e.getCause() instanceof StreamReadException malformed) {
+                        addError(result, malformedPayload(index++, malformed));
+                        break;
+                    }
+                    addError(result, new BulkImportResultDTO.ItemError(index++, "Invalid note: " + e.getOriginalMessage()));
+                    continue;
+                } catch (StreamReadException e) {
+                    addError(result, malformedPayload(index++, e));
+                    break;
+                }
+
+                String error = validate(dto);
+                if (error != null) {
+                    addError(result, new BulkImportResultDTO.ItemError(index++, error));
+                    continue;
+                }
+                batch.add(toNote(dto, matcher));
+                batchIndexes.add(index++);
+                if (batch.size() == batchSize) {
+                    flush(batch, batchIndexes, result);
+                }
+            }
+        }
+        flush(batch, batchIndexes, result);
+
+        result.setReceived(index);
+        // The notes rejected by MongoDB are only known when their batch is written.
+        result.getErrors().sort(Comparator.comparingLong(BulkImportResultDTO.ItemError::index));
+        log.info("Bulk import: {} notes received, {} inserted, {} errors",
+                result.getReceived(), result.getInserted(), result.getErrorCount());
+        return result;
+    }
+
+    /**
+     * Counts an error, and lists it if there are less than notes.bulk.max-errors errors listed.
+     */
+    private void addError(BulkImportResultDTO result, BulkImportResultDTO.ItemError error) {
+        result.setErrorCount(result.getErrorCount() + 1);
+        if (result.getErrors().size() < maxErrors) {
+            result.getErrors().add(error);
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    private static BulkImportResultDTO.ItemError malformedPayload(long index, StreamReadException e) {
+        return new BulkImportResultDTO.ItemError(index, "Malformed payload, import stopped: " + e.getOriginalMessage());
+    }
+
+    /**
+     * @param dto a note of the payload.
+     * @return the reason why the note cannot be imported, null if it is valid.
+     */
+    private static String validate(NoteCreateDTO dto) {
+        if (dto == null) {
+            return "Invalid note: null";
+        }
+        if (dto.getPatientId() == null) {
+            return "patientId is required";
+        }
+        if (dto.getNoteText() == null || dto.getNoteText().isBlank()) {
+            return "noteText is required";
+        }
+        return null;
+    }
+
+    private static Note toNote(NoteCreateDTO dto, TriggerMatcher matcher) {
+        LocalDateTime date = dto.getDate() != null ? dto.getDate() : LocalDateTime.now();
+        // MongoDB stores the dates in milliseconds, as for a single note.
+        Note note = new Note(dto.getPatientId(), dto.getNoteText(), date.truncatedTo(ChronoUnit.MILLIS));
+        NoteService.computeTriggers(note, matcher);
+        return note;
+    }
+
+    /**
+     * Writes a batch, reports its rejected notes, then increments the note versions of its patients.
+     * The batch is then emptied.
+     */
+    private void flush(List<Note> batch, List<Long> batchIndexes, BulkImportResultDTO result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Integer, String> rejected = noteRepository.insertUnordered(batch);
+        rejected.forEach((position, message) ->
+                addError(result, new BulkImportResultDTO.ItemError(batchIndexes.get(position), message)));
+        result.setInserted(result.getInserted() + batch.size() - rejected.size());
+
+        Set<Integer> patientIds = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!rejected.containsKey(i)) {
+                patientIds.add(batch.get(i).getPatientId());
+            }
+        }
+        noteVersionRepository.incrementAll(patientIds);
+
+        batch.clear();
+        batchIndexes.clear();
+    }
+}
@@ -1,41 +1,277 @@
 package com.medilabo.note_service.service;
 
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.analysis.TriggerMatcher;
+import com.medilabo.note_service.dto.CursorPage;
 import com.medilabo.note_service.dto.NoteCreateDTO;
+import com.medilabo.note_service.dto.PatientNotesDTO;
+import com.medilabo.note_service.dto.PatientTriggersDTO;
 import com.medilabo.note_service.model.Note;
+import com.medilabo.note_service.model.NoteVersion;
 import com.medilabo.note_service.repository.NoteRepository;
-import org.springframework.data.domain.Sort;
+import com.medilabo.note_service.repository.NoteVersionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class NoteService {
+    private static final Logger log = LoggerFactory.getLogger(NoteService.class);
 
     private final NoteRepository noteRepository;
+    private final NoteVersionRepository noteVersionRepository;
+    private final TriggerDictionary triggerDictionary;
 
-    public NoteService(NoteRepository noteRepository) {
+    @Value("${notes.triggers.backfill.batch-size:500}")
+    private int backfillBatchSize = 500;
+
+    @Value("${notes.multi.max-patients:1000}")
+    private int multiMaxPatients = 1000;
+
+    public NoteService(NoteRepository noteRepository, NoteVersionRepository noteVersionRepository,
+                       TriggerDictionary triggerDictionary) {
         this.noteRepository = noteRepository;
+        this.noteVersionRepository = noteVersionRepository;
+        this.triggerDictionary = triggerDictionary;
     }
 
+    /** Fields of a note a caller can ask for. */
+    static final Set<String> NOTE_FIELDS = Set.of("id", "patientId", "noteText", "date", "triggerIds", "triggerDictionaryVersion");
+
     /**
-     * Retrieves all the notes for a specific patient identifier
+     * Retrieves a page of the notes for a specific patient identifier, the most recent first.
+     * The pages are found with a cursor (keyset pagination) on (date, id), so a deep page costs the same as the first one.
      * @param patientId Integer of the patient unique identifier.
-     * @return a list of Note which can be empty.
+     * @param cursor the cursor returned with the previous page, null or blank for the first page.
+     * @param size the maximum number of notes in the page.
+     * @param fields the fields to return, empty for the whole notes. The id and the date are always returned.
+     * @return a page of Note which can be empty, with the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor or a field is invalid.
+     */
+    public CursorPage<Note> getNotesByPatientId(Integer patientId, String cursor, int size, Set<String> fields) {
+        checkFields(fields);
+        NoteCursor after = decodeCursor(cursor);
+        // One more note than the page, to know if there is a next page.
+        List<Note> notes = noteRepository.findNotesPage(patientId,
+                after != null ? after.date() : null, after != null ? after.id() : null, size + 1, fields);
+
+        if (notes.size() <= size) {
+            return new CursorPage<>(notes, null);
+        }
+        List<Note> page = notes.subList(0, size);
+        return new CursorPage<>(page, NoteCursor.after(page.getLast()).encode());
+    }
+
+    /**
+     * Checks the cursor and the fields of a page of notes without reading it, so an invalid request is rejected
+     * before its If-None-Match is compared to the version of the notes.
+     * @param cursor the cursor returned with the previous page, null or blank for the first page.
+     * @param fields the fields to return, empty for the whole notes.
+     * @throws IllegalArgumentException if the cursor or a field is invalid.
+     */
+    public void checkNotesPage(String cursor, Set<String> fields) {
+        checkFields(fields);
+        decodeCursor(cursor);
+    }
+
+    /**
+     * @param cursor a cursor of a page of notes, null or blank for the first page.
+     * @return the position of the last note of the previous page, null for the first page.
+     * @throws IllegalArgumentException if the cursor is invalid.
+     */
+    private static NoteCursor decodeCursor(String cursor) {
+        return (cursor == null || cursor.isBlank()) ? null : NoteCursor.decode(cursor);
+    }
+
+    /**
+     * Retrieves the version of the notes of a patient, with one lookup on the _id of note_versions.
+     * It changes each time a note of the patient is written, so a caller holding the same version already has his notes.
+     * @param patientId Integer of the patient unique identifier.
+     * @return the version, 0 if no note of the patient was ever written.
+     */
+    public long getNotesVersion(Integer patientId) {
+        return noteVersionRepository.findById(patientId).map(NoteVersion::getVersion).orElse(0L);
+    }
+
+    /**
+     * Retrieves the notes of several patients with a single query, grouped by patient.
+     * The groups are built while the stream is consumed, so only the notes of one patient are in memory at a time.
+     * @param patientIds the patients unique identifiers, at most notes.multi.max-patients. Duplicates are returned once.
+     * @param fields the fields to return, empty for the whole notes. The id, the patient id and the date are always returned.
+     * @return one group per patient, in the order of the patient ids, including the patients without notes,
+     * with the version of the notes of the patient. The versions are read before the notes, so a group is never older than its version.
+     * The stream must be closed, it holds a database cursor.
+     * @throws IllegalArgumentException if there is no patient, too many patients, or a field is invalid.
+     */
+    public Stream<PatientNotesDTO> getNotesOfPatients(Collection<Integer> patientIds, Set<String> fields) {
+        if (patientIds.isEmpty() || patientIds.size() > multiMaxPatients) {
+            throw new IllegalArgumentException("Between 1 and " + multiMaxPatients + " patients are expected, " + patientIds.size() + " given");
+        }
+        if (patientIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("The patient ids cannot contain null");
+        }
+        checkFields(fields);
+
+        List<Integer> ids = patientIds.stream().distinct().sorted().toList();
+        Map<Integer, Long> versions = noteVersionRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(NoteVersion::getPatientId, NoteVersion::getVersion));
+        Stream<Note> notes = noteRepository.streamNotesOfPatients(ids, fields);
+        Iterator<Note> sortedNotes = notes.iterator();
+
+        // The notes come sorted by patient id, like the ids: each group takes the notes of its patient from the head of the stream.
+        Iterator<PatientNotesDTO> groups = new Iterator<>() {
+            private int nextId;
+            private Note pending;
+
+            @Override
+            public boolean hasNext() {
+                return nextId < ids.size();
+            }
+
+            @Override
+            public PatientNotesDTO next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Integer patientId = ids.get(nextId++);
+                if (pending == null && sortedNotes.hasNext()) {
+                    pending = sortedNotes.next();
+                }
+                List<Note> patientNotes = new ArrayList<>();
+                while (pending != null && patientId.equals(pending.getPatientId())) {
+                    patientNotes.add(pending);
+                    pending = sortedNotes.hasNext() ? sortedNotes.next() : null;
+                }
+                return new PatientNotesDTO(patientId, versions.getOrDefault(patientId, 0L), patientNotes);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(groups, ids.size(), Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(notes::close);
+    }
+
+    /**
+     * @param fields fields of a note asked by a caller.
+     * @throws IllegalArgumentException if a field is not a field of a note.
      */
-    public List<Note> getNotesByPatientId(Integer patientId) {
-        Sort sort = Sort.by(Sort.Direction.DESC, "date");
-        return noteRepository.findNotesByPatientId(patientId, sort);
+    private static void checkFields(Set<String> fields) {
+        if (!NOTE_FIELDS.containsAll(fields)) {
+            throw new IllegalArgumentException("Unknown note fields " + fields + ", expected some of " + NOTE_FIELDS);
+        }
     }
 
     /**
-     * Save a new note to database.
+     * Save a new note to database, with the trigger words found in its text.
+     * The version of the notes of the patient is incremented after the note is saved, so a reader never gets the new version
+     * with the previous list. The assessment-service keys its cached assessments on this version.
      * @param newNote a NoteCreateDTO object with the information for the new note.
      * @return the saved Note object.
      */
     public Note addNote(NoteCreateDTO newNote) {
         Note note = new Note(newNote.getPatientId(), newNote.getNoteText());
-        note.setDate(LocalDateTime.now());
-        return noteRepository.save(note);
+        // MongoDB stores the dates in milliseconds, the note returned has the same date as the stored one.
+        note.setDate(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+        computeTriggers(note, triggerDictionary.getMatcher());
+        Note savedNote = noteRepository.save(note);
+        noteVersionRepository.increment(savedNote.getPatientId());
+        return savedNote;
+    }
+
+    /**
+     * Retrieves the union of the trigger words found in all the notes of a patient.
+     * Only the trigger hits of the notes are read, the text is read only for the notes
+     * not yet computed with the current dictionary, which are matched on the fly:
+     * the result is always given for the current dictionary version.
+     * @param patientId Integer of the patient unique identifier.
+     * @return a PatientTriggersDTO with the current dictionary version and the trigger ids, which can be empty.
+     */
+    public PatientTriggersDTO getPatientTriggers(Integer patientId) {
+        TriggerMatcher matcher = triggerDictionary.getMatcher();
+        String version = matcher.getVersion();
+        Set<String> triggerIds = new LinkedHashSet<>();
+        List<String> outdatedIds = new ArrayList<>();
+        for (Note note : noteRepository.findTriggerFieldsByPatientId(patientId)) {
+            if (version.equals(note.getTriggerDictionaryVersion()) && note.getTriggerIds() != null) {
+                triggerIds.addAll(note.getTriggerIds());
+            } else {
+                outdatedIds.add(note.getId());
+            }
+        }
+        if (!outdatedIds.isEmpty()) {
+            log.debug("Trigger hits of {} notes of patient {} are outdated, matching them again", outdatedIds.size(), patientId);
+            for (Note note : noteRepository.findTextsByIdIn(outdatedIds)) {
+                triggerIds.addAll(match(matcher, note.getNoteText()));
+            }
+        }
+        return new PatientTriggersDTO(patientId, version, List.copyOf(triggerIds));
+    }
+
+    /**
+     * Computes the trigger hits of all the notes written before the current dictionary version, batch by batch.
+     * An updated note does not match the query anymore, so the first page is loaded until it is empty.
+     * The trigger hits are returned with the notes, so the versions of the patients of each batch are incremented.
+     * The backfill stops when the dictionary changes, the new version starts its own backfill,
+     * or when it may not continue anymore (see TriggerBackfill).
+     * @param canContinue checked before each batch.
+     * @return the number of notes updated.
+     */
+    public int backfillTriggers(BooleanSupplier canContinue) {
+        TriggerMatcher matcher = triggerDictionary.getMatcher();
+        String version = matcher.getVersion();
+        int updated = 0;
+        List<Note> notes;
+        while (!(notes = noteRepository.findByTriggerDictionaryVersionNot(version, PageRequest.of(0, backfillBatchSize))).isEmpty()) {
+            if (!version.equals(triggerDictionary.getMatcher().getVersion()) || !canContinue.getAsBoolean()) {
+                log.info("Trigger hits backfill with the dictionary version {} stopped after {} notes", version, updated);
+                return updated;
+            }
+            notes.forEach(note -> computeTriggers(note, matcher));
+            noteRepository.saveAll(notes);
+            noteVersionRepository.incrementAll(notes.stream().map(Note::getPatientId).collect(Collectors.toSet()));
+            updated += notes.size();
+        }
+        log.info("Trigger hits computed for {} notes with the dictionary version {}", updated, version);
+        return updated;
+    }
+
+    /**
+     * Stores on the note the trigger words found in its text, and the dictionary version used.
+     * @param note the note to update.
+     * @param matcher the trigger dictionary to use.
+     */
+    static void computeTriggers(Note note, TriggerMatcher matcher) {
+        note.setTriggerIds(match(matcher, note.getNoteText()));
+        note.setTriggerDictionaryVersion(matcher.getVersion());
+    }
+
+    /**
+     * @param matcher the trigger dictionary to use.
+     * @param noteText the raw text of the note, can be null.
+     * @return the ids of the triggers found, which are their normalized form, in the dictionary order.
+     */
+    private static List<String> match(TriggerMatcher matcher, String noteText) {
+        if (noteText == null) {
+            return List.of();
+        }
+        return matcher.newScan().feed(noteText).matchedTriggers();
     }
 }
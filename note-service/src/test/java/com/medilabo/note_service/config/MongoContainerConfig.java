@@ -0,0 +1,22 @@
+package com.medilabo.note_service.config;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * MongoDB of the integration tests, started by Testcontainers with the image of docker-compose.
+ * The application connects to it in place of spring.data.mongodb.uri, so the tests never write to a local MongoDB.
+ * The container is shared by the tests using the same application context.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class MongoContainerConfig {
+
+    @Bean
+    @ServiceConnection
+    MongoDBContainer mongoDbContainer() {
+        return new MongoDBContainer(DockerImageName.parse("mongo:6.0"));
+    }
+}
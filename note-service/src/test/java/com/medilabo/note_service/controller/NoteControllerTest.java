@@ -0,0 +1,184 @@
+package com.medilabo.note_service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medilabo.note_service.dto.CursorPage;
+import com.medilabo.note_service.dto.PatientNotesDTO;
+import com.medilabo.note_service.dto.PatientTriggersDTO;
+import com.medilabo.note_service.model.Note;
+import com.medilabo.note_service.service.NoteImportService;
+import com.medilabo.note_service.service.NoteService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NoteControllerTest {
+
+    @Mock
+    private NoteService noteService;
+
+    @Mock
+    private NoteImportService noteImportService;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private NoteController noteController;
+
+    @BeforeEach
+    void setUp() {
+        noteController = new NoteController(noteService, noteImportService, objectMapper);
+    }
+
+    // =========================
+    // ETag of the notes of a patient
+    // =========================
+
+    private static ServletWebRequest get(String path, String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, response);
+    }
+
+    @Test
+    void getNotesByPatientId_shouldAnswerNotModified_withoutReadingTheNotes_whenTheETagMatches() {
+        when(noteService.getNotesVersion(1)).thenReturn(3L);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<List<Note>> notes = noteController.getNotesByPatientId(1, null, 100, Set.of(),
+                get("/notes/1", "W/\"3\"", response));
+
+        assertThat(notes).isNull();
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("W/\"3\"");
+        verify(noteService, never()).getNotesByPatientId(any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void getNotesByPatientId_shouldReturnTheNotesAndTheirETag_whenTheETagDoesNotMatch() {
+        when(noteService.getNotesVersion(1)).thenReturn(3L);
+        when(noteService.getNotesByPatientId(1, null, 100, Set.of())).thenReturn(new CursorPage<>(List.of(new Note()), "next"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<List<Note>> notes = noteController.getNotesByPatientId(1, null, 100, Set.of(),
+                get("/notes/1", "\"2\"", response));
+
+        assertThat(notes.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(notes.getBody()).hasSize(1);
+        assertThat(notes.getHeaders().getFirst(NoteController.NEXT_CURSOR_HEADER)).isEqualTo("next");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("W/\"3\"");
+    }
+
+    @Test
+    void getNotesByPatientId_shouldRejectAnInvalidCursor_beforeComparingTheETag() {
+        doThrow(new IllegalArgumentException("Invalid cursor: bad")).when(noteService).checkNotesPage("bad", Set.of());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThatThrownBy(() -> noteController.getNotesByPatientId(1, "bad", 100, Set.of(),
+                get("/notes/1", "W/\"3\"", response)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(response.getStatus()).isNotEqualTo(HttpStatus.NOT_MODIFIED.value());
+        verify(noteService, never()).getNotesVersion(anyInt());
+    }
+
+    @Test
+    void getNotesByPatientId_shouldRejectAnUnknownField_beforeComparingTheETag() {
+        doThrow(new IllegalArgumentException("Unknown note fields")).when(noteService).checkNotesPage(null, Set.of("secret"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThatThrownBy(() -> noteController.getNotesByPatientId(1, null, 100, Set.of("secret"),
+                get("/notes/1", "W/\"3\"", response)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(response.getStatus()).isNotEqualTo(HttpStatus.NOT_MODIFIED.value());
+        verify(noteService, never()).getNotesVersion(anyInt());
+    }
+
+    @Test
+    void getNotesByPatientId_shouldAnswerNotModified_toTheStrongFormOfTheETag() {
+        // If-None-Match uses the weak comparison: a client sending "3" still gets a 304.
+        when(noteService.getNotesVersion(1)).thenReturn(3L);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(noteController.getNotesByPatientId(1, null, 100, Set.of(), get("/notes/1", "\"3\"", response))).isNull();
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+    }
+
+    @Test
+    void getPatientTriggers_shouldAnswerNotModified_whenTheETagMatches_andTheTriggersOtherwise() {
+        when(noteService.getNotesVersion(1)).thenReturn(3L);
+        when(noteService.getPatientTriggers(1)).thenReturn(new PatientTriggersDTO(1, "v1", List.of("poids")));
+
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        assertThat(noteController.getPatientTriggers(1, get("/notes/1/triggers", "W/\"3\"", notModified))).isNull();
+        assertThat(notModified.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+
+        MockHttpServletResponse modified = new MockHttpServletResponse();
+        assertThat(noteController.getPatientTriggers(1, get("/notes/1/triggers", "\"2\"", modified)).getTriggerIds())
+                .containsExactly("poids");
+        assertThat(modified.getStatus()).isEqualTo(HttpStatus.OK.value());
+        verify(noteService).getPatientTriggers(1);
+    }
+
+    // =========================
+    // Notes of several patients
+    // =========================
+
+    @Test
+    void getNotesOfPatients_shouldWriteOneGroupPerPatient_inAJsonArray() throws Exception {
+        when(noteService.getNotesOfPatients(List.of(1, 2), Set.of()))
+                .thenReturn(Stream.of(new PatientNotesDTO(1, 3, List.of()), new PatientNotesDTO(2, 0, List.of())));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        noteController.getNotesOfPatients(List.of(1, 2), Set.of(), response);
+
+        PatientNotesDTO[] groups = objectMapper.readValue(response.getContentAsString(), PatientNotesDTO[].class);
+        assertThat(groups).extracting(PatientNotesDTO::patientId).containsExactly(1, 2);
+    }
+
+    @Test
+    void getNotesOfPatients_shouldNotCloseTheArray_andFail_whenTheNotesCannotBeReadAnymore() {
+        // Enough groups for the first ones to be sent before the failure.
+        List<Integer> patientIds = IntStream.rangeClosed(1, 1000).boxed().toList();
+        Stream<PatientNotesDTO> groups = patientIds.stream().map(patientId -> {
+            if (patientId == 1000) {
+                throw new IllegalStateException("MongoDB unreachable");
+            }
+            return new PatientNotesDTO(patientId, 3, List.of());
+        });
+        when(noteService.getNotesOfPatients(patientIds, Set.of())).thenReturn(groups);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThatThrownBy(() -> noteController.getNotesOfPatients(patientIds, Set.of(), response))
+                .isInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("MongoDB unreachable");
+        // The server aborts the connection, the client never gets a valid but incomplete array.
+        assertThat(response.getContentAsByteArray()).isNotEmpty();
+        assertThatThrownBy(() -> objectMapper.readValue(response.getContentAsByteArray(), PatientNotesDTO[].class))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,63 @@
+package com.medilabo.note_service.repository;
+
+import com.medilabo.note_service.model.Lease;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LeaseRepositoryCustomImplTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private LeaseRepositoryCustomImpl repository;
+
+    @Test
+    void acquire_shouldUpsertTheLease_whenItIsFreeExpiredOrAlreadyOwned() {
+        assertThat(repository.acquire("backfill", "me", Duration.ofMinutes(5))).isTrue();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(query.capture(), update.capture(), eq(Lease.class));
+        assertThat(query.getValue().getQueryObject().get("_id")).isEqualTo("backfill");
+        assertThat(query.getValue().getQueryObject().getList("$or", Document.class))
+                .extracting(criteria -> criteria.keySet().iterator().next())
+                .containsExactly("owner", "expiresAt");
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertThat(set.get("owner")).isEqualTo("me");
+    }
+
+    @Test
+    void acquire_shouldReturnFalse_whenAnotherOwnerHoldsTheLease() {
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(Lease.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key"));
+
+        assertThat(repository.acquire("backfill", "me", Duration.ofMinutes(5))).isFalse();
+    }
+
+    @Test
+    void release_shouldOnlyRemoveTheLeaseOfTheOwner() {
+        repository.release("backfill", "me");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(query.capture(), eq(Lease.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("_id", "backfill").append("owner", "me"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.medilabo.note_service.repository;
+
+import com.medilabo.note_service.model.Note;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NoteRepositoryCustomImplTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private NoteRepositoryCustomImpl repository;
+
+    private Query capturedQuery() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Note.class));
+        return query.getValue();
+    }
+
+    @Test
+    void findNotesPage_shouldReadTheFirstPageInTheOrderOfTheIndex() {
+        repository.findNotesPage(1, null, null, 11, Set.of());
+
+        Query query = capturedQuery();
+        assertThat(query.getQueryObject()).isEqualTo(new Document("patientId", 1));
+        assertThat(query.getSortObject()).isEqualTo(new Document("date", -1).append("id", -1));
+        assertThat(query.getLimit()).isEqualTo(11);
+        assertThat(query.getFieldsObject()).isEmpty();
+    }
+
+    @Test
+    void findNotesPage_shouldStartAfterTheCursor_andReadOnlyTheAskedFields() {
+        LocalDateTime date = LocalDateTime.of(2025, 6, 1, 10, 0);
+        ObjectId id = new ObjectId();
+
+        repository.findNotesPage(1, date, id, 11, Set.of("noteText"));
+
+        Query query = capturedQuery();
+        assertThat(query.getQueryObject().get("$or", List.class)).containsExactly(
+                new Document("date", new Document("$lt", date)),
+                new Document("date", date).append("id", new Document("$lt", id)));
+        assertThat(query.getFieldsObject()).isEqualTo(new Document("noteText", 1).append("date", 1));
+    }
+
+    @Test
+    void streamNotesOfPatients_shouldReadAllThePatientsWithOneQuery_inTheOrderOfTheIndex() {
+        repository.streamNotesOfPatients(List.of(1, 2), Set.of("noteText"));
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(captor.capture(), eq(Note.class));
+        Query query = captor.getValue();
+        assertThat(query.getQueryObject()).isEqualTo(new Document("patientId", new Document("$in", List.of(1, 2))));
+        assertThat(query.getSortObject()).isEqualTo(new Document("patientId", 1).append("date", -1).append("id", -1));
+        assertThat(query.getFieldsObject()).isEqualTo(new Document("noteText", 1).append("patientId", 1).append("date", 1));
+    }
+
+    @Test
+    void findNotesPage_shouldReturnTheNotesFound() {
+        Note note = new Note(1, "text");
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(note));
+
+        assertThat(repository.findNotesPage(1, null, null, 10, Set.of())).containsExactly(note);
+    }
+}
@@ -0,0 +1,230 @@
+package com.medilabo.note_service.repository;
+
+import com.medilabo.note_service.config.MongoContainerConfig;
+import com.medilabo.note_service.model.Note;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Sorts.ascending;
+import static com.mongodb.client.model.Sorts.descending;
+import static com.mongodb.client.model.Sorts.orderBy;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Note lookups on a real MongoDB, started by Testcontainers (see MongoContainerConfig), run by mvn verify.
+ * The explain plans of the queries must use the index patient_date_id, without any blocking sort in memory (SORT stage).
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(MongoContainerConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+class NoteRepositoryIT {
+
+    private static final int PATIENTS = 20;
+    private static final int NOTES_PER_PATIENT = 100;
+    private static final LocalDateTime FIRST_DATE = LocalDateTime.of(2020, 1, 1, 8, 0);
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        noteRepository.deleteAll();
+        List<Note> notes = new ArrayList<>();
+        for (int patientId = 1; patientId <= PATIENTS; patientId++) {
+            for (int i = 0; i < NOTES_PER_PATIENT; i++) {
+                // Some notes share their date, the id breaks the tie.
+                notes.add(new Note(patientId, "Note " + i + " : poids, vertiges", FIRST_DATE.plusDays(i / 2)));
+            }
+        }
+        noteRepository.saveAll(notes);
+    }
+
+    // =========================
+    // Helpers
+    // =========================
+
+    /**
+     * @return the winning plan of a query on the notes, sorted as the pages of notes.
+     */
+    private Document winningPlan(Bson filter, Bson projection) {
+        Document explain = mongoTemplate.getCollection("notes")
+                .find(filter)
+                .projection(projection)
+                .sort(descending("date", "_id"))
+                .limit(11)
+                .explain();
+        return explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+    }
+
+    /**
+     * Collects a field of every stage of a plan, the stages being nested in inputStage, inputStages or queryPlan.
+     */
+    private static void collect(Object plan, String field, List<Object> values) {
+        if (plan instanceof Map<?, ?> stage) {
+            if (stage.containsKey(field)) {
+                values.add(stage.get(field));
+            }
+            stage.values().forEach(value -> collect(value, field, values));
+        } else if (plan instanceof Collection<?> stages) {
+            stages.forEach(value -> collect(value, field, values));
+        }
+    }
+
+    private static void assertUsesTheIndexWithoutSort(Document plan) {
+        List<Object> stages = new ArrayList<>();
+        List<Object> indexes = new ArrayList<>();
+        collect(plan, "stage", stages);
+        collect(plan, "indexName", indexes);
+
+        assertThat(stages).as("stages of %s", plan.toJson()).contains("IXSCAN").doesNotContain("SORT", "COLLSCAN");
+        assertThat(indexes).as("indexes of %s", plan.toJson()).containsOnly("patient_date_id");
+    }
+
+    private static Date date(LocalDateTime date) {
+        return Date.from(date.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    // =========================
+    // Explain plans
+    // =========================
+
+    @Test
+    void firstPage_shouldUseTheIndex_withoutSortInMemory() {
+        assertUsesTheIndexWithoutSort(winningPlan(eq("patientId", 7), new Document()));
+    }
+
+    @Test
+    void nextPage_shouldUseTheIndex_withoutSortInMemory() {
+        Date after = date(FIRST_DATE.plusDays(20));
+        ObjectId afterId = new ObjectId();
+
+        assertUsesTheIndexWithoutSort(winningPlan(
+                and(eq("patientId", 7), or(lt("date", after), and(eq("date", after), lt("_id", afterId)))),
+                include("noteText", "date")));
+    }
+
+    @Test
+    void notesOfPatients_shouldUseTheIndex_withoutSortInMemory() {
+        Document explain = mongoTemplate.getCollection("notes")
+                .find(in("patientId", 3, 7, 12))
+                .projection(include("noteText", "patientId", "date"))
+                .sort(orderBy(ascending("patientId"), descending("date", "_id")))
+                .explain();
+
+        assertUsesTheIndexWithoutSort(explain.get("queryPlanner", Document.class).get("winningPlan", Document.class));
+    }
+
+    @Test
+    void triggerFields_shouldUseTheIndex() {
+        Document explain = mongoTemplate.getCollection("notes")
+                .find(eq("patientId", 7))
+                .projection(include("noteText", "triggerIds", "triggerDictionaryVersion"))
+                .explain();
+        List<Object> indexes = new ArrayList<>();
+        collect(explain.get("queryPlanner", Document.class).get("winningPlan", Document.class), "indexName", indexes);
+
+        assertThat(indexes).containsOnly("patient_date_id");
+    }
+
+    // =========================
+    // Pages and projections
+    // =========================
+
+    @Test
+    void findNotesPage_shouldWalkAllTheNotesOfAPatient_inOrder() {
+        List<Note> all = new ArrayList<>();
+        LocalDateTime afterDate = null;
+        ObjectId afterId = null;
+        List<Note> page;
+        do {
+            page = noteRepository.findNotesPage(7, afterDate, afterId, 15, Set.of());
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                afterDate = page.getLast().getDate();
+                afterId = new ObjectId(page.getLast().getId());
+            }
+        } while (page.size() == 15);
+
+        assertThat(all).hasSize(NOTES_PER_PATIENT);
+        assertThat(all).extracting(Note::getPatientId).containsOnly(7);
+        assertThat(all).extracting(Note::getId).doesNotHaveDuplicates();
+        assertThat(all).extracting(Note::getDate).isSortedAccordingTo((a, b) -> b.compareTo(a));
+    }
+
+    @Test
+    void findNotesPage_shouldReadOnlyTheAskedFields() {
+        Note note = noteRepository.findNotesPage(7, null, null, 1, Set.of("noteText")).getFirst();
+
+        assertThat(note.getNoteText()).startsWith("Note ");
+        assertThat(note.getId()).isNotNull();
+        assertThat(note.getDate()).isNotNull();
+        assertThat(note.getPatientId()).isNull();
+    }
+
+    @Test
+    void streamNotesOfPatients_shouldReturnTheNotesSortedByPatient() {
+        List<Note> notes;
+        try (Stream<Note> stream = noteRepository.streamNotesOfPatients(List.of(12, 3), Set.of("noteText"))) {
+            notes = stream.toList();
+        }
+
+        assertThat(notes).hasSize(2 * NOTES_PER_PATIENT);
+        assertThat(notes).extracting(Note::getPatientId).isSorted();
+        assertThat(notes.getFirst().getTriggerIds()).isNull();
+    }
+
+    @Test
+    void findTriggerFieldsByPatientId_shouldNotReadTheTextThePatientAndDate() {
+        List<Note> notes = noteRepository.findTriggerFieldsByPatientId(7);
+
+        assertThat(notes).hasSize(NOTES_PER_PATIENT);
+        assertThat(notes).allSatisfy(note -> {
+            assertThat(note.getId()).isNotNull();
+            assertThat(note.getNoteText()).isNull();
+            assertThat(note.getPatientId()).isNull();
+            assertThat(note.getDate()).isNull();
+        });
+    }
+
+    @Test
+    void findTextsByIdIn_shouldOnlyReadTheTextOfTheGivenNotes() {
+        List<String> ids = noteRepository.findTriggerFieldsByPatientId(7).stream().limit(2).map(Note::getId).toList();
+
+        List<Note> notes = noteRepository.findTextsByIdIn(ids);
+
+        assertThat(notes).extracting(Note::getId).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(notes).allSatisfy(note -> {
+            assertThat(note.getNoteText()).isNotNull();
+            assertThat(note.getPatientId()).isNull();
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.medilabo.note_service.repository;
+
+import com.medilabo.note_service.model.NoteVersion;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NoteVersionRepositoryCustomImplTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private NoteVersionRepositoryCustomImpl repository;
+
+    @Test
+    void increment_shouldUpsertAndIncrementTheVersionOfThePatient_inOneFindAndModify() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(NoteVersion.class)))
+                .thenReturn(new NoteVersion(1, 3));
+
+        assertThat(repository.increment(1)).isEqualTo(3);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(), eq(NoteVersion.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("_id", 1));
+        assertThat(update.getValue().getUpdateObject()).isEqualTo(new Document("$inc", new Document("version", 1)));
+        assertThat(options.getValue().isUpsert()).isTrue();
+        assertThat(options.getValue().isReturnNew()).isTrue();
+    }
+
+    @Test
+    void incrementAll_shouldUpsertEachPatient_inOneBulkWrite() {
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NoteVersion.class)).thenReturn(bulk);
+
+        repository.incrementAll(List.of(1, 2));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(bulk, times(2)).upsert(queries.capture(), any(Update.class));
+        assertThat(queries.getAllValues()).extracting(Query::getQueryObject)
+                .containsExactly(new Document("_id", 1), new Document("_id", 2));
+        verify(bulk).execute();
+    }
+
+    @Test
+    void incrementAll_shouldNotWrite_whenThereIsNoPatient() {
+        repository.incrementAll(Set.of());
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void incrementAllExisting_shouldIncrementEveryVersion_inOneUpdateMulti() {
+        repository.incrementAllExisting();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(NoteVersion.class));
+        assertThat(query.getValue().getQueryObject()).isEmpty();
+        assertThat(update.getValue().getUpdateObject()).isEqualTo(new Document("$inc", new Document("version", 1)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.medilabo.note_service.service;
+
+import com.medilabo.note_service.config.MongoContainerConfig;
+import com.medilabo.note_service.dto.BulkImportResultDTO;
+import com.medilabo.note_service.dto.NoteCreateDTO;
+import com.medilabo.note_service.repository.NoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bulk import on a real MongoDB, started by Testcontainers (see MongoContainerConfig), run by mvn verify.
+ * The same notes are written one by one with addNote, then with the bulk import, and both must store all the notes.
+ * The durations and their ratio (10 times faster expected) are logged, not asserted: a wall-clock ratio depends on the machine.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(MongoContainerConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+class NoteImportIT {
+    private static final Logger log = LoggerFactory.getLogger(NoteImportIT.class);
+
+    private static final int NOTES = 5_000;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteImportService noteImportService;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @BeforeEach
+    void setUp() {
+        noteRepository.deleteAll();
+    }
+
+    private static String text(int i) {
+        return "Note " + i + " : le patient déclare des vertiges, poids stable, cholestérol à surveiller";
+    }
+
+    @Test
+    void bulkImport_shouldStoreTheSameNotesAsSingleInserts_andLogTheSpeedUp() throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < NOTES; i++) {
+            NoteCreateDTO note = new NoteCreateDTO();
+            note.setPatientId(i % 100);
+            note.setNoteText(text(i));
+            noteService.addNote(note);
+        }
+        long singleNanos = System.nanoTime() - start;
+        assertThat(noteRepository.count()).isEqualTo(NOTES);
+        noteRepository.deleteAll();
+
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < NOTES; i++) {
+            payload.append("{\"patientId\":").append(i % 100).append(",\"noteText\":\"").append(text(i)).append("\"}\n");
+        }
+        start = System.nanoTime();
+        BulkImportResultDTO result = noteImportService.importNotes(
+                new ByteArrayInputStream(payload.toString().getBytes(StandardCharsets.UTF_8)));
+        long bulkNanos = System.nanoTime() - start;
+
+        log.info("{} notes: {} ms one by one, {} ms with the bulk import, {}x faster", NOTES, singleNanos / 1_000_000,
+                bulkNanos / 1_000_000, String.format("%.1f", (double) singleNanos / bulkNanos));
+        assertThat(result.getInserted()).isEqualTo(NOTES);
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(noteRepository.count()).isEqualTo(NOTES);
+    }
+}
@@ -0,0 +1,178 @@
+package com.medilabo.note_service.service;
+
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.note_service.dto.BulkImportResultDTO;
+import com.medilabo.note_service.model.Note;
+import com.medilabo.note_service.repository.NoteRepository;
+import com.medilabo.note_service.repository.NoteVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NoteImportServiceTest {
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    @Mock
+    private NoteVersionRepository noteVersionRepository;
+
+    private final TriggerDictionary triggerDictionary = new TriggerDictionary(new DefaultResourceLoader(), "classpath:trigger-words.txt");
+
+    private NoteImportService importService;
+
+    /** Copies of the batches given to the repository, as the service empties them after the write. */
+    private final List<List<Note>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        importService = new NoteImportService(noteRepository, noteVersionRepository,
+                triggerDictionary, Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(importService, "batchSize", 2);
+        lenient().when(noteRepository.insertUnordered(anyList())).thenAnswer(invocation -> {
+            batches.add(List.copyOf(invocation.getArgument(0)));
+            return Map.of();
+        });
+    }
+
+    private BulkImportResultDTO importNotes(String payload) throws IOException {
+        return importService.importNotes(new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // =========================
+    // Formats and batches
+    // =========================
+
+    @Test
+    void importNotes_shouldReadNdjson_andWriteByBatches() throws IOException {
+        BulkImportResultDTO result = importNotes("""
+                {"patientId": 1, "noteText": "Poids stable"}
+                {"patientId": 1, "noteText": "Vertiges"}
+                {"patientId": 2, "noteText": "Fumeur", "date": "2019-03-04T10:15:00"}
+                """);
+
+        assertThat(result.getReceived()).isEqualTo(3);
+        assertThat(result.getInserted()).isEqualTo(3);
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(batches).extracting(List::size).containsExactly(2, 1);
+
+        Note historical = batches.get(1).getFirst();
+        assertThat(historical.getDate()).isEqualTo(LocalDateTime.of(2019, 3, 4, 10, 15));
+        assertThat(historical.getTriggerIds()).containsExactly("fumeur");
+        assertThat(historical.getTriggerDictionaryVersion()).isEqualTo(triggerDictionary.getMatcher().getVersion());
+        assertThat(batches.getFirst().getFirst().getDate()).isNotNull();
+    }
+
+    @Test
+    void importNotes_shouldReadAJsonArray() throws IOException {
+        BulkImportResultDTO result = importNotes("""
+                [{"patientId": 1, "noteText": "a"}, {"patientId": 2, "noteText": "b"}, {"patientId": 3, "noteText": "c"}]
+                """);
+
+        assertThat(result.getInserted()).isEqualTo(3);
+        assertThat(batches).extracting(List::size).containsExactly(2, 1);
+    }
+
+    @Test
+    void importNotes_shouldIncrementTheVersionOfEachPatientOncePerBatch() throws IOException {
+        importNotes("""
+                {"patientId": 1, "noteText": "a"}
+                {"patientId": 1, "noteText": "b"}
+                """);
+
+        verify(noteVersionRepository, times(1)).incrementAll(Set.of(1));
+    }
+
+    // =========================
+    // Per-item errors
+    // =========================
+
+    @Test
+    void importNotes_shouldReportInvalidNotes_andInsertTheOthers() throws IOException {
+        BulkImportResultDTO result = importNotes("""
+                {"patientId": 1, "noteText": "a"}
+                {"noteText": "no patient"}
+                {"patientId": "not a number", "noteText": "b"}
+                {"patientId": 2, "noteText": " "}
+                {"patientId": 3, "noteText": "c"}
+                """);
+
+        assertThat(result.getReceived()).isEqualTo(5);
+        assertThat(result.getInserted()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(BulkImportResultDTO.ItemError::index).containsExactly(1L, 2L, 3L);
+        assertThat(result.getErrorCount()).isEqualTo(3);
+        assertThat(result.isErrorsTruncated()).isFalse();
+    }
+
+    @Test
+    void importNotes_shouldOnlyListTheFirstErrors_andCountTheOthers() throws IOException {
+        ReflectionTestUtils.setField(importService, "maxErrors", 2);
+
+        BulkImportResultDTO result = importNotes("""
+                {"noteText": "no patient"}
+                {"patientId": 1, "noteText": " "}
+                {"patientId": 2}
+                {"patientId": 3, "noteText": "c"}
+                """);
+
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getErrorCount()).isEqualTo(3);
+        assertThat(result.isErrorsTruncated()).isTrue();
+        assertThat(result.getErrors()).extracting(BulkImportResultDTO.ItemError::index).containsExactly(0L, 1L);
+    }
+
+    @Test
+    void importNotes_shouldReportTheNotesRejectedByTheDatabase_withTheirIndexInThePayload() throws IOException {
+        when(noteRepository.insertUnordered(anyList())).thenReturn(Map.of(), Map.of(0, "duplicate key"));
+
+        BulkImportResultDTO result = importNotes("""
+                {"patientId": 1, "noteText": "a"}
+                {"patientId": 1, "noteText": "b"}
+                {"patientId": 2}
+                {"patientId": 3, "noteText": "c"}
+                """);
+
+        assertThat(result.getInserted()).isEqualTo(2);
+        assertThat(result.getErrors()).containsExactly(
+                new BulkImportResultDTO.ItemError(2, "noteText is required"),
+                new BulkImportResultDTO.ItemError(3, "duplicate key"));
+        verify(noteVersionRepository).incrementAll(Set.of(1));
+        verify(noteVersionRepository, never()).incrementAll(argThat(patientIds -> patientIds.contains(3)));
+    }
+
+    @Test
+    void importNotes_shouldStopAtAMalformedNote_andKeepTheNotesReadBefore() throws IOException {
+        BulkImportResultDTO result = importNotes("""
+                {"patientId": 1, "noteText": "a"}
+                {"patientId": 2, "noteText": "b
+                {"patientId": 3, "noteText": "c"}
+                """);
+
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getErrors()).singleElement()
+                .satisfies(error -> {
+                    assertThat(error.index()).isEqualTo(1);
+                    assertThat(error.message()).startsWith("Malformed payload");
+                });
+    }
+}
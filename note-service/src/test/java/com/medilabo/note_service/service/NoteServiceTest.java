@@ -1,22 +1,35 @@
 package com.medilabo.note_service.service;
 
+import com.medilabo.analysis.TriggerDictionary;
+import com.medilabo.note_service.dto.CursorPage;
 import com.medilabo.note_service.dto.NoteCreateDTO;
+import com.medilabo.note_service.dto.PatientNotesDTO;
+import com.medilabo.note_service.dto.PatientTriggersDTO;
 import com.medilabo.note_service.model.Note;
+import com.medilabo.note_service.model.NoteVersion;
 import com.medilabo.note_service.repository.NoteRepository;
+import com.medilabo.note_service.repository.NoteVersionRepository;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Sort;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,6 +39,12 @@ class NoteServiceTest {
     @Mock
     private NoteRepository noteRepository;
 
+    @Mock
+    private NoteVersionRepository noteVersionRepository;
+
+    @Spy
+    private TriggerDictionary triggerDictionary = new TriggerDictionary(new DefaultResourceLoader(), "classpath:trigger-words.txt");
+
     @InjectMocks
     private NoteService noteService;
 
@@ -41,40 +60,124 @@ class NoteServiceTest {
         note2.setDate(LocalDateTime.now());
     }
 
+    private static Note noteWithId(String text, LocalDateTime date) {
+        Note note = new Note(1, text, date);
+        ReflectionTestUtils.setField(note, "id", new ObjectId().toHexString());
+        return note;
+    }
+
     @Test
-    void getNotesByPatientId_shouldReturnSortedNotes() {
+    void getNotesByPatientId_shouldReturnTheFirstPage_andTheCursorOfTheNextOne() {
         // Arrange
-        when(noteRepository.findNotesByPatientId(eq(1), any(Sort.class)))
-                .thenReturn(List.of(note2, note1));
+        LocalDateTime now = LocalDateTime.of(2025, 6, 1, 10, 0);
+        Note newest = noteWithId("Newest", now);
+        Note middle = noteWithId("Middle", now.minusDays(1));
+        Note oldest = noteWithId("Oldest", now.minusDays(2));
+        when(noteRepository.findNotesPage(1, null, null, 3, Set.of()))
+                .thenReturn(List.of(newest, middle, oldest));
 
         // Act
-        List<Note> result = noteService.getNotesByPatientId(1);
+        CursorPage<Note> result = noteService.getNotesByPatientId(1, null, 2, Set.of());
 
         // Assert
-        assertThat(result).hasSize(2);
-        assertThat(result).containsExactly(note2, note1);
+        assertThat(result.items()).containsExactly(newest, middle);
+        NoteCursor cursor = NoteCursor.decode(result.nextCursor());
+        assertThat(cursor.date()).isEqualTo(middle.getDate());
+        assertThat(cursor.id()).isEqualTo(new ObjectId(middle.getId()));
+    }
 
-        // Vérifie que le tri DESC sur "date" est bien utilisé
-        ArgumentCaptor<Sort> sortCaptor = ArgumentCaptor.forClass(Sort.class);
-        verify(noteRepository).findNotesByPatientId(eq(1), sortCaptor.capture());
+    @Test
+    void getNotesByPatientId_shouldContinueAfterTheCursor_untilTheLastPage() {
+        // Arrange
+        Note middle = noteWithId("Middle", LocalDateTime.of(2025, 5, 31, 10, 0));
+        Note oldest = noteWithId("Oldest", LocalDateTime.of(2025, 5, 30, 10, 0));
+        String cursor = NoteCursor.after(middle).encode();
+        when(noteRepository.findNotesPage(1, middle.getDate(), new ObjectId(middle.getId()), 3, Set.of("noteText")))
+                .thenReturn(List.of(oldest));
+
+        // Act
+        CursorPage<Note> result = noteService.getNotesByPatientId(1, cursor, 2, Set.of("noteText"));
 
-        Sort capturedSort = sortCaptor.getValue();
-        assertThat(capturedSort.getOrderFor("date").getDirection())
-                .isEqualTo(Sort.Direction.DESC);
+        // Assert
+        assertThat(result.items()).containsExactly(oldest);
+        assertThat(result.nextCursor()).isNull();
     }
 
     @Test
     void getNotesByPatientId_shouldReturnEmptyList_whenNoNotes() {
         // Arrange
-        when(noteRepository.findNotesByPatientId(eq(1), any(Sort.class)))
+        when(noteRepository.findNotesPage(1, null, null, 101, Set.of()))
                 .thenReturn(List.of());
 
         // Act
-        List<Note> result = noteService.getNotesByPatientId(1);
+        CursorPage<Note> result = noteService.getNotesByPatientId(1, "", 100, Set.of());
+
+        // Assert
+        assertThat(result.items()).isEmpty();
+        assertThat(result.nextCursor()).isNull();
+    }
+
+    @Test
+    void getNotesByPatientId_shouldRejectAnInvalidCursor() {
+        assertThatThrownBy(() -> noteService.getNotesByPatientId(1, "not-a-cursor", 10, Set.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    void getNotesByPatientId_shouldRejectAnUnknownField() {
+        assertThatThrownBy(() -> noteService.getNotesByPatientId(1, null, 10, Set.of("noteText", "password")))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    void checkNotesPage_shouldRejectAnInvalidCursorOrAnUnknownField_withoutReadingTheNotes() {
+        noteService.checkNotesPage(null, Set.of("noteText"));
+
+        assertThatThrownBy(() -> noteService.checkNotesPage("not-a-cursor", Set.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> noteService.checkNotesPage(null, Set.of("password")))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    void getNotesOfPatients_shouldGroupTheNotesByPatient_includingThePatientsWithoutNotes() {
+        // Arrange
+        Note a1 = new Note(1, "a1");
+        Note a2 = new Note(1, "a2");
+        Note c1 = new Note(3, "c1");
+        when(noteRepository.streamNotesOfPatients(List.of(1, 2, 3, 4), Set.of("noteText")))
+                .thenReturn(Stream.of(a1, a2, c1));
+        when(noteVersionRepository.findAllById(List.of(1, 2, 3, 4)))
+                .thenReturn(List.of(new NoteVersion(1, 4L), new NoteVersion(3, 1L)));
+
+        // Act
+        List<PatientNotesDTO> groups;
+        try (Stream<PatientNotesDTO> stream = noteService.getNotesOfPatients(List.of(3, 1, 4, 2, 1), Set.of("noteText"))) {
+            groups = stream.toList();
+        }
 
         // Assert
-        assertThat(result).isEmpty();
-        verify(noteRepository).findNotesByPatientId(eq(1), any(Sort.class));
+        assertThat(groups).containsExactly(
+                new PatientNotesDTO(1, 4L, List.of(a1, a2)),
+                new PatientNotesDTO(2, 0L, List.of()),
+                new PatientNotesDTO(3, 1L, List.of(c1)),
+                new PatientNotesDTO(4, 0L, List.of()));
+    }
+
+    @Test
+    void getNotesOfPatients_shouldRejectAnEmptyOrTooLongList_beforeQuerying() {
+        ReflectionTestUtils.setField(noteService, "multiMaxPatients", 2);
+
+        assertThatThrownBy(() -> noteService.getNotesOfPatients(List.of(), Set.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> noteService.getNotesOfPatients(List.of(1, 2, 3), Set.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> noteService.getNotesOfPatients(List.of(1), Set.of("unknown")))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(noteRepository);
     }
 
     @Test
@@ -82,7 +185,7 @@ class NoteServiceTest {
         // Arrange
         NoteCreateDTO dto = new NoteCreateDTO();
         dto.setPatientId(1);
-        dto.setNoteText("New note");
+        dto.setNoteText("Nouvelle note : poids et vertiges");
 
         when(noteRepository.save(any(Note.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
@@ -92,10 +195,154 @@ class NoteServiceTest {
 
         // Assert
         assertThat(savedNote.getPatientId()).isEqualTo(1);
-        assertThat(savedNote.getNoteText()).isEqualTo("New note");
+        assertThat(savedNote.getNoteText()).isEqualTo("Nouvelle note : poids et vertiges");
+        assertThat(savedNote.getTriggerIds()).containsExactlyInAnyOrder("poids", "vertiges");
+        assertThat(savedNote.getTriggerDictionaryVersion()).isEqualTo(triggerDictionary.getMatcher().getVersion());
         assertThat(savedNote.getDate()).isNotNull();
         assertThat(savedNote.getDate()).isBeforeOrEqualTo(LocalDateTime.now());
 
         verify(noteRepository).save(any(Note.class));
+        verify(noteVersionRepository).increment(1);
+    }
+
+    @Test
+    void addNote_shouldIncrementTheVersionOfTheNotes_afterSavingTheNote() {
+        // Arrange
+        NoteCreateDTO dto = new NoteCreateDTO();
+        dto.setPatientId(1);
+        dto.setNoteText("Rechute");
+        when(noteRepository.save(any(Note.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        noteService.addNote(dto);
+
+        // Assert
+        var inOrder = inOrder(noteRepository, noteVersionRepository);
+        inOrder.verify(noteRepository).save(any(Note.class));
+        inOrder.verify(noteVersionRepository).increment(1);
+    }
+
+    @Test
+    void getNotesVersion_shouldReadTheVersionOfThePatient_or0IfNoNoteWasWritten() {
+        when(noteVersionRepository.findById(1)).thenReturn(Optional.of(new NoteVersion(1, 7)));
+        when(noteVersionRepository.findById(2)).thenReturn(Optional.empty());
+
+        assertThat(noteService.getNotesVersion(1)).isEqualTo(7);
+        assertThat(noteService.getNotesVersion(2)).isZero();
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    void getPatientTriggers_shouldReturnUnionOfStoredHits_andMatchOutdatedNotes() {
+        // Arrange
+        note1.setTriggerIds(List.of("poids", "fumeur"));
+        note1.setTriggerDictionaryVersion(triggerDictionary.getMatcher().getVersion());
+        note2.setNoteText("Fumeur, cholestérol élevé");
+        note2.setTriggerDictionaryVersion("outdated");
+        ReflectionTestUtils.setField(note2, "id", new ObjectId().toHexString());
+
+        when(noteRepository.findTriggerFieldsByPatientId(1))
+                .thenReturn(List.of(note1, note2));
+        when(noteRepository.findTextsByIdIn(List.of(note2.getId())))
+                .thenReturn(List.of(note2));
+
+        // Act
+        PatientTriggersDTO triggers = noteService.getPatientTriggers(1);
+
+        // Assert
+        assertThat(triggers.getPatientId()).isEqualTo(1);
+        assertThat(triggers.getDictionaryVersion()).isEqualTo(triggerDictionary.getMatcher().getVersion());
+        assertThat(triggers.getTriggerIds()).containsExactlyInAnyOrder("poids", "fumeur", "cholesterol");
+    }
+
+    @Test
+    void getPatientTriggers_shouldNotReadTheTexts_whenAllTheHitsAreUpToDate() {
+        // Arrange
+        note1.setTriggerIds(List.of("poids"));
+        note1.setTriggerDictionaryVersion(triggerDictionary.getMatcher().getVersion());
+        when(noteRepository.findTriggerFieldsByPatientId(1))
+                .thenReturn(List.of(note1));
+
+        // Act
+        PatientTriggersDTO triggers = noteService.getPatientTriggers(1);
+
+        // Assert
+        assertThat(triggers.getTriggerIds()).containsExactly("poids");
+        verify(noteRepository, never()).findTextsByIdIn(anyCollection());
+    }
+
+    @Test
+    void backfillTriggers_shouldUpdateOutdatedNotes_untilNoneIsLeft() {
+        // Arrange
+        note1.setNoteText("Taille et poids");
+        when(noteRepository.findByTriggerDictionaryVersionNot(eq(triggerDictionary.getMatcher().getVersion()), any(Pageable.class)))
+                .thenReturn(List.of(note1, note2), List.of());
+
+        // Act
+        int updated = noteService.backfillTriggers(() -> true);
+
+        // Assert
+        assertThat(updated).isEqualTo(2);
+        assertThat(note1.getTriggerIds()).containsExactlyInAnyOrder("taille", "poids");
+        assertThat(note2.getTriggerIds()).isEmpty();
+        assertThat(note2.getTriggerDictionaryVersion()).isEqualTo(triggerDictionary.getMatcher().getVersion());
+        verify(noteRepository).saveAll(List.of(note1, note2));
+        verify(noteVersionRepository).incrementAll(Set.of(1));
+    }
+
+    @Test
+    void backfillTriggers_shouldStop_whenTheDictionaryChanges() {
+        // Arrange
+        String version = triggerDictionary.getMatcher().getVersion();
+        when(noteRepository.findByTriggerDictionaryVersionNot(eq(version), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    // Another run updated the dictionary while this one was running
+                    triggerDictionary.update(List.of("Poids"));
+                    return List.of(note1, note2);
+                });
+
+        // Act
+        int updated = noteService.backfillTriggers(() -> true);
+
+        // Assert
+        assertThat(updated).isZero();
+        verify(noteRepository, never()).saveAll(anyList());
+        verifyNoInteractions(noteVersionRepository);
+    }
+
+    @Test
+    void backfillTriggers_shouldStop_whenItCanNotContinue() {
+        // Arrange
+        when(noteRepository.findByTriggerDictionaryVersionNot(eq(triggerDictionary.getMatcher().getVersion()), any(Pageable.class)))
+                .thenReturn(List.of(note1), List.of(note2), List.of());
+
+        // Act
+        int[] batches = {0};
+        int updated = noteService.backfillTriggers(() -> batches[0]++ == 0);
+
+        // Assert
+        assertThat(updated).isEqualTo(1);
+        verify(noteRepository).saveAll(List.of(note1));
+        verify(noteRepository, never()).saveAll(List.of(note2));
+    }
+
+    @Test
+    void addNote_shouldUseTheNewDictionary_afterAnUpdate() {
+        // Arrange
+        NoteCreateDTO dto = new NoteCreateDTO();
+        dto.setPatientId(1);
+        dto.setNoteText("Glycémie élevée, poids stable");
+        when(noteRepository.save(any(Note.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        String previousVersion = triggerDictionary.getMatcher().getVersion();
+        triggerDictionary.update(List.of("Glycémie", "Poids"));
+        Note savedNote = noteService.addNote(dto);
+
+        // Assert
+        assertThat(savedNote.getTriggerIds()).containsExactly("glycemie", "poids");
+        assertThat(savedNote.getTriggerDictionaryVersion()).isNotEqualTo(previousVersion);
     }
 }
@@ -0,0 +1,79 @@
+package com.medilabo.patientservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medilabo.patientservice.dto.PatientDemographics;
+import com.medilabo.patientservice.entities.Patient;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.cache.RedisCacheManagerBuilderCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+/**
+ * Cache of the patients by id, read by getPatientById and refreshed by savePatient and updatePatient.
+ * Cache of the demographics by id, read by getPatientDemographics (the call of the assessment-service) and evicted by
+ * updatePatient, as they carry the version of the patient.
+ * The cache manager is chosen by spring.cache.type:
+ * - caffeine (default): a local cache, bounded by size and by age (spring.cache.caffeine.spec),
+ * - redis (profile "redis-cache"): a cache shared by the replicas of the service, bounded by age (spring.cache.redis.time-to-live).
+ * The hits and misses are published by Spring Boot as "cache.gets" metrics, and their ratio as "cache.hit.ratio".
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PATIENTS_CACHE = "patients";
+    public static final String DEMOGRAPHICS_CACHE = "patient-demographics";
+
+    /**
+     * In Redis, the patients and their demographics are stored in JSON rather than with the Java serialization.
+     */
+    @Bean
+    public RedisCacheManagerBuilderCustomizer patientsRedisCache(ObjectMapper objectMapper) {
+        return builder -> builder
+                .withCacheConfiguration(PATIENTS_CACHE, builder.cacheDefaults()
+                        .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                                new Jackson2JsonRedisSerializer<>(objectMapper, Patient.class))))
+                .withCacheConfiguration(DEMOGRAPHICS_CACHE, builder.cacheDefaults()
+                        .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                                new Jackson2JsonRedisSerializer<>(objectMapper, PatientDemographics.class))));
+    }
+
+    @Bean
+    public MeterBinder patientsCacheHitRatio() {
+        return registry -> {
+            for (String cacheName : List.of(PATIENTS_CACHE, DEMOGRAPHICS_CACHE)) {
+                Gauge.builder("cache.hit.ratio", registry, r -> hitRatio(r, cacheName))
+                        .tag("cache", cacheName)
+                        .description("Ratio of the cache reads which found the value, since the start")
+                        .register(registry);
+            }
+        };
+    }
+
+    /**
+     * @param registry the registry where the cache metrics are bound.
+     * @param cacheName the name of the cache.
+     * @return the hits divided by the reads of the cache, NaN before the first read.
+     */
+    static double hitRatio(MeterRegistry registry, String cacheName) {
+        double hits = gets(registry, cacheName, "hit");
+        double misses = gets(registry, cacheName, "miss");
+        return hits + misses == 0 ? Double.NaN : hits / (hits + misses);
+    }
+
+    private static double gets(MeterRegistry registry, String cacheName, String result) {
+        return registry.find("cache.gets").tags("cache", cacheName, "result", result).meters().stream()
+                .flatMap(meter -> StreamSupport.stream(meter.measure().spliterator(), false))
+                .mapToDouble(Measurement::getValue)
+                .sum();
+    }
+}
@@ -0,0 +1,116 @@
+package com.medilabo.patientservice.config;
+
+import com.medilabo.patientservice.monitoring.SqlStatementMetrics;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.ttddyy.dsproxy.proxy.NanoTimeStopwatchFactory;
+import net.ttddyy.dsproxy.proxy.ProxyConfig;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data source of the patients: the primary of spring.datasource, and the read replicas of patients.datasource.replicas.
+ * - without replica, the primary is the data source, as with the Spring Boot auto-configuration,
+ * - with replicas, the read-only transactions go to the replicas in turn and the other ones to the primary (ReadWriteDataSource).
+ *   A replica which is down is skipped for a while, and when no replica is left the reads go to the primary.
+ * The connections given to each route are published as "patients.datasource.connections" metrics (tags route=read|write, target).
+ * The data source is wrapped in a proxy which times every statement, see SqlStatementMetrics.
+ */
+@Configuration
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+public class DataSourceConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ReadReplicaProperties replicaProperties,
+                                 Environment environment, SqlStatementMetrics sqlStatementMetrics) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (replicaProperties.getReplicas().isEmpty()) {
+            return measured(primary, sqlStatementMetrics);
+        }
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("patients-primary");
+        }
+
+        List<HikariDataSource> pools = new ArrayList<>();
+        List<ReadReplicaDataSource.Replica> replicas = new ArrayList<>();
+        for (ReadReplicaProperties.Replica replica : replicaProperties.getReplicas()) {
+            String name = "replica-" + (pools.size() + 1);
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("patients-" + name);
+            pool.setJdbcUrl(replica.getUrl());
+            pool.setUsername(replica.getUsername() != null ? replica.getUsername() : primary.getUsername());
+            pool.setPassword(replica.getPassword() != null ? replica.getPassword() : primary.getPassword());
+            pool.setReadOnly(true);
+            pool.setConnectionTimeout(replicaProperties.getReplicaConnectionTimeout().toMillis());
+            // A replica which is down at startup must not prevent the service from starting.
+            pool.setInitializationFailTimeout(-1);
+            pools.add(pool);
+            replicas.add(new ReadReplicaDataSource.Replica(name, pool));
+        }
+        return measured(new ReadWriteDataSource(primary, pools,
+                new ReadReplicaDataSource(replicas, primary, replicaProperties.getReplicaRetryAfter())), sqlStatementMetrics);
+    }
+
+    /**
+     * @return the data source, with its statements timed in nanoseconds by the listener. Closing it closes the data source.
+     */
+    private static ProxyDataSource measured(DataSource dataSource, SqlStatementMetrics sqlStatementMetrics) {
+        ProxyDataSource proxy = new ProxyDataSource(dataSource);
+        proxy.setProxyConfig(ProxyConfig.Builder.create()
+                .dataSourceName("patients")
+                .queryListener(sqlStatementMetrics)
+                .stopwatchFactory(new NanoTimeStopwatchFactory())
+                .retrieveIsolationLevel(false)
+                .build());
+        return proxy;
+    }
+
+    @Bean
+    public MeterBinder readWriteSplitMetrics(DataSource dataSource) {
+        return registry -> {
+            ReadWriteDataSource readWrite;
+            try {
+                if (!dataSource.isWrapperFor(ReadWriteDataSource.class)) {
+                    return;
+                }
+                readWrite = dataSource.unwrap(ReadWriteDataSource.class);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Cannot find the routing of the data source", e);
+            }
+            FunctionCounter.builder("patients.datasource.connections", readWrite, ReadWriteDataSource::getWriteConnections)
+                    .tags("route", "write", "target", "primary")
+                    .description("Connections taken by the transactions, by route and by database")
+                    .register(registry);
+            ReadReplicaDataSource reads = readWrite.getReadDataSource();
+            FunctionCounter.builder("patients.datasource.connections", reads, ReadReplicaDataSource::getPrimaryConnections)
+                    .tags("route", "read", "target", "primary")
+                    .register(registry);
+            for (ReadReplicaDataSource.Replica replica : reads.getReplicas()) {
+                FunctionCounter.builder("patients.datasource.connections", replica, ReadReplicaDataSource.Replica::getConnections)
+                        .tags("route", "read", "target", replica.getName())
+                        .register(registry);
+                FunctionCounter.builder("patients.datasource.replica.failures", replica, ReadReplicaDataSource.Replica::getFailures)
+                        .tags("target", replica.getName())
+                        .description("Connections of a replica which failed, the reads went to the next replica")
+                        .register(registry);
+                Gauge.builder("patients.datasource.replica.available", replica, r -> r.isAvailable() ? 1 : 0)
+                        .tags("target", replica.getName())
+                        .register(registry);
+            }
+        };
+    }
+}
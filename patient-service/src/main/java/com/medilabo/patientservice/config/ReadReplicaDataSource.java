@@ -0,0 +1,121 @@
+package com.medilabo.patientservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Data source of the read-only transactions: each connection comes from the next replica (round-robin).
+ * A replica which fails to give a connection is skipped for retryAfter, the next one is tried instead,
+ * and when no replica is available the connection comes from the primary.
+ */
+final class ReadReplicaDataSource extends AbstractDataSource {
+    private static final Logger log = LoggerFactory.getLogger(ReadReplicaDataSource.class);
+
+    private final List<Replica> replicas;
+    private final DataSource primary;
+    private final long retryAfterMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryConnections = new LongAdder();
+
+    ReadReplicaDataSource(List<Replica> replicas, DataSource primary, Duration retryAfter) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is needed");
+        }
+        this.replicas = List.copyOf(replicas);
+        this.primary = primary;
+        this.retryAfterMillis = retryAfter.toMillis();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection getConnection(ConnectionSupplier supplier) throws SQLException {
+        int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((first + i) % replicas.size());
+            if (!replica.isAvailable()) {
+                continue;
+            }
+            try {
+                Connection connection = supplier.get(replica.dataSource);
+                replica.connections.increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.failures.increment();
+                replica.downUntil = System.currentTimeMillis() + retryAfterMillis;
+                log.warn("Replica {} unavailable, skipped for {} ms: {}", replica.name, retryAfterMillis, e.getMessage());
+            }
+        }
+        Connection connection = supplier.get(primary);
+        primaryConnections.increment();
+        return connection;
+    }
+
+    List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return the number of read-only connections given by the primary, because no replica was available.
+     */
+    long getPrimaryConnections() {
+        return primaryConnections.sum();
+    }
+
+    /**
+     * A replica, with the number of connections it gave and of the times it failed.
+     */
+    static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final LongAdder connections = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private volatile long downUntil;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        DataSource getDataSource() {
+            return dataSource;
+        }
+
+        long getConnections() {
+            return connections.sum();
+        }
+
+        long getFailures() {
+            return failures.sum();
+        }
+
+        boolean isAvailable() {
+            return System.currentTimeMillis() >= downUntil;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get(DataSource dataSource) throws SQLException;
+    }
+}
@@ -0,0 +1,76 @@
+package com.medilabo.patientservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas of the patients database (prefix "patients.datasource").
+ * - replicas: the url of each replica, with its username and password (those of spring.datasource when not set),
+ * - replicaConnectionTimeout: how long to wait for a connection of a replica before falling back,
+ * - replicaRetryAfter: how long a replica which failed is skipped.
+ * Without replica, every transaction goes to spring.datasource as before, see DataSourceConfig.
+ */
+@ConfigurationProperties(prefix = "patients.datasource")
+public class ReadReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+    private Duration replicaConnectionTimeout = Duration.ofSeconds(1);
+    private Duration replicaRetryAfter = Duration.ofSeconds(30);
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<Replica> replicas) {
+        this.replicas = replicas;
+    }
+
+    public Duration getReplicaConnectionTimeout() {
+        return replicaConnectionTimeout;
+    }
+
+    public void setReplicaConnectionTimeout(Duration replicaConnectionTimeout) {
+        this.replicaConnectionTimeout = replicaConnectionTimeout;
+    }
+
+    public Duration getReplicaRetryAfter() {
+        return replicaRetryAfter;
+    }
+
+    public void setReplicaRetryAfter(Duration replicaRetryAfter) {
+        this.replicaRetryAfter = replicaRetryAfter;
+    }
+
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.medilabo.patientservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Data source of the patients when there are read replicas.
+ * A connection is only taken when its first statement runs, once the transaction is known to be read-only or not:
+ * the read-only transactions (@Transactional(readOnly = true), and the reads of the Spring Data repositories) use the replicas,
+ * the other ones use the primary.
+ * Closing it closes the pools of the primary and of the replicas.
+ */
+final class ReadWriteDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicaPools;
+    private final ReadReplicaDataSource readDataSource;
+    private final LongAdder writeConnections = new LongAdder();
+
+    ReadWriteDataSource(HikariDataSource primary, List<HikariDataSource> replicaPools, ReadReplicaDataSource readDataSource) {
+        this.primary = primary;
+        this.replicaPools = List.copyOf(replicaPools);
+        this.readDataSource = readDataSource;
+        setTargetDataSource(new DelegatingDataSource(primary) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                writeConnections.increment();
+                return connection;
+            }
+        });
+        setReadOnlyDataSource(readDataSource);
+    }
+
+    ReadReplicaDataSource getReadDataSource() {
+        return readDataSource;
+    }
+
+    /**
+     * @return the number of connections given by the primary to the transactions which are not read-only.
+     */
+    long getWriteConnections() {
+        return writeConnections.sum();
+    }
+
+    @Override
+    public void close() {
+        replicaPools.forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
@@ -1,81 +1,277 @@
 package com.medilabo.patientservice.controllers;
 
+import com.medilabo.patientservice.dto.BulkImportResultDTO;
+import com.medilabo.patientservice.dto.CursorPage;
+import com.medilabo.patientservice.dto.PatientDemographics;
 import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientSpecifications;
+import com.medilabo.patientservice.services.PatientExportService;
+import com.medilabo.patientservice.services.PatientImportService;
 import com.medilabo.patientservice.services.PatientService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/patients")
 public class PatientController {
 
+    /** Header giving the index of the next page of a search, absent on the last page. */
+    static final String NEXT_PAGE_HEADER = "X-Next-Page";
+    /** Header giving the cursor of the next page of the list, absent on the last page. */
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /** Media type of the CSV imports. */
+    static final String TEXT_CSV_VALUE = "text/csv";
+
     private final PatientService patientService;
+    private final PatientImportService patientImportService;
+    private final PatientExportService patientExportService;
+
+    @Value("${patients.search.max-page-size:500}")
+    private int searchMaxPageSize = 500;
+
+    @Value("${patients.page.max-size:500}")
+    private int maxPageSize = 500;
+
+    @Value("${patients.multi.max-size:1000}")
+    private int multiMaxSize = 1000;
 
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService, PatientImportService patientImportService,
+                             PatientExportService patientExportService) {
         this.patientService = patientService;
+        this.patientImportService = patientImportService;
+        this.patientExportService = patientExportService;
     }
 
     /**
-     * Retrieves all patients.
+     * Retrieves a page of the patients, in the order of their ids.
+     * The body stays a list of patients, the header X-Next-Cursor gives the cursor of the next page if there is one.
+     * @param cursor the X-Next-Cursor of the previous page, absent for the first page
+     * @param size number of patients per page, at most patients.page.max-size
      * @return a list of Patient object
+     * @throws IllegalArgumentException if the size is out of bounds or the cursor is invalid
      */
     @GetMapping
-    public List<Patient> getAllPatients() {
-        return patientService.getAllPatients();
+    public ResponseEntity<List<Patient>> getPatients(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${patients.page.default-size:100}") int size) {
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("size must be between 1 and " + maxPageSize);
+        }
+        CursorPage<Patient> patients = patientService.getPatients(cursor, size);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (patients.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, patients.nextCursor());
+        }
+        return response.body(patients.items());
+    }
+
+    /**
+     * Retrieves several patients with one query.
+     * @param ids the patients identifiers, comma-separated, at most patients.multi.max-size
+     * @return the patients found, in the order of the ids. The unknown ids are skipped.
+     * @throws IllegalArgumentException if there are no or too many ids
+     */
+    @GetMapping(params = "ids")
+    public List<Patient> getPatientsByIds(@RequestParam List<Integer> ids) {
+        checkIds(ids);
+        return patientService.getPatientsByIds(ids);
+    }
+
+    /**
+     * Retrieves the demographic fields (birthdate and gender) of several patients, the only fields needed to assess a risk.
+     * @param ids the patients identifiers, comma-separated, at most patients.multi.max-size
+     * @return the demographics of the patients found, in the order of the ids. The unknown ids are skipped.
+     * @throws IllegalArgumentException if there are no or too many ids
+     */
+    @GetMapping(value = "/demographics", params = "ids")
+    public List<PatientDemographics> getPatientsDemographics(@RequestParam List<Integer> ids) {
+        checkIds(ids);
+        return patientService.getPatientsDemographics(ids);
+    }
+
+    /**
+     * Retrieves the demographic fields (birthdate and gender) of a patient, the only fields needed to assess a risk.
+     * @param id Integer representing the patient's identifier
+     * @return the demographics of the patient
+     */
+    @GetMapping("/{id}/demographics")
+    public PatientDemographics getPatientDemographics(@PathVariable Integer id) {
+        return patientService.getPatientDemographics(id);
+    }
+
+    private void checkIds(List<Integer> ids) {
+        if (ids.isEmpty() || ids.size() > multiMaxSize) {
+            throw new IllegalArgumentException("Between 1 and " + multiMaxSize + " ids are expected, " + ids.size() + " given");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("The ids cannot contain null");
+        }
     }
 
     /**
-     * Retrieves a list of patient that matches the optional criteria.
-     * @param name patient last name
-     * @param firstName patient first name
+     * Retrieves a page of the patients that match the optional criteria.
+     * The body stays a list of patients, the header X-Next-Page gives the next page if there is one.
+     * @param name patient last name, case and accent-insensitive
+     * @param firstName patient first name, case and accent-insensitive
      * @param birthDate patient birthdate
      * @param gender patient gender
+     * @param match CONTAINS (default, partial match) or PREFIX (the names start with the given values) to match the name and first name
+     * @param page index of the page, from 0
+     * @param size number of patients per page, at most patients.search.max-page-size
      * @return list of matching patients
+     * @throws IllegalArgumentException if the page or size is out of bounds
      */
     @GetMapping("/search")
-    public List<Patient> searchPatients(
+    public ResponseEntity<List<Patient>> searchPatients(
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String firstName,
             @RequestParam(required = false) LocalDate birthDate,
-            @RequestParam(required = false) Patient.Gender gender
+            @RequestParam(required = false) Patient.Gender gender,
+            @RequestParam(defaultValue = "CONTAINS") PatientSpecifications.MatchMode match,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "${patients.search.default-page-size:50}") int size
     ) {
-        return patientService.searchPatients(name, firstName, birthDate, gender);
+        if (page < 0 || size < 1 || size > searchMaxPageSize) {
+            throw new IllegalArgumentException("page must be >= 0 and size between 1 and " + searchMaxPageSize);
+        }
+        Slice<Patient> patients = patientService.searchPatients(name, firstName, birthDate, gender, match, page, size);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (patients.hasNext()) {
+            response.header(NEXT_PAGE_HEADER, String.valueOf(page + 1));
+        }
+        return response.body(patients.getContent());
     }
 
     /**
-     * Retrieves a specific patient by its unique identifier
+     * Retrieves a specific patient by its unique identifier.
+     * The response has the version of the patient as ETag: with a matching If-None-Match header,
+     * the answer is 304 NOT MODIFIED, without body.
      * @param id Integer representing the patient's identifier
-     * @return the founded patient
+     * @param request the request, to check its If-None-Match header
+     * @return the founded patient, or null if it was not modified
      */
     @GetMapping("/{id}")
-    public Patient getPatient(@PathVariable Integer id) {
-        return patientService.getPatientById(id);
+    public Patient getPatient(@PathVariable Integer id, WebRequest request) {
+        Patient patient = patientService.getPatientById(id);
+        if (request.checkNotModified(eTag(patient))) {
+            return null;
+        }
+        return patient;
     }
 
     /**
      * Creates a new patient
      * @param patient a Patient to create
-     * @return the created patient with the HTTP status
+     * @return the created patient with the HTTP status, and its version as ETag
      */
     @PostMapping
     public ResponseEntity<Patient> addPatient(@RequestBody Patient patient) {
         Patient savedPatient = patientService.savePatient(patient);
-        return new ResponseEntity<>(savedPatient, HttpStatus.CREATED);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(eTag(savedPatient)).body(savedPatient);
     }
 
     /**
-     * Updates an existing patient
+     * Updates an existing patient.
+     * With an If-Match header (the ETag of a previous GET), the patient is only updated if it is still at this version,
+     * otherwise the answer is 412 PRECONDITION FAILED. Without it, the patient is updated whatever its version.
+     * With several ETags, the patient is updated if one of them is its current version.
      * @param id the patient identifier to be updated
      * @param patient the updated patient data
-     * @return the updated patient and the HTTP status
+     * @param ifMatch the If-Match header, ETags of the patient or "*"
+     * @return the updated patient and the HTTP status, and its new version as ETag
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Patient> updatePatient(@PathVariable Integer id, @RequestBody Patient patient) {
-        Patient updatedPatient = patientService.updatePatient(id, patient);
-        return ResponseEntity.ok(updatedPatient);
+    public ResponseEntity<Patient> updatePatient(@PathVariable Integer id, @RequestBody Patient patient,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Patient updatedPatient = patientService.updatePatient(id, patient, expectedVersions(ifMatch));
+        return ResponseEntity.ok().eTag(eTag(updatedPatient)).body(updatedPatient);
+    }
+
+    /**
+     * Imports many patients in one request, for the nightly import of the new registrations.
+     * The body is a JSON array, NDJSON (one patient per line) or CSV with a header line,
+     * read as a stream and written by chunks, each chunk in its own transaction with batched inserts.
+     * @param request the request, whose body is read one patient at a time.
+     * @return the number of patients received and inserted, and the index and reason of each patient not inserted.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    public BulkImportResultDTO importPatients(HttpServletRequest request) throws IOException {
+        boolean csv = MediaType.parseMediaType(TEXT_CSV_VALUE).isCompatibleWith(MediaType.parseMediaType(request.getContentType()));
+        PatientImportService.Format format = csv ? PatientImportService.Format.CSV : PatientImportService.Format.JSON;
+        return patientImportService.importPatients(request.getInputStream(), format);
+    }
+
+    /**
+     * Exports all the patients, in the order of their ids.
+     * The patients are written while they are read from the database, the response is never held in memory as a whole.
+     * @param format NDJSON (default, one patient per line) or CSV (with a header line, readable by POST /patients/bulk)
+     * @param response the response, written one patient at a time.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping("/export")
+    public void exportPatients(@RequestParam(defaultValue = "NDJSON") PatientExportService.Format format,
+                               HttpServletResponse response) throws IOException {
+        boolean csv = format == PatientExportService.Format.CSV;
+        response.setContentType(csv ? TEXT_CSV_VALUE : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(csv ? "patients.csv" : "patients.ndjson").build().toString());
+        patientExportService.exportPatients(response.getOutputStream(), format);
+    }
+
+    /**
+     * @param patient a patient.
+     * @return its strong ETag, its version between quotes.
+     */
+    static String eTag(Patient patient) {
+        return ETag.quoteETagIfNecessary(String.valueOf(patient.getVersion()));
+    }
+
+    /**
+     * @param ifMatch the If-Match header of an update, or null.
+     * @return the versions given by the header, or null if there is no header or it is "*" (any version).
+     * A weak or non-numeric ETag never matches (strong comparison, RFC 9110), the set may then be empty.
+     */
+    static Set<Long> expectedVersions(String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+        List<ETag> eTags = ETag.parse(ifMatch);
+        if (eTags.stream().anyMatch(ETag::isWildcard)) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (ETag eTag : eTags) {
+            if (!eTag.weak()) {
+                try {
+                    versions.add(Long.valueOf(eTag.tag()));
+                } catch (NumberFormatException e) {
+                    // Not an ETag of a patient, it matches no version.
+                }
+            }
+        }
+        return versions;
     }
-}
\ No newline at end of file
+}
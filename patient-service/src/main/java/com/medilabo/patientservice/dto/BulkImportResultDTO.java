@@ -0,0 +1,45 @@
+package com.medilabo.patientservice.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Report of a bulk import of patients: how many patients were received and inserted, and why the others were not.
+ */
+public class BulkImportResultDTO {
+    private long received;
+    private long inserted;
+    private List<ItemError> errors = new ArrayList<>();
+
+    /**
+     * A patient of the import which was not inserted.
+     * @param index the position of the patient in the payload, from 0 (the CSV header is not counted).
+     * @param message the reason.
+     */
+    public record ItemError(long index, String message) {
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public void setInserted(long inserted) {
+        this.inserted = inserted;
+    }
+
+    public List<ItemError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ItemError> errors) {
+        this.errors = errors;
+    }
+}
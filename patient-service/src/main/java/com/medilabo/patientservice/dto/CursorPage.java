@@ -0,0 +1,12 @@
+package com.medilabo.patientservice.dto;
+
+import java.util.List;
+
+/**
+ * A page of results of a keyset pagination.
+ * @param items the results of the page.
+ * @param nextCursor the opaque cursor of the next page, null on the last page.
+ * @param <T> the type of the results.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+}
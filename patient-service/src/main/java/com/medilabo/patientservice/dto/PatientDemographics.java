@@ -0,0 +1,16 @@
+package com.medilabo.patientservice.dto;
+
+import com.medilabo.patientservice.entities.Patient;
+
+import java.time.LocalDate;
+
+/**
+ * Slim view of a patient, with only the fields needed to assess a risk.
+ * It is read with a constructor expression, so the other columns (names, address, phone) are not read at all.
+ * @param id the patient unique identifier.
+ * @param birthDate the patient's birthdate.
+ * @param gender the patient's gender.
+ * @param version the version of the patient, so the assessment-service can tell if its cached assessment is still up to date.
+ */
+public record PatientDemographics(Integer id, LocalDate birthDate, Patient.Gender gender, Long version) {
+}
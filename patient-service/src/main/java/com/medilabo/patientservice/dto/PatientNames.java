@@ -0,0 +1,10 @@
+package com.medilabo.patientservice.dto;
+
+/**
+ * The names of a patient, the only columns read to build the index of the substring search.
+ * @param id the patient identifier.
+ * @param name the name, as entered.
+ * @param firstName the first name, as entered.
+ */
+public record PatientNames(Integer id, String name, String firstName) {
+}
@@ -1,18 +1,38 @@
 package com.medilabo.patientservice.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.ColumnDefault;
 
-
+import java.text.Normalizer;
 import java.time.LocalDate;
-
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A patient.
+ * The name and first name are also stored in lowercase (name_key, first_name_key), so the case-insensitive prefix search
+ * is a range scan of an index instead of a scan of the table with lower() on every row.
+ * The ids come from a table generator which reserves them by blocks of 100 (pooled optimizer), instead of an identity column:
+ * Hibernate knows the id without inserting the row, so the inserts can be sent by JDBC batches.
+ * The first block starts after the ids of the patients inserted by data.sql.
+ * The version is incremented by each update, which fails if the row was updated since it was read (optimistic locking).
+ * It is also the ETag of the patient, see PatientController. The rows inserted without a version start at 0.
+ */
 @Entity
-@Table(name = "patients")
+@Table(name = "patients", indexes = {
+        @Index(name = "idx_patients_name_key", columnList = "name_key, first_name_key"),
+        @Index(name = "idx_patients_first_name_key", columnList = "first_name_key"),
+        @Index(name = "idx_patients_birth_date", columnList = "birth_date")
+})
 public class Patient {
     @Id
-    @GeneratedValue(strategy= GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "patient_id")
+    @TableGenerator(name = "patient_id", table = "id_generators", pkColumnName = "name", valueColumnName = "next_val",
+            pkColumnValue = "patients", initialValue = 100, allocationSize = 100)
     private Integer id;
 
     @NotBlank(message = "Name must not be null")
@@ -42,6 +62,19 @@ public class Patient {
     @Column(length = 15)
     private String phone;
 
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    @JsonIgnore
+    @Column(name = "name_key", length = 50, nullable = false)
+    private String nameKey;
+
+    @JsonIgnore
+    @Column(name = "first_name_key", length = 50, nullable = false)
+    private String firstNameKey;
+
     public Patient() {}
 
     public Patient(String name, String firstName, LocalDate birthDate, Gender gender, String address, String phone) {
@@ -53,6 +86,31 @@ public class Patient {
         this.phone = phone;
     }
 
+    /**
+     * Computes the search keys from the name and first name, before each insert and update.
+     */
+    @PrePersist
+    @PreUpdate
+    void computeSearchKeys() {
+        this.nameKey = searchKey(name);
+        this.firstNameKey = searchKey(firstName);
+    }
+
+    private static final Pattern COMBINING_DIACRITICAL_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    /**
+     * The search keys are folded, so the search by the database ignores the accents as the trigram index does.
+     * @param value a name or first name, or a searched prefix.
+     * @return the value as stored in the search keys: without its accents and in lowercase, null if the value is null.
+     */
+    public static String searchKey(String value) {
+        if (value == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        return COMBINING_DIACRITICAL_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
     public enum Gender {
         MALE,
         FEMALE,
@@ -114,4 +172,12 @@ public class Patient {
     public void setPhone(String phone) {
         this.phone = phone;
     }
-}
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
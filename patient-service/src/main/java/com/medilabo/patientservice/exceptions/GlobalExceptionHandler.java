@@ -2,6 +2,7 @@ package com.medilabo.patientservice.exceptions;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -28,6 +29,49 @@ public class GlobalExceptionHandler {
                 .body(e.getMessage());
     }
 
+    /**
+     * Handles PatientVersionConflictException, thrown when the If-Match header is not the current version of the patient.
+     * @param e the thrown exception
+     * @return 412 PRECONDITION FAILED response with error message
+     */
+    @ExceptionHandler(PatientVersionConflictException.class)
+    public ResponseEntity<String> handlePatientVersionConflict(PatientVersionConflictException e) {
+        log.warn("Patient version conflict: {}", e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.PRECONDITION_FAILED)
+                .body(e.getMessage());
+    }
+
+    /**
+     * Handles OptimisticLockingFailureException, thrown when a patient is updated by two requests at the same time.
+     * @param e the thrown exception
+     * @return 409 CONFLICT response with error message
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLockingFailure(OptimisticLockingFailureException e) {
+        log.warn("Concurrent update: {}", e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body("The patient was updated by another request, reload it and try again");
+    }
+
+    /**
+     * Handles IllegalArgumentException, thrown for invalid request parameters.
+     * The detail is only logged, the message of the exception may come from any library.
+     * @param e the thrown exception
+     * @return 400 BAD REQUEST response with a generic message
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        log.warn("Invalid request: {}", e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body("Invalid request");
+    }
+
     /**
      * Handles all uncaught exceptions.
      * @param e unexpected exception
@@ -0,0 +1,13 @@
+package com.medilabo.patientservice.exceptions;
+
+import java.util.Set;
+
+/**
+ * Exception thrown when a patient is updated from a version which is not its current version (If-Match).
+ */
+public class PatientVersionConflictException extends RuntimeException {
+
+    public PatientVersionConflictException(Integer id, Set<Long> expectedVersions, Long currentVersion) {
+        super("Patient " + id + " is at version " + currentVersion + ", not one of " + expectedVersions);
+    }
+}
@@ -0,0 +1,38 @@
+package com.medilabo.patientservice.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Counts the SQL statements run by each HTTP request, see SqlStatementMetrics.
+ * The requests are grouped by the pattern of their mapping, so /patients/1 and /patients/2 are both /patients/{id}.
+ * The statements run by another thread, such as the streaming of the export, are not counted.
+ */
+@Component
+public class SqlStatementCountFilter extends OncePerRequestFilter {
+
+    private final SqlStatementMetrics sqlStatementMetrics;
+
+    public SqlStatementCountFilter(SqlStatementMetrics sqlStatementMetrics) {
+        this.sqlStatementMetrics = sqlStatementMetrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        sqlStatementMetrics.startRequest();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            sqlStatementMetrics.finishRequest(request.getMethod(),
+                    (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+        }
+    }
+}
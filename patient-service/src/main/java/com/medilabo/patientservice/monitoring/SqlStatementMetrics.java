@@ -0,0 +1,219 @@
+package com.medilabo.patientservice.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the SQL statements run through the data source (see DataSourceConfig), instead of printing them all (show-sql).
+ * - each statement is timed by query shape: the SQL with its literals and the lists of "in (?, ?, ...)" replaced,
+ *   in the "patients.sql.queries" timer (tag query), with a latency histogram,
+ * - the statements of an HTTP request are counted (SqlStatementCountFilter) in "patients.sql.statements.per.request" (tags method, uri),
+ *   and a request running more than patients.sql.request-statements-warning statements is logged, as a probable N+1,
+ * - a statement slower than patients.sql.slow-query-threshold is logged, with its bind parameters
+ *   for a sample of them only (patients.sql.slow-query-parameters-sample-rate), as they hold patient data.
+ * The shapes are bounded by patients.sql.max-query-shapes, the next ones are measured together as "other".
+ */
+@Component
+public class SqlStatementMetrics implements QueryExecutionListener, MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementMetrics.class);
+
+    static final String OTHER_QUERIES = "other";
+    static final String UNKNOWN_URI = "UNKNOWN";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    /** Maximum number of SQL strings whose shape is kept, the "in" lists of every length give distinct strings. */
+    private static final int MAX_CACHED_SQL = 10_000;
+    private static final int MAX_LOGGED_SQL_LENGTH = 1000;
+    private static final int MAX_LOGGED_PARAMETER_LENGTH = 50;
+
+    private final long slowQueryThresholdNanos;
+    private final double parametersSampleRate;
+    private final int maxQueryShapes;
+    private final int requestStatementsWarning;
+
+    private final Map<String, String> shapes = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ThreadLocal<RequestStatements> requestStatements = new ThreadLocal<>();
+    private volatile MeterRegistry registry;
+
+    public SqlStatementMetrics(@Value("${patients.sql.slow-query-threshold:200ms}") Duration slowQueryThreshold,
+                               @Value("${patients.sql.slow-query-parameters-sample-rate:0.1}") double parametersSampleRate,
+                               @Value("${patients.sql.max-query-shapes:200}") int maxQueryShapes,
+                               @Value("${patients.sql.request-statements-warning:20}") int requestStatementsWarning) {
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+        this.parametersSampleRate = parametersSampleRate;
+        this.maxQueryShapes = maxQueryShapes;
+        this.requestStatementsWarning = requestStatementsWarning;
+    }
+
+    /**
+     * The statements run before the registry is bound (schema creation, data.sql) are not measured.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queries) {
+        // Nothing to do before, the elapsed time is given after.
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queries) {
+        RequestStatements current = requestStatements.get();
+        if (current != null) {
+            current.count++;
+        }
+        if (queries.isEmpty()) {
+            return;
+        }
+        String sql = queries.getFirst().getQuery();
+        long nanos = execInfo.getElapsedTime();
+
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry != null) {
+            timer(meterRegistry, shapeOf(sql)).record(nanos, TimeUnit.NANOSECONDS);
+        }
+        if (nanos >= slowQueryThresholdNanos) {
+            logSlowQuery(sql, nanos, queries.getFirst());
+        }
+    }
+
+    /**
+     * Starts counting the statements run by the current thread, for an HTTP request.
+     */
+    void startRequest() {
+        requestStatements.set(new RequestStatements());
+    }
+
+    /**
+     * Stops counting the statements of the current thread and records their number.
+     * @param method the HTTP method of the request.
+     * @param uri the pattern of the request mapping (/patients/{id}), not the URI itself, or null if no mapping matched.
+     * @return the number of statements run since startRequest(), 0 if it was not called.
+     */
+    int finishRequest(String method, String uri) {
+        RequestStatements current = requestStatements.get();
+        requestStatements.remove();
+        int statements = current == null ? 0 : current.count;
+        String requestUri = uri == null ? UNKNOWN_URI : uri;
+
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry != null) {
+            DistributionSummary.builder("patients.sql.statements.per.request")
+                    .tags("method", method, "uri", requestUri)
+                    .description("SQL statements run by an HTTP request")
+                    .publishPercentiles(0.5, 0.95)
+                    .register(meterRegistry)
+                    .record(statements);
+        }
+        if (statements > requestStatementsWarning) {
+            log.warn("{} {} ran {} SQL statements, probably one per entity (N+1 queries)", method, requestUri, statements);
+        }
+        return statements;
+    }
+
+    private Timer timer(MeterRegistry meterRegistry, String shape) {
+        Timer timer = timers.get(shape);
+        if (timer != null) {
+            return timer;
+        }
+        String tag = timers.size() < maxQueryShapes ? shape : OTHER_QUERIES;
+        return timers.computeIfAbsent(tag, query -> Timer.builder("patients.sql.queries")
+                .tag("query", query)
+                .description("Execution time of the SQL statements, by query shape")
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry));
+    }
+
+    private String shapeOf(String sql) {
+        String shape = shapes.get(sql);
+        if (shape == null) {
+            shape = shape(sql);
+            if (shapes.size() < MAX_CACHED_SQL) {
+                shapes.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * @param sql a SQL statement.
+     * @return the statement in lowercase, with its literals replaced by "?", its lists of parameters by "(?...)"
+     * and its whitespaces collapsed: the statements which differ only by their values have the same shape.
+     */
+    static String shape(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+        return PARAMETER_LIST.matcher(shape).replaceAll("(?...)");
+    }
+
+    private void logSlowQuery(String sql, long nanos, QueryInfo query) {
+        String statement = sql.length() > MAX_LOGGED_SQL_LENGTH ? sql.substring(0, MAX_LOGGED_SQL_LENGTH) + "..." : sql;
+        if (parametersSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < parametersSampleRate) {
+            log.warn("Slow SQL statement, {} ms: {} parameters {}", TimeUnit.NANOSECONDS.toMillis(nanos), statement,
+                    parameters(query));
+        } else {
+            log.warn("Slow SQL statement, {} ms: {}", TimeUnit.NANOSECONDS.toMillis(nanos), statement);
+        }
+    }
+
+    /**
+     * @param query an executed statement.
+     * @return its first set of bind parameters, as "[1=value, 2=value]". The long values are cut.
+     */
+    static String parameters(QueryInfo query) {
+        if (query.getParametersList().isEmpty()) {
+            return "[]";
+        }
+        return query.getParametersList().getFirst().stream()
+                .filter(operation -> operation.getArgs() != null && operation.getArgs().length > 0)
+                .map(SqlStatementMetrics::parameter)
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    private static String parameter(ParameterSetOperation operation) {
+        Object[] args = operation.getArgs();
+        String value = ParameterSetOperation.isSetNullParameterOperation(operation) || args.length < 2
+                ? "null" : String.valueOf(args[1]);
+        if (value.length() > MAX_LOGGED_PARAMETER_LENGTH) {
+            value = value.substring(0, MAX_LOGGED_PARAMETER_LENGTH) + "...";
+        }
+        return args[0] + "=" + value;
+    }
+
+    /**
+     * The statements counted for the request of a thread.
+     */
+    private static final class RequestStatements {
+        private int count;
+    }
+}
@@ -1,9 +1,54 @@
 package com.medilabo.patientservice.repositories;
 
+import com.medilabo.patientservice.dto.PatientDemographics;
+import com.medilabo.patientservice.dto.PatientNames;
 import com.medilabo.patientservice.entities.Patient;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, Integer> {
-}
\ No newline at end of file
+public interface PatientRepository extends JpaRepository<Patient, Integer>, JpaSpecificationExecutor<Patient> {
+
+    /**
+     * Page of the patients after a given id, in the order of the ids, read from the primary key.
+     * @param afterId the id of the last patient of the previous page, 0 for the first page.
+     * @param pageable the maximum number of patients, as the size of the first page.
+     * @return a List of Patient, which can be empty.
+     */
+    List<Patient> findByIdGreaterThanOrderByIdAsc(Integer afterId, Pageable pageable);
+
+    /**
+     * Demographic fields of a patient, the only columns read.
+     * @param id the patient identifier.
+     * @return the demographics of the patient, empty if he does not exist.
+     */
+    @Query("select new com.medilabo.patientservice.dto.PatientDemographics(p.id, p.birthDate, p.gender, p.version) from Patient p where p.id = :id")
+    Optional<PatientDemographics> findDemographicsById(Integer id);
+
+    /**
+     * Demographic fields of several patients with one query, the only columns read.
+     * @param ids the patients identifiers.
+     * @return the demographics of the patients found, in no particular order.
+     */
+    @Query("select new com.medilabo.patientservice.dto.PatientDemographics(p.id, p.birthDate, p.gender, p.version) from Patient p where p.id in :ids")
+    List<PatientDemographics> findDemographicsByIdIn(Collection<Integer> ids);
+
+    /**
+     * Names of all the patients, read from a cursor 1000 rows at a time. Must be consumed in a transaction, then closed.
+     * @return a Stream of the names of every patient.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.medilabo.patientservice.dto.PatientNames(p.id, p.name, p.firstName) from Patient p")
+    Stream<PatientNames> streamAllNames();
+}
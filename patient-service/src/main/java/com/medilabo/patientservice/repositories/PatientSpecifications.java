@@ -0,0 +1,86 @@
+package com.medilabo.patientservice.repositories;
+
+import com.medilabo.patientservice.entities.Patient;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Criteria of the patient search, combined into a single query by PatientRepository.
+ * The name and first name are matched on their search keys (name_key, first_name_key), without accents and in lowercase:
+ * a prefix search uses their indexes, a contains search has to read every row.
+ */
+public final class PatientSpecifications {
+
+    /**
+     * How the name and first name are matched.
+     */
+    public enum MatchMode {
+        PREFIX, CONTAINS
+    }
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private PatientSpecifications() {
+    }
+
+    /**
+     * Builds the search query, the null or blank criteria are ignored.
+     * @param name the searched name, case and accent-insensitive.
+     * @param firstName the searched first name, case and accent-insensitive.
+     * @param birthDate the exact birthdate.
+     * @param gender the gender.
+     * @param matchMode how the name and first name are matched.
+     * @return the specification matching all the given criteria.
+     */
+    public static Specification<Patient> search(String name, String firstName, LocalDate birthDate,
+                                                Patient.Gender gender, MatchMode matchMode) {
+        List<Specification<Patient>> criteria = new ArrayList<>();
+        if (name != null && !name.isBlank()) {
+            criteria.add(like("nameKey", name, matchMode));
+        }
+        if (firstName != null && !firstName.isBlank()) {
+            criteria.add(like("firstNameKey", firstName, matchMode));
+        }
+        if (birthDate != null) {
+            criteria.add((root, query, cb) -> cb.equal(root.get("birthDate"), birthDate));
+        }
+        if (gender != null) {
+            criteria.add((root, query, cb) -> cb.equal(root.get("gender"), gender));
+        }
+        return Specification.allOf(criteria);
+    }
+
+    /**
+     * @param ids the ids found by the trigram index of the names.
+     * @return the specification matching the patients of these ids.
+     */
+    public static Specification<Patient> idIn(Collection<Integer> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+
+    private static Specification<Patient> like(String attribute, String value, MatchMode matchMode) {
+        String escaped = escapeLike(Patient.searchKey(value));
+        String pattern = matchMode == MatchMode.CONTAINS ? "%" + escaped + "%" : escaped + "%";
+        return (root, query, cb) -> cb.like(root.get(attribute), pattern, LIKE_ESCAPE);
+    }
+
+    /**
+     * @param value a searched value.
+     * @return the value with the LIKE wildcards escaped, so "_" or "%" are searched as such.
+     */
+    static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,288 @@
+package com.medilabo.patientservice.search;
+
+import com.medilabo.patientservice.dto.PatientNames;
+import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * In-memory trigram index of the names and first names of the patients, for the contains search.
+ * The names are normalized (accents removed, lowercase), so the search by the index ignores the accents.
+ * The name and first name of a patient are indexed as one value, separated by a character that a fragment cannot contain,
+ * so a patient costs a single entry: the field of each match is checked on the value.
+ * The index is built when the application is ready, updated by the writes of the PatientService and the bulk import,
+ * and rebuilt every patients.search.ngram.rebuild-interval, to see the writes made by the other replicas or directly in the database.
+ * The writes made during a rebuild are replayed on the new index before it replaces the old one.
+ * Its memory is bounded by patients.search.ngram.max-memory: above it, the index is dropped and the searches go to the database,
+ * until a rebuild fits again. Its size and state are published as "patients.search.index.*" metrics.
+ */
+@Component
+public class PatientNameIndex {
+    private static final Logger log = LoggerFactory.getLogger(PatientNameIndex.class);
+
+    /** Separator of the name and first name in the indexed value, removed from the searched fragments. */
+    private static final char FIELD_SEPARATOR = '\u0000';
+    /** Number of patients read between two checks of the memory budget, during a build. */
+    private static final int BUDGET_CHECK_INTERVAL = 10_000;
+
+    private final PatientRepository patientRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long maxBytes;
+    private final int maxResults;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TrigramIndex index;
+    /** The writes received during a rebuild, null if no rebuild is running. */
+    private List<PatientNames> pendingWrites;
+
+    public PatientNameIndex(PatientRepository patientRepository, PlatformTransactionManager transactionManager,
+                            @Value("${patients.search.ngram.max-memory:192MB}") DataSize maxMemory,
+                            @Value("${patients.search.ngram.max-results:10000}") int maxResults,
+                            MeterRegistry meterRegistry) {
+        this.patientRepository = patientRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxBytes = maxMemory.toBytes();
+        this.maxResults = maxResults;
+
+        Gauge.builder("patients.search.index.memory", this, PatientNameIndex::estimatedBytes)
+                .baseUnit("bytes")
+                .description("Estimated heap used by the trigram index of the names")
+                .register(meterRegistry);
+        Gauge.builder("patients.search.index.memory.max", () -> maxBytes)
+                .baseUnit("bytes")
+                .description("Memory budget of the trigram index of the names")
+                .register(meterRegistry);
+        Gauge.builder("patients.search.index.patients", this, PatientNameIndex::size)
+                .description("Number of patients in the trigram index of the names")
+                .register(meterRegistry);
+        Gauge.builder("patients.search.index.trigrams", this, PatientNameIndex::trigramCount)
+                .description("Number of distinct trigrams of the names and first names")
+                .register(meterRegistry);
+        Gauge.builder("patients.search.index.enabled", this, index -> index.isEnabled() ? 1 : 0)
+                .description("1 if the contains search uses the trigram index, 0 if it scans the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Normalizes a name or a searched fragment as the index does.
+     * @param value a name, first name or fragment.
+     * @return the value without its accents, in lowercase, as the search keys of the database (Patient.searchKey).
+     */
+    public static String normalize(String value) {
+        return Patient.searchKey(value).replace(String.valueOf(FIELD_SEPARATOR), "");
+    }
+
+    /**
+     * Finds the patients whose name and first name contain the given fragments, accents and case ignored.
+     * At least one of the fragments must have 3 characters, to be found by its trigrams, the other one is checked on the candidates.
+     * @param name the fragment of the name, ignored if null or blank.
+     * @param firstName the fragment of the first name, ignored if null or blank.
+     * @return the ids of the matching patients in ascending order,
+     * or empty if the index cannot answer: not built, no fragment of 3 characters, or more than patients.search.ngram.max-results patients.
+     */
+    public Optional<List<Integer>> findContaining(String name, String firstName) {
+        String nameFragment = name == null || name.isBlank() ? null : normalize(name);
+        String firstNameFragment = firstName == null || firstName.isBlank() ? null : normalize(firstName);
+        boolean nameIndexed = nameFragment != null && nameFragment.length() >= 3;
+        boolean firstNameIndexed = firstNameFragment != null && firstNameFragment.length() >= 3;
+        if (!nameIndexed && !firstNameIndexed) {
+            return Optional.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return Optional.empty();
+            }
+            // The longest fragment has the most trigrams, so usually the fewest candidates.
+            String searched = nameIndexed && (!firstNameIndexed || nameFragment.length() >= firstNameFragment.length())
+                    ? nameFragment : firstNameFragment;
+            List<Integer> found = index.findContaining(searched).stream()
+                    .filter(id -> matches(index.valueOf(id), nameFragment, firstNameFragment))
+                    .toList();
+            return found.size() > maxResults ? Optional.empty() : Optional.of(found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param value an indexed value, the name and first name.
+     * @return true if the name contains the name fragment and the first name the first name fragment, the null fragments match.
+     */
+    private static boolean matches(String value, String nameFragment, String firstNameFragment) {
+        int separator = value.indexOf(FIELD_SEPARATOR);
+        return (nameFragment == null || value.substring(0, separator).contains(nameFragment))
+                && (firstNameFragment == null || value.substring(separator + 1).contains(firstNameFragment));
+    }
+
+    /**
+     * Indexes a created or updated patient.
+     * @param patient a patient saved in the database.
+     */
+    public void put(Patient patient) {
+        putAll(List.of(patient));
+    }
+
+    /**
+     * Indexes created or updated patients, with a single lock.
+     * @param patients patients saved in the database.
+     */
+    public void putAll(Collection<Patient> patients) {
+        lock.writeLock().lock();
+        try {
+            for (Patient patient : patients) {
+                PatientNames patientNames = new PatientNames(patient.getId(), patient.getName(), patient.getFirstName());
+                if (pendingWrites != null) {
+                    pendingWrites.add(patientNames);
+                }
+                if (index != null) {
+                    index.put(patientNames.id(), valueOf(patientNames));
+                }
+            }
+            if (index != null && index.estimatedBytes() > maxBytes) {
+                log.warn("Patient name index over its budget of {} bytes, the contains search goes to the database", maxBytes);
+                index = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the index when the application starts. If the build fails, the contains search goes to the database until the next rebuild.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Patient name index not built, the contains search goes to the database", e);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database, the current index answers the searches meanwhile.
+     */
+    @Scheduled(initialDelayString = "${patients.search.ngram.rebuild-interval:1h}",
+            fixedDelayString = "${patients.search.ngram.rebuild-interval:1h}")
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingWrites = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        TrigramIndex newIndex = new TrigramIndex();
+        boolean fits;
+        try {
+            fits = Boolean.TRUE.equals(readOnlyTransaction.execute(status -> {
+                try (Stream<PatientNames> patients = patientRepository.streamAllNames()) {
+                    int read = 0;
+                    for (PatientNames patient : (Iterable<PatientNames>) patients::iterator) {
+                        newIndex.put(patient.id(), valueOf(patient));
+                        if (++read % BUDGET_CHECK_INTERVAL == 0 && newIndex.estimatedBytes() > maxBytes) {
+                            return false;
+                        }
+                    }
+                }
+                return newIndex.estimatedBytes() <= maxBytes;
+            }));
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pendingWrites = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pendingWrites.forEach(patient -> newIndex.put(patient.id(), valueOf(patient)));
+            pendingWrites = null;
+            if (fits && newIndex.estimatedBytes() <= maxBytes) {
+                index = newIndex;
+                log.info("Patient name index built in {} ms: {} patients, {} trigrams, about {} bytes of {} allowed",
+                        (System.nanoTime() - start) / 1_000_000, size(), trigramCount(), estimatedBytes(), maxBytes);
+            } else {
+                index = null;
+                log.warn("Patient name index over its budget of {} bytes, the contains search goes to the database", maxBytes);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the index is built and within its budget, false if the contains search goes to the database.
+     */
+    public boolean isEnabled() {
+        return read(() -> index != null ? 1 : 0) == 1;
+    }
+
+    /**
+     * @return the estimated heap used by the index, in bytes, 0 if it is not built.
+     */
+    public long estimatedBytes() {
+        return read(() -> index == null ? 0 : index.estimatedBytes());
+    }
+
+    /**
+     * @return the number of indexed patients, 0 if the index is not built.
+     */
+    public int size() {
+        return (int) read(() -> index == null ? 0 : index.size());
+    }
+
+    /**
+     * @return the number of distinct trigrams of the indexed values, 0 if the index is not built.
+     */
+    public int trigramCount() {
+        return (int) read(() -> index == null ? 0 : index.trigramCount());
+    }
+
+    /**
+     * Reads a value under the read lock, which the thread holding the write lock can also take.
+     */
+    private long read(LongSupplier value) {
+        lock.readLock().lock();
+        try {
+            return value.getAsLong();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the indexed value of a patient: his normalized name and first name, separated by FIELD_SEPARATOR.
+     */
+    private static String valueOf(PatientNames patient) {
+        return normalize(Objects.toString(patient.name(), "")) + FIELD_SEPARATOR + normalize(Objects.toString(patient.firstName(), ""));
+    }
+}
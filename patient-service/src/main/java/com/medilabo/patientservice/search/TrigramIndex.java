@@ -0,0 +1,206 @@
+package com.medilabo.patientservice.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram index of text values of the patients, for the substring search.
+ * Each trigram (three consecutive characters of a value) has the sorted list of the ids whose value contains it:
+ * the ids containing a fragment are in the intersection of the lists of its trigrams.
+ * The values are kept too, so the candidates of the intersection are checked and the result is exact.
+ * The values are given already normalized, the index compares them as they are.
+ * Not thread-safe, see PatientNameIndex.
+ */
+public final class TrigramIndex {
+
+    /** Estimated size of an entry of the trigram map: node, Long key, Postings and its array header. */
+    static final long TRIGRAM_ENTRY_BYTES = 88;
+    /** Estimated size of an entry of the value map, without the characters (one byte each, as most normalized names are Latin-1):
+     * node, Integer key, String and its array header. */
+    static final long VALUE_ENTRY_BYTES = 88;
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Integer, String> values = new HashMap<>();
+    private long postingsCapacity;
+    private long valuesLength;
+
+    /**
+     * Indexes the value of an id, replacing its previous value.
+     * @param id the patient identifier.
+     * @param value the normalized value, null to remove the id.
+     */
+    public void put(int id, String value) {
+        String previous = value == null ? values.remove(id) : values.put(id, value);
+        if (previous != null) {
+            valuesLength -= previous.length();
+            for (long trigram : trigrams(previous)) {
+                Postings ids = postings.get(trigram);
+                postingsCapacity -= ids.capacity();
+                ids.remove(id);
+                if (ids.size == 0) {
+                    postings.remove(trigram);
+                } else {
+                    postingsCapacity += ids.capacity();
+                }
+            }
+        }
+        if (value != null) {
+            valuesLength += value.length();
+            for (long trigram : trigrams(value)) {
+                Postings ids = postings.get(trigram);
+                if (ids == null) {
+                    ids = new Postings();
+                    postings.put(trigram, ids);
+                } else {
+                    postingsCapacity -= ids.capacity();
+                }
+                ids.add(id);
+                postingsCapacity += ids.capacity();
+            }
+        }
+    }
+
+    /**
+     * Finds the ids whose value contains a fragment.
+     * @param fragment the normalized fragment, at least 3 characters long.
+     * @return the matching ids, in ascending order.
+     * @throws IllegalArgumentException if the fragment is shorter than a trigram.
+     */
+    public List<Integer> findContaining(String fragment) {
+        if (fragment.length() < 3) {
+            throw new IllegalArgumentException("A fragment of at least 3 characters is expected: '" + fragment + "'");
+        }
+        List<Postings> lists = new ArrayList<>();
+        for (long trigram : trigrams(fragment)) {
+            Postings ids = postings.get(trigram);
+            if (ids == null) {
+                return List.of();
+            }
+            lists.add(ids);
+        }
+
+        // The intersection starts from the shortest list, each step can only shrink it.
+        lists.sort(Comparator.comparingInt(ids -> ids.size));
+        int[] candidates = Arrays.copyOf(lists.getFirst().ids, lists.getFirst().size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = lists.get(i).retainIn(candidates, count);
+        }
+
+        List<Integer> found = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // The trigrams can be present in another order or apart: the candidate is checked on its value.
+            if (values.get(candidates[i]).contains(fragment)) {
+                found.add(candidates[i]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param id a patient identifier.
+     * @return the indexed value of the id, null if it is not indexed.
+     */
+    public String valueOf(int id) {
+        return values.get(id);
+    }
+
+    /**
+     * @return the number of indexed ids.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return the number of distinct trigrams.
+     */
+    public int trigramCount() {
+        return postings.size();
+    }
+
+    /**
+     * @return an estimation of the heap used by the index, in bytes.
+     */
+    public long estimatedBytes() {
+        return TRIGRAM_ENTRY_BYTES * postings.size() + Integer.BYTES * postingsCapacity
+                + VALUE_ENTRY_BYTES * values.size() + valuesLength;
+    }
+
+    /**
+     * @param value a normalized value.
+     * @return the distinct trigrams of the value, each character being 16 bits of the key.
+     */
+    static long[] trigrams(String value) {
+        if (value.length() < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[value.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2);
+        }
+        return Arrays.stream(trigrams).sorted().distinct().toArray();
+    }
+
+    /**
+     * Sorted set of ids, in a growable array.
+     */
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        int capacity() {
+            return ids.length;
+        }
+
+        void add(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            int insertion = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, insertion, ids, insertion + 1, size - insertion);
+            ids[insertion] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            if (size < ids.length / 4) {
+                ids = Arrays.copyOf(ids, Math.max(2, size * 2));
+            }
+        }
+
+        /**
+         * Keeps in the candidates only the ids of this set.
+         * @param candidates sorted ids, filtered in place.
+         * @param count the number of candidates.
+         * @return the number of candidates kept, at the start of the array.
+         */
+        int retainIn(int[] candidates, int count) {
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < count && j < size; i++) {
+                while (j < size && ids[j] < candidates[i]) {
+                    j++;
+                }
+                if (j < size && ids[j] == candidates[i]) {
+                    candidates[kept++] = candidates[i];
+                }
+            }
+            return kept;
+        }
+    }
+}
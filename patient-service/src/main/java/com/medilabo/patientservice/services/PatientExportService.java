@@ -0,0 +1,107 @@
+package com.medilabo.patientservice.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.medilabo.patientservice.entities.Patient;
+import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Export of all the patients, written while they are read.
+ * The patients are read in the order of their ids from a database cursor, patients.export.fetch-size rows at a time
+ * (for MySQL, the url must enable useCursorFetch, otherwise the driver reads the whole result),
+ * each one is written with a Jackson generator, and the persistence context is cleared after each fetch,
+ * so the memory used does not depend on the number of patients.
+ */
+@Service
+public class PatientExportService {
+    private static final Logger log = LoggerFactory.getLogger(PatientExportService.class);
+
+    public enum Format {
+        /** One JSON patient per line. */
+        NDJSON,
+        /** CSV with a header line, the columns the bulk import can read back. */
+        CSV
+    }
+
+    private static final CsvSchema CSV_SCHEMA = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("name")
+            .addColumn("firstName")
+            .addColumn("birthDate")
+            .addColumn("gender")
+            .addColumn("address")
+            .addColumn("phone")
+            .setUseHeader(true)
+            .build();
+
+    private final EntityManager entityManager;
+    private final ObjectWriter jsonWriter;
+    private final ObjectWriter csvWriter;
+
+    @Value("${patients.export.fetch-size:1000}")
+    private int fetchSize = 1000;
+
+    public PatientExportService(EntityManager entityManager, ObjectMapper objectMapper) {
+        this.entityManager = entityManager;
+        // The generators are flushed by the servlet buffer, not after each patient.
+        this.jsonWriter = objectMapper.writerFor(Patient.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator((String) null);
+        CsvMapper csvMapper = CsvMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        // Only the columns of the schema are written, the other properties (version) are skipped.
+        this.csvWriter = csvMapper.writerFor(Patient.class)
+                .with(CSV_SCHEMA)
+                .with(JsonGenerator.Feature.IGNORE_UNKNOWN)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes all the patients, in the order of their ids.
+     * The transaction, and so a database connection, is held until the last patient is written.
+     * @param output the stream to write to, not closed.
+     * @param format the format of the export.
+     * @return the number of patients written.
+     * @throws IOException if the output cannot be written.
+     */
+    @Transactional(readOnly = true)
+    public long exportPatients(OutputStream output, Format format) throws IOException {
+        ObjectWriter writer = format == Format.CSV ? csvWriter : jsonWriter;
+        long count = 0;
+
+        try (Stream<Patient> patients = entityManager.createQuery("select p from Patient p order by p.id", Patient.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+             JsonGenerator generator = writer.createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (Patient patient : (Iterable<Patient>) patients::iterator) {
+                writer.writeValue(generator, patient);
+                if (format == Format.NDJSON) {
+                    generator.writeRaw('\n');
+                }
+                if (++count % fetchSize == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        log.info("Export: {} patients written in {}", count, format);
+        return count;
+    }
+}
@@ -0,0 +1,190 @@
+package com.medilabo.patientservice.services;
+
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.medilabo.patientservice.dto.BulkImportResultDTO;
+import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientRepository;
+import com.medilabo.patientservice.search.PatientNameIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of patients, for the nightly import of the new registrations.
+ * The payload is read one patient at a time, so it is never held in memory as a whole,
+ * and the patients are written by chunks of patients.bulk.chunk-size, one transaction per chunk.
+ * Inside a chunk, the inserts are sent by JDBC batches of hibernate.jdbc.batch_size.
+ * An invalid patient does not stop the import: it is reported with its index in the payload, and the others are inserted.
+ */
+@Service
+public class PatientImportService {
+    private static final Logger log = LoggerFactory.getLogger(PatientImportService.class);
+
+    public enum Format {
+        /** A JSON array, or NDJSON (one patient per line). */
+        JSON,
+        /** CSV with a header line naming the columns: name, firstName, birthDate, gender, address, phone. */
+        CSV
+    }
+
+    private final PatientRepository patientRepository;
+    private final PatientNameIndex patientNameIndex;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectReader jsonReader;
+    private final ObjectReader csvReader;
+
+    @Value("${patients.bulk.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    public PatientImportService(PatientRepository patientRepository, PatientNameIndex patientNameIndex, EntityManager entityManager,
+                                TransactionTemplate transactionTemplate, Validator validator, ObjectMapper objectMapper) {
+        this.patientRepository = patientRepository;
+        this.patientNameIndex = patientNameIndex;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.jsonReader = objectMapper.readerFor(Patient.class);
+        CsvMapper csvMapper = CsvMapper.builder()
+                .findAndAddModules()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(CsvParser.Feature.SKIP_EMPTY_LINES)
+                .build();
+        this.csvReader = csvMapper.readerFor(Patient.class).with(CsvSchema.emptySchema().withHeader());
+    }
+
+    /**
+     * Imports the patients of a payload.
+     * The ids of the payload, if any, are ignored: each patient gets a new one.
+     * If the payload is malformed, the import stops there: the patients read before are inserted, and the error is reported.
+     * If a chunk is rejected by the database, its patients are reported and the next chunks are still imported.
+     * @param payload the body of the request, read until its end.
+     * @param format the format of the payload.
+     * @return how many patients were received and inserted, and the errors of the patients not inserted.
+     * @throws IOException if the payload cannot be read.
+     */
+    public BulkImportResultDTO importPatients(InputStream payload, Format format) throws IOException {
+        ObjectReader reader = format == Format.CSV ? csvReader : jsonReader;
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        List<Patient> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkIndexes = new ArrayList<>(chunkSize);
+        long index = 0;
+
+        // A root-level array is iterated element by element, like a sequence of NDJSON values or CSV rows.
+        try (MappingIterator<Patient> patients = reader.readValues(payload)) {
+            while (true) {
+                Patient patient;
+                try {
+                    if (!patients.hasNextValue()) {
+                        break;
+                    }
+                    patient = patients.nextValue();
+                } catch (DatabindException e) {
+                    // A syntax error inside a patient is wrapped by the databinding: the parser cannot find the next patient.
+                    if (e.getCause() instanceof StreamReadException malformed) {
+                        result.getErrors().add(malformedPayload(index++, malformed));
+                        break;
+                    }
+                    result.getErrors().add(new BulkImportResultDTO.ItemError(index++, "Invalid patient: " + e.getOriginalMessage()));
+                    continue;
+                } catch (StreamReadException e) {
+                    result.getErrors().add(malformedPayload(index++, e));
+                    break;
+                }
+
+                String error = validate(patient);
+                if (error != null) {
+                    result.getErrors().add(new BulkImportResultDTO.ItemError(index++, error));
+                    continue;
+                }
+                patient.setId(null);
+                patient.setVersion(null);
+                chunk.add(patient);
+                chunkIndexes.add(index++);
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunk, chunkIndexes, result);
+                }
+            }
+        }
+        writeChunk(chunk, chunkIndexes, result);
+
+        result.setReceived(index);
+        // The patients of a rejected chunk are only known when it is written.
+        result.getErrors().sort(Comparator.comparingLong(BulkImportResultDTO.ItemError::index));
+        log.info("Bulk import: {} patients received, {} inserted, {} errors",
+                result.getReceived(), result.getInserted(), result.getErrors().size());
+        return result;
+    }
+
+    private static BulkImportResultDTO.ItemError malformedPayload(long index, StreamReadException e) {
+        return new BulkImportResultDTO.ItemError(index, "Malformed payload, import stopped: " + e.getOriginalMessage());
+    }
+
+    /**
+     * Checks the constraints of the entity before the chunk is written, so one invalid patient does not roll back its chunk.
+     * @param patient a patient of the payload.
+     * @return the reason why the patient cannot be imported, null if it is valid.
+     */
+    private String validate(Patient patient) {
+        if (patient == null) {
+            return "Invalid patient: null";
+        }
+        Set<ConstraintViolation<Patient>> violations = validator.validate(patient);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Writes a chunk in its own transaction, then detaches its patients so the persistence context does not grow with the import.
+     * Once committed, the patients are added to the index of the names.
+     * The chunk is then emptied.
+     */
+    private void writeChunk(List<Patient> chunk, List<Long> chunkIndexes, BulkImportResultDTO result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                patientRepository.saveAll(chunk);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            result.setInserted(result.getInserted() + chunk.size());
+            patientNameIndex.putAll(chunk);
+        } catch (DataAccessException e) {
+            log.warn("Bulk import: chunk of {} patients rolled back", chunk.size(), e);
+            String message = "Chunk rolled back: " + e.getMostSpecificCause().getMessage();
+            chunkIndexes.forEach(i -> result.getErrors().add(new BulkImportResultDTO.ItemError(i, message)));
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+}
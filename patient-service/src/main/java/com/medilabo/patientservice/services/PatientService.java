@@ -1,39 +1,80 @@
 package com.medilabo.patientservice.services;
 
+import com.medilabo.patientservice.config.CacheConfig;
+import com.medilabo.patientservice.dto.CursorPage;
+import com.medilabo.patientservice.dto.PatientDemographics;
 import com.medilabo.patientservice.entities.Patient;
 import com.medilabo.patientservice.exceptions.PatientNotFoundException;
+import com.medilabo.patientservice.exceptions.PatientVersionConflictException;
 import com.medilabo.patientservice.repositories.PatientRepository;
+import com.medilabo.patientservice.repositories.PatientSpecifications;
+import com.medilabo.patientservice.search.PatientNameIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class PatientService {
     private static final Logger log = LoggerFactory.getLogger(PatientService.class);
 
     private final PatientRepository patientRepository;
+    private final PatientNameIndex patientNameIndex;
 
-    public PatientService(PatientRepository patientRepository) {
+    public PatientService(PatientRepository patientRepository, PatientNameIndex patientNameIndex) {
         this.patientRepository = patientRepository;
+        this.patientNameIndex = patientNameIndex;
     }
 
     /**
-     * Retrieves all patients in the database.
-     * @return a list of Patient object.
+     * Retrieves a page of the patients, in the order of their ids.
+     * The pages are found with a cursor (keyset pagination) on the id, so a deep page costs the same as the first one.
+     * @param cursor the cursor returned with the previous page, null or blank for the first page.
+     * @param size the maximum number of patients in the page.
+     * @return a page of Patient which can be empty, with the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor is invalid.
      */
-    public List<Patient> getAllPatients() {
-        return patientRepository.findAll();
+    public CursorPage<Patient> getPatients(String cursor, int size) {
+        int afterId = (cursor == null || cursor.isBlank()) ? 0 : decodeCursor(cursor);
+        // One more patient than the page, to know if there is a next page.
+        List<Patient> patients = patientRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, size + 1));
+
+        if (patients.size() <= size) {
+            return new CursorPage<>(patients, null);
+        }
+        List<Patient> page = patients.subList(0, size);
+        return new CursorPage<>(page, encodeCursor(page.getLast().getId()));
     }
 
     /**
      * Retrieves a Patient according to its Identifier.
+     * The patient is read from the cache if present (see CacheConfig), the unknown ids are not cached.
+     * The returned patient can be shared with other requests, it must not be modified.
      * @param id, Integer : the patient identifier we want to retrieve.
      * @return the founded Patient
      * @throws PatientNotFoundException if no matching patient found
      */
+    @Cacheable(cacheNames = CacheConfig.PATIENTS_CACHE, key = "#id")
     public Patient getPatientById(Integer id) {
         log.debug("Fetching patient with id {}", id);
 
@@ -42,42 +83,124 @@ public class PatientService {
     }
 
     /**
-     * Retrieves patients matching given filtering criteria.
-     * All parameters are optional. If a parameter is null, it's ignored.
-     * @param name, a String representing the patient's name, (partial match, case-insensitive),
-     * @param firstName, a String representing the patient's firstname, (partial match, case-insensitive),
+     * Retrieves several patients with one query.
+     * @param ids the patients identifiers. Duplicates are returned once.
+     * @return the patients found, in the order of the ids. The unknown ids are skipped.
+     */
+    public List<Patient> getPatientsByIds(Collection<Integer> ids) {
+        return inOrderOf(ids, patientRepository.findAllById(ids.stream().distinct().toList()), Patient::getId);
+    }
+
+    /**
+     * Retrieves the demographic fields of a patient (birthdate, gender and version), without reading the other columns.
+     * They are cached, and evicted by updatePatient as the version changes.
+     * @param id the patient identifier.
+     * @return the demographics of the patient.
+     * @throws PatientNotFoundException if no matching patient found
+     */
+    @Cacheable(cacheNames = CacheConfig.DEMOGRAPHICS_CACHE, key = "#id")
+    public PatientDemographics getPatientDemographics(Integer id) {
+        return patientRepository.findDemographicsById(id)
+                .orElseThrow(() -> new PatientNotFoundException(id));
+    }
+
+    /**
+     * Retrieves the demographic fields of several patients with one query, without reading the other columns.
+     * @param ids the patients identifiers. Duplicates are returned once.
+     * @return the demographics of the patients found, in the order of the ids. The unknown ids are skipped.
+     */
+    public List<PatientDemographics> getPatientsDemographics(Collection<Integer> ids) {
+        return inOrderOf(ids, patientRepository.findDemographicsByIdIn(ids.stream().distinct().toList()), PatientDemographics::id);
+    }
+
+    /**
+     * The databases return the rows of an "in" query in any order: they are sorted back in the order of the ids.
+     */
+    private static <T> List<T> inOrderOf(Collection<Integer> ids, List<T> found, Function<T, Integer> idOf) {
+        Map<Integer, T> byId = found.stream().collect(Collectors.toMap(idOf, Function.identity()));
+        return ids.stream().distinct().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    /** Order of the search results, the one of the index on (name_key, first_name_key), then the id so the pages are stable. */
+    private static final Sort SEARCH_ORDER = Sort.by("nameKey", "firstNameKey", "id");
+
+    /**
+     * Retrieves a page of the patients matching given filtering criteria.
+     * All criteria are optional. If a criterion is null or blank, it's ignored.
+     * The filtering is done by the database, the prefix search on the name and first name uses their indexes.
+     * The contains search asks the trigram index of the names for the matching ids first (accents ignored), so the database
+     * only reads these patients. If the index cannot answer (fragments shorter than 3 characters, too many matches,
+     * index over its memory budget), the database reads every row, on the search keys which ignore the accents too.
+     * @param name, a String representing the patient's name, (case and accent-insensitive),
+     * @param firstName, a String representing the patient's firstname, (case and accent-insensitive),
      * @param birthDate, a LocalDate representing the patient's birthdate,
-     * @param gender, a Patient.Gender enum option (MALE, FEMALE or OTHER).
-     * @return a list of Patients matching the provided criteria.
+     * @param gender, a Patient.Gender enum option (MALE, FEMALE or OTHER),
+     * @param matchMode, PREFIX (the names start with the given values) or CONTAINS (partial match, slower as it reads every row),
+     * @param page, the index of the page, from 0,
+     * @param size, the maximum number of patients in the page.
+     * @return a slice of Patients matching the provided criteria, telling if there is a next page.
      */
-    public List<Patient> searchPatients(String name, String firstName, LocalDate birthDate, Patient.Gender gender) {
-        return patientRepository.findAll().stream()
-                .filter(p -> name == null || p.getName().toLowerCase().contains(name.toLowerCase()))
-                .filter(p -> firstName == null || p.getFirstName().toLowerCase().contains(firstName.toLowerCase()))
-                .filter(p -> birthDate == null || p.getBirthDate().equals(birthDate))
-                .filter(p -> gender == null || p.getGender() == gender)
-                .toList();
+    public Slice<Patient> searchPatients(String name, String firstName, LocalDate birthDate, Patient.Gender gender,
+                                         PatientSpecifications.MatchMode matchMode, int page, int size) {
+        log.debug("Searching patients name={} firstName={} birthDate={} gender={} match={} page={} size={}",
+                name, firstName, birthDate, gender, matchMode, page, size);
+
+        PageRequest pageRequest = PageRequest.of(page, size, SEARCH_ORDER);
+        if (matchMode == PatientSpecifications.MatchMode.CONTAINS) {
+            Optional<List<Integer>> ids = patientNameIndex.findContaining(name, firstName);
+            if (ids.isPresent()) {
+                if (ids.get().isEmpty()) {
+                    return new SliceImpl<>(List.of(), pageRequest, false);
+                }
+                return patientRepository.findBy(
+                        PatientSpecifications.search(null, null, birthDate, gender, matchMode).and(PatientSpecifications.idIn(ids.get())),
+                        query -> query.slice(pageRequest));
+            }
+        }
+        return patientRepository.findBy(
+                PatientSpecifications.search(name, firstName, birthDate, gender, matchMode),
+                query -> query.slice(pageRequest));
     }
 
     /**
-     * Add a new Patient to database.
+     * Add a new Patient to database, to the cache and to the index of the names.
+     * The id and version sent by the client are ignored, as in the bulk import: the patient is always created, at its first version.
      * @param patient, the Patient object to save.
      * @return the persisted patient entity.
      */
+    @CachePut(cacheNames = CacheConfig.PATIENTS_CACHE, key = "#result.id")
     public Patient savePatient(Patient patient) {
-        return patientRepository.save(patient);
+        patient.setId(null);
+        patient.setVersion(null);
+        Patient savedPatient = patientRepository.save(patient);
+        patientNameIndex.put(savedPatient);
+        return savedPatient;
     }
 
     /**
      * Update an existing Patient.
+     * The cached patient is replaced, his cached demographics are evicted (their version is outdated) and his names
+     * are indexed again.
+     * The patient to update is read from the database, not from the cache (the call to getPatientById is not intercepted),
+     * in the same transaction as the write: on the primary, not on a read replica which may be behind.
+     * The update is flushed before returning, so the returned (and cached) patient has its new version.
      * @param id, the id to the Patient to update.
      * @param patientUpdated, a Patient object with the updated information.
+     * @param expectedVersions, the versions the update may be made from (If-Match), or null to update any version.
      * @return the patient that has been updated.
+     * @throws PatientVersionConflictException if the patient is not at one of the expected versions.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the patient was updated meanwhile by another transaction.
      */
-    public Patient updatePatient(Integer id, Patient patientUpdated) {
-        log.debug("Updating patient with id {}", id);
+    @Caching(put = @CachePut(cacheNames = CacheConfig.PATIENTS_CACHE, key = "#id"),
+            evict = @CacheEvict(cacheNames = CacheConfig.DEMOGRAPHICS_CACHE, key = "#id"))
+    @Transactional
+    public Patient updatePatient(Integer id, Patient patientUpdated, Set<Long> expectedVersions) {
+        log.debug("Updating patient with id {} from versions {}", id, expectedVersions);
 
         Patient patientToUpdate = getPatientById(id);
+        if (expectedVersions != null && !expectedVersions.contains(patientToUpdate.getVersion())) {
+            throw new PatientVersionConflictException(id, expectedVersions, patientToUpdate.getVersion());
+        }
 
         patientToUpdate.setName(patientUpdated.getName());
         patientToUpdate.setFirstName(patientUpdated.getFirstName());
@@ -85,6 +208,33 @@ public class PatientService {
         patientToUpdate.setAddress(patientUpdated.getAddress());
         patientToUpdate.setPhone(patientUpdated.getPhone());
 
-        return patientRepository.save(patientToUpdate);
+        Patient savedPatient = patientRepository.saveAndFlush(patientToUpdate);
+        patientNameIndex.put(savedPatient);
+        return savedPatient;
+    }
+
+    /**
+     * @param lastId the id of the last patient of a page.
+     * @return the cursor of the next page, as an opaque string.
+     */
+    static String encodeCursor(Integer lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor a string returned by encodeCursor().
+     * @return the id of the last patient of the previous page.
+     * @throws IllegalArgumentException if the cursor was not returned by encodeCursor().
+     */
+    static int decodeCursor(String cursor) {
+        try {
+            int lastId = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (lastId < 0) {
+                throw new IllegalArgumentException("Negative id");
+            }
+            return lastId;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
     }
 }
@@ -0,0 +1,110 @@
+package com.medilabo.patientservice.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReadReplicaDataSourceTest {
+
+    private DataSource primary;
+    private DataSource first;
+    private DataSource second;
+    private Connection primaryConnection;
+    private Connection firstConnection;
+    private Connection secondConnection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = mock(DataSource.class);
+        first = mock(DataSource.class);
+        second = mock(DataSource.class);
+        primaryConnection = mock(Connection.class);
+        firstConnection = mock(Connection.class);
+        secondConnection = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(first.getConnection()).thenReturn(firstConnection);
+        when(second.getConnection()).thenReturn(secondConnection);
+    }
+
+    private ReadReplicaDataSource readDataSource(Duration retryAfter) {
+        return new ReadReplicaDataSource(List.of(
+                new ReadReplicaDataSource.Replica("replica-1", first),
+                new ReadReplicaDataSource.Replica("replica-2", second)), primary, retryAfter);
+    }
+
+    // =========================
+    // Round-robin
+    // =========================
+
+    @Test
+    void getConnection_shouldUseTheReplicasInTurn() throws SQLException {
+        ReadReplicaDataSource dataSource = readDataSource(Duration.ofMinutes(1));
+
+        assertSame(firstConnection, dataSource.getConnection());
+        assertSame(secondConnection, dataSource.getConnection());
+        assertSame(firstConnection, dataSource.getConnection());
+
+        assertEquals(2, dataSource.getReplicas().get(0).getConnections());
+        assertEquals(1, dataSource.getReplicas().get(1).getConnections());
+        verifyNoInteractions(primary);
+    }
+
+    @Test
+    void givenNoReplica_whenCreated_shouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new ReadReplicaDataSource(List.of(), primary, Duration.ZERO));
+    }
+
+    // =========================
+    // Fallback
+    // =========================
+
+    @Test
+    void givenAReplicaDown_whenGetConnection_shouldUseTheNextReplicaAndSkipTheFailedOne() throws SQLException {
+        when(first.getConnection()).thenThrow(new SQLTransientConnectionException("Connection refused"));
+        ReadReplicaDataSource dataSource = readDataSource(Duration.ofMinutes(1));
+
+        assertSame(secondConnection, dataSource.getConnection());
+        assertSame(secondConnection, dataSource.getConnection());
+        assertSame(secondConnection, dataSource.getConnection());
+
+        verify(first, times(1)).getConnection();
+        assertFalse(dataSource.getReplicas().get(0).isAvailable());
+        assertEquals(1, dataSource.getReplicas().get(0).getFailures());
+        verifyNoInteractions(primary);
+    }
+
+    @Test
+    void givenAReplicaDown_whenTheRetryDelayIsElapsed_shouldTryItAgain() throws SQLException {
+        when(first.getConnection())
+                .thenThrow(new SQLTransientConnectionException("Connection refused"))
+                .thenReturn(firstConnection);
+        ReadReplicaDataSource dataSource = readDataSource(Duration.ZERO);
+
+        assertSame(secondConnection, dataSource.getConnection());
+        assertSame(secondConnection, dataSource.getConnection());
+        assertSame(firstConnection, dataSource.getConnection());
+    }
+
+    @Test
+    void givenAllReplicasDown_whenGetConnection_shouldUseThePrimary() throws SQLException {
+        when(first.getConnection()).thenThrow(new SQLTransientConnectionException("Connection refused"));
+        when(second.getConnection()).thenThrow(new SQLTransientConnectionException("Connection refused"));
+        ReadReplicaDataSource dataSource = readDataSource(Duration.ofMinutes(1));
+
+        assertSame(primaryConnection, dataSource.getConnection());
+        assertSame(primaryConnection, dataSource.getConnection());
+
+        assertEquals(2, dataSource.getPrimaryConnections());
+        verify(first, times(1)).getConnection();
+        verify(second, times(1)).getConnection();
+    }
+}
@@ -0,0 +1,151 @@
+package com.medilabo.patientservice.config;
+
+import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientSpecifications.MatchMode;
+import com.medilabo.patientservice.services.PatientService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routing of the transactions with two H2 databases, a primary and a replica, and a second replica which is down.
+ * The replica is a copy of the primary made by replicate(), so the tests control what it lags behind.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary",
+        "patients.datasource.replicas[0].url=" + ReadWriteRoutingTest.REPLICA_URL,
+        "patients.datasource.replicas[1].url=jdbc:h2:tcp://localhost:1/down",
+        "patients.datasource.replica-connection-timeout=250ms",
+        "patients.datasource.replica-retry-after=1h"
+})
+@ActiveProfiles("test")
+class ReadWriteRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @TempDir
+    private Path tempDir;
+
+    private JdbcTemplate primaryJdbc;
+    private JdbcTemplate replicaJdbc;
+    private Patient patient;
+
+    @BeforeEach
+    void setUp() {
+        primaryJdbc = new JdbcTemplate(dataSource);
+        replicaJdbc = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        patient = patientService.savePatient(new Patient("TestRouting", "Test", LocalDate.of(1966, 12, 31),
+                Patient.Gender.FEMALE, "1 Brookside St", "100-222-3333"));
+        replicate();
+        cacheManager.getCache(CacheConfig.PATIENTS_CACHE).clear();
+    }
+
+    // =========================
+    // Helpers
+    // =========================
+
+    /**
+     * Copies the primary to the replica.
+     */
+    private void replicate() {
+        String script = tempDir.resolve("primary.sql").toString();
+        primaryJdbc.execute("SCRIPT TO '" + script + "'");
+        replicaJdbc.execute("DROP ALL OBJECTS");
+        replicaJdbc.execute("RUNSCRIPT FROM '" + script + "'");
+    }
+
+    private void renameOnReplica(Integer id, String name) {
+        replicaJdbc.update("UPDATE patients SET name = ?, name_key = ? WHERE id = ?", name, Patient.searchKey(name), id);
+    }
+
+    private int countOn(JdbcTemplate jdbc, Integer id) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM patients WHERE id = ?", Integer.class, id);
+    }
+
+    private double connections(String route, String target) {
+        return meterRegistry.get("patients.datasource.connections").tags("route", route, "target", target)
+                .functionCounter().count();
+    }
+
+    // =========================
+    // Reads
+    // =========================
+
+    @Test
+    void getPatientById_shouldReadTheReplica() {
+        renameOnReplica(patient.getId(), "FromReplica");
+
+        assertEquals("FromReplica", patientService.getPatientById(patient.getId()).getName());
+    }
+
+    @Test
+    void searchPatients_shouldReadTheReplicas_andSkipTheReplicaWhichIsDown() {
+        renameOnReplica(patient.getId(), "FromReplica");
+        double replicaReads = connections("read", "replica-1");
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1, patientService.searchPatients("FromRep", null, null, null, MatchMode.PREFIX, 0, 10)
+                    .getNumberOfElements());
+        }
+
+        assertEquals(replicaReads + 4, connections("read", "replica-1"));
+        assertTrue(meterRegistry.get("patients.datasource.replica.failures").tag("target", "replica-2")
+                .functionCounter().count() >= 1);
+        assertEquals(0, meterRegistry.get("patients.datasource.replica.available").tag("target", "replica-2")
+                .gauge().value());
+    }
+
+    // =========================
+    // Writes
+    // =========================
+
+    @Test
+    void savePatient_shouldWriteThePrimary() {
+        double writes = connections("write", "primary");
+
+        Patient saved = patientService.savePatient(new Patient("TestNew", "Test", LocalDate.of(1970, 1, 1),
+                Patient.Gender.MALE, null, null));
+
+        assertEquals(1, countOn(primaryJdbc, saved.getId()));
+        assertEquals(0, countOn(replicaJdbc, saved.getId()));
+        assertTrue(connections("write", "primary") > writes);
+    }
+
+    @Test
+    void updatePatient_shouldReadAndWriteThePrimary_whenTheReplicaIsBehind() {
+        Patient created = patientService.savePatient(new Patient("TestNew", "Test", LocalDate.of(1970, 1, 1),
+                Patient.Gender.MALE, null, null));
+        Patient update = new Patient("TestUpdated", "Test", LocalDate.of(1970, 1, 1), Patient.Gender.MALE, null, null);
+
+        Patient updated = patientService.updatePatient(created.getId(), update, null);
+
+        assertEquals("TestUpdated", updated.getName());
+        assertEquals("TestUpdated", primaryJdbc.queryForObject("SELECT name FROM patients WHERE id = ?",
+                String.class, created.getId()));
+    }
+}
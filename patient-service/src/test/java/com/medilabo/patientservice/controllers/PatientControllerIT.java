@@ -3,6 +3,9 @@ package com.medilabo.patientservice.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.medilabo.patientservice.entities.Patient;
 import com.medilabo.patientservice.repositories.PatientRepository;
+import com.medilabo.patientservice.search.PatientNameIndex;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +15,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 
 import java.time.LocalDate;
@@ -33,9 +37,15 @@ public class PatientControllerIT {
     @Autowired
     private PatientRepository patientRepository;
 
+    @Autowired
+    private PatientNameIndex patientNameIndex;
+
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Value("${gateway.username}")
     private String gatewayUsername;
 
@@ -60,6 +70,8 @@ public class PatientControllerIT {
         patientRepository.save(patientBorderline);
         patientRepository.save(patientInDanger);
         patientRepository.save(patientEarlyOnset);
+        // Saved without the PatientService, the contains search would not find them in the index of the names.
+        patientNameIndex.rebuild();
     }
 
     @AfterEach
@@ -79,7 +91,170 @@ public class PatientControllerIT {
                         .with(httpBasic(gatewayUsername,gatewayPassword)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(4))
-                .andExpect(jsonPath("$[0].name").value("TestNone"));
+                .andExpect(jsonPath("$[0].name").value("TestNone"))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void givenAPageSize_whenGetPatients_shouldFollowTheCursorToTheLastPage() throws Exception {
+        String cursor = mockMvc.perform(get("/patients").param("size", "3")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        mockMvc.perform(get("/patients").param("size", "3").param("cursor", cursor)
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("TestEarlyOnset"))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void givenAnInvalidCursorOrSize_whenGetPatients_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/patients").param("cursor", "???")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/patients").param("size", "501")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void givenSeveralIds_whenGetPatients_shouldReturnThePatientsInTheOrderOfTheIds() throws Exception {
+        mockMvc.perform(get("/patients").param("ids", patientInDanger.getId() + "," + patientNone.getId() + ",-1")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].name").value("TestInDanger"))
+                .andExpect(jsonPath("$[1].name").value("TestNone"));
+    }
+
+    @Test
+    void givenSeveralIds_whenGetPatients_shouldRunASingleStatement() throws Exception {
+        DistributionSummary statements = meterRegistry.summary("patients.sql.statements.per.request", "method", "GET", "uri", "/patients");
+        long requests = statements.count();
+        double total = statements.totalAmount();
+
+        mockMvc.perform(get("/patients").param("ids", patientInDanger.getId() + "," + patientNone.getId() + "," + patientBorderline.getId())
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+
+        assertEquals(requests + 1, statements.count());
+        assertEquals(total + 1, statements.totalAmount());
+    }
+
+    @Test
+    void givenTheETagOfThePatient_whenGetPatient_shouldReturnNotModifiedWithoutBody() throws Exception {
+        String eTag = mockMvc.perform(get("/patients/" + patientNone.getId())
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(jsonPath("$.version").value(0))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/patients/" + patientNone.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag)
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void givenIfMatch_whenUpdatePatient_shouldUpdateTheCurrentVersionOnly() throws Exception {
+        String update = """
+                {"name": "TestNone", "firstName": "Renamed", "birthDate": "1966-12-31", "gender": "FEMALE"}
+                """;
+
+        mockMvc.perform(put("/patients/" + patientNone.getId()).header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .with(httpBasic(gatewayUsername,gatewayPassword))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(update))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.firstName").value("Renamed"));
+
+        // A second edit made from the same version is rejected instead of overwriting the first one.
+        mockMvc.perform(put("/patients/" + patientNone.getId()).header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .with(httpBasic(gatewayUsername,gatewayPassword))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(update.replace("Renamed", "Overwritten")))
+                .andExpect(status().isPreconditionFailed());
+
+        // The old ETag is no longer current.
+        mockMvc.perform(get("/patients/" + patientNone.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName").value("Renamed"));
+    }
+
+    @Test
+    void givenTheWeakETagOfTheCurrentVersion_whenUpdatePatient_shouldReturnPreconditionFailed() throws Exception {
+        // If-Match uses the strong comparison: W/"0" does not match the version 0.
+        mockMvc.perform(put("/patients/" + patientNone.getId()).header(HttpHeaders.IF_MATCH, "W/\"0\"")
+                        .with(httpBasic(gatewayUsername,gatewayPassword))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patientNone)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void givenANonNumericIfMatch_whenUpdatePatient_shouldReturnPreconditionFailed() throws Exception {
+        mockMvc.perform(put("/patients/" + patientNone.getId()).header(HttpHeaders.IF_MATCH, "\"abc\"")
+                        .with(httpBasic(gatewayUsername,gatewayPassword))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patientNone)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void givenSeveralIfMatch_whenUpdatePatient_shouldUpdateIfOneIsTheCurrentVersion() throws Exception {
+        String update = """
+                {"name": "TestNone", "firstName": "Renamed", "birthDate": "1966-12-31", "gender": "FEMALE"}
+                """;
+
+        mockMvc.perform(put("/patients/" + patientNone.getId()).header(HttpHeaders.IF_MATCH, "\"1\", \"2\"")
+                        .with(httpBasic(gatewayUsername,gatewayPassword))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(update))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(put("/patients/" + patientNone.getId()).header(HttpHeaders.IF_MATCH, "\"1\", \"0\"")
+                        .with(httpBasic(gatewayUsername,gatewayPassword))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(update))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.firstName").value("Renamed"));
+    }
+
+    @Test
+    void givenAnId_whenGetPatientDemographics_shouldReturnOnlyTheBirthDateAndGender() throws Exception {
+        mockMvc.perform(get("/patients/" + patientBorderline.getId() + "/demographics")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.birthDate").value("1945-06-24"))
+                .andExpect(jsonPath("$.gender").value("MALE"))
+                .andExpect(jsonPath("$.name").doesNotExist())
+                .andExpect(jsonPath("$.address").doesNotExist());
+
+        mockMvc.perform(get("/patients/-1/demographics")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void givenSeveralIds_whenGetPatientsDemographics_shouldReturnTheirDemographics() throws Exception {
+        mockMvc.perform(get("/patients/demographics").param("ids", patientEarlyOnset.getId() + "," + patientNone.getId())
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(patientEarlyOnset.getId()))
+                .andExpect(jsonPath("$[0].gender").value("FEMALE"))
+                .andExpect(jsonPath("$[0].phone").doesNotExist());
     }
 
     @Test
@@ -91,6 +266,102 @@ public class PatientControllerIT {
                 .andExpect(jsonPath("$[0].name").value("TestBorderline"));
     }
 
+    @Test
+    void givenAPrefix_whenSearchPatients_shouldReturnThePatientsWhoseNameStartsWithIt() throws Exception {
+        mockMvc.perform(get("/patients/search").param("name", "testin").param("match", "PREFIX")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("TestInDanger"))
+                .andExpect(jsonPath("$[0].nameKey").doesNotExist());
+    }
+
+    @Test
+    void givenACreatedPatient_whenSearchPatientsWithAFragmentWithoutAccents_shouldFindItByTheTrigramIndex() throws Exception {
+        mockMvc.perform(post("/patients")
+                        .with(httpBasic(gatewayUsername,gatewayPassword))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                            {"name": "Lefèvre", "firstName": "Hélène", "birthDate": "1989-03-03", "gender": "FEMALE"}
+                            """))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/patients/search").param("name", "FEVR").param("firstName", "len").param("match", "CONTAINS")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Lefèvre"));
+    }
+
+    @Test
+    void givenAPageSize_whenSearchPatients_shouldReturnOnePageAndTheNextPage() throws Exception {
+        mockMvc.perform(get("/patients/search").param("firstName", "Test").param("size", "3")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(header().string("X-Next-Page", "1"));
+
+        mockMvc.perform(get("/patients/search").param("firstName", "Test").param("size", "3").param("page", "1")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(header().doesNotExist("X-Next-Page"));
+    }
+
+    @Test
+    void givenATooLargePageSize_whenSearchPatients_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/patients/search").param("size", "100000")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void givenFourPatients_whenExportPatients_shouldWriteOnePatientPerLine() throws Exception {
+        String export = mockMvc.perform(get("/patients/export")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = export.split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("TestNone", objectMapper.readValue(lines[0], Patient.class).getName());
+        assertEquals("TestEarlyOnset", objectMapper.readValue(lines[3], Patient.class).getName());
+    }
+
+    @Test
+    void givenFourPatients_whenExportPatientsInCsv_shouldWriteAHeaderAndOneLinePerPatient() throws Exception {
+        String export = mockMvc.perform(get("/patients/export").param("format", "CSV")
+                        .with(httpBasic(gatewayUsername,gatewayPassword)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"patients.csv\""))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = export.split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("id,name,firstName,birthDate,gender,address,phone", lines[0]);
+        assertEquals(patientNone.getId() + ",TestNone,Test,1966-12-31,FEMALE,\"1 Brookside St\",100-222-3333", lines[1]);
+    }
+
+    @Test
+    void givenACsvPayload_whenImportPatients_shouldInsertTheValidOnesAndReportTheOthers() throws Exception {
+        mockMvc.perform(post("/patients/bulk")
+                        .with(httpBasic(gatewayUsername,gatewayPassword))
+                        .contentType("text/csv")
+                        .content("""
+                            name,firstName,birthDate,gender,address,phone
+                            Imported,Patient,1989-03-03,MALE,5 Main St,500-666-7777
+                            ,Nameless,1990-01-01,FEMALE,,
+                            """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.inserted").value(1))
+                .andExpect(jsonPath("$.errors[0].index").value(1));
+
+        assertEquals(5, patientRepository.count());
+    }
+
     @Test
     void givenFourPatients_addPatient_shouldResultInFourPatients() throws Exception {
 
@@ -114,6 +385,22 @@ public class PatientControllerIT {
         assertEquals(5, patientRepository.count());
     }
 
+    @Test
+    void givenAnIdAndAVersion_whenAddPatient_shouldCreateANewPatientAtItsFirstVersion() throws Exception {
+        mockMvc.perform(post("/patients")
+                        .with(httpBasic(gatewayUsername,gatewayPassword))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                            {"id": %d, "version": 5, "name": "New", "firstName": "Patient", "birthDate": "1989-03-03", "gender": "FEMALE"}
+                            """.formatted(patientNone.getId())))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(jsonPath("$.version").value(0));
+
+        assertEquals(5, patientRepository.count());
+        assertEquals("TestNone", patientRepository.findById(patientNone.getId()).orElseThrow().getName());
+    }
+
     @Test
     void givenUnknownId_whenGetPatient_shouldReturnNotFound() throws Exception {
         mockMvc.perform(get("/patients/9999")
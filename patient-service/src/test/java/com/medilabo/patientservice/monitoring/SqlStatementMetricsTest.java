@@ -0,0 +1,129 @@
+package com.medilabo.patientservice.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStatementMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private SqlStatementMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new SqlStatementMetrics(Duration.ofMillis(200), 1.0, 3, 2);
+        metrics.bindTo(registry);
+    }
+
+    // =========================
+    // Helpers
+    // =========================
+
+    private void execute(String sql, long millis) {
+        ExecutionInfo execution = new ExecutionInfo();
+        execution.setElapsedTime(TimeUnit.MILLISECONDS.toNanos(millis));
+        metrics.afterQuery(execution, List.of(new QueryInfo(sql)));
+    }
+
+    private Timer timer(String shape) {
+        return registry.get("patients.sql.queries").tag("query", shape).timer();
+    }
+
+    private static ParameterSetOperation parameter(int index, Object value) throws NoSuchMethodException {
+        return new ParameterSetOperation(PreparedStatement.class.getMethod("setObject", int.class, Object.class),
+                new Object[]{index, value});
+    }
+
+    // =========================
+    // Query shapes
+    // =========================
+
+    @Test
+    void shape_shouldReplaceLiteralsAndParameterLists() {
+        assertEquals("select p.id from patients p where p.id in (?...) and p.name=? and p1_0.gender=?",
+                SqlStatementMetrics.shape("SELECT p.id FROM patients p\n  WHERE p.id IN (?, ?,?) AND p.name='O''Hara' AND p1_0.gender=2"));
+    }
+
+    @Test
+    void afterQuery_shouldTimeTheStatementsByShape() {
+        execute("select * from patients where id in (?, ?)", 3);
+        execute("select * from patients where id in (?, ?, ?, ?)", 5);
+        execute("delete from patients where id=?", 1);
+
+        Timer select = timer("select * from patients where id in (?...)");
+        assertEquals(2, select.count());
+        assertEquals(8, select.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, timer("delete from patients where id=?").count());
+    }
+
+    @Test
+    void givenMoreShapesThanTheMaximum_whenAfterQuery_shouldTimeTheNextOnesAsOther() {
+        execute("select 1 from a", 1);
+        execute("select 1 from b", 1);
+        execute("select 1 from c", 1);
+        execute("select 1 from d", 1);
+        execute("select 1 from a", 1);
+
+        assertEquals(2, timer("select ? from a").count());
+        assertEquals(1, timer(SqlStatementMetrics.OTHER_QUERIES).count());
+        assertEquals(4, registry.find("patients.sql.queries").timers().size());
+    }
+
+    // =========================
+    // Statements per request
+    // =========================
+
+    @Test
+    void finishRequest_shouldRecordTheStatementsOfTheRequest() {
+        metrics.startRequest();
+        execute("select 1 from a", 1);
+        execute("select 1 from b", 1);
+
+        assertEquals(2, metrics.finishRequest("GET", "/patients/{id}"));
+
+        DistributionSummary summary = registry.get("patients.sql.statements.per.request")
+                .tags("method", "GET", "uri", "/patients/{id}").summary();
+        assertEquals(1, summary.count());
+        assertEquals(2, summary.totalAmount());
+    }
+
+    @Test
+    void givenNoRequest_whenAfterQuery_shouldNotCountTheStatements() {
+        execute("select 1 from a", 1);
+
+        metrics.startRequest();
+        assertEquals(0, metrics.finishRequest("GET", null));
+        assertEquals(0, metrics.finishRequest("GET", null));
+        assertNotNull(registry.get("patients.sql.statements.per.request")
+                .tag("uri", SqlStatementMetrics.UNKNOWN_URI).summary());
+    }
+
+    // =========================
+    // Slow queries
+    // =========================
+
+    @Test
+    void parameters_shouldFormatTheFirstParameterSetAndCutLongValues() throws NoSuchMethodException {
+        QueryInfo query = new QueryInfo("insert into patients (name, address) values (?, ?)");
+        List<ParameterSetOperation> first = new ArrayList<>(List.of(parameter(1, "Ferguson"), parameter(2, "x".repeat(60))));
+        List<ParameterSetOperation> second = List.of(parameter(1, "Rees"), parameter(2, "1 Brookside St"));
+        query.setParametersList(List.of(first, second));
+
+        assertEquals("[1=Ferguson, 2=" + "x".repeat(50) + "...]", SqlStatementMetrics.parameters(query));
+        assertEquals("[]", SqlStatementMetrics.parameters(new QueryInfo("select 1")));
+    }
+}
@@ -1,6 +1,8 @@
 package com.medilabo.patientservice.repositories;
 
+import com.medilabo.patientservice.dto.PatientDemographics;
 import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientSpecifications.MatchMode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -49,4 +51,94 @@ class PatientRepositoryTest {
         assertEquals(4, patients.size());
     }
 
-}
\ No newline at end of file
+    // =========================
+    // Search
+    // =========================
+
+    private List<Patient> search(String name, String firstName, LocalDate birthDate, Patient.Gender gender, MatchMode matchMode) {
+        return patientRepository.findAll(PatientSpecifications.search(name, firstName, birthDate, gender, matchMode));
+    }
+
+    @Test
+    void givenPartialName_whenSearchPatientsContaining_shouldReturnTwoPatients() {
+        assertEquals(2, search("in", null, null, null, MatchMode.CONTAINS).size());
+    }
+
+    @Test
+    void givenAFullName_whenSearchPatients_shouldReturnTheMatchingPatient() {
+        assertEquals(List.of("TestBorderline"),
+                search("TestBorderline", null, null, null, MatchMode.PREFIX).stream().map(Patient::getName).toList());
+    }
+
+    @Test
+    void givenAPrefixInAnotherCase_whenSearchPatients_shouldReturnTheMatchingPatients() {
+        assertEquals(List.of("TestEarlyOnset"),
+                search("TESTe", null, null, null, MatchMode.PREFIX).stream().map(Patient::getName).toList());
+        assertEquals(0, search("in", null, null, null, MatchMode.PREFIX).size());
+    }
+
+    @Test
+    void givenPartialFirstName_whenSearchPatients_shouldReturnTheMatchingPatients() {
+        assertEquals(4, search(null, "Te", null, null, MatchMode.PREFIX).size());
+    }
+
+    @Test
+    void givenFemaleGender_whenSearchPatients_thenReturnMatchingPatients() {
+        assertEquals(2, search(null, null, null, Patient.Gender.FEMALE, MatchMode.PREFIX).size());
+    }
+
+    @Test
+    void givenAMatchingDate_whenSearchPatients_thenReturnMatchingPatient() {
+        assertEquals(1, search(null, null, LocalDate.of(2004, 6, 18), null, MatchMode.PREFIX).size());
+    }
+
+    @Test
+    void givenNoCriteriaOrBlankCriteria_whenSearchPatients_thenReturnAllPatients() {
+        assertEquals(4, search(null, null, null, null, MatchMode.PREFIX).size());
+        assertEquals(4, search("", " ", null, null, MatchMode.PREFIX).size());
+    }
+
+    @Test
+    void givenALikeWildcard_whenSearchPatients_shouldSearchItLiterally() {
+        assertEquals(0, search("test_", null, null, null, MatchMode.PREFIX).size());
+        assertEquals(0, search("%", null, null, null, MatchMode.CONTAINS).size());
+    }
+
+    @Test
+    void givenAnUpdatedName_whenSearchPatients_shouldUseTheNewName() {
+        patientNone.setName("Renamed");
+        patientRepository.saveAndFlush(patientNone);
+
+        assertEquals(1, search("ren", null, null, null, MatchMode.PREFIX).size());
+    }
+
+    @Test
+    void givenAccentsOnEitherSide_whenSearchPatients_shouldIgnoreThem() {
+        patientRepository.save(new Patient("Hélène", "Zoé", LocalDate.of(1980, 1, 1), Patient.Gender.FEMALE, null, null));
+
+        assertEquals(List.of("Hélène"), search("el", "zo", null, null, MatchMode.CONTAINS).stream().map(Patient::getName).toList());
+        assertEquals(List.of("Hélène"), search("HÉL", null, null, null, MatchMode.PREFIX).stream().map(Patient::getName).toList());
+        assertEquals(List.of("Hélène"), search(null, "zoe", null, null, MatchMode.PREFIX).stream().map(Patient::getName).toList());
+    }
+
+    // =========================
+    // Demographics projection
+    // =========================
+
+    @Test
+    void givenAnExistingId_whenFindDemographicsById_shouldReturnOnlyTheDemographics() {
+        PatientDemographics demographics = patientRepository.findDemographicsById(patientInDanger.getId()).orElseThrow();
+
+        assertEquals(new PatientDemographics(patientInDanger.getId(), LocalDate.of(2004, 6, 18), Patient.Gender.MALE, patientInDanger.getVersion()), demographics);
+        assertTrue(patientRepository.findDemographicsById(-1).isEmpty());
+    }
+
+    @Test
+    void givenSeveralIds_whenFindDemographicsByIdIn_shouldReturnTheFoundPatients() {
+        List<PatientDemographics> demographics = patientRepository.findDemographicsByIdIn(
+                List.of(patientNone.getId(), patientEarlyOnset.getId(), -1));
+
+        assertEquals(2, demographics.size());
+        assertTrue(demographics.contains(new PatientDemographics(patientNone.getId(), LocalDate.of(1966, 12, 31), Patient.Gender.FEMALE, patientNone.getVersion())));
+    }
+}
@@ -0,0 +1,118 @@
+package com.medilabo.patientservice.search;
+
+import com.medilabo.patientservice.dto.PatientNames;
+import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PatientNameIndexTest {
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PatientNameIndex indexOf(DataSize maxMemory, int maxResults, PatientNames... patients) {
+        when(patientRepository.streamAllNames()).thenReturn(Stream.of(patients));
+        PatientNameIndex index = new PatientNameIndex(patientRepository, transactionManager, maxMemory, maxResults, meterRegistry);
+        index.rebuild();
+        return index;
+    }
+
+    private static Patient patient(int id, String name, String firstName) {
+        Patient patient = new Patient(name, firstName, LocalDate.of(1966, 12, 31), Patient.Gender.FEMALE, null, null);
+        patient.setId(id);
+        return patient;
+    }
+
+    // =========================
+    // Search
+    // =========================
+
+    @Test
+    void findContaining_shouldIgnoreTheAccentsAndTheCase() {
+        PatientNameIndex index = indexOf(DataSize.ofMegabytes(1), 100,
+                new PatientNames(1, "Lefèvre", "Hélène"),
+                new PatientNames(2, "LEFEBVRE", "Helena"),
+                new PatientNames(3, "Martin", "Héloïse"));
+
+        assertEquals(Optional.of(List.of(1, 2)), index.findContaining(null, "LÉN"));
+        assertEquals(Optional.of(List.of(1)), index.findContaining("fèv", null));
+        assertEquals(Optional.of(List.of(1)), index.findContaining("LEF", "ène"));
+        assertEquals(Optional.of(List.of()), index.findContaining("héloï", null));
+        assertEquals(Optional.of(List.of()), index.findContaining("dupont", null));
+    }
+
+    @Test
+    void findContaining_shouldNotAnswer_whenNoFragmentHasThreeCharactersOrThereAreTooManyMatches() {
+        PatientNameIndex index = indexOf(DataSize.ofMegabytes(1), 2,
+                new PatientNames(1, "Test1", "A"),
+                new PatientNames(2, "Test2", "B"),
+                new PatientNames(3, "Test3", "C"));
+
+        assertEquals(Optional.empty(), index.findContaining("te", " "));
+        assertEquals(Optional.empty(), index.findContaining("test", null));
+        assertEquals(Optional.of(List.of(2)), index.findContaining("test", "b"));
+    }
+
+    // =========================
+    // Writes and budget
+    // =========================
+
+    @Test
+    void put_shouldIndexTheCreatedAndUpdatedPatients() {
+        PatientNameIndex index = indexOf(DataSize.ofMegabytes(1), 100, new PatientNames(1, "Martin", "Paul"));
+
+        index.put(patient(1, "Durand", "Paul"));
+        index.putAll(List.of(patient(2, "Martinez", "Rose")));
+
+        assertEquals(Optional.of(List.of(2)), index.findContaining("mart", null));
+        assertEquals(Optional.of(List.of(1)), index.findContaining("dura", null));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void rebuild_shouldDisableTheIndex_whenItIsOverItsBudget() {
+        PatientNames[] patients = IntStream.range(0, 1000)
+                .mapToObj(id -> new PatientNames(id, "Patient" + id, "Test"))
+                .toArray(PatientNames[]::new);
+
+        PatientNameIndex index = indexOf(DataSize.ofKilobytes(10), 100, patients);
+
+        assertFalse(index.isEnabled());
+        assertEquals(Optional.empty(), index.findContaining("patient1", null));
+        assertEquals(0, meterRegistry.get("patients.search.index.enabled").gauge().value());
+    }
+
+    @Test
+    void metrics_shouldReportTheSizeAndMemoryOfTheIndex() {
+        PatientNameIndex index = indexOf(DataSize.ofMegabytes(1), 100,
+                new PatientNames(1, "Martin", "Paul"),
+                new PatientNames(2, "Durand", "Rose"));
+
+        assertTrue(index.isEnabled());
+        assertEquals(2, meterRegistry.get("patients.search.index.patients").gauge().value());
+        assertEquals(index.estimatedBytes(), meterRegistry.get("patients.search.index.memory").gauge().value());
+        assertEquals(DataSize.ofMegabytes(1).toBytes(), meterRegistry.get("patients.search.index.memory.max").gauge().value());
+        assertTrue(meterRegistry.get("patients.search.index.trigrams").gauge().value() > 0);
+    }
+}
@@ -0,0 +1,96 @@
+package com.medilabo.patientservice.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    private final TrigramIndex index = new TrigramIndex();
+
+    // =========================
+    // Substring search
+    // =========================
+
+    @Test
+    void findContaining_shouldReturnTheIdsContainingTheFragment_inAscendingOrder() {
+        index.put(3, "testborderline");
+        index.put(1, "testnone");
+        index.put(2, "testindanger");
+
+        assertEquals(List.of(1, 2, 3), index.findContaining("tes"));
+        assertEquals(List.of(2), index.findContaining("indan"));
+        assertEquals(List.of(), index.findContaining("xyz"));
+    }
+
+    @Test
+    void findContaining_shouldCheckTheCandidates_whenTheTrigramsAreApart() {
+        // "abcxbcd" has every trigram of "abcd" but one, "bcxbcdabc" has all of them, not in a row.
+        index.put(1, "bcxbcdabc");
+        index.put(2, "xabcdx");
+
+        assertEquals(List.of(2), index.findContaining("abcd"));
+    }
+
+    @Test
+    void findContaining_shouldRejectFragmentsShorterThanATrigram() {
+        assertThrows(IllegalArgumentException.class, () -> index.findContaining("ab"));
+    }
+
+    // =========================
+    // Updates and memory
+    // =========================
+
+    @Test
+    void put_shouldReplaceThePreviousValue() {
+        index.put(1, "martin");
+        index.put(1, "durand");
+
+        assertEquals(List.of(), index.findContaining("mar"));
+        assertEquals(List.of(1), index.findContaining("dur"));
+        assertEquals("durand", index.valueOf(1));
+    }
+
+    @Test
+    void put_shouldReleaseTheMemory_whenTheValuesAreRemoved() {
+        long empty = index.estimatedBytes();
+        IntStream.range(0, 1000).forEach(id -> index.put(id, "patient" + id));
+        long full = index.estimatedBytes();
+
+        IntStream.range(0, 1000).forEach(id -> index.put(id, null));
+
+        assertTrue(full > empty);
+        assertEquals(empty, index.estimatedBytes());
+        assertEquals(0, index.size());
+        assertEquals(0, index.trigramCount());
+    }
+
+    @Test
+    void findContaining_shouldMatchAScanOfTheValues_onRandomValues() {
+        String[] syllables = {"ba", "be", "lo", "ma", "ne", "ri", "an", "na"};
+        Random random = new Random(42);
+        String[] values = new String[2000];
+        for (int id = 0; id < values.length; id++) {
+            StringBuilder value = new StringBuilder();
+            for (int s = 0; s < 2 + random.nextInt(4); s++) {
+                value.append(syllables[random.nextInt(syllables.length)]);
+            }
+            values[id] = value.toString();
+            index.put(id, values[id]);
+        }
+        // Some updates, the index must forget the previous values.
+        for (int id = 0; id < values.length; id += 7) {
+            values[id] = values[id] + "ri";
+            index.put(id, values[id]);
+        }
+
+        for (String fragment : List.of("ban", "anan", "lomane", "rib", "nab", "maba", "zzz")) {
+            List<Integer> expected = IntStream.range(0, values.length).filter(id -> values[id].contains(fragment)).boxed().toList();
+            assertEquals(expected, index.findContaining(fragment), fragment);
+        }
+    }
+}
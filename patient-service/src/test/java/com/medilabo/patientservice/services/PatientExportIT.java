@@ -0,0 +1,109 @@
+package com.medilabo.patientservice.services;
+
+import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.OutputStream;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Export of 1M generated patients in H2.
+ * While the export is written, the persistence context must never hold more than one fetch of patients,
+ * whatever the number of patients.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PatientExportIT {
+    private static final Logger log = LoggerFactory.getLogger(PatientExportIT.class);
+
+    private static final int PATIENTS = 1_000_000;
+    private static final int FETCH_SIZE = 1000;
+
+    @Autowired
+    private PatientExportService patientExportService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        patientRepository.deleteAllInBatch();
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 1; i <= PATIENTS; i++) {
+            batch.add(new Object[]{i, "Name" + i, "First" + (i % 100), Date.valueOf(LocalDate.of(1930, 1, 1).plusDays(i % 30000)),
+                    Patient.Gender.values()[i % 3].name(), "name" + i, "first" + (i % 100)});
+            if (batch.size() == 10_000) {
+                jdbcTemplate.batchUpdate("INSERT INTO patients (id, name, first_name, birth_date, gender, name_key, first_name_key) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        patientRepository.deleteAllInBatch();
+    }
+
+    /**
+     * Counts the lines written, and the largest number of entities held by the persistence context meanwhile.
+     */
+    private class MonitoredOutput extends OutputStream {
+        private long lines;
+        private int maxManagedEntities;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(bytes[i]);
+            }
+            // Called from the export, so inside its transaction.
+            int managed = entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+            maxManagedEntities = Math.max(maxManagedEntities, managed);
+        }
+    }
+
+    @Test
+    void export_shouldWriteEveryPatient_withABoundedPersistenceContext() throws Exception {
+        MonitoredOutput output = new MonitoredOutput();
+
+        long start = System.nanoTime();
+        long count = patientExportService.exportPatients(output, PatientExportService.Format.NDJSON);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        log.info("{} patients exported in {} ms, at most {} entities in the persistence context",
+                count, millis, output.maxManagedEntities);
+        assertThat(count).isEqualTo(PATIENTS);
+        assertThat(output.lines).isEqualTo(PATIENTS);
+        assertThat(output.maxManagedEntities).isPositive().isLessThanOrEqualTo(FETCH_SIZE);
+    }
+}
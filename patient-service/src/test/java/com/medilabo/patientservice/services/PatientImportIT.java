@@ -0,0 +1,88 @@
+package com.medilabo.patientservice.services;
+
+import com.medilabo.patientservice.dto.BulkImportResultDTO;
+import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bulk import of 100k patients in H2, with the JDBC batching of the test profile.
+ * The same patients are first saved one by one with savePatient, on a sample, to compare the throughputs:
+ * the import must be at least 5 times faster, and take seconds, not minutes.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PatientImportIT {
+    private static final Logger log = LoggerFactory.getLogger(PatientImportIT.class);
+
+    private static final int PATIENTS = 100_000;
+    private static final int SINGLE_SAMPLE = 5_000;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientImportService patientImportService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @BeforeEach
+    void setUp() {
+        patientRepository.deleteAllInBatch();
+    }
+
+    @AfterEach
+    void tearDown() {
+        patientRepository.deleteAllInBatch();
+    }
+
+    private static Patient patient(int i) {
+        return new Patient("Name" + i, "First" + (i % 100), LocalDate.of(1930, 1, 1).plusDays(i % 30000),
+                Patient.Gender.values()[i % 3], i + " Main St", "100-222-3333");
+    }
+
+    @Test
+    void bulkImport_shouldImport100kPatientsInSeconds() throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < SINGLE_SAMPLE; i++) {
+            patientService.savePatient(patient(i));
+        }
+        long singleNanosPerPatient = (System.nanoTime() - start) / SINGLE_SAMPLE;
+        patientRepository.deleteAllInBatch();
+
+        StringBuilder payload = new StringBuilder("name,firstName,birthDate,gender,address,phone\n");
+        for (int i = 0; i < PATIENTS; i++) {
+            Patient patient = patient(i);
+            payload.append(patient.getName()).append(',').append(patient.getFirstName()).append(',')
+                    .append(patient.getBirthDate()).append(',').append(patient.getGender()).append(',')
+                    .append(patient.getAddress()).append(',').append(patient.getPhone()).append('\n');
+        }
+        start = System.nanoTime();
+        BulkImportResultDTO result = patientImportService.importPatients(
+                new ByteArrayInputStream(payload.toString().getBytes(StandardCharsets.UTF_8)), PatientImportService.Format.CSV);
+        long bulkNanos = System.nanoTime() - start;
+
+        log.info("{} patients: {} ms with the bulk import, {} ms estimated one by one",
+                PATIENTS, bulkNanos / 1_000_000, singleNanosPerPatient * PATIENTS / 1_000_000);
+        assertThat(result.getInserted()).isEqualTo(PATIENTS);
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(patientRepository.count()).isEqualTo(PATIENTS);
+        assertThat(bulkNanos).isLessThan(30_000_000_000L);
+        assertThat(singleNanosPerPatient * PATIENTS).isGreaterThanOrEqualTo(5 * bulkNanos);
+    }
+}
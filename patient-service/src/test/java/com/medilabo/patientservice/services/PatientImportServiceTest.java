@@ -0,0 +1,159 @@
+package com.medilabo.patientservice.services;
+
+import com.medilabo.patientservice.dto.BulkImportResultDTO;
+import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientRepository;
+import com.medilabo.patientservice.search.PatientNameIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PatientImportServiceTest {
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private PatientNameIndex patientNameIndex;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PatientImportService importService;
+
+    /** Copies of the chunks given to the repository, as the service empties them after the write. */
+    private final List<List<Patient>> chunks = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        importService = new PatientImportService(patientRepository, patientNameIndex, entityManager, new TransactionTemplate(transactionManager),
+                Validation.buildDefaultValidatorFactory().getValidator(), Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(importService, "chunkSize", 2);
+        lenient().when(patientRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Patient> chunk = invocation.getArgument(0);
+            chunks.add(List.copyOf(chunk));
+            return chunk;
+        });
+    }
+
+    private BulkImportResultDTO importPatients(String payload, PatientImportService.Format format) throws IOException {
+        return importService.importPatients(new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), format);
+    }
+
+    // =========================
+    // Formats and chunks
+    // =========================
+
+    @Test
+    void importPatients_shouldReadJsonArray_andWriteByChunks() throws IOException {
+        BulkImportResultDTO result = importPatients("""
+                [
+                  {"id": 42, "name": "TestNone", "firstName": "Test", "birthDate": "1966-12-31", "gender": "FEMALE"},
+                  {"name": "TestBorderline", "firstName": "Test", "birthDate": "1945-06-24", "gender": "MALE"},
+                  {"name": "TestInDanger", "firstName": "Test", "birthDate": "2004-06-18", "gender": "MALE", "phone": "300-444-5555"}
+                ]
+                """, PatientImportService.Format.JSON);
+
+        assertThat(result.getReceived()).isEqualTo(3);
+        assertThat(result.getInserted()).isEqualTo(3);
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(chunks).extracting(List::size).containsExactly(2, 1);
+        assertThat(chunks.getFirst().getFirst().getId()).isNull();
+        assertThat(chunks.get(1).getFirst().getPhone()).isEqualTo("300-444-5555");
+        verify(transactionManager, times(2)).commit(any());
+        verify(entityManager, times(2)).clear();
+        verify(patientNameIndex, times(2)).putAll(anyList());
+    }
+
+    @Test
+    void importPatients_shouldReadCsvWithAHeader() throws IOException {
+        BulkImportResultDTO result = importPatients("""
+                firstName,name,birthDate,gender,address,phone,comment
+                Test,TestEarlyOnset,2002-06-28,FEMALE,"4 Valley Dr, Apt 2",400-555-6666,ignored
+
+                """, PatientImportService.Format.CSV);
+
+        assertThat(result.getReceived()).isEqualTo(1);
+        assertThat(result.getErrors()).isEmpty();
+        Patient patient = chunks.getFirst().getFirst();
+        assertThat(patient.getName()).isEqualTo("TestEarlyOnset");
+        assertThat(patient.getBirthDate()).isEqualTo(LocalDate.of(2002, 6, 28));
+        assertThat(patient.getGender()).isEqualTo(Patient.Gender.FEMALE);
+        assertThat(patient.getAddress()).isEqualTo("4 Valley Dr, Apt 2");
+    }
+
+    // =========================
+    // Errors
+    // =========================
+
+    @Test
+    void importPatients_shouldReportInvalidPatients_andInsertTheOthers() throws IOException {
+        BulkImportResultDTO result = importPatients("""
+                {"name": "TestNone", "firstName": "Test", "birthDate": "1966-12-31", "gender": "FEMALE"}
+                {"firstName": "Test", "birthDate": "1966-12-31", "gender": "FEMALE"}
+                {"name": "TestNone", "firstName": "Test", "birthDate": "not a date", "gender": "FEMALE"}
+                {"name": "TestNone", "firstName": "Test", "birthDate": "1966-12-31", "gender": "FEMALE"}
+                """, PatientImportService.Format.JSON);
+
+        assertThat(result.getReceived()).isEqualTo(4);
+        assertThat(result.getInserted()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(BulkImportResultDTO.ItemError::index).containsExactly(1L, 2L);
+        assertThat(result.getErrors().getFirst().message()).isEqualTo("name: Name must not be null");
+        assertThat(result.getErrors().get(1).message()).startsWith("Invalid patient: ");
+    }
+
+    @Test
+    void importPatients_shouldStopAtAMalformedPayload_andKeepThePatientsReadBefore() throws IOException {
+        BulkImportResultDTO result = importPatients("""
+                {"name": "TestNone", "firstName": "Test", "birthDate": "1966-12-31", "gender": "FEMALE"}
+                {"name": "TestNone", "firstName"
+                """, PatientImportService.Format.JSON);
+
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getErrors()).singleElement()
+                .satisfies(error -> assertThat(error.message()).startsWith("Malformed payload, import stopped"));
+    }
+
+    @Test
+    void importPatients_shouldReportTheRolledBackChunk_andImportTheNextOnes() throws IOException {
+        when(patientRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        BulkImportResultDTO result = importPatients("""
+                name,firstName,birthDate,gender
+                A,Test,1966-12-31,FEMALE
+                B,Test,1945-06-24,MALE
+                C,Test,2004-06-18,MALE
+                """, PatientImportService.Format.CSV);
+
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(BulkImportResultDTO.ItemError::index).containsExactly(0L, 1L);
+        assertThat(result.getErrors().getFirst().message()).isEqualTo("Chunk rolled back: Duplicate entry");
+        verify(transactionManager).rollback(any());
+    }
+}
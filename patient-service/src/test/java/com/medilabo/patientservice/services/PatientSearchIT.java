@@ -0,0 +1,203 @@
+package com.medilabo.patientservice.services;
+
+import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.repositories.PatientRepository;
+import com.medilabo.patientservice.repositories.PatientSpecifications.MatchMode;
+import com.medilabo.patientservice.search.PatientNameIndex;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Patient search on 1M generated patients in H2.
+ * The results are compared with the previous in-memory filtering, applied to the generated values,
+ * and the latency of the indexed prefix search is measured with 100k then 1M patients: it must not grow like the table.
+ * The patients are inserted with JDBC, so the trigram index of the names is rebuilt after, with a budget for 1M patients.
+ */
+@SpringBootTest(properties = "patients.search.ngram.max-memory=256MB")
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PatientSearchIT {
+    private static final Logger log = LoggerFactory.getLogger(PatientSearchIT.class);
+
+    private static final String[] SYLLABLES = {
+            "ba", "be", "bi", "bo", "da", "de", "di", "do", "fa", "fe", "la", "le", "li", "lo", "ma", "me", "mi", "mo",
+            "na", "ne", "ni", "no", "pa", "pe", "pi", "po", "ra", "re", "ri", "ro", "sa", "se", "si", "so", "ta", "te",
+            "ti", "to", "va", "ve"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Alice", "Bruno", "Chloé", "David", "Emma", "Farid", "Gaëlle", "Hugo", "Inès", "Jules",
+            "Karima", "Louis", "Manon", "Nathan", "Océane", "Paul", "Quentin", "Rose", "Sacha", "Théo"
+    };
+    private static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1930, 1, 1);
+    private static final String[] PREFIXES = {"bake", "dira", "lomi", "nepo", "sito", "vela", "mo", "riba", "tefa", "pesa"};
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PatientNameIndex patientNameIndex;
+
+    private int patientCount;
+
+    // =========================
+    // Generated patients
+    // =========================
+
+    private static String name(int i) {
+        String name = SYLLABLES[i % 40] + SYLLABLES[(i / 40) % 40] + SYLLABLES[(i / 1600) % 40];
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String firstName(int i) {
+        return FIRST_NAMES[(i / 7) % FIRST_NAMES.length];
+    }
+
+    private static LocalDate birthDate(int i) {
+        return FIRST_BIRTH_DATE.plusDays((i * 31L) % 30000);
+    }
+
+    private static Patient.Gender gender(int i) {
+        return Patient.Gender.values()[i % 3];
+    }
+
+    private void insertPatients(int upTo) {
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = patientCount + 1; i <= upTo; i++) {
+            batch.add(new Object[]{i, name(i), firstName(i), Date.valueOf(birthDate(i)), gender(i).name(),
+                    Patient.searchKey(name(i)), Patient.searchKey(firstName(i))});
+            if (batch.size() == 10_000 || i == upTo) {
+                jdbcTemplate.batchUpdate("INSERT INTO patients (id, name, first_name, birth_date, gender, name_key, first_name_key) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        patientCount = upTo;
+    }
+
+    @AfterAll
+    void tearDown() {
+        patientRepository.deleteAllInBatch();
+    }
+
+    // =========================
+    // Helpers
+    // =========================
+
+    /**
+     * The previous implementation: lowercase contains on every patient, here on the generated values.
+     */
+    private List<Integer> legacySearch(String name, String firstName, LocalDate birthDate, Patient.Gender gender) {
+        return IntStream.rangeClosed(1, patientCount)
+                .filter(i -> name == null || name(i).toLowerCase().contains(name.toLowerCase()))
+                .filter(i -> firstName == null || firstName(i).toLowerCase().contains(firstName.toLowerCase()))
+                .filter(i -> birthDate == null || birthDate(i).equals(birthDate))
+                .filter(i -> gender == null || gender(i) == gender)
+                .boxed()
+                .sorted()
+                .toList();
+    }
+
+    private List<Integer> search(String name, String firstName, LocalDate birthDate, Patient.Gender gender, MatchMode matchMode) {
+        List<Integer> ids = new ArrayList<>();
+        int page = 0;
+        Slice<Patient> slice;
+        do {
+            slice = patientService.searchPatients(name, firstName, birthDate, gender, matchMode, page++, 500);
+            slice.getContent().forEach(patient -> ids.add(patient.getId()));
+        } while (slice.hasNext());
+        return ids.stream().sorted().toList();
+    }
+
+    /**
+     * @return the median duration, in microseconds, of a first page of 50 patients for each prefix.
+     */
+    private long medianPrefixSearchMicros() {
+        long[] durations = new long[PREFIXES.length * 5];
+        int run = 0;
+        for (int repeat = 0; repeat < 6; repeat++) {
+            for (String prefix : PREFIXES) {
+                long start = System.nanoTime();
+                patientService.searchPatients(prefix, null, null, null, MatchMode.PREFIX, 0, 50);
+                long duration = (System.nanoTime() - start) / 1000;
+                // The first round is the warmup.
+                if (repeat > 0) {
+                    durations[run++] = duration;
+                }
+            }
+        }
+        Arrays.sort(durations);
+        return durations[durations.length / 2];
+    }
+
+    // =========================
+    // 1M patients
+    // =========================
+
+    @Test
+    void shouldMatchTheLegacySearch_andScaleSubLinearly() {
+        patientRepository.deleteAllInBatch();
+
+        insertPatients(100_000);
+        long micros100k = medianPrefixSearchMicros();
+
+        insertPatients(1_000_000);
+        long micros1M = medianPrefixSearchMicros();
+        log.info("Median prefix search: {} us with 100k patients, {} us with 1M patients", micros100k, micros1M);
+
+        // A scan of the table would be about 10 times slower with 10 times more patients.
+        assertTrue(micros1M < Math.max(micros100k, 1000) * 4,
+                "Prefix search took " + micros100k + " us with 100k patients and " + micros1M + " us with 1M patients");
+
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT * FROM patients WHERE name_key LIKE 'bake%' ORDER BY name_key, first_name_key, id", String.class);
+        assertTrue(plan.toLowerCase(Locale.ROOT).contains("idx_patients_name_key"), plan);
+
+        // Prefix search: the previous contains search also returns these patients, and the prefix filter is exact.
+        assertEquals(legacySearch("bake", null, null, null).stream().filter(i -> name(i).toLowerCase().startsWith("bake")).toList(),
+                search("BaKe", null, null, null, MatchMode.PREFIX));
+        assertEquals(legacySearch("lomi", "Rose", null, Patient.Gender.FEMALE).stream()
+                        .filter(i -> name(i).toLowerCase().startsWith("lomi") && firstName(i).toLowerCase().startsWith("rose")).toList(),
+                search("lomi", "rose", null, Patient.Gender.FEMALE, MatchMode.PREFIX));
+
+        // Contains search: same results as the previous implementation, with the trigram index ("bomi") or without ("ha").
+        patientNameIndex.rebuild();
+        log.info("Trigram index: {} patients, {} trigrams, about {} MB",
+                patientNameIndex.size(), patientNameIndex.trigramCount(), patientNameIndex.estimatedBytes() >> 20);
+        assertTrue(patientNameIndex.findContaining("bomi", null).isPresent());
+        assertTrue(patientNameIndex.findContaining(null, "ha").isEmpty());
+        assertEquals(legacySearch("bomi", null, null, Patient.Gender.MALE),
+                search("bomi", null, null, Patient.Gender.MALE, MatchMode.CONTAINS));
+        assertEquals(legacySearch(null, "ha", birthDate(4242), null),
+                search(null, "ha", birthDate(4242), null, MatchMode.CONTAINS));
+        assertEquals(legacySearch("ribo", "rose", null, null),
+                search("ribo", "rose", null, null, MatchMode.CONTAINS));
+
+        long start = System.nanoTime();
+        patientService.searchPatients("bomi", null, null, null, MatchMode.CONTAINS, 0, 50);
+        log.info("Contains search with the trigram index: {} us", (System.nanoTime() - start) / 1000);
+    }
+}
@@ -0,0 +1,140 @@
+package com.medilabo.patientservice.services;
+
+import com.medilabo.patientservice.config.CacheConfig;
+import com.medilabo.patientservice.dto.PatientDemographics;
+import com.medilabo.patientservice.entities.Patient;
+import com.medilabo.patientservice.exceptions.PatientNotFoundException;
+import com.medilabo.patientservice.repositories.PatientRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cache of the patients, with the local Caffeine cache of the test profile.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PatientServiceCacheTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @MockitoSpyBean
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Patient patient;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfig.PATIENTS_CACHE).clear();
+        cacheManager.getCache(CacheConfig.DEMOGRAPHICS_CACHE).clear();
+        patient = patientRepository.save(new Patient("TestNone", "Test", LocalDate.of(1966, 12, 31), Patient.Gender.FEMALE,
+                "1 Brookside St", "100-222-3333"));
+        clearInvocations(patientRepository);
+    }
+
+    // =========================
+    // Read-through
+    // =========================
+
+    @Test
+    void getPatientById_shouldReadTheDatabaseOnce() {
+        Patient first = patientService.getPatientById(patient.getId());
+        Patient second = patientService.getPatientById(patient.getId());
+
+        assertEquals("TestNone", second.getName());
+        assertSame(first, second);
+        verify(patientRepository, times(1)).findById(patient.getId());
+    }
+
+    @Test
+    void getPatientById_shouldNotCacheUnknownIds() {
+        assertThrows(PatientNotFoundException.class, () -> patientService.getPatientById(-1));
+        assertThrows(PatientNotFoundException.class, () -> patientService.getPatientById(-1));
+
+        verify(patientRepository, times(2)).findById(-1);
+    }
+
+    @Test
+    void getPatientDemographics_shouldReadTheDatabaseOnce() {
+        PatientDemographics first = patientService.getPatientDemographics(patient.getId());
+        PatientDemographics second = patientService.getPatientDemographics(patient.getId());
+
+        assertEquals(patient.getVersion(), second.version());
+        assertSame(first, second);
+        verify(patientRepository, times(1)).findDemographicsById(patient.getId());
+    }
+
+    // =========================
+    // Writes
+    // =========================
+
+    @Test
+    void updatePatient_shouldReadTheDatabase_andReplaceTheCachedPatient() {
+        patientService.getPatientById(patient.getId());
+        Patient update = new Patient("Renamed", "Test", LocalDate.of(1966, 12, 31), Patient.Gender.OTHER, null, null);
+
+        patientService.updatePatient(patient.getId(), update, null);
+        clearInvocations(patientRepository);
+        Patient cached = patientService.getPatientById(patient.getId());
+
+        assertEquals("Renamed", cached.getName());
+        assertEquals(Patient.Gender.OTHER, cached.getGender());
+        verify(patientRepository, never()).findById(any());
+    }
+
+    @Test
+    void updatePatient_shouldEvictTheDemographics_soTheNewVersionIsRead() {
+        PatientDemographics before = patientService.getPatientDemographics(patient.getId());
+        Patient update = new Patient("Renamed", "Test", LocalDate.of(1966, 12, 31), Patient.Gender.OTHER, null, null);
+
+        patientService.updatePatient(patient.getId(), update, null);
+        PatientDemographics after = patientService.getPatientDemographics(patient.getId());
+
+        assertEquals(Patient.Gender.OTHER, after.gender());
+        assertTrue(after.version() > before.version(), "version " + before.version() + " -> " + after.version());
+        verify(patientRepository, times(2)).findDemographicsById(patient.getId());
+    }
+
+    @Test
+    void savePatient_shouldCacheTheNewPatient() {
+        Patient saved = patientService.savePatient(new Patient("TestBorderline", "Test", LocalDate.of(1945, 6, 24),
+                Patient.Gender.MALE, "2 High St", "200-333-4444"));
+        clearInvocations(patientRepository);
+
+        assertEquals("TestBorderline", patientService.getPatientById(saved.getId()).getName());
+        verify(patientRepository, never()).findById(any());
+    }
+
+    // =========================
+    // Metrics
+    // =========================
+
+    @Test
+    void cacheHitRatio_shouldBePublished() {
+        patientService.getPatientById(patient.getId());
+        patientService.getPatientById(patient.getId());
+
+        double hitRatio = meterRegistry.get("cache.hit.ratio").tag("cache", CacheConfig.PATIENTS_CACHE).gauge().value();
+        assertTrue(hitRatio > 0 && hitRatio < 1, "hit ratio: " + hitRatio);
+        assertTrue(meterRegistry.get("cache.gets").tags("cache", CacheConfig.PATIENTS_CACHE, "result", "hit")
+                .functionCounter().count() >= 1);
+    }
+}
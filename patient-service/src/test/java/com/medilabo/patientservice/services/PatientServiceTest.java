@@ -1,20 +1,32 @@
 package com.medilabo.patientservice.services;
 
+import com.medilabo.patientservice.dto.CursorPage;
 import com.medilabo.patientservice.entities.Patient;
 import com.medilabo.patientservice.exceptions.PatientNotFoundException;
+import com.medilabo.patientservice.exceptions.PatientVersionConflictException;
 import com.medilabo.patientservice.repositories.PatientRepository;
+import com.medilabo.patientservice.repositories.PatientSpecifications.MatchMode;
+import com.medilabo.patientservice.search.PatientNameIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,9 +42,12 @@ class PatientServiceTest {
     @Mock
     private PatientRepository patientRepository;
 
+    @Mock
+    private PatientNameIndex patientNameIndex;
+
     @BeforeEach
     public void setup() {
-        patientService = new PatientService(patientRepository);
+        patientService = new PatientService(patientRepository, patientNameIndex);
 
         patientNone = new Patient("TestNone", "Test", LocalDate.of(1966, 12, 31), Patient.Gender.FEMALE, "1 Brookside St", "100-222-3333");
         patientBorderline = new Patient("TestBorderline", "Test", LocalDate.of(1945, 06, 24), Patient.Gender.MALE, "2 High St", "200-333-4444");
@@ -46,9 +61,44 @@ class PatientServiceTest {
     }
 
     @Test
-    void givenFourPatients_whenGetAllPatients_shouldReturnFourPatients() {
-        when(patientRepository.findAll()).thenReturn(patients);
-        assertEquals(4, patientService.getAllPatients().size());
+    void givenFourPatients_whenGetPatients_shouldReturnFourPatientsWithoutNextCursor() {
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 101))).thenReturn(patients);
+
+        CursorPage<Patient> page = patientService.getPatients(null, 100);
+
+        assertEquals(4, page.items().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void givenMorePatientsThanThePageSize_whenGetPatients_shouldReturnTheCursorOfTheLastPatient() {
+        for (int i = 0; i < patients.size(); i++) {
+            patients.get(i).setId(i + 1);
+        }
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 3))).thenReturn(patients.subList(0, 3));
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(2, PageRequest.of(0, 3))).thenReturn(patients.subList(2, 4));
+
+        CursorPage<Patient> first = patientService.getPatients(null, 2);
+        CursorPage<Patient> second = patientService.getPatients(first.nextCursor(), 2);
+
+        assertEquals(List.of(patientNone, patientBorderline), first.items());
+        assertEquals(List.of(patientInDanger, patientEarlyOnset), second.items());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void givenAnInvalidCursor_whenGetPatients_shouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> patientService.getPatients("not a cursor", 10));
+        assertThrows(IllegalArgumentException.class, () -> patientService.getPatients(PatientService.encodeCursor(-1), 10));
+    }
+
+    @Test
+    void givenSeveralIds_whenGetPatientsByIds_shouldReturnThePatientsInTheOrderOfTheIds() {
+        patientNone.setId(1);
+        patientBorderline.setId(2);
+        when(patientRepository.findAllById(List.of(2, 9, 1))).thenReturn(List.of(patientNone, patientBorderline));
+
+        assertEquals(List.of(patientBorderline, patientNone), patientService.getPatientsByIds(List.of(2, 9, 1, 2)));
     }
 
     @Test
@@ -61,6 +111,14 @@ class PatientServiceTest {
         assertEquals("TestNone", patient.getName());
     }
 
+    @Test
+    void givenUnknownId_whenGetPatientDemographics_shouldThrowException() {
+        when(patientRepository.findDemographicsById(9999)).thenReturn(Optional.empty());
+
+        assertThrows(PatientNotFoundException.class,
+                () -> patientService.getPatientDemographics(9999));
+    }
+
     @Test
     void givenUnknownId_whenGetPatientById_shouldThrowException() {
         when(patientRepository.findById(9999)).thenReturn(Optional.empty());
@@ -70,51 +128,90 @@ class PatientServiceTest {
     }
 
     @Test
-    void givenPartialName_whenSearchPatients_shouldReturnTwoPatients() {
-        when(patientRepository.findAll()).thenReturn(patients);
-        List<Patient> patientsWithIN = patientService.searchPatients("in", null, null, null);
-        assertEquals(2, patientsWithIN.size());
+    void givenAnExistingID_whenUpdatePatient_shouldUpdateItAndItsNames() {
+        when(patientRepository.findById(1)).thenReturn(Optional.ofNullable(patientNone));
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Patient patient = patientService.updatePatient(1, patientBorderline, null);
+
+        assertEquals(Patient.Gender.MALE, patient.getGender());
+        verify(patientNameIndex).put(patient);
     }
 
     @Test
-    void givenAFullName_whenSearchPatients_shouldReturnTheMatchingPatient() {
-        when(patientRepository.findAll()).thenReturn(patients);
-        List<Patient> patientNamedTestBorderline = patientService.searchPatients("TestBorderline", null, null, null);
-        assertEquals(1, patientNamedTestBorderline.size());
+    void givenTheCurrentVersion_whenUpdatePatient_shouldUpdateIt() {
+        patientNone.setVersion(3L);
+        when(patientRepository.findById(1)).thenReturn(Optional.of(patientNone));
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Patient patient = patientService.updatePatient(1, patientBorderline, Set.of(3L));
+
+        assertEquals("TestBorderline", patient.getName());
     }
 
     @Test
-    void givenPartialFirstName_whenSearchPatients_shouldReturnTheMatchingPatients() {
-        when(patientRepository.findAll()).thenReturn(patients);
-        List<Patient> patientWithTE = patientService.searchPatients(null, "Te", null, null);
-        assertEquals(4, patientWithTE.size());
+    void givenAnOldVersion_whenUpdatePatient_shouldThrowException_andNotWrite() {
+        patientNone.setVersion(3L);
+        when(patientRepository.findById(1)).thenReturn(Optional.of(patientNone));
+
+        assertThrows(PatientVersionConflictException.class, () -> patientService.updatePatient(1, patientBorderline, Set.of(2L)));
+
+        assertEquals("TestNone", patientNone.getName());
+        verify(patientRepository, never()).saveAndFlush(any());
+        verify(patientNameIndex, never()).put(any());
     }
 
     @Test
-    void givenFirstName_whenSearchPatients_shouldReturnTheMatchingPatients() {
-        when(patientRepository.findAll()).thenReturn(patients);
-        List<Patient> patientNamedTest = patientService.searchPatients(null, "Test", null, null);
-        assertEquals(4, patientNamedTest.size());
+    void givenANewPatient_whenSavePatient_shouldIndexItsNames() {
+        when(patientRepository.save(patientNone)).thenReturn(patientNone);
+
+        patientService.savePatient(patientNone);
+
+        verify(patientNameIndex).put(patientNone);
     }
 
     @Test
-    void givenFemaleGender_whenSearchPatients_thenReturnMatchingPatients() {
-        when(patientRepository.findAll()).thenReturn(patients);
-        List<Patient> femalePatients = patientService.searchPatients(null, null, null, Patient.Gender.FEMALE);
-        assertEquals(2, femalePatients.size());
+    void givenAClientSuppliedIdAndVersion_whenSavePatient_shouldIgnoreThem() {
+        patientNone.setId(2);
+        patientNone.setVersion(7L);
+        when(patientRepository.save(patientNone)).thenReturn(patientNone);
+
+        patientService.savePatient(patientNone);
+
+        assertNull(patientNone.getId());
+        assertNull(patientNone.getVersion());
     }
 
     @Test
-    void givenAMatchingDate_whenSearchPatients_thenReturnMatchingPatient() {
-        when(patientRepository.findAll()).thenReturn(patients);
-        List<Patient> patient = patientService.searchPatients(null, null, LocalDate.of(2004, 06, 18), null);
-        assertEquals(1, patient.size());
+    @SuppressWarnings("unchecked")
+    void givenAContainsSearch_whenTheIndexFindsIds_shouldOnlyReadThesePatients() {
+        when(patientNameIndex.findContaining("orderl", null)).thenReturn(Optional.of(List.of(2)));
+        when(patientRepository.findBy(any(Specification.class), any())).thenReturn(new SliceImpl<>(List.of(patientBorderline)));
+
+        Slice<Patient> found = patientService.searchPatients("orderl", null, null, null, MatchMode.CONTAINS, 0, 50);
+
+        assertEquals(List.of(patientBorderline), found.getContent());
     }
 
     @Test
-    void givenNoCriteria_whenSearchPatients_thenReturnAllPatients() {
-        when(patientRepository.findAll()).thenReturn(patients);
-        List<Patient> resultWithoutFilter = patientService.searchPatients(null, null, null, null);
-        assertEquals(4, resultWithoutFilter.size());
+    void givenAContainsSearch_whenTheIndexFindsNothing_shouldNotQueryTheDatabase() {
+        when(patientNameIndex.findContaining("zzz", null)).thenReturn(Optional.of(List.of()));
+
+        Slice<Patient> found = patientService.searchPatients("zzz", null, null, null, MatchMode.CONTAINS, 0, 50);
+
+        assertTrue(found.isEmpty());
+        assertFalse(found.hasNext());
+        verify(patientRepository, never()).findBy(any(Specification.class), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void givenAContainsSearch_whenTheIndexCannotAnswer_shouldScanTheDatabase() {
+        when(patientNameIndex.findContaining("in", null)).thenReturn(Optional.empty());
+        when(patientRepository.findBy(any(Specification.class), any())).thenReturn(new SliceImpl<>(List.of(patientInDanger)));
+
+        Slice<Patient> found = patientService.searchPatients("in", null, null, null, MatchMode.CONTAINS, 0, 50);
+
+        assertEquals(List.of(patientInDanger), found.getContent());
     }
 }
@@ -0,0 +1,174 @@
+package com.medilabo.analysis;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenizer for the medical notes.
+ * It removes the accents, converts to lowercase and finds the words boundaries in a single pass over the characters,
+ * without building any intermediate String.
+ * The produced words are the same as the previous pipeline:
+ * NFD normalization, removal of the combining diacritical marks, lowercase, then split on "\W+".
+ * Each character is folded once through this pipeline and the result is kept in a table,
+ * so the Normalizer is only called the first time a non-ASCII character is met.
+ */
+public final class NoteTokenizer {
+
+    /**
+     * Receives the folded characters of the words, and the end of each word.
+     */
+    public interface TokenHandler {
+        /**
+         * @param c a character of the current word, one of [a-z0-9_].
+         */
+        void tokenChar(char c);
+
+        /**
+         * Called after the last character of each word.
+         */
+        void tokenEnd();
+    }
+
+    private static final char UNKNOWN = 0;
+    private static final char SEPARATOR = 1;
+    private static final char IGNORED = 2;
+    private static final char MULTIPLE = 3;
+
+    private static final Pattern COMBINING_DIACRITICAL_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    /** Folded form of each char: a word character, or one of the markers above. */
+    private static final char[] FOLDED_CHARS = new char[Character.MAX_VALUE + 1];
+    /** Folded form of the few characters that decompose into several characters. */
+    private static final Map<Character, String> FOLDED_STRINGS = new ConcurrentHashMap<>();
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            FOLDED_CHARS[c] = computeFold(c);
+        }
+    }
+
+    private NoteTokenizer() {
+    }
+
+    /**
+     * Tokenizes a text, the handler receives the characters of each word then the end of the word.
+     * @param text the raw text of a note.
+     * @param handler the handler receiving the words.
+     */
+    public static void tokenize(CharSequence text, TokenHandler handler) {
+        boolean inToken = false;
+        int length = text.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            char folded = FOLDED_CHARS[c];
+            if (folded == UNKNOWN) {
+                folded = computeFold(c);
+                FOLDED_CHARS[c] = folded;
+            }
+
+            if (folded == IGNORED) {
+                continue;
+            }
+            if (folded == SEPARATOR) {
+                if (inToken) {
+                    handler.tokenEnd();
+                    inToken = false;
+                }
+                continue;
+            }
+            if (folded == MULTIPLE) {
+                String foldedString = foldedString(c);
+                for (int j = 0; j < foldedString.length(); j++) {
+                    char part = foldedString.charAt(j);
+                    if (isWordChar(part)) {
+                        handler.tokenChar(part);
+                        inToken = true;
+                    } else if (inToken) {
+                        handler.tokenEnd();
+                        inToken = false;
+                    }
+                }
+                continue;
+            }
+
+            handler.tokenChar(folded);
+            inToken = true;
+        }
+
+        if (inToken) {
+            handler.tokenEnd();
+        }
+    }
+
+    /**
+     * Convenience method building the list of the words of a text.
+     * It allocates one String per word, and is meant for the trigger words and debugging, not for the notes.
+     * @param text the raw text.
+     * @return the list of the normalized words.
+     */
+    public static List<String> tokens(CharSequence text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        tokenize(text, new TokenHandler() {
+            @Override
+            public void tokenChar(char c) {
+                current.append(c);
+            }
+
+            @Override
+            public void tokenEnd() {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        });
+        return tokens;
+    }
+
+    /**
+     * Folds one character through the reference pipeline.
+     * @param c the character.
+     * @return the folded word character, or SEPARATOR, IGNORED or MULTIPLE.
+     */
+    private static char computeFold(char c) {
+        String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        String folded = COMBINING_DIACRITICAL_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+
+        if (folded.isEmpty()) {
+            return IGNORED;
+        }
+        if (folded.length() == 1) {
+            char foldedChar = folded.charAt(0);
+            return isWordChar(foldedChar) ? foldedChar : SEPARATOR;
+        }
+        FOLDED_STRINGS.put(c, folded);
+        return MULTIPLE;
+    }
+
+    /**
+     * The table is filled without synchronization, so the string may not be visible yet to another thread.
+     * @param c a character folding into several characters.
+     * @return its folded form.
+     */
+    private static String foldedString(char c) {
+        String folded = FOLDED_STRINGS.get(c);
+        if (folded == null) {
+            computeFold(c);
+            folded = FOLDED_STRINGS.get(c);
+        }
+        return folded;
+    }
+
+    /**
+     * @param c a folded character, already in lowercase.
+     * @return true if the character is a word character, as defined by the "\w" regex class.
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -0,0 +1,89 @@
+package com.medilabo.analysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Dictionary of the diabetes trigger words, loaded from a file (one trigger per line, '#' for comments).
+ * Each service declares its own instance, with the location of its file: assessment.triggers.location or notes.triggers.location.
+ * The default file, classpath:trigger-words.txt, is the one of this library, so both services start with the same dictionary.
+ * The dictionary can be replaced at runtime, by reloading the file or with a new list of triggers.
+ * The new triggers are normalized and compiled before the matcher is published, and the callers take one snapshot
+ * of the matcher per operation, so an operation in progress is never matched against two dictionaries.
+ * The version of the matcher identifies the dictionary: the two services compute the same version from the same triggers.
+ */
+public class TriggerDictionary {
+    private static final Logger log = LoggerFactory.getLogger(TriggerDictionary.class);
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final AtomicReference<TriggerMatcher> matcher = new AtomicReference<>();
+
+    public TriggerDictionary(ResourceLoader resourceLoader, String location) {
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+        reload();
+    }
+
+    /**
+     * @return the current matcher, to use for a whole operation.
+     */
+    public TriggerMatcher getMatcher() {
+        return matcher.get();
+    }
+
+    /**
+     * Loads the triggers again from the dictionary file and publishes them.
+     * @return the new matcher.
+     * @throws IllegalArgumentException if the file does not contain any valid trigger.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public TriggerMatcher reload() {
+        Resource resource = resourceLoader.getResource(location);
+        List<String> triggers = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    triggers.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the trigger words from " + location, e);
+        }
+        return update(triggers);
+    }
+
+    /**
+     * Replaces the triggers of this instance. The file is not modified, so a restart or a reload restores its triggers.
+     * @param triggers the new trigger words.
+     * @return the new matcher.
+     * @throws IllegalArgumentException if the list is empty or a trigger does not contain any word character.
+     */
+    public TriggerMatcher update(Collection<String> triggers) {
+        if (triggers == null || triggers.isEmpty()) {
+            throw new IllegalArgumentException("The trigger dictionary cannot be empty");
+        }
+        if (triggers.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("The trigger dictionary cannot contain a null trigger");
+        }
+        TriggerMatcher newMatcher = TriggerMatcher.compile(triggers);
+        matcher.set(newMatcher);
+        log.info("Trigger dictionary version {} published: {} triggers", newMatcher.getVersion(), newMatcher.getTriggers().size());
+        return newMatcher;
+    }
+}
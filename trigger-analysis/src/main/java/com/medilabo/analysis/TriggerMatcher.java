@@ -0,0 +1,317 @@
+package com.medilabo.analysis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matcher counting the distinct trigger words present in medical notes.
+ * The triggers are normalized and compiled once into an Aho-Corasick automaton,
+ * so a note is matched in a single linear pass whatever the size of the dictionary.
+ * Matching is anchored at the beginning of the note's words and keeps the two-way prefix semantics:
+ * - a trigger is found if the text starting at a word begins with the trigger (multi-word triggers are matched as a phrase),
+ * - a trigger is also found if a word of the note is a prefix of the trigger.
+ * Instances are immutable and can be shared between threads, a Scan is used by one thread only.
+ * The version of a matcher is a hash of its normalized triggers: two matchers with the same version find the same triggers,
+ * so trigger hits computed by another service can be trusted if their version is the same as ours.
+ */
+public final class TriggerMatcher {
+
+    /** Symbol used for any run of non-word characters. Symbols 1 to 37 are [a-z], [0-9] and '_'. */
+    static final int SEPARATOR = 0;
+    static final int ALPHABET_SIZE = 38;
+
+    private static final int ROOT = 0;
+
+    private final String[] triggers;
+    private final String version;
+    private final int maskWords;
+    private final int[] transitions;
+    private final long[] outputMasks;
+    private final long[] prefixMasks;
+
+    private TriggerMatcher(String[] triggers, int[] transitions, long[] outputMasks, long[] prefixMasks) {
+        this.triggers = triggers;
+        this.version = versionOf(triggers);
+        this.maskWords = maskWords(triggers.length);
+        this.transitions = transitions;
+        this.outputMasks = outputMasks;
+        this.prefixMasks = prefixMasks;
+    }
+
+    /**
+     * Normalizes and compiles a collection of trigger words.
+     * Triggers normalizing to the same key are merged and counted once.
+     * @param rawTriggers the trigger words as written in the dictionary.
+     * @return the compiled matcher.
+     * @throws IllegalArgumentException if a trigger does not contain any word character.
+     */
+    public static TriggerMatcher compile(Collection<String> rawTriggers) {
+        Map<String, int[]> patterns = new LinkedHashMap<>();
+        for (String rawTrigger : rawTriggers) {
+            String key = normalizeTrigger(rawTrigger);
+            if (key.isEmpty()) {
+                throw new IllegalArgumentException("Trigger word without any word character: '" + rawTrigger + "'");
+            }
+            patterns.putIfAbsent(key, toSymbols(key));
+        }
+
+        String[] keys = patterns.keySet().toArray(new String[0]);
+        int words = maskWords(keys.length);
+
+        // 1. Trie of the patterns, each pattern is anchored by a leading separator.
+        List<int[]> children = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        children.add(newChildren());
+        depths.add(0);
+        parents.add(-1);
+        int[] terminals = new int[keys.length];
+
+        for (int triggerIndex = 0; triggerIndex < keys.length; triggerIndex++) {
+            int node = ROOT;
+            for (int symbol : patterns.get(keys[triggerIndex])) {
+                int next = children.get(node)[symbol];
+                if (next < 0) {
+                    next = children.size();
+                    children.get(node)[symbol] = next;
+                    children.add(newChildren());
+                    depths.add(depths.get(node) + 1);
+                    parents.add(node);
+                }
+                node = next;
+            }
+            terminals[triggerIndex] = node;
+        }
+
+        int stateCount = children.size();
+        long[] terminalMasks = new long[stateCount * words];
+        long[] subtreeMasks = new long[stateCount * words];
+        for (int triggerIndex = 0; triggerIndex < keys.length; triggerIndex++) {
+            setBit(terminalMasks, terminals[triggerIndex] * words, triggerIndex);
+        }
+
+        // 2. Breadth-first walk : failure links, complete transition table and output masks.
+        int[] transitions = new int[stateCount * ALPHABET_SIZE];
+        int[] failures = new int[stateCount];
+        int[] order = new int[stateCount];
+        int orderSize = 0;
+        Deque<Integer> queue = new ArrayDeque<>();
+
+        for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+            int child = children.get(ROOT)[symbol];
+            if (child < 0) {
+                transitions[symbol] = ROOT;
+            } else {
+                transitions[symbol] = child;
+                failures[child] = ROOT;
+                queue.add(child);
+            }
+        }
+
+        long[] outputMasks = new long[stateCount * words];
+        long[] prefixMasks = new long[stateCount * words];
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            order[orderSize++] = node;
+            for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+                int child = children.get(node)[symbol];
+                int fallback = transitions[failures[node] * ALPHABET_SIZE + symbol];
+                if (child < 0) {
+                    transitions[node * ALPHABET_SIZE + symbol] = fallback;
+                } else {
+                    transitions[node * ALPHABET_SIZE + symbol] = child;
+                    failures[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+
+        // Subtree masks: every trigger reachable below a node, accumulated from the deepest nodes up.
+        System.arraycopy(terminalMasks, 0, subtreeMasks, 0, terminalMasks.length);
+        for (int i = orderSize - 1; i >= 0; i--) {
+            int node = order[i];
+            orOf(subtreeMasks, parents.get(node) * words, subtreeMasks, node * words, words);
+        }
+
+        // Failure targets are always shallower, so they are complete when a node is reached in BFS order.
+        for (int i = 0; i < orderSize; i++) {
+            int node = order[i];
+            int failure = failures[node];
+            orOf(outputMasks, node * words, terminalMasks, node * words, words);
+            orOf(outputMasks, node * words, outputMasks, failure * words, words);
+            // The lone leading separator is the prefix of every trigger : it is not a word, so it must not match.
+            if (depths.get(node) >= 2) {
+                orOf(prefixMasks, node * words, subtreeMasks, node * words, words);
+            }
+            orOf(prefixMasks, node * words, prefixMasks, failure * words, words);
+        }
+
+        return new TriggerMatcher(keys, transitions, outputMasks, prefixMasks);
+    }
+
+    /**
+     * Normalizes a trigger word the same way as the notes, with the NoteTokenizer:
+     * accents removed, lowercase, and the words separated by a single space.
+     * @param rawTrigger the trigger as written in the dictionary.
+     * @return the normalized key, empty if the trigger does not contain any word character.
+     */
+    public static String normalizeTrigger(String rawTrigger) {
+        return String.join(" ", NoteTokenizer.tokens(rawTrigger));
+    }
+
+    /**
+     * Maps a folded character to its automaton symbol.
+     * @param c a character of a normalized text.
+     * @return the symbol of the character, SEPARATOR if it is not a word character.
+     */
+    static int symbolOf(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        if (c == '_') {
+            return 37;
+        }
+        return SEPARATOR;
+    }
+
+    /**
+     * @return the normalized triggers, in the order of their indexes.
+     */
+    public List<String> getTriggers() {
+        return List.of(triggers);
+    }
+
+    /**
+     * @return the version of the dictionary, the same for any matcher compiled from the same normalized triggers.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return a new scan, which accumulates the distinct triggers found in one or more notes.
+     */
+    public Scan newScan() {
+        return new Scan();
+    }
+
+    /**
+     * Accumulates the triggers found in the texts given to it.
+     * Each text is matched independently, a phrase is never matched across two texts.
+     * The words are received from the NoteTokenizer, so a scan does not allocate anything once created.
+     */
+    public final class Scan implements NoteTokenizer.TokenHandler {
+        private final long[] matched = new long[maskWords];
+        private int state;
+
+        private Scan() {
+        }
+
+        /**
+         * Matches the raw text of a note.
+         * @param text the text to match.
+         * @return this scan.
+         */
+        public Scan feed(CharSequence text) {
+            state = transitions[SEPARATOR];
+            NoteTokenizer.tokenize(text, this);
+            return this;
+        }
+
+        @Override
+        public void tokenChar(char c) {
+            state = transitions[state * ALPHABET_SIZE + symbolOf(c)];
+            orOf(matched, 0, outputMasks, state * maskWords, maskWords);
+        }
+
+        @Override
+        public void tokenEnd() {
+            orOf(matched, 0, prefixMasks, state * maskWords, maskWords);
+            state = transitions[state * ALPHABET_SIZE + SEPARATOR];
+        }
+
+        /**
+         * @return the number of distinct triggers found so far.
+         */
+        public int count() {
+            int count = 0;
+            for (long word : matched) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        /**
+         * @return the normalized triggers found so far.
+         */
+        public List<String> matchedTriggers() {
+            List<String> found = new ArrayList<>();
+            for (int i = 0; i < triggers.length; i++) {
+                if ((matched[i >>> 6] & (1L << i)) != 0) {
+                    found.add(triggers[i]);
+                }
+            }
+            return found;
+        }
+    }
+
+    private static int[] toSymbols(String key) {
+        int[] symbols = new int[key.length() + 1];
+        symbols[0] = SEPARATOR;
+        for (int i = 0; i < key.length(); i++) {
+            symbols[i + 1] = symbolOf(key.charAt(i));
+        }
+        return symbols;
+    }
+
+    /**
+     * Hashes the sorted normalized triggers, so the version does not depend on the order of the dictionary.
+     * @param triggers the normalized triggers.
+     * @return the first 16 hexadecimal characters of the SHA-256 hash.
+     */
+    private static String versionOf(String[] triggers) {
+        String[] sorted = triggers.clone();
+        Arrays.sort(sorted);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(String.join("\n", sorted).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static int[] newChildren() {
+        int[] nodeChildren = new int[ALPHABET_SIZE];
+        Arrays.fill(nodeChildren, -1);
+        return nodeChildren;
+    }
+
+    private static int maskWords(int triggerCount) {
+        return Math.max(1, (triggerCount + 63) >>> 6);
+    }
+
+    private static void setBit(long[] masks, int offset, int bit) {
+        masks[offset + (bit >>> 6)] |= 1L << bit;
+    }
+
+    private static void orOf(long[] target, int targetOffset, long[] source, int sourceOffset, int words) {
+        for (int i = 0; i < words; i++) {
+            target[targetOffset + i] |= source[sourceOffset + i];
+        }
+    }
+}
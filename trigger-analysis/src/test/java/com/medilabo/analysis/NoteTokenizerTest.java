@@ -0,0 +1,134 @@
+package com.medilabo.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteTokenizerTest {
+
+    // =========================
+    // Helpers
+    // =========================
+
+    /**
+     * The previous pipeline: NFD, removal of the diacritical marks, lowercase, then split on "\W+".
+     * The leading empty word produced by split() is not a word and is ignored.
+     */
+    private static List<String> legacyTokens(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+                .toLowerCase();
+        return Arrays.stream(normalized.split("\\W+"))
+                .filter(word -> !word.isEmpty())
+                .toList();
+    }
+
+    private static String buildNote(Random random, int length) {
+        String[] samples = {
+                "Hémoglobine A1C", "cholestérol", "d'être", "l’année", "Réaction", "ÉLEVÉ", "garçon", "cœur",
+                "Œdème", "straße", "ﬁbrose", "élève", "½", "x²", "ǅ", "İ", "K", "١٢٣", "日本", "😀", " ",
+                "taux_ldl", "A1c-HbA1c", "  ", ", ", ".\n", "\t"
+        };
+        StringBuilder note = new StringBuilder();
+        while (note.length() < length) {
+            if (random.nextInt(4) == 0) {
+                note.append((char) random.nextInt(0x3000));
+            } else {
+                note.append(samples[random.nextInt(samples.length)]);
+            }
+        }
+        return note.toString();
+    }
+
+    // =========================
+    // Tokens
+    // =========================
+
+    @Test
+    void shouldFoldAccentsAndCase() {
+        assertEquals(List.of("hemoglobine", "a1c", "superieure", "au", "niveau", "recommande"),
+                NoteTokenizer.tokens("Hémoglobine A1C supérieure au niveau recommandé"));
+    }
+
+    @Test
+    void shouldSplitOnApostrophesAndPunctuation() {
+        assertEquals(List.of("qu", "il", "se", "sent", "tres", "bien", "d", "etre"),
+                NoteTokenizer.tokens("qu'il 'se sent très bien'... d’être"));
+    }
+
+    @Test
+    void shouldKeepWordTogether_whenAccentIsDecomposed() {
+        assertEquals(List.of("eleve"), NoteTokenizer.tokens("élève"));
+    }
+
+    @Test
+    void shouldReturnNoToken_whenTextIsEmptyOrWithoutWord() {
+        assertEquals(List.of(), NoteTokenizer.tokens(""));
+        assertEquals(List.of(), NoteTokenizer.tokens(" ,.;'’ "));
+    }
+
+    // =========================
+    // Differential test with the previous pipeline
+    // =========================
+
+    @Test
+    void shouldProduceSameTokensAsLegacyPipeline_onRandomNotes() {
+        Random random = new Random(7);
+
+        for (int run = 0; run < 2000; run++) {
+            String note = buildNote(random, 1 + random.nextInt(200));
+
+            assertEquals(legacyTokens(note), NoteTokenizer.tokens(note), () -> "Note: " + note);
+        }
+    }
+
+    @Test
+    void shouldProduceSameTokensAsLegacyPipeline_forEveryBmpCharacter() {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            String text = "a" + (char) c + "b " + (char) c;
+
+            assertEquals(legacyTokens(text), NoteTokenizer.tokens(text), "Character: " + Integer.toHexString(c));
+        }
+    }
+
+    // =========================
+    // Scan of the tokens
+    // =========================
+
+    /**
+     * The allocations of the tokenizer and of the previous pipeline are compared by NoteAnalysisBenchmark (gc profiler),
+     * this test only checks that the scan finds the triggers found by the previous prefix matching.
+     */
+    @Test
+    void shouldCountSameTriggersAsLegacyPrefixMatching_onRandomNotes() {
+        List<String> triggers = List.of("Poids", "Cholestérol", "Réaction", "Fumeur");
+        TriggerMatcher matcher = TriggerMatcher.compile(triggers);
+        Random random = new Random(3);
+
+        for (int run = 0; run < 200; run++) {
+            List<String> notes = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                notes.add(buildNote(random, 1 + random.nextInt(300)));
+            }
+
+            TriggerMatcher.Scan scan = matcher.newScan();
+            List<String> words = new ArrayList<>();
+            for (String note : notes) {
+                scan.feed(note);
+                words.addAll(legacyTokens(note));
+            }
+            List<String> expected = matcher.getTriggers().stream()
+                    .filter(trigger -> words.stream().anyMatch(word -> word.startsWith(trigger) || trigger.startsWith(word)))
+                    .toList();
+
+            assertEquals(expected, scan.matchedTriggers(), () -> "Notes: " + notes);
+            assertEquals(expected.size(), scan.count());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.medilabo.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TriggerDictionaryTest {
+
+    @Test
+    void shouldLoadTheDefaultDictionary_ignoringComments() {
+        TriggerDictionary dictionary = new TriggerDictionary(new DefaultResourceLoader(), "classpath:trigger-words.txt");
+
+        assertEquals(12, dictionary.getMatcher().getTriggers().size());
+        assertTrue(dictionary.getMatcher().getTriggers().contains("hemoglobine a1c"));
+    }
+
+    @Test
+    void shouldReloadTheFile_andKeepTheCurrentMatcherWhenInvalid(@TempDir Path directory) throws IOException {
+        Path triggers = directory.resolve("trigger-words.txt");
+        Files.writeString(triggers, "# comment\nPoids\n");
+        TriggerDictionary dictionary = new TriggerDictionary(new DefaultResourceLoader(), triggers.toUri().toString());
+        TriggerMatcher first = dictionary.getMatcher();
+
+        Files.writeString(triggers, "Poids\nGlycémie\n");
+        TriggerMatcher second = dictionary.reload();
+
+        assertEquals(List.of("poids", "glycemie"), second.getTriggers());
+        assertNotEquals(first.getVersion(), second.getVersion());
+        assertSame(second, dictionary.getMatcher());
+
+        Files.writeString(triggers, "Poids\n'-'\n");
+        assertThrows(IllegalArgumentException.class, dictionary::reload);
+        assertSame(second, dictionary.getMatcher());
+    }
+
+    @Test
+    void shouldRejectAnEmptyDictionary() {
+        TriggerDictionary dictionary = new TriggerDictionary(new DefaultResourceLoader(), "classpath:trigger-words.txt");
+
+        assertThrows(IllegalArgumentException.class, () -> dictionary.update(List.of()));
+    }
+}
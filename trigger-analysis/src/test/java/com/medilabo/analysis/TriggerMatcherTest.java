@@ -0,0 +1,183 @@
+package com.medilabo.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TriggerMatcherTest {
+
+    private static final List<String> TRIGGERS = List.of(
+            "Hémoglobine A1C",
+            "Microalbumine",
+            "Taille",
+            "Poids",
+            "Fumeur",
+            "Fumeuse",
+            "Anormal",
+            "Cholestérol",
+            "Vertiges",
+            "Rechute",
+            "Réaction",
+            "Anticorps"
+    );
+
+    private final TriggerMatcher matcher = TriggerMatcher.compile(TRIGGERS);
+
+    // =========================
+    // Helpers
+    // =========================
+
+    private int count(String... notes) {
+        TriggerMatcher.Scan scan = matcher.newScan();
+        for (String note : notes) {
+            scan.feed(note);
+        }
+        return scan.count();
+    }
+
+    private static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+                .toLowerCase();
+    }
+
+    /**
+     * The previous implementation: words split on "\W+", each trigger compared to every word.
+     * Empty words are ignored, the leading empty word produced by split() used to match every trigger.
+     */
+    private static int legacyCount(List<String> triggers, String... notes) {
+        List<String> words = new ArrayList<>();
+        for (String note : notes) {
+            for (String word : normalize(note).split("\\W+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        int count = 0;
+        for (String trigger : triggers) {
+            String normalizedTrigger = normalize(trigger);
+            if (words.stream().anyMatch(word -> word.startsWith(normalizedTrigger) || normalizedTrigger.startsWith(word))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // =========================
+    // Prefix semantics
+    // =========================
+
+    @Test
+    void shouldMatch_whenWordStartsWithTrigger() {
+        assertEquals(2, count("Les vertiges et les poids lourds"));
+    }
+
+    @Test
+    void shouldMatch_whenWordIsAPrefixOfTrigger() {
+        assertEquals(1, count("Des vertig"));
+    }
+
+    @Test
+    void shouldNotMatch_whenTriggerIsInsideAWord() {
+        assertEquals(0, count("détaillé, contrepoids"));
+    }
+
+    @Test
+    void shouldIgnoreAccentsAndCase() {
+        assertEquals(2, count("CHOLESTEROL élevé, réaction"));
+    }
+
+    @Test
+    void shouldNotMatchEveryTrigger_whenNoteStartsWithSeparator() {
+        assertEquals(1, count("'Poids' normal"));
+    }
+
+    // =========================
+    // Multi-words triggers and counting
+    // =========================
+
+    @Test
+    void shouldMatchMultiWordTriggerAsAPhrase() {
+        TriggerMatcher phraseMatcher = TriggerMatcher.compile(List.of("Hémoglobine A1C"));
+
+        assertEquals(List.of("hemoglobine a1c"),
+                phraseMatcher.newScan().feed("Taux d'hémoglobine   A1C élevé").matchedTriggers());
+        assertEquals(0, phraseMatcher.newScan().feed("A1C seul").count());
+    }
+
+    @Test
+    void shouldCountDistinctTriggersAcrossNotes() {
+        assertEquals(3, count("Poids, poids et poids", "Fumeur", "Taille et poids"));
+    }
+
+    @Test
+    void shouldMergeTriggersWithTheSameNormalizedForm() {
+        TriggerMatcher duplicates = TriggerMatcher.compile(Set.of("Réaction", "reaction"));
+
+        assertEquals(List.of("reaction"), duplicates.getTriggers());
+    }
+
+    @Test
+    void shouldSupportMoreThan64Triggers() {
+        List<String> triggers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            triggers.add("x" + i + "y");
+        }
+        TriggerMatcher large = TriggerMatcher.compile(triggers);
+
+        assertEquals(List.of("x7y", "x70y", "x99y"), large.newScan().feed("x7y x70y x99y").matchedTriggers());
+    }
+
+    @Test
+    void shouldHaveTheSameVersion_whenTheNormalizedTriggersAreTheSame() {
+        TriggerMatcher reordered = TriggerMatcher.compile(TRIGGERS.reversed());
+        TriggerMatcher sameKeys = TriggerMatcher.compile(TRIGGERS.stream().map(String::toUpperCase).toList());
+        TriggerMatcher other = TriggerMatcher.compile(List.of("Poids", "Taille"));
+
+        assertEquals(matcher.getVersion(), reordered.getVersion());
+        assertEquals(matcher.getVersion(), sameKeys.getVersion());
+        assertNotEquals(matcher.getVersion(), other.getVersion());
+    }
+
+    @Test
+    void shouldRejectTriggerWithoutWordCharacter() {
+        assertThrows(IllegalArgumentException.class, () -> TriggerMatcher.compile(List.of("  ")));
+    }
+
+    // =========================
+    // Differential test with the previous implementation
+    // =========================
+
+    @Test
+    void shouldCountLikeLegacyImplementation_onRandomNotes() {
+        String[] vocabulary = {
+                "poids", "Poids", "taille", "fum", "fumeur", "Fumeuse", "a", "le", "patient", "vertige", "Vertiges",
+                "réaction", "Réactions", "anticorps", "anti", "hémoglobine", "A1C", "cholestérol", "micro",
+                "microalbumine", "rechute", "anormale", "ANORMAL", "détaillé", "contrepoids", "d'être", "l'année"
+        };
+        String[] separators = {" ", ", ", ". ", "' ", " - ", "\n", "’"};
+        Random random = new Random(42);
+
+        for (int run = 0; run < 500; run++) {
+            String[] notes = new String[1 + random.nextInt(3)];
+            for (int n = 0; n < notes.length; n++) {
+                StringBuilder note = new StringBuilder();
+                int words = 1 + random.nextInt(12);
+                for (int w = 0; w < words; w++) {
+                    note.append(vocabulary[random.nextInt(vocabulary.length)]);
+                    note.append(separators[random.nextInt(separators.length)]);
+                }
+                notes[n] = note.toString();
+            }
+
+            assertEquals(legacyCount(TRIGGERS, notes), count(notes), () -> "Notes: " + List.of(notes));
+        }
+    }
+}